@@ -0,0 +1,77 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Models.HoldRequest;
+import com.clementlu.ticketservice.Models.SeatHold;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares holding a queue of requests with {@code findAndHoldSeatsBatch}
+ * against calling {@code findAndHoldSeats} once per request.
+ * <p>
+ * The holds are expired again after each invocation, outside of the
+ * measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchHoldBenchmark {
+
+    @Param({"100"})
+    public int batchSize;
+
+    @Param({"4"})
+    public int numSeats;
+
+    private List<HoldRequest> requests;
+    private List<SeatHold> seatHolds;
+
+    @Setup
+    public void setUp() {
+        requests = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            requests.add(new HoldRequest(numSeats, VenueState.CUSTOMER_EMAIL));
+        }
+    }
+
+    @Benchmark
+    public List<SeatHold> findAndHoldSeatsBatch(VenueState state) {
+        seatHolds = state.service.findAndHoldSeatsBatch(requests);
+        return seatHolds;
+    }
+
+    @Benchmark
+    public List<SeatHold> findAndHoldSeats(VenueState state) {
+        seatHolds = new ArrayList<>(requests.size());
+        for (HoldRequest request : requests) {
+            seatHolds.add(state.service.findAndHoldSeats(request.getNumSeats(), request.getCustomerEmail()));
+        }
+        return seatHolds;
+    }
+
+    @TearDown(Level.Invocation)
+    public void release(VenueState state) {
+        for (SeatHold seatHold : seatHolds) {
+            if (seatHold != null) {
+                state.service.expiryHandler(seatHold.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so every result
+ * includes the allocation rate ({@code gc.alloc.rate.norm} is bytes per
+ * operation).
+ * <p>
+ * Takes the same arguments as the JMH command line, for example
+ * {@code -p venueSize=1000x1000 FindAndHoldSeats}.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
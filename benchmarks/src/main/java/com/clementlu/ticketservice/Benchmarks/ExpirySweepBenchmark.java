@@ -0,0 +1,102 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares releasing the seats of a wave of expired holds one hold at a
+ * time, as the service did before expiry sweeps, with one
+ * {@code Venue.releaseSeats} call for all of them.
+ * <p>
+ * The holds are 4 seats each, made in "first fit" order on a 1000x1000
+ * venue, and expire in a random order, the worst case for grouping the
+ * seats by row. The seats are held again before each operation, so
+ * only the release is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpirySweepBenchmark {
+    private static final int SEATS_PER_HOLD = 4;
+
+    @Param({"1000", "10000"})
+    public int expiredHolds;
+
+    @Param({"PACKED", "OBJECT"})
+    public SeatStorageMode storageMode;
+
+    private Venue venue;
+    private List<List<Seat>> holds;
+    private int[] heldSeats;
+    private int[] sweepSeats;
+
+    @Setup
+    public void setUp() throws InvalidVenueException {
+        venue = VenueState.newVenue("1000x1000", storageMode);
+        heldSeats = new int[expiredHolds * SEATS_PER_HOLD];
+        sweepSeats = new int[heldSeats.length];
+        holds = new ArrayList<List<Seat>>(expiredHolds);
+        for (int i = 0; i < expiredHolds; i++) {
+            List<Seat> seats = new ArrayList<Seat>(SEATS_PER_HOLD);
+            for (int j = 0; j < SEATS_PER_HOLD; j++) {
+                seats.add(venue.getSeat(i * SEATS_PER_HOLD + j));
+            }
+            holds.add(seats);
+        }
+        Collections.shuffle(holds, new Random(42));
+        int n = 0;
+        for (List<Seat> seats : holds) {
+            for (Seat seat : seats) {
+                heldSeats[n++] = venue.getSeatIndex(seat);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void holdSeats() {
+        venue.changeSeatStatus(heldSeats, heldSeats.length, SeatStatus.HOLD);
+    }
+
+    @Benchmark
+    public int releasePerHold() {
+        for (List<Seat> seats : holds) {
+            venue.changeSeatStatus(seats, SeatStatus.VACANT);
+        }
+        return venue.getNumSeats(SeatStatus.VACANT);
+    }
+
+    @Benchmark
+    public int releaseSweep() {
+        System.arraycopy(heldSeats, 0, sweepSeats, 0, heldSeats.length);
+        venue.releaseSeats(sweepSeats, sweepSeats.length);
+        for (List<Seat> seats : holds) {
+            for (Seat seat : seats) {
+                seat.setSeatStatus(SeatStatus.VACANT);
+            }
+        }
+        return venue.getNumSeats(SeatStatus.VACANT);
+    }
+}
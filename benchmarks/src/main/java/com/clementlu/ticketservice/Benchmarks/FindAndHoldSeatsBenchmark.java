@@ -0,0 +1,50 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Models.SeatHold;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@code findAndHoldSeats} for several request sizes.
+ * <p>
+ * Each hold is expired again after the invocation, outside of the
+ * measured time, so every invocation sees the same venue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FindAndHoldSeatsBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int numSeats;
+
+    private SeatHold seatHold;
+
+    @Benchmark
+    public SeatHold findAndHoldSeats(VenueState state) {
+        seatHold = state.service.findAndHoldSeats(numSeats, VenueState.CUSTOMER_EMAIL);
+        return seatHold;
+    }
+
+    @TearDown(Level.Invocation)
+    public void release(VenueState state) {
+        if (seatHold != null) {
+            state.service.expiryHandler(seatHold.getId());
+            seatHold = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.SeatHold;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@code reserveSeats} and {@code expiryHandler} on a hold
+ * made before each invocation.
+ * <p>
+ * The seats are made vacant again after each invocation, outside of the
+ * measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReserveSeatsBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int numSeats;
+
+    private SeatHold seatHold;
+
+    @Setup(Level.Invocation)
+    public void hold(VenueState state) {
+        seatHold = state.service.findAndHoldSeats(numSeats, VenueState.CUSTOMER_EMAIL);
+    }
+
+    @Benchmark
+    public String reserveSeats(VenueState state) {
+        return seatHold == null ? null
+            : state.service.reserveSeats(seatHold.getId(), VenueState.CUSTOMER_EMAIL);
+    }
+
+    @Benchmark
+    public void expiryHandler(VenueState state) {
+        if (seatHold != null) {
+            state.service.expiryHandler(seatHold.getId());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void release(VenueState state) {
+        if (seatHold != null) {
+            state.service.expiryHandler(seatHold.getId());
+            state.venue.changeSeatStatus(seatHold.getSeats(), SeatStatus.VACANT);
+            seatHold = null;
+        }
+    }
+}
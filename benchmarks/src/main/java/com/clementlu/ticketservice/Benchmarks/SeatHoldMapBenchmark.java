@@ -0,0 +1,121 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.SeatHoldIdGenerator;
+import com.clementlu.ticketservice.Models.SeatHoldMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the service's {@code SeatHoldMap} with the
+ * {@code ConcurrentHashMap<Integer, SeatHold>} it replaced, and the
+ * {@code SeatHoldIdGenerator} with the random ids it replaced.
+ * <p>
+ * {@code get} looks up active holds and reads their deadline, as
+ * {@code reserveSeats} and {@code expiryHandler} do.
+ * {@code putRemove} adds a hold with a new id and removes it again, as a
+ * hold followed by {@code reserveSeats} does. New ids come from a
+ * {@code SeatHoldIdGenerator}, so the boxed keys are past the
+ * {@code Integer} cache. Run with {@code -t 4} to see the maps and the
+ * generator under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SeatHoldMapBenchmark {
+
+    @Param({"1000", "100000"})
+    public int activeHolds;
+
+    private SeatHoldMap seatHoldMap;
+    private ConcurrentHashMap<Integer, SeatHold> concurrentHashMap;
+    private SeatHoldIdGenerator ids;
+    private SeatHold[] seatHolds;
+
+    @Setup
+    public void fill() {
+        seatHoldMap = new SeatHoldMap();
+        concurrentHashMap = new ConcurrentHashMap<>();
+        ids = new SeatHoldIdGenerator();
+        seatHolds = new SeatHold[activeHolds];
+        for (int i = 0; i < activeHolds; i++) {
+            seatHolds[i] = newSeatHold(ids.nextId());
+            seatHoldMap.put(seatHolds[i]);
+            concurrentHashMap.put(seatHolds[i].getId(), seatHolds[i]);
+        }
+    }
+
+    private static SeatHold newSeatHold(int id) {
+        return new SeatHold(id, Collections.<Seat>emptyList(), VenueState.CUSTOMER_EMAIL,
+            SeatHold.NO_EXPIRY);
+    }
+
+    /**
+    * Visits every active id in a scattered order, from a different
+    * starting point on each thread, so neither map gains from ids that
+    * are next to each other in memory.
+    */
+    @State(Scope.Thread)
+    public static class Lookups {
+        private static final int STRIDE = 104729;
+        private static final AtomicInteger THREADS = new AtomicInteger();
+        private int next = THREADS.getAndIncrement() * 7919;
+
+        int nextId(int activeHolds) {
+            next = (next + STRIDE) % activeHolds;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public long seatHoldMapGet(Lookups lookups) {
+        return seatHoldMap.get(lookups.nextId(activeHolds)).getExpiryDeadline();
+    }
+
+    @Benchmark
+    public long concurrentHashMapGet(Lookups lookups) {
+        return concurrentHashMap.get(lookups.nextId(activeHolds)).getExpiryDeadline();
+    }
+
+    @Benchmark
+    public SeatHold seatHoldMapPutRemove() {
+        SeatHold seatHold = newSeatHold(ids.nextId());
+        seatHoldMap.put(seatHold);
+        return seatHoldMap.remove(seatHold.getId());
+    }
+
+    @Benchmark
+    public SeatHold concurrentHashMapPutRemove() {
+        SeatHold seatHold = newSeatHold(ids.nextId());
+        concurrentHashMap.put(seatHold.getId(), seatHold);
+        return concurrentHashMap.remove(seatHold.getId());
+    }
+
+    @Benchmark
+    public int seatHoldIdGeneratorNextId() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    public int threadLocalRandomNextInt() {
+        return ThreadLocalRandom.current().nextInt(0, Integer.MAX_VALUE);
+    }
+}
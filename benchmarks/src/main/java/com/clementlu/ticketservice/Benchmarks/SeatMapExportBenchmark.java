@@ -0,0 +1,110 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Export.SeatMapEncoder;
+import com.clementlu.ticketservice.Models.Venue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the binary seat map export with rendering the seat map
+ * through {@code Seat.toString()}.
+ * <p>
+ * In the {@code FILLED} layout the first half of the venue is reserved,
+ * as after an on-sale served in "first fit" order. In the
+ * {@code SCATTERED} layout every seat has a random status, the worst
+ * case for the run-length encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SeatMapExportBenchmark {
+
+    @Param({"100x100", "1000x1000"})
+    public String venueSize;
+
+    @Param({"FILLED", "SCATTERED"})
+    public String layout;
+
+    private Venue venue;
+    private SeatMapEncoder encoder;
+    private ByteBuffer buffer;
+    private WritableByteChannel discard;
+
+    @Setup
+    public void setUp() throws InvalidVenueException {
+        venue = VenueState.newVenue(venueSize, SeatStorageMode.PACKED);
+        int total = venue.getTotalSeats();
+        if (layout.equals("FILLED")) {
+            int[] indexes = new int[total / 2];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            venue.changeSeatStatus(indexes, indexes.length, SeatStatus.RESERVED);
+        } else {
+            Random random = new Random(42);
+            int[][] indexes = new int[3][total];
+            int[] counts = new int[3];
+            for (int i = 0; i < total; i++) {
+                int status = random.nextInt(3);
+                indexes[status][counts[status]++] = i;
+            }
+            venue.changeSeatStatus(indexes[1], counts[1], SeatStatus.HOLD);
+            venue.changeSeatStatus(indexes[2], counts[2], SeatStatus.RESERVED);
+        }
+        encoder = new SeatMapEncoder();
+        buffer = ByteBuffer.allocateDirect((int) SeatMapEncoder.maxEncodedSize(total));
+        discard = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int written = src.remaining();
+                src.position(src.limit());
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Benchmark
+    public int encodeToBuffer() {
+        buffer.clear();
+        return encoder.encode(venue, buffer);
+    }
+
+    @Benchmark
+    public long encodeToChannel() throws IOException {
+        return encoder.encode(venue, discard);
+    }
+
+    @Benchmark
+    public int seatMapToString() {
+        return venue.getSeatMap().toString().length();
+    }
+}
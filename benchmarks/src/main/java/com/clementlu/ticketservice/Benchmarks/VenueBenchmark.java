@@ -0,0 +1,39 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.Venue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@code Venue} construction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VenueBenchmark {
+
+    @Param({"10x10", "100x100", "1000x1000"})
+    public String venueSize;
+
+    @Param({"PACKED", "OBJECT"})
+    public SeatStorageMode storageMode;
+
+    @Benchmark
+    public Venue newVenue() throws InvalidVenueException {
+        return VenueState.newVenue(venueSize, storageMode);
+    }
+}
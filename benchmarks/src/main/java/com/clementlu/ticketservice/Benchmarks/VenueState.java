@@ -0,0 +1,59 @@
+package com.clementlu.ticketservice.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.PerformanceVenueTicketService;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Venue and ticket service shared by the benchmarks.
+ * <p>
+ * The first {@code fillLevel} of the venue is reserved before the
+ * benchmark starts, so holds are made behind a sold section the way they
+ * would be during an on-sale. Holds never expire on their own during a
+ * run.
+ */
+@State(Scope.Benchmark)
+public class VenueState {
+    static final String CUSTOMER_EMAIL = "bench@example.com";
+
+    @Param({"10x10", "100x100", "1000x1000"})
+    public String venueSize;
+
+    @Param({"0.0", "0.5", "0.9"})
+    public double fillLevel;
+
+    @Param({"PACKED", "OBJECT"})
+    public SeatStorageMode storageMode;
+
+    public Venue venue;
+    public PerformanceVenueTicketService service;
+
+    @Setup
+    public void setUp() throws InvalidVenueException {
+        venue = newVenue(venueSize, storageMode);
+        service = new PerformanceVenueTicketService(venue, 1, TimeUnit.HOURS);
+        int filled = (int) (venue.getTotalSeats() * fillLevel);
+        if (filled > 0) {
+            SeatHold seatHold = service.findAndHoldSeats(filled, CUSTOMER_EMAIL);
+            service.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    static Venue newVenue(String venueSize, SeatStorageMode storageMode) throws InvalidVenueException {
+        String[] dimensions = venueSize.split("x");
+        return new Venue(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), storageMode);
+    }
+}
@@ -0,0 +1,184 @@
+package com.clementlu.ticketservice.LoadGen;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import com.clementlu.ticketservice.PerformanceVenueTicketService;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Metrics.LatencyHistogram;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Replication.ReplicationPublisher;
+import com.clementlu.ticketservice.Replication.ReplicationStandby;
+
+/**
+ * Failover drill with a primary and a warm standby in two processes on
+ * the same machine.
+ * <p>
+ * The primary runs a ticket service with a {@code ReplicationPublisher}
+ * on {@code --port}, waits for the standby to connect, and drives it on
+ * an open loop at {@code --rate} holds per second for
+ * {@code --duration} seconds: each customer either reserves their hold
+ * at once or abandons it to expire. It then halts without closing
+ * anything, as a crashed process would, and prints the last event it
+ * published and its seat counts.
+ * <p>
+ * The standby applies the event stream to its own venue and prints its
+ * replication lag every second. When the primary is lost it takes over,
+ * holds a seat on the new service, and prints the failover time and the
+ * seat counts it took over, which match the primary's when no event was
+ * lost in flight. The process exits with status 1 if an event did not
+ * apply or the venue's counters are inconsistent.
+ * <pre>
+ * java -cp loadgen.jar com.clementlu.ticketservice.LoadGen.FailoverDrill standby --port=7070 --rows=200 --columns=200
+ * java -cp loadgen.jar com.clementlu.ticketservice.LoadGen.FailoverDrill primary --port=7070 --rows=200 --columns=200 --rate=2000 --duration=10
+ * </pre>
+ * Every other option is read as by {@code LoadProfile}.
+ */
+public class FailoverDrill {
+    private static final long CONNECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !("primary".equals(args[0]) || "standby".equals(args[0]))) {
+            System.err.println("Usage: FailoverDrill primary|standby --port=N [load options]");
+            System.exit(2);
+            return;
+        }
+        int port = 7070;
+        List<String> options = new ArrayList<String>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--port=")) {
+                port = Integer.parseInt(args[i].substring("--port=".length()));
+            } else {
+                options.add(args[i]);
+            }
+        }
+        LoadProfile profile;
+        try {
+            profile = LoadProfile.parse(options.toArray(new String[0]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        if ("primary".equals(args[0])) {
+            runPrimary(profile, port);
+        } else {
+            System.exit(runStandby(profile, port) ? 0 : 1);
+        }
+    }
+
+    private static void runPrimary(LoadProfile profile, int port)
+            throws InvalidVenueException, IOException, InterruptedException {
+        Venue venue = new Venue(profile.getRows(), profile.getColumns(), profile.getStorageMode());
+        PerformanceVenueTicketService service = new PerformanceVenueTicketService(venue,
+            profile.getHoldExpiryNanos(), TimeUnit.NANOSECONDS);
+        ReplicationPublisher publisher = new ReplicationPublisher(venue, port);
+        service.addSeatHoldListener(publisher);
+        System.out.println("Primary: waiting for a standby on port " + publisher.getPort());
+        long connectDeadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while (publisher.getNumStandbys() == 0) {
+            if (System.nanoTime() - connectDeadline >= 0) {
+                System.err.println("Primary: no standby connected");
+                System.exit(1);
+            }
+            Thread.sleep(10);
+        }
+
+        Random random = new Random(profile.getSeed());
+        PartySizes partySizes = profile.getPartySizes();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / profile.getRate();
+        long start = System.nanoTime();
+        long end = start + profile.getDurationNanos();
+        double due = start;
+        long holds = 0;
+        long reserves = 0;
+        while (true) {
+            due += profile.isPoissonArrivals() ? -Math.log(1 - random.nextDouble()) * meanGapNanos
+                : meanGapNanos;
+            long arrival = (long) due;
+            if (arrival - end >= 0) {
+                break;
+            }
+            long wait = arrival - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String customerEmail = "customer" + random.nextInt(profile.getCustomers()) + "@example.com";
+            SeatHold seatHold = service.findAndHoldSeats(partySizes.next(random), customerEmail);
+            if (seatHold == null) {
+                continue;
+            }
+            holds++;
+            if (random.nextDouble() >= profile.getAbandonRate()
+                    && service.reserveSeats(seatHold.getId(), customerEmail) != null) {
+                reserves++;
+            }
+        }
+        // Counted before the halt, so an expiry in between may be missing.
+        System.out.printf("Primary: %d holds, %d reserved in %.1fs%n", holds, reserves,
+            (System.nanoTime() - start) / 1e9);
+        System.out.printf("Primary: crashing at event %d, standby acknowledged %d; %d held, %d reserved%n",
+            publisher.getLastSequence(), publisher.getAckedSequence(), venue.getNumSeats(SeatStatus.HOLD),
+            venue.getNumSeats(SeatStatus.RESERVED));
+        System.out.flush();
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static boolean runStandby(LoadProfile profile, int port)
+            throws InvalidVenueException, InterruptedException {
+        Venue venue = new Venue(profile.getRows(), profile.getColumns(), profile.getStorageMode());
+        ReplicationStandby standby = new ReplicationStandby(venue);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        long connectDeadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while (true) {
+            try {
+                standby.connect(address);
+                break;
+            } catch (IOException e) {
+                if (System.nanoTime() - connectDeadline >= 0) {
+                    System.err.println("Standby: no primary on port " + port + ": " + e.getMessage());
+                    return false;
+                }
+                Thread.sleep(100);
+            }
+        }
+        System.out.println("Standby: replicating from port " + port);
+        while (!standby.awaitPrimaryLost(1, TimeUnit.SECONDS)) {
+            LatencyHistogram lag = standby.getLag();
+            System.out.printf("Standby: applied %d events, lag p50 %s, p99 %s, max %s%n",
+                standby.getAppliedSequence(), micros(lag.getValueAtPercentile(50)),
+                micros(lag.getValueAtPercentile(99)), micros(lag.getMax()));
+        }
+
+        long lost = standby.getPrimaryLostNanos();
+        PerformanceVenueTicketService service = standby.takeOver(profile.getHoldExpiryNanos(),
+            TimeUnit.NANOSECONDS);
+        long tookOver = System.nanoTime();
+        int restored = service.getNumActiveHolds();
+        SeatHold first = service.findAndHoldSeats(1, "failover@example.com");
+        long firstHold = System.nanoTime();
+        LatencyHistogram lag = standby.getLag();
+        System.out.printf("Standby: primary lost after event %d; lag p50 %s, p99 %s, p999 %s, max %s%n",
+            standby.getAppliedSequence(), micros(lag.getValueAtPercentile(50)),
+            micros(lag.getValueAtPercentile(99)), micros(lag.getValueAtPercentile(99.9)), micros(lag.getMax()));
+        System.out.printf("Standby: took over %d holds in %s, first hold after %s; %d held, %d reserved%n",
+            restored, micros(tookOver - lost), micros(firstHold - lost),
+            venue.getNumSeats(SeatStatus.HOLD) - (first == null ? 0 : 1), venue.getNumSeats(SeatStatus.RESERVED));
+        boolean consistent = standby.getApplyErrors() == 0 && venue.verifySeatCounts();
+        System.out.println("Standby: " + (consistent ? "PASSED" : "FAILED, " + standby.getApplyErrors()
+            + " events did not apply"));
+        service.shutdown();
+        return consistent;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1e3);
+    }
+}
@@ -0,0 +1,376 @@
+package com.clementlu.ticketservice.LoadGen;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import com.clementlu.ticketservice.PerformanceVenueTicketService;
+import com.clementlu.ticketservice.TicketService;
+import com.clementlu.ticketservice.Admission.WaitingRoom;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Metrics.AdmissionMetrics;
+import com.clementlu.ticketservice.Metrics.LatencyHistogram;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Drives a {@code TicketService} with simulated on-sale traffic and
+ * checks that no seat was sold twice.
+ * <p>
+ * Requests arrive on an open loop: the time of each arrival is fixed in
+ * advance from the arrival rate, and the request is handed to the
+ * worker pool at that time whether or not earlier requests have
+ * finished. Latency is measured from the time the request was due, not
+ * from the time a worker picked it up, so time spent queued behind a
+ * slow request is counted rather than hidden (coordinated omission).
+ * The time the service itself took is reported separately.
+ * <p>
+ * Each customer holds a party of seats, then either abandons the hold
+ * and lets it expire or reserves it after a think time. Each on-sale
+ * runs on a new venue; after the arrivals stop, the generator waits for
+ * every reserve and for every abandoned hold to expire, then compares
+ * the venue with the seat states seen by a {@code SeatOwnershipChecker}.
+ * Running many rounds makes a soak test.
+ * <p>
+ * With an admit rate, holds go through a {@code WaitingRoom} in front of
+ * the service. Each waiting customer then blocks a thread of its own, as
+ * a swarm of real clients would, and the waiting room's queue, wait
+ * times and admit rate are reported for each on-sale.
+ * <p>
+ * The process exits with status 1 if any check failed.
+ */
+public class LoadGenerator {
+    private final LoadProfile profile;
+
+    private final LatencyHistogram holdLatency = new LatencyHistogram();
+    private final LatencyHistogram holdServiceTime = new LatencyHistogram();
+    private final LatencyHistogram reserveLatency = new LatencyHistogram();
+    private final LongAdder holdsMade = new LongAdder();
+    private final LongAdder holdsRefused = new LongAdder();
+    private final LongAdder holdsAbandoned = new LongAdder();
+    private final LongAdder reservesConfirmed = new LongAdder();
+    private final LongAdder reservesFailed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder confirmedSeats = new LongAdder();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private long requestsOffered;
+    private long holdsLimited;
+    private long totalSeats;
+    private long soldSeats;
+    private long elapsedNanos;
+    private long doubleBookings;
+    private long lostUpdates;
+    private long mismatches;
+    private long countMismatches;
+    private long admitted;
+    private long turnedAway;
+    private long gaveUp;
+
+    public LoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+    }
+
+    public static void main(String[] args) throws InvalidVenueException, InterruptedException {
+        LoadProfile profile;
+        try {
+            profile = LoadProfile.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println("Load: " + profile);
+        LoadGenerator generator = new LoadGenerator(profile);
+        generator.run();
+        System.out.print(generator.report());
+        System.exit(generator.isConsistent() ? 0 : 1);
+    }
+
+    /**
+    * Runs every on-sale of the profile.
+    *
+    * @throws InvalidVenueException If the venue size is not valid.
+    * @throws InterruptedException If the thread is interrupted.
+    */
+    public void run() throws InvalidVenueException, InterruptedException {
+        for (int round = 0; round < profile.getRounds(); round++) {
+            runOnSale(round);
+        }
+    }
+
+    private void runOnSale(int round) throws InvalidVenueException, InterruptedException {
+        Venue venue = new Venue(profile.getRows(), profile.getColumns(), profile.getStorageMode());
+        final PerformanceVenueTicketService service = new PerformanceVenueTicketService(venue,
+            profile.getHoldExpiryNanos(), TimeUnit.NANOSECONDS);
+        if (profile.getMaxHoldsPerCustomer() > 0 || profile.getMaxSeatsPerCustomer() > 0) {
+            service.setCustomerHoldLimits(
+                profile.getMaxHoldsPerCustomer() > 0 ? profile.getMaxHoldsPerCustomer() : Integer.MAX_VALUE,
+                profile.getMaxSeatsPerCustomer() > 0 ? profile.getMaxSeatsPerCustomer() : Integer.MAX_VALUE);
+        }
+        SeatOwnershipChecker checker = new SeatOwnershipChecker(venue);
+        service.addSeatHoldListener(checker);
+        ExecutorService workers = Executors.newFixedThreadPool(profile.getThreads());
+        TicketService holdService = service;
+        ExecutorService clients = workers;
+        WaitingRoom waitingRoom = null;
+        if (profile.getAdmitRate() > 0) {
+            waitingRoom = new WaitingRoom(service, profile.getRoomSize(), profile.getAdmitConcurrency(),
+                profile.getAdmitRate(), profile.getAdmitConcurrency());
+            waitingRoom.setMaxWait(profile.getMaxWaitNanos(), TimeUnit.NANOSECONDS);
+            holdService = waitingRoom;
+            clients = Executors.newCachedThreadPool();
+        }
+        ScheduledExecutorService thinkTimer = Executors.newSingleThreadScheduledExecutor();
+        Random random = new Random(profile.getSeed() + round);
+        PartySizes partySizes = profile.getPartySizes();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / profile.getRate();
+
+        long start = System.nanoTime();
+        long end = start + profile.getDurationNanos();
+        double due = start;
+        long offered = 0;
+        try {
+            while (true) {
+                due += profile.isPoissonArrivals() ? -Math.log(1 - random.nextDouble()) * meanGapNanos
+                    : meanGapNanos;
+                long arrival = (long) due;
+                if (arrival - end >= 0) {
+                    break;
+                }
+                long wait = arrival - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int numSeats = partySizes.next(random);
+                String customerEmail = "customer" + random.nextInt(profile.getCustomers()) + "@example.com";
+                boolean abandon = random.nextDouble() < profile.getAbandonRate();
+                pending.incrementAndGet();
+                clients.execute(new HoldTask(holdService, workers, thinkTimer, numSeats, customerEmail,
+                    abandon, arrival));
+                offered++;
+            }
+            while (pending.get() > 0) {
+                Thread.sleep(1);
+            }
+        } finally {
+            thinkTimer.shutdownNow();
+            workers.shutdownNow();
+            clients.shutdownNow();
+            if (waitingRoom != null) {
+                waitingRoom.shutdown();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (waitingRoom != null) {
+            AdmissionMetrics admission = waitingRoom.getMetrics();
+            admitted += admission.getAdmitted();
+            turnedAway += admission.getTurnedAway();
+            gaveUp += admission.getCancelled();
+            LatencyHistogram wait = admission.getWaitTime();
+            System.out.printf("Waiting room %d: %d admitted at %.0f/sec, %d turned away, %d gave up,"
+                + " wait p50 %s, p99 %s, max %s%n", round + 1, admission.getAdmitted(),
+                admission.getAdmitted() / (elapsed / 1e9), admission.getTurnedAway(), admission.getCancelled(),
+                micros(wait.getValueAtPercentile(50)), micros(wait.getValueAtPercentile(99)),
+                micros(wait.getMax()));
+        }
+
+        // Abandoned holds are released by the expiry timer.
+        long expiryDeadline = System.nanoTime() + profile.getHoldExpiryNanos() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getNumActiveHolds() > 0 && System.nanoTime() - expiryDeadline < 0) {
+            Thread.sleep(5);
+        }
+        service.shutdown();
+
+        int roundMismatches = checker.countMismatches();
+        int reserved = venue.getNumSeats(SeatStatus.RESERVED);
+        long roundConfirmed = checker.getReservedSeats();
+        boolean countsMatch = venue.getNumSeats(SeatStatus.HOLD) == 0 && service.getNumActiveHolds() == 0
+            && reserved == roundConfirmed;
+        requestsOffered += offered;
+        holdsLimited += service.getMetrics().getHoldsLimited();
+        totalSeats += venue.getTotalSeats();
+        soldSeats += reserved;
+        elapsedNanos += elapsed;
+        doubleBookings += checker.getDoubleBookings();
+        lostUpdates += checker.getLostUpdates();
+        mismatches += roundMismatches;
+        if (!countsMatch) {
+            countMismatches++;
+        }
+        System.out.printf("On-sale %d: %d requests in %.1fs, %d of %d seats sold, %d holds left,"
+            + " %d double bookings, %d mismatched seats%n",
+            round + 1, offered, elapsed / 1e9, reserved, venue.getTotalSeats(),
+            service.getNumActiveHolds(), checker.getDoubleBookings(), roundMismatches);
+    }
+
+    /**
+    * Makes one hold, as the customer's request arrives.
+    */
+    private class HoldTask implements Runnable {
+        private final TicketService service;
+        private final ExecutorService workers;
+        private final ScheduledExecutorService thinkTimer;
+        private final int numSeats;
+        private final String customerEmail;
+        private final boolean abandon;
+        private final long arrival;
+
+        HoldTask(TicketService service, ExecutorService workers, ScheduledExecutorService thinkTimer,
+                int numSeats, String customerEmail, boolean abandon, long arrival) {
+            this.service = service;
+            this.workers = workers;
+            this.thinkTimer = thinkTimer;
+            this.numSeats = numSeats;
+            this.customerEmail = customerEmail;
+            this.abandon = abandon;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long begin = System.nanoTime();
+                SeatHold seatHold = null;
+                try {
+                    seatHold = service.findAndHoldSeats(numSeats, customerEmail);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                }
+                long done = System.nanoTime();
+                holdServiceTime.record(done - begin);
+                holdLatency.record(done - arrival);
+                if (seatHold == null) {
+                    holdsRefused.increment();
+                    return;
+                }
+                holdsMade.increment();
+                if (abandon) {
+                    holdsAbandoned.increment();
+                    return;
+                }
+                final Runnable reserve = new ReserveTask(service, seatHold, customerEmail,
+                    done + profile.getThinkNanos());
+                pending.incrementAndGet();
+                if (profile.getThinkNanos() == 0) {
+                    workers.execute(reserve);
+                } else {
+                    thinkTimer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            workers.execute(reserve);
+                        }
+                    }, profile.getThinkNanos(), TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+    * Reserves a hold once the customer's think time is over.
+    */
+    private class ReserveTask implements Runnable {
+        private final TicketService service;
+        private final SeatHold seatHold;
+        private final String customerEmail;
+        private final long due;
+
+        ReserveTask(TicketService service, SeatHold seatHold, String customerEmail, long due) {
+            this.service = service;
+            this.seatHold = seatHold;
+            this.customerEmail = customerEmail;
+            this.due = due;
+        }
+
+        @Override
+        public void run() {
+            try {
+                String confirmationId = null;
+                try {
+                    confirmationId = service.reserveSeats(seatHold.getId(), customerEmail);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                }
+                reserveLatency.record(System.nanoTime() - due);
+                if (confirmationId == null) {
+                    // The hold expired before the customer got to it.
+                    reservesFailed.increment();
+                } else {
+                    reservesConfirmed.increment();
+                    confirmedSeats.add(seatHold.getSeats().size());
+                }
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+    * Checks the results of every on-sale run so far.
+    *
+    * @return True if no seat was sold twice, no callback was lost, the
+    * venues match the seat states seen by the checker and the reserved
+    * seats match the confirmed reservations.
+    */
+    public boolean isConsistent() {
+        return doubleBookings == 0 && lostUpdates == 0 && mismatches == 0 && countMismatches == 0
+            && soldSeats == confirmedSeats.sum() && errors.sum() == 0;
+    }
+
+    /**
+    * Writes the results of every on-sale run so far.
+    *
+    * @return Report as text.
+    */
+    public String report() {
+        StringBuilder text = new StringBuilder(1024);
+        double seconds = elapsedNanos / 1e9;
+        long completed = holdsMade.sum() + holdsRefused.sum() + reservesConfirmed.sum() + reservesFailed.sum();
+        text.append(String.format("Requests: %d holds offered at %.0f/sec, %.0f operations/sec completed%n",
+            requestsOffered, requestsOffered / seconds, completed / seconds));
+        text.append(String.format("Holds: %d made, %d refused (%d over customer limits), %d abandoned,"
+            + " %d errors%n", holdsMade.sum(), holdsRefused.sum(), holdsLimited, holdsAbandoned.sum(),
+            errors.sum()));
+        if (profile.getAdmitRate() > 0) {
+            text.append(String.format("Waiting room: %d admitted at %.0f/sec, %d turned away, %d gave up%n",
+                admitted, admitted / seconds, turnedAway, gaveUp));
+        }
+        text.append(String.format("Reserves: %d confirmed, %d expired before reserving%n",
+            reservesConfirmed.sum(), reservesFailed.sum()));
+        latency(text, "Hold latency", holdLatency);
+        latency(text, "Hold service time", holdServiceTime);
+        latency(text, "Reserve latency", reserveLatency);
+        text.append(String.format("Seats: %d of %d sold, %d confirmed by reservations%n",
+            soldSeats, totalSeats, confirmedSeats.sum()));
+        text.append(String.format("Checks: %d double bookings, %d lost updates, %d mismatched seats,"
+            + " %d on-sales with wrong counts%n", doubleBookings, lostUpdates, mismatches, countMismatches));
+        text.append(isConsistent() ? "PASS" : "FAIL").append('\n');
+        return text.toString();
+    }
+
+    private static void latency(StringBuilder text, String name, LatencyHistogram histogram) {
+        text.append(String.format("%s: p50 %s, p99 %s, p999 %s, max %s (%d samples)%n", name,
+            micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(99)),
+            micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMax()),
+            histogram.getCount()));
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1e3);
+    }
+
+    public LatencyHistogram getHoldLatency() {
+        return holdLatency;
+    }
+
+    public LatencyHistogram getReserveLatency() {
+        return reserveLatency;
+    }
+}
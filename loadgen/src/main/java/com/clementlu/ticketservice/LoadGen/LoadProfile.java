@@ -0,0 +1,261 @@
+package com.clementlu.ticketservice.LoadGen;
+
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+
+/**
+ * Settings of a load run, parsed from {@code --name=value} arguments.
+ * <p>
+ * <pre>
+ * --rows=100 --columns=100   venue size
+ * --storage=PACKED           seat storage mode
+ * --rate=2000                hold requests per second
+ * --arrivals=poisson         poisson or uniform gaps between requests
+ * --duration=10              seconds of arrivals per on-sale
+ * --rounds=1                 on-sales to run, each on a new venue
+ * --parties=1:20,2:40,...    party size distribution
+ * --abandon=0.2              fraction of holds that are never reserved
+ * --think=20                 milliseconds between a hold and its reserve
+ * --expiry=200               milliseconds a hold lasts
+ * --customers=10000          number of distinct customers
+ * --max-holds=0 --max-seats=0  per-customer hold limits, 0 for none
+ * --threads=4                worker threads
+ * --admit-rate=0             waiting room admissions per second, 0 for no waiting room
+ * --admit-concurrency=2      holds the waiting room runs at once
+ * --room-size=10000          customers the waiting room can queue
+ * --max-wait=5000            milliseconds a customer waits to be admitted
+ * --seed=42                  random seed
+ * </pre>
+ */
+public class LoadProfile {
+    private int rows = 100;
+    private int columns = 100;
+    private SeatStorageMode storageMode = SeatStorageMode.PACKED;
+    private double rate = 2000;
+    private boolean poissonArrivals = true;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private int rounds = 1;
+    private PartySizes partySizes = new PartySizes("1:20,2:40,3:10,4:20,6:6,8:4");
+    private double abandonRate = 0.2;
+    private long thinkNanos = TimeUnit.MILLISECONDS.toNanos(20);
+    private long holdExpiryNanos = TimeUnit.MILLISECONDS.toNanos(200);
+    private int customers = 10000;
+    private int maxHoldsPerCustomer;
+    private int maxSeatsPerCustomer;
+    private int threads = 4;
+    private double admitRate;
+    private int admitConcurrency = 2;
+    private int roomSize = 10000;
+    private long maxWaitNanos = TimeUnit.SECONDS.toNanos(5);
+    private long seed = 42;
+
+    /**
+    * Parses a profile. Settings that are not given keep their defaults.
+    *
+    * @param args Arguments of the form {@code --name=value}.
+    * @return Profile.
+    * @throws IllegalArgumentException If an argument is unknown or its
+    * value is out of range.
+    */
+    public static LoadProfile parse(String[] args) {
+        LoadProfile profile = new LoadProfile();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            profile.set(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return profile;
+    }
+
+    private void set(String name, String value) {
+        try {
+            switch (name) {
+                case "rows":
+                    rows = positive(name, Integer.parseInt(value));
+                    break;
+                case "columns":
+                    columns = positive(name, Integer.parseInt(value));
+                    break;
+                case "storage":
+                    storageMode = SeatStorageMode.valueOf(value.toUpperCase());
+                    break;
+                case "rate":
+                    rate = Double.parseDouble(value);
+                    if (!(rate > 0)) {
+                        throw new IllegalArgumentException("rate must be positive");
+                    }
+                    break;
+                case "arrivals":
+                    if (!value.equals("poisson") && !value.equals("uniform")) {
+                        throw new IllegalArgumentException("arrivals must be poisson or uniform");
+                    }
+                    poissonArrivals = value.equals("poisson");
+                    break;
+                case "duration":
+                    durationNanos = TimeUnit.SECONDS.toNanos(positive(name, Integer.parseInt(value)));
+                    break;
+                case "rounds":
+                    rounds = positive(name, Integer.parseInt(value));
+                    break;
+                case "parties":
+                    partySizes = new PartySizes(value);
+                    break;
+                case "abandon":
+                    abandonRate = Double.parseDouble(value);
+                    if (!(abandonRate >= 0 && abandonRate <= 1)) {
+                        throw new IllegalArgumentException("abandon must be between 0 and 1");
+                    }
+                    break;
+                case "think":
+                    thinkNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+                    break;
+                case "expiry":
+                    holdExpiryNanos = TimeUnit.MILLISECONDS.toNanos(positive(name, Integer.parseInt(value)));
+                    break;
+                case "customers":
+                    customers = positive(name, Integer.parseInt(value));
+                    break;
+                case "max-holds":
+                    maxHoldsPerCustomer = Math.max(0, Integer.parseInt(value));
+                    break;
+                case "max-seats":
+                    maxSeatsPerCustomer = Math.max(0, Integer.parseInt(value));
+                    break;
+                case "threads":
+                    threads = positive(name, Integer.parseInt(value));
+                    break;
+                case "admit-rate":
+                    admitRate = Math.max(0, Double.parseDouble(value));
+                    break;
+                case "admit-concurrency":
+                    admitConcurrency = positive(name, Integer.parseInt(value));
+                    break;
+                case "room-size":
+                    roomSize = positive(name, Integer.parseInt(value));
+                    break;
+                case "max-wait":
+                    maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(positive(name, Integer.parseInt(value)));
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad value for --" + name + ": " + value);
+        }
+    }
+
+    private static int positive(String name, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public SeatStorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public boolean isPoissonArrivals() {
+        return poissonArrivals;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public PartySizes getPartySizes() {
+        return partySizes;
+    }
+
+    public double getAbandonRate() {
+        return abandonRate;
+    }
+
+    public long getThinkNanos() {
+        return thinkNanos;
+    }
+
+    public long getHoldExpiryNanos() {
+        return holdExpiryNanos;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    public int getMaxHoldsPerCustomer() {
+        return maxHoldsPerCustomer;
+    }
+
+    public int getMaxSeatsPerCustomer() {
+        return maxSeatsPerCustomer;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+    * Returns the waiting room's admit rate.
+    *
+    * @return Admissions per second, or 0 if holds go straight to the
+    * service.
+    */
+    public double getAdmitRate() {
+        return admitRate;
+    }
+
+    public int getAdmitConcurrency() {
+        return admitConcurrency;
+    }
+
+    public int getRoomSize() {
+        return roomSize;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return "venue " + rows + "x" + columns + " " + storageMode
+            + ", " + rate + " holds/sec " + (poissonArrivals ? "poisson" : "uniform")
+            + " for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos) + "s x " + rounds
+            + ", parties " + partySizes
+            + ", abandon " + abandonRate
+            + ", think " + TimeUnit.NANOSECONDS.toMillis(thinkNanos) + "ms"
+            + ", expiry " + TimeUnit.NANOSECONDS.toMillis(holdExpiryNanos) + "ms"
+            + ", " + customers + " customers"
+            + (maxHoldsPerCustomer > 0 || maxSeatsPerCustomer > 0
+                ? ", limits " + maxHoldsPerCustomer + " holds/" + maxSeatsPerCustomer + " seats" : "")
+            + ", " + threads + " threads"
+            + (admitRate > 0 ? ", waiting room " + roomSize + " admitting " + admitRate + "/sec x "
+                + admitConcurrency + " max wait " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms" : "");
+    }
+}
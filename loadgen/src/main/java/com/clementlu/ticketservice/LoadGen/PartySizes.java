@@ -0,0 +1,91 @@
+package com.clementlu.ticketservice.LoadGen;
+
+import java.util.Random;
+
+/**
+ * Distribution of the number of seats each customer asks for, given as
+ * weighted sizes such as {@code 1:20,2:40,4:30,8:10}.
+ */
+public class PartySizes {
+    private final int[] sizes;
+    private final double[] cumulative;
+
+    /**
+    * Parses a distribution.
+    *
+    * @param spec Comma separated {@code size:weight} pairs. A size
+    * without a weight has weight 1.
+    * @throws IllegalArgumentException If the distribution is empty or a
+    * size or weight is not positive.
+    */
+    public PartySizes(String spec) {
+        String[] parts = spec.split(",");
+        sizes = new int[parts.length];
+        cumulative = new double[parts.length];
+        double total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split(":");
+            double weight;
+            try {
+                sizes[i] = Integer.parseInt(pair[0].trim());
+                weight = pair.length > 1 ? Double.parseDouble(pair[1].trim()) : 1;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad party size " + parts[i]);
+            }
+            if (sizes[i] <= 0 || !(weight > 0) || pair.length > 2) {
+                throw new IllegalArgumentException("Bad party size " + parts[i]);
+            }
+            total += weight;
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    /**
+    * Draws a party size.
+    *
+    * @param random Source of randomness.
+    * @return Number of seats.
+    */
+    public int next(Random random) {
+        double u = random.nextDouble();
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (u < cumulative[i]) {
+                return sizes[i];
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+    * Returns the average party size.
+    *
+    * @return Expected number of seats per request.
+    */
+    public double getMean() {
+        double mean = 0;
+        double previous = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            mean += sizes[i] * (cumulative[i] - previous);
+            previous = cumulative[i];
+        }
+        return mean;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        double previous = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(sizes[i]).append(':')
+                .append(Math.round((cumulative[i] - previous) * 1000) / 10.0).append('%');
+            previous = cumulative[i];
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.clementlu.ticketservice.LoadGen;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import com.clementlu.ticketservice.SeatHoldListener;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Keeps its own copy of every seat's state from the service's hold
+ * callbacks and counts every seat that is handed out twice.
+ * <p>
+ * A seat goes from vacant to held when a hold takes it, from held to
+ * reserved or back to vacant when the hold ends. A hold that takes a
+ * seat that is not vacant in the copy is a double booking; a reserve or
+ * release of a seat that is not held is a lost update. At the end of a
+ * run the copy must match the venue seat for seat.
+ */
+public class SeatOwnershipChecker implements SeatHoldListener {
+    private static final int VACANT = 0;
+    private static final int HELD = 1;
+    private static final int RESERVED = 2;
+
+    private final Venue venue;
+    private final AtomicIntegerArray seats;
+    private final LongAdder doubleBookings = new LongAdder();
+    private final LongAdder lostUpdates = new LongAdder();
+    private final LongAdder reservedSeats = new LongAdder();
+
+    public SeatOwnershipChecker(Venue venue) {
+        this.venue = venue;
+        this.seats = new AtomicIntegerArray(venue.getTotalSeats());
+    }
+
+    @Override
+    public void seatsHeld(SeatHold seatHold) {
+        for (Seat seat : seatHold.getSeats()) {
+            int index = venue.getSeatIndex(seat);
+            if (!seats.compareAndSet(index, VACANT, HELD)) {
+                doubleBookings.increment();
+            }
+        }
+    }
+
+    @Override
+    public void seatsReserved(SeatHold seatHold) {
+        for (Seat seat : seatHold.getSeats()) {
+            if (!seats.compareAndSet(venue.getSeatIndex(seat), HELD, RESERVED)) {
+                lostUpdates.increment();
+            }
+        }
+        reservedSeats.add(seatHold.getSeats().size());
+    }
+
+    @Override
+    public void seatsReleased(SeatHold seatHold) {
+        for (Seat seat : seatHold.getSeats()) {
+            if (!seats.compareAndSet(venue.getSeatIndex(seat), HELD, VACANT)) {
+                lostUpdates.increment();
+            }
+        }
+    }
+
+    public long getDoubleBookings() {
+        return doubleBookings.sum();
+    }
+
+    public long getLostUpdates() {
+        return lostUpdates.sum();
+    }
+
+    public long getReservedSeats() {
+        return reservedSeats.sum();
+    }
+
+    /**
+    * Compares the copy with the venue, seat by seat, and the venue's
+    * status counters with its seats.
+    *
+    * @return Number of seats whose state differs, plus one if the
+    * venue's counters are wrong.
+    */
+    public int countMismatches() {
+        int mismatches = 0;
+        for (int index = 0; index < seats.length(); index++) {
+            SeatStatus status = venue.getSeatStatus(index);
+            int expected = status == SeatStatus.VACANT ? VACANT
+                : status == SeatStatus.HOLD ? HELD : RESERVED;
+            if (seats.get(index) != expected) {
+                mismatches++;
+            }
+        }
+        return venue.verifySeatCounts() ? mismatches : mismatches + 1;
+    }
+}
@@ -0,0 +1,160 @@
+package com.clementlu.ticketservice.Admission;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import com.clementlu.ticketservice.Models.SeatHold;
+
+/**
+ * A customer's place in a {@code WaitingRoom}.
+ * <p>
+ * A ticket starts out {@code WAITING}. When its turn comes it is
+ * {@code ADMITTED} and the hold request runs on the ticket service, and
+ * it is {@code DONE} once the request has returned. A customer who gives
+ * up while waiting is {@code CANCELLED}, and the request never reaches
+ * the service.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class AdmissionTicket {
+    public enum State {
+        WAITING, ADMITTED, DONE, CANCELLED
+    }
+
+    private final WaitingRoom waitingRoom;
+    private final long sequence;
+    private final int numSeats;
+    private final String customerEmail;
+    private final long enteredNanos;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.WAITING);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile long admittedNanos;
+    private volatile SeatHold seatHold;
+    private volatile RuntimeException failure;
+
+    AdmissionTicket(WaitingRoom waitingRoom, long sequence, int numSeats, String customerEmail,
+            long enteredNanos) {
+        this.waitingRoom = waitingRoom;
+        this.sequence = sequence;
+        this.numSeats = numSeats;
+        this.customerEmail = customerEmail;
+        this.enteredNanos = enteredNanos;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+    * Returns the number of customers ahead in the queue. Tickets that
+    * left the queue are counted off in bulk, so one cancelled behind this
+    * ticket makes it a little low.
+    *
+    * @return Customers ahead, or 0 once the ticket has left the queue.
+    */
+    public int getPosition() {
+        return state.get() == State.WAITING ? waitingRoom.getPosition(this) : 0;
+    }
+
+    /**
+    * Estimates how long the customer still has to wait, from the position
+    * and the waiting room's admit rate.
+    *
+    * @return Estimated wait in nanoseconds, 0 once the ticket has left the
+    * queue.
+    */
+    public long getEstimatedWaitNanos() {
+        return (long) (getPosition() * 1e9 / waitingRoom.getAdmitRate());
+    }
+
+    /**
+    * Returns the time spent in the queue.
+    *
+    * @return Wait in nanoseconds, up to now if the ticket is still
+    * waiting.
+    */
+    public long getWaitNanos() {
+        return (state.get() == State.WAITING || admittedNanos == 0 ? System.nanoTime() : admittedNanos)
+            - enteredNanos;
+    }
+
+    /**
+    * Leaves the queue, if the ticket has not been admitted yet.
+    *
+    * @return True if the ticket was cancelled, false if it had already
+    * been admitted or cancelled.
+    */
+    public boolean cancel() {
+        if (state.compareAndSet(State.WAITING, State.CANCELLED)) {
+            waitingRoom.ticketCancelled(this);
+            done.countDown();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+    * Waits until the hold request has run.
+    *
+    * @param timeout Longest time to wait.
+    * @param unit Unit of {@code timeout}.
+    * @return Seat hold, or null if no seats could be held or the ticket
+    * was cancelled.
+    * @throws InterruptedException If the thread is interrupted.
+    * @throws TimeoutException If the request has not run in time; the
+    * ticket keeps its place.
+    * @throws RuntimeException Whatever the ticket service threw.
+    */
+    public SeatHold await(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("Still at position " + getPosition());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return seatHold;
+    }
+
+    public SeatHold getSeatHold() {
+        return seatHold;
+    }
+
+    /**
+    * Moves the ticket from the queue to the ticket service.
+    *
+    * @return False if the ticket was cancelled first.
+    */
+    boolean admit(long nowNanos) {
+        if (!state.compareAndSet(State.WAITING, State.ADMITTED)) {
+            return false;
+        }
+        admittedNanos = nowNanos;
+        return true;
+    }
+
+    long getEnteredNanos() {
+        return enteredNanos;
+    }
+
+    void complete(SeatHold seatHold, RuntimeException failure) {
+        this.seatHold = seatHold;
+        this.failure = failure;
+        state.set(State.DONE);
+        done.countDown();
+    }
+}
@@ -0,0 +1,87 @@
+package com.clementlu.ticketservice.Admission;
+
+/**
+ * Token bucket that paces admissions to a steady rate with a bounded
+ * burst.
+ * <p>
+ * Tokens are added at {@code rate} per second up to {@code burst}.
+ * {@code reserve} always takes a token, letting the bucket go into debt,
+ * and returns how long the caller must wait before using it, so callers
+ * are served in the order they reserve and none of them spins. Time is
+ * passed in by the caller, in {@code System.nanoTime} units, which keeps
+ * the bucket easy to test.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class TokenBucket {
+    private final double rate;
+    private final int burst;
+    private final double nanosPerToken;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+    * Creates a full bucket.
+    *
+    * @param rate Tokens per second; {@code Double.POSITIVE_INFINITY} for
+    * no limit.
+    * @param burst Most tokens the bucket holds.
+    * @param nowNanos Current time.
+    */
+    public TokenBucket(double rate, int burst, long nowNanos) {
+        if (!(rate > 0) || burst <= 0) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and burst!");
+        }
+        this.rate = rate;
+        this.burst = burst;
+        this.nanosPerToken = 1e9 / rate;
+        this.tokens = burst;
+        this.lastRefill = nowNanos;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+    * Takes a token if one is available.
+    *
+    * @param nowNanos Current time.
+    * @return True if a token was taken.
+    */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+    * Takes a token, available now or in the future.
+    *
+    * @param nowNanos Current time.
+    * @return Nanoseconds until the token may be used, 0 if it may be
+    * used now.
+    */
+    public synchronized long reserve(long nowNanos) {
+        refill(nowNanos);
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens * nanosPerToken);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed / nanosPerToken);
+            lastRefill = nowNanos;
+        }
+    }
+}
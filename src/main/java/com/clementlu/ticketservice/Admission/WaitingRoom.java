@@ -0,0 +1,296 @@
+package com.clementlu.ticketservice.Admission;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+import com.clementlu.ticketservice.TicketService;
+import com.clementlu.ticketservice.Metrics.AdmissionMetrics;
+import com.clementlu.ticketservice.Models.SeatHold;
+
+/**
+ * Virtual waiting room in front of a {@code TicketService}, for
+ * on-sales where far more customers arrive at once than the service can
+ * serve well.
+ * <p>
+ * Hold requests join a bounded FIFO queue and are let through in the
+ * order they arrived. A fixed number of admitter threads run the
+ * requests on the ticket service, so the service never sees more
+ * concurrent holds than the concurrency it was sized for, and a token
+ * bucket paces admissions to a steady rate with a bounded burst. A
+ * customer who arrives when the queue is full is turned away at once
+ * instead of piling up behind everyone else. Each customer gets an
+ * {@code AdmissionTicket} that reports their position in the queue and
+ * an estimated wait, and can be cancelled. A cancelled ticket leaves the
+ * queue at once, so customers who give up free their places for new
+ * arrivals.
+ * <p>
+ * As a {@code TicketService} the waiting room blocks in
+ * {@code findAndHoldSeats} until the request has run, or until the
+ * maximum wait has passed. Reservations and the seat count go straight
+ * to the ticket service: a customer with a hold has already been let in.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class WaitingRoom implements TicketService {
+    private static final AtomicInteger roomCount = new AtomicInteger();
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final TicketService ticketService;
+    private final int capacity;
+    private final ArrayBlockingQueue<AdmissionTicket> queue;
+    private final TokenBucket tokenBucket;
+    private final AdmissionMetrics metrics;
+    private final Thread[] admitters;
+    // Tickets handed out, guarded by the queue; and tickets taken off it,
+    // by an admitter or because they were cancelled.
+    private long entered;
+    private final AtomicLong dequeued = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile long maxWaitNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+    * Creates a waiting room and starts its admitter threads.
+    *
+    * @param ticketService Service the admitted requests run on.
+    * @param capacity Most customers that can wait at once.
+    * @param concurrency Number of requests run on the service at once,
+    * ideally the concurrency at which the service has its best throughput.
+    * @param admitRate Most customers admitted per second;
+    * {@code Double.POSITIVE_INFINITY} to limit only the concurrency.
+    * @param burst Most customers admitted at once after a quiet spell.
+    * @throws IllegalArgumentException If a size or rate is not positive.
+    */
+    public WaitingRoom(TicketService ticketService, int capacity, int concurrency, double admitRate,
+            int burst) {
+        if (ticketService == null || capacity <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Waiting room needs a ticket service, a positive capacity"
+                + " and a positive concurrency!");
+        }
+        this.ticketService = ticketService;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<AdmissionTicket>(capacity);
+        this.tokenBucket = new TokenBucket(admitRate, burst, System.nanoTime());
+        this.metrics = new AdmissionMetrics(new IntSupplier() {
+            @Override
+            public int getAsInt() {
+                return queue.size();
+            }
+        }, admitRate);
+        int room = roomCount.incrementAndGet();
+        admitters = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            admitters[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runAdmitter();
+                }
+            }, "waiting-room-" + room + "-admitter-" + i);
+            admitters[i].setDaemon(true);
+            admitters[i].start();
+        }
+    }
+
+    /**
+    * Joins the queue.
+    *
+    * @param numSeats Number of seats to hold.
+    * @param customerEmail Customer's email address.
+    * @return Ticket with the customer's place in the queue, or null if
+    * the queue is full.
+    * @throws IllegalStateException If the waiting room was shut down.
+    */
+    public AdmissionTicket enter(int numSeats, String customerEmail) {
+        if (!running) {
+            throw new IllegalStateException("Waiting room is shut down!");
+        }
+        AdmissionTicket ticket;
+        synchronized (queue) {
+            ticket = new AdmissionTicket(this, entered, numSeats, customerEmail, System.nanoTime());
+            if (!queue.offer(ticket)) {
+                metrics.turnedAway();
+                return null;
+            }
+            entered++;
+        }
+        metrics.entered();
+        return ticket;
+    }
+
+    /**
+    * Holds seats once the customer is admitted.
+    * <p>
+    * Blocks until the request has run on the ticket service. If the
+    * customer is still waiting after the maximum wait, they leave the
+    * queue and null is returned.
+    *
+    * @param numSeats Number of seats to hold.
+    * @param customerEmail Customer's email address.
+    * @return Seat hold, or null if the queue was full, the wait was too
+    * long or no seats could be held.
+    */
+    @Override
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+        AdmissionTicket ticket = enter(numSeats, customerEmail);
+        if (ticket == null) {
+            return null;
+        }
+        try {
+            try {
+                return ticket.await(maxWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (ticket.cancel()) {
+                    return null;
+                }
+                // Admitted just now; the request is running.
+                return ticket.await(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            ticket.cancel();
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        return ticketService.numSeatsAvailable();
+    }
+
+    @Override
+    public String reserveSeats(int seatHoldId, String customerEmail) {
+        return ticketService.reserveSeats(seatHoldId, customerEmail);
+    }
+
+    private void runAdmitter() {
+        // A token taken for a ticket cancelled while it waited for it is
+        // kept for the next ticket.
+        boolean haveToken = false;
+        while (running) {
+            AdmissionTicket ticket;
+            try {
+                ticket = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (ticket == null) {
+                continue;
+            }
+            dequeued.incrementAndGet();
+            if (ticket.getState() != AdmissionTicket.State.WAITING) {
+                continue;
+            }
+            if (!haveToken) {
+                long deadline = System.nanoTime() + tokenBucket.reserve(System.nanoTime());
+                long remaining;
+                while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                haveToken = true;
+            }
+            if (!running) {
+                ticket.cancel();
+                break;
+            }
+            long now = System.nanoTime();
+            if (!ticket.admit(now)) {
+                continue;
+            }
+            haveToken = false;
+            metrics.admitted(now - ticket.getEnteredNanos());
+            SeatHold seatHold = null;
+            RuntimeException failure = null;
+            try {
+                seatHold = ticketService.findAndHoldSeats(ticket.getNumSeats(), ticket.getCustomerEmail());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            ticket.complete(seatHold, failure);
+        }
+    }
+
+    /**
+    * Stops admitting customers. Everyone still waiting is cancelled;
+    * requests already admitted finish.
+    *
+    * @throws InterruptedException If the thread is interrupted while
+    * waiting for the admitter threads to stop.
+    */
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread admitter : admitters) {
+            LockSupport.unpark(admitter);
+        }
+        for (Thread admitter : admitters) {
+            admitter.join();
+        }
+        List<AdmissionTicket> waiting = new ArrayList<AdmissionTicket>();
+        queue.drainTo(waiting);
+        for (AdmissionTicket ticket : waiting) {
+            ticket.cancel();
+        }
+    }
+
+    int getPosition(AdmissionTicket ticket) {
+        return (int) Math.max(0, ticket.getSequence() - dequeued.get());
+    }
+
+    void ticketCancelled(AdmissionTicket ticket) {
+        // An admitter may have taken the ticket off the queue already.
+        if (queue.remove(ticket)) {
+            dequeued.incrementAndGet();
+        }
+        metrics.cancelled();
+    }
+
+    public TicketService getTicketService() {
+        return ticketService;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getConcurrency() {
+        return admitters.length;
+    }
+
+    public double getAdmitRate() {
+        return tokenBucket.getRate();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public AdmissionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getMaxWait(TimeUnit unit) {
+        return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+    * Sets how long {@code findAndHoldSeats} waits in the queue before
+    * giving up.
+    *
+    * @param maxWait Longest wait.
+    * @param unit Unit of {@code maxWait}.
+    */
+    public void setMaxWait(long maxWait, TimeUnit unit) {
+        if (maxWait <= 0) {
+            throw new IllegalArgumentException("Maximum wait must be positive!");
+        }
+        maxWaitNanos = unit.toNanos(maxWait);
+    }
+}
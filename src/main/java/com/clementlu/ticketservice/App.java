@@ -1,9 +1,13 @@
 package com.clementlu.ticketservice;
 
+import java.io.IOException;
 import java.util.Scanner;
+import javax.management.JMException;
 
-import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
 import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Http.TicketHttpServer;
+import com.clementlu.ticketservice.Models.SeatCounts;
 import com.clementlu.ticketservice.Models.SeatHold;
 import com.clementlu.ticketservice.Models.Venue;
 
@@ -12,14 +16,19 @@ public class App
     public static void main( String[] args )
     {   
         try {
-            Venue venue = new Venue(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+            Venue venue = new Venue(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                SeatStorageMode.PACKED);
             
             System.out.println("Total Seats: " + venue.getTotalSeats());
-            System.out.println("Vacant Seats: " + venue.getNumSeats(SeatStatus.VACANT));
-            System.out.println("Hold Seats: " + venue.getNumSeats(SeatStatus.HOLD));
-            System.out.println("Reserved Seats: " + venue.getNumSeats(SeatStatus.RESERVED));
+            SeatCounts seatCounts = new SeatCounts();
+            printSeatCounts(venue.readSeatCounts(seatCounts));
             
-            TicketService service = new PerformanceVenueTicketService(venue);
+            PerformanceVenueTicketService service = new PerformanceVenueTicketService(venue);
+
+            if (args.length > 2) {
+                serveHttp(service, Integer.parseInt(args[2]));
+                return;
+            }
 
             try (Scanner in = new Scanner(System.in)) {
                 while(true) {
@@ -33,9 +42,7 @@ public class App
                     SeatHold seatHold = service.findAndHoldSeats(Integer.parseInt(numSeats), email);
 
                     System.out.println("Seats Available: " + service.numSeatsAvailable());
-                    System.out.println("Vacant Seats: " + venue.getNumSeats(SeatStatus.VACANT));
-                    System.out.println("Hold Seats: " + venue.getNumSeats(SeatStatus.HOLD));
-                    System.out.println("Reserved Seats: " + venue.getNumSeats(SeatStatus.RESERVED));
+                    printSeatCounts(venue.readSeatCounts(seatCounts));
 
                     System.out.print("\nYou have 5 seconds to confirm your reservation, press ENTER to confirm...\n");
                     in.nextLine();
@@ -50,9 +57,7 @@ public class App
                     }
 
                     System.out.println("Seats Available: " + service.numSeatsAvailable());
-                    System.out.println("Vacant Seats: " + venue.getNumSeats(SeatStatus.VACANT));
-                    System.out.println("Hold Seats: " + venue.getNumSeats(SeatStatus.HOLD));
-                    System.out.println("Reserved Seats: " + venue.getNumSeats(SeatStatus.RESERVED));
+                    printSeatCounts(venue.readSeatCounts(seatCounts));
                     System.out.println("*********End Request*********");
                 }
             } catch (Exception e) {
@@ -62,4 +67,45 @@ public class App
             System.out.println("Try again with valid venue dimensions: " + ex);
         }
     }
+
+    /**
+    * Prints the seat counts of one read of the venue, so they always add
+    * up to the total.
+    */
+    private static void printSeatCounts(SeatCounts seatCounts) {
+        System.out.println("Vacant Seats: " + seatCounts.getVacant());
+        System.out.println("Hold Seats: " + seatCounts.getHeld());
+        System.out.println("Reserved Seats: " + seatCounts.getReserved());
+    }
+
+    /**
+    * Serves the ticket service over HTTP until the process is stopped.
+    */
+    private static void serveHttp(PerformanceVenueTicketService service, int port) {
+        try {
+            service.getMetrics().register("App");
+        } catch (JMException e) {
+            System.out.println("Could not register metrics: " + e);
+        }
+        // The JDK server otherwise delays responses with Nagle's algorithm
+        // and closes all but 200 idle connections. Both are read once, when
+        // the first server is created, so they are set before it unless
+        // given on the command line.
+        setDefault("sun.net.httpserver.nodelay", "true");
+        setDefault("sun.net.httpserver.maxIdleConnections", "20000");
+        try {
+            TicketHttpServer server = new TicketHttpServer(service, port);
+            server.start();
+            System.out.println("Serving on port " + server.getPort()
+                + (server.isUsingVirtualThreads() ? " with virtual threads" : ""));
+        } catch (IOException e) {
+            System.out.println("Could not start HTTP server: " + e);
+        }
+    }
+
+    private static void setDefault(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
 }
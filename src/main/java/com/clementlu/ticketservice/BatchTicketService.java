@@ -0,0 +1,25 @@
+package com.clementlu.ticketservice;
+
+import java.util.List;
+import com.clementlu.ticketservice.Models.HoldRequest;
+import com.clementlu.ticketservice.Models.ReserveRequest;
+import com.clementlu.ticketservice.Models.SeatHold;
+
+public interface BatchTicketService extends TicketService {
+    /**
+    * Find and hold the best available seats for many customers at once
+    *
+    * @param requests hold requests, served in order
+    * @return a SeatHold for each request, or null for requests that could
+    not be filled
+    */
+    List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> requests);
+    /**
+    * Commit seats held for many customers at once
+    *
+    * @param requests reserve requests
+    * @return a reservation confirmation code for each request, or null
+    for requests whose seat hold does not exist or has expired
+    */
+    List<String> reserveSeatsBatch(List<ReserveRequest> requests);
+}
@@ -0,0 +1,7 @@
+package com.clementlu.ticketservice.Constant;
+
+public enum SeatStorageMode {
+    OBJECT,
+    PACKED,
+    MAPPED
+}
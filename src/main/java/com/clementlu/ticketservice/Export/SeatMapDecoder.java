@@ -0,0 +1,202 @@
+package com.clementlu.ticketservice.Export;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.Venue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a seat map written by {@code SeatMapEncoder}.
+ * <p>
+ * The header, the tokens and the checksum are checked when the decoder
+ * is created, so a damaged or truncated seat map is rejected before any
+ * seat is handed out.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatMapDecoder {
+    private static final SeatStatus[] STATUSES = SeatStatus.values();
+
+    private final int rows;
+    private final int columns;
+    private final int totalSeats;
+    private final ByteBuffer tokens;
+
+    /**
+    * Receives the seats of a seat map as runs of consecutive seats with
+    * the same status, in ascending order.
+    */
+    public interface RunHandler {
+        void run(int start, int length, SeatStatus status);
+    }
+
+    /**
+    * Checks the seat map that starts at the position of {@code buffer}
+    * and moves the position past it.
+    *
+    * @param buffer Buffer holding an encoded seat map.
+    * @throws IOException If the seat map is truncated, damaged or has an
+    * unknown version.
+    */
+    public SeatMapDecoder(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        if (buffer.remaining() < SeatMapEncoder.HEADER_BYTES + SeatMapEncoder.TRAILER_BYTES) {
+            throw new IOException("Seat map is too short");
+        }
+        if (getInt(buffer, start) != SeatMapEncoder.MAGIC) {
+            throw new IOException("Not a seat map");
+        }
+        int version = (buffer.get(start + 4) & 0xff) << 8 | buffer.get(start + 5) & 0xff;
+        if (version != SeatMapEncoder.VERSION) {
+            throw new IOException("Seat map version " + version + " is not supported");
+        }
+        rows = getInt(buffer, start + 8);
+        columns = getInt(buffer, start + 12);
+        if (rows <= 0 || columns <= 0 || (long) rows * columns > Venue.MAX_SEATS) {
+            throw new IOException("Seat map has a bad size " + rows + "x" + columns);
+        }
+        totalSeats = rows * columns;
+
+        int position = start + SeatMapEncoder.HEADER_BYTES;
+        long seats = 0;
+        while (seats < totalSeats) {
+            long token = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position >= buffer.limit() || shift > 28) {
+                    throw new IOException("Seat map is damaged");
+                }
+                int b = buffer.get(position++);
+                token |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            long count = token >>> 2;
+            if (count == 0 || seats + count > totalSeats) {
+                throw new IOException("Seat map is damaged");
+            }
+            if ((token & 3) == SeatMapEncoder.LITERAL) {
+                long end = position + ((count + 3) >>> 2);
+                if (end > buffer.limit()) {
+                    throw new IOException("Seat map is damaged");
+                }
+                position = (int) end;
+            }
+            seats += count;
+        }
+        if (position > buffer.limit() - SeatMapEncoder.TRAILER_BYTES) {
+            throw new IOException("Seat map is damaged");
+        }
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(position).position(start);
+        CRC32 crc = new CRC32();
+        crc.update(checked);
+        if (getInt(buffer, position) != (int) crc.getValue()) {
+            throw new IOException("Seat map is damaged");
+        }
+        tokens = buffer.duplicate();
+        tokens.limit(position).position(start + SeatMapEncoder.HEADER_BYTES);
+        buffer.position(position + SeatMapEncoder.TRAILER_BYTES);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getTotalSeats() {
+        return totalSeats;
+    }
+
+    /**
+    * Hands every seat to {@code handler}, merging consecutive seats with
+    * the same status into one run.
+    *
+    * @param handler Receives the runs.
+    * @throws IOException If a seat has an unknown status.
+    */
+    public void decode(RunHandler handler) throws IOException {
+        ByteBuffer in = tokens.duplicate();
+        int index = 0;
+        int runStart = 0;
+        int runStatus = -1;
+        while (index < totalSeats) {
+            long token = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.get();
+                token |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            int kind = (int) token & 3;
+            int count = (int) (token >>> 2);
+            if (kind != SeatMapEncoder.LITERAL) {
+                if (kind != runStatus) {
+                    runStart = endRun(handler, runStart, index, runStatus);
+                    runStatus = checkStatus(kind);
+                }
+                index += count;
+                continue;
+            }
+            int packed = 0;
+            for (int i = 0; i < count; i++) {
+                if ((i & 3) == 0) {
+                    packed = in.get();
+                }
+                int status = packed >>> ((i & 3) << 1) & 3;
+                if (status != runStatus) {
+                    runStart = endRun(handler, runStart, index, runStatus);
+                    runStatus = checkStatus(status);
+                }
+                index++;
+            }
+        }
+        endRun(handler, runStart, index, runStatus);
+    }
+
+    /**
+    * Returns the status of every seat, by seat index.
+    *
+    * @return Ordinal of each seat's {@code SeatStatus}.
+    * @throws IOException If a seat has an unknown status.
+    */
+    public byte[] decodeStatuses() throws IOException {
+        final byte[] statuses = new byte[totalSeats];
+        decode(new RunHandler() {
+            @Override
+            public void run(int start, int length, SeatStatus status) {
+                if (status != SeatStatus.VACANT) {
+                    Arrays.fill(statuses, start, start + length, (byte) status.ordinal());
+                }
+            }
+        });
+        return statuses;
+    }
+
+    private static int endRun(RunHandler handler, int runStart, int index, int runStatus) {
+        if (index > runStart) {
+            handler.run(runStart, index - runStart, STATUSES[runStatus]);
+        }
+        return index;
+    }
+
+    private static int checkStatus(int status) throws IOException {
+        if (status >= STATUSES.length) {
+            throw new IOException("Seat map has an unknown seat status " + status);
+        }
+        return status;
+    }
+
+    private static int getInt(ByteBuffer buffer, int index) {
+        return (buffer.get(index) & 0xff) << 24 | (buffer.get(index + 1) & 0xff) << 16
+            | (buffer.get(index + 2) & 0xff) << 8 | buffer.get(index + 3) & 0xff;
+    }
+}
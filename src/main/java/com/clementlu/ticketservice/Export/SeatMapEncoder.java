@@ -0,0 +1,267 @@
+package com.clementlu.ticketservice.Export;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.Venue;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the seat states of a venue in a compact binary format, for
+ * clients that render the seat map.
+ * <p>
+ * Version 1 of the format is laid out as
+ * <pre>
+ * int    MAGIC ("SMAP")
+ * short  VERSION
+ * short  flags, 0
+ * int    rows (seats per row of the seat map)
+ * int    columns (rows of the seat map)
+ * token* tokens that cover the rows * columns seats in index order
+ * int    CRC32 of the header and the tokens
+ * </pre>
+ * All numbers are big-endian, and the seat at {@code (x, y)} has index
+ * {@code y * rows + x}. A token is an unsigned LEB128 varint (7 bits per
+ * byte, lowest first, high bit set on every byte but the last) holding
+ * {@code count << 2 | kind}, with {@code count > 0}:
+ * <pre>
+ * kind 0, 1, 2  run of count seats whose status has that ordinal
+ *               (VACANT, HOLD, RESERVED)
+ * kind 3        literal of count seats, followed by (count + 3) / 4
+ *               bytes with 2 bits per seat, 4 seats per byte, lowest
+ *               bits first, each the ordinal of the seat's status
+ * </pre>
+ * Runs of at least {@code MIN_RUN} seats are written as runs and the
+ * seats between them as literals of at most {@code MAX_LITERAL} seats,
+ * so a venue that fills up in order takes a few bytes and a venue with
+ * no runs at all takes little more than 2 bits per seat. A decoder must
+ * reject a version it does not know; a later version may add kinds or
+ * flags.
+ * <p>
+ * The encoder writes straight into a {@code ByteBuffer} or through one
+ * reused direct buffer to a {@code WritableByteChannel}, reading seat
+ * states with {@code Venue.getSeatStatus} and skipping vacant runs with
+ * the free seat index, so nothing is allocated per seat. The seats are
+ * read while the venue may change, so each seat has a state it had at
+ * some point during the export. An encoder is not thread safe; use one
+ * per thread.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatMapEncoder {
+    public static final int MAGIC = 0x534d4150;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int TRAILER_BYTES = 4;
+    public static final int MIN_RUN = 8;
+    public static final int MAX_LITERAL = 4096;
+
+    static final int LITERAL = 3;
+
+    private static final int CHANNEL_BUFFER_BYTES = 1 << 16;
+    private static final int MAX_TOKEN_BYTES = 5;
+
+    private final byte[] literal = new byte[MAX_LITERAL / 4];
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer channelBuffer;
+    private ByteBuffer out;
+    private WritableByteChannel channel;
+    private long flushed;
+    private int literalCount;
+
+    /**
+    * Returns the most bytes the seat map of a venue can take.
+    *
+    * @param totalSeats Number of seats of the venue.
+    * @return Upper bound of the encoded size.
+    */
+    public static long maxEncodedSize(int totalSeats) {
+        // A run costs at most half a byte per seat (a one byte token and
+        // the end of a literal for MIN_RUN seats), a literal a quarter of
+        // a byte per seat and three bytes per block.
+        return HEADER_BYTES + TRAILER_BYTES + totalSeats / 2
+            + 3L * (totalSeats / MAX_LITERAL + 1) + 1;
+    }
+
+    /**
+    * Writes the seat map of a venue to a channel.
+    *
+    * @param venue Venue to export.
+    * @param channel Channel to write to. It is not closed.
+    * @return Number of bytes written.
+    * @throws IOException If the channel cannot be written.
+    */
+    public long encode(Venue venue, WritableByteChannel channel) throws IOException {
+        if (channelBuffer == null) {
+            channelBuffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_BYTES);
+        }
+        channelBuffer.clear();
+        this.channel = channel;
+        this.out = channelBuffer;
+        this.flushed = 0;
+        crc.reset();
+        try {
+            writeSeatMap(venue);
+            flush();
+            out.putInt(0, (int) crc.getValue()).limit(TRAILER_BYTES);
+            writeFully();
+            return flushed + TRAILER_BYTES;
+        } catch (ChannelWriteException e) {
+            throw (IOException) e.getCause();
+        } finally {
+            this.channel = null;
+            this.out = null;
+        }
+    }
+
+    /**
+    * Writes the seat map of a venue into a buffer, starting at its
+    * position. The position is moved past the seat map.
+    *
+    * @param venue Venue to export.
+    * @param buffer Buffer to write to, ideally with at least
+    * {@code maxEncodedSize} bytes remaining.
+    * @return Number of bytes written.
+    * @throws BufferOverflowException If the buffer is too small. Its
+    * position is left where it was.
+    */
+    public int encode(Venue venue, ByteBuffer buffer) {
+        int start = buffer.position();
+        this.out = buffer;
+        crc.reset();
+        try {
+            writeSeatMap(venue);
+            ensure(TRAILER_BYTES);
+            ByteBuffer written = buffer.duplicate();
+            written.limit(buffer.position()).position(start);
+            crc.update(written);
+            putInt((int) crc.getValue());
+            return buffer.position() - start;
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        } finally {
+            this.out = null;
+        }
+    }
+
+    private void writeSeatMap(Venue venue) throws BufferOverflowException {
+        ensure(HEADER_BYTES);
+        putInt(MAGIC);
+        out.put((byte) (VERSION >>> 8)).put((byte) VERSION);
+        out.put((byte) 0).put((byte) 0);
+        putInt(venue.getRows());
+        putInt(venue.getColumns());
+
+        int vacant = SeatStatus.VACANT.ordinal();
+        int total = venue.getTotalSeats();
+        literalCount = 0;
+        int index = 0;
+        while (index < total) {
+            int status = venue.getSeatStatus(index).ordinal();
+            int end = index + 1;
+            if (status == vacant) {
+                end = venue.nextOccupiedSeat(end, total);
+            } else {
+                while (end < total && venue.getSeatStatus(end).ordinal() == status) {
+                    end++;
+                }
+            }
+            if (end - index >= MIN_RUN) {
+                writeLiteral();
+                putToken(end - index, status);
+            } else {
+                for (int i = index; i < end; i++) {
+                    addToLiteral(status);
+                }
+            }
+            index = end;
+        }
+        writeLiteral();
+    }
+
+    private void addToLiteral(int status) {
+        if ((literalCount & 3) == 0) {
+            literal[literalCount >>> 2] = (byte) status;
+        } else {
+            literal[literalCount >>> 2] |= (byte) (status << ((literalCount & 3) << 1));
+        }
+        if (++literalCount == MAX_LITERAL) {
+            writeLiteral();
+        }
+    }
+
+    private void writeLiteral() {
+        if (literalCount == 0) {
+            return;
+        }
+        int bytes = (literalCount + 3) >>> 2;
+        putToken(literalCount, LITERAL);
+        ensure(bytes);
+        out.put(literal, 0, bytes);
+        literalCount = 0;
+    }
+
+    private void putToken(int count, int kind) {
+        ensure(MAX_TOKEN_BYTES);
+        long token = (long) count << 2 | kind;
+        while (token >= 0x80) {
+            out.put((byte) (token | 0x80));
+            token >>>= 7;
+        }
+        out.put((byte) token);
+    }
+
+    private void putInt(int value) {
+        out.put((byte) (value >>> 24)).put((byte) (value >>> 16))
+            .put((byte) (value >>> 8)).put((byte) value);
+    }
+
+    /**
+    * Makes room for {@code bytes} more bytes, writing the buffered bytes
+    * to the channel if there is one.
+    */
+    private void ensure(int bytes) {
+        if (out.remaining() >= bytes) {
+            return;
+        }
+        if (channel == null) {
+            throw new BufferOverflowException();
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new ChannelWriteException(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        crc.update(out.duplicate());
+        flushed += out.remaining();
+        writeFully();
+        out.clear();
+    }
+
+    private void writeFully() throws IOException {
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+    * Carries an {@code IOException} of the channel out of the encoding
+    * loop, which also writes to buffers that cannot fail that way.
+    */
+    private static final class ChannelWriteException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ChannelWriteException(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.clementlu.ticketservice.Feed;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.ChangedSeatSet;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the seat status changes of a venue to {@code Flow}
+ * subscribers.
+ * <p>
+ * The venue marks every seat it changes in a {@code ChangedSeatSet}.
+ * Once per tick the feed drains the set, reads the current status of
+ * each marked seat and publishes the seats whose status differs from
+ * the last published one as {@code SeatChanges}, coalesced into runs of
+ * consecutive seats. The work per tick depends on the number of seats
+ * that changed, not on the size of the venue, and nothing is published
+ * for a tick without changes.
+ * <p>
+ * Each subscriber has its own buffer of up to {@code maxBufferCapacity}
+ * events and gets events as it requests them. Events for a subscriber
+ * whose buffer is full are dropped rather than slowing down the tick;
+ * the subscriber sees a gap in the sequence numbers and can catch up
+ * with {@code snapshot}. Until no more events are dropped, every tick
+ * publishes an event, empty if need be, so a subscriber that missed the
+ * last change always sees such a gap. A new subscriber should subscribe first, then
+ * take a snapshot and skip events whose sequence number is not greater
+ * than the snapshot's.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatChangeFeed implements Flow.Publisher<SeatChanges>, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(SeatChangeFeed.class.getName());
+
+    private final Venue venue;
+    private final ChangedSeatSet changedSeats;
+    private final long[] published;
+    private final SubmissionPublisher<SeatChanges> publisher;
+    private final HashedWheelTimer timer;
+    private final boolean ownsTimer;
+    private final ExecutorService ownedExecutor;
+    private final long tickNanos;
+    private final LongAdder droppedEvents = new LongAdder();
+    private final Ranges ranges = new Ranges();
+    private final BiPredicate<Flow.Subscriber<? super SeatChanges>, SeatChanges> onDrop;
+    private long sequence;
+    private boolean lastTickDropped;
+    private volatile boolean closed;
+
+    /**
+    * Creates a feed that ticks on its own timer and delivers events on
+    * its own daemon threads.
+    *
+    * @param venue Venue whose changes are published.
+    * @param tick Time between two ticks.
+    * @param unit Unit of {@code tick}.
+    */
+    public SeatChangeFeed(Venue venue, long tick, TimeUnit unit) {
+        this(venue, new HashedWheelTimer(Math.max(1, unit.toNanos(tick) / 4), TimeUnit.NANOSECONDS, 64),
+            true, tick, unit, null, Flow.defaultBufferSize());
+    }
+
+    /**
+    * Creates a feed.
+    *
+    * @param venue Venue whose changes are published.
+    * @param timer Timer that runs the ticks.
+    * @param tick Time between two ticks.
+    * @param unit Unit of {@code tick}.
+    * @param executor Runs the delivery of events to subscribers.
+    * @param maxBufferCapacity Number of events buffered per subscriber
+    * before events are dropped for it.
+    */
+    public SeatChangeFeed(Venue venue, HashedWheelTimer timer, long tick, TimeUnit unit,
+            Executor executor, int maxBufferCapacity) {
+        this(venue, timer, false, tick, unit, executor, maxBufferCapacity);
+    }
+
+    private SeatChangeFeed(Venue venue, HashedWheelTimer timer, boolean ownsTimer, long tick,
+            TimeUnit unit, Executor executor, int maxBufferCapacity) {
+        if (tick <= 0 || maxBufferCapacity <= 0) {
+            throw new IllegalArgumentException("Tick and buffer capacity must be positive!");
+        }
+        this.venue = venue;
+        this.timer = timer;
+        this.ownsTimer = ownsTimer;
+        this.tickNanos = unit.toNanos(tick);
+        if (executor == null) {
+            ownedExecutor = Executors.newFixedThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "seat-change-feed");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            executor = ownedExecutor;
+        } else {
+            ownedExecutor = null;
+        }
+        publisher = new SubmissionPublisher<SeatChanges>(executor, maxBufferCapacity);
+        onDrop = new BiPredicate<Flow.Subscriber<? super SeatChanges>, SeatChanges>() {
+            @Override
+            public boolean test(Flow.Subscriber<? super SeatChanges> subscriber, SeatChanges changes) {
+                droppedEvents.increment();
+                return false;
+            }
+        };
+
+        // Tracking starts before the seats are read, so a seat changed
+        // while they are read is published on the first tick.
+        changedSeats = venue.trackChanges();
+        published = new long[(venue.getTotalSeats() + 31) / 32];
+        int total = venue.getTotalSeats();
+        for (int index = venue.nextOccupiedSeat(0, total); index < total;
+                index = venue.nextOccupiedSeat(index + 1, total)) {
+            setPublished(index, venue.getSeatStatus(index));
+        }
+        scheduleTick();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SeatChanges> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    public int getNumberOfSubscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+    * Returns the number of events not delivered to a subscriber because
+    * its buffer was full.
+    *
+    * @return Number of dropped events, summed over all subscribers.
+    */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    /**
+    * Returns the sequence number of the last published event.
+    *
+    * @return Sequence number, or 0 if nothing was published yet.
+    */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+    * Publishes the changes made since the last tick. This runs on the
+    * timer every tick and can also be called directly.
+    * <p>
+    * If the last event was dropped for a subscriber, an event is
+    * published even when no seat changed, so that the subscriber sees
+    * the gap once it catches up.
+    *
+    * @return Published changes, or null if nothing was published.
+    */
+    public synchronized SeatChanges tick() {
+        if (closed) {
+            return null;
+        }
+        ranges.clear();
+        changedSeats.drain(ranges);
+        if (ranges.count == 0 && !lastTickDropped) {
+            return null;
+        }
+        SeatChanges changes = ranges.toSeatChanges(++sequence, false,
+            venue.getNumSeats(SeatStatus.VACANT));
+        lastTickDropped = publisher.offer(changes, onDrop) < 0;
+        return changes;
+    }
+
+    /**
+    * Returns every seat of the venue as of the last published event.
+    * <p>
+    * Applying the events that follow it gives the current seat map.
+    *
+    * @return Snapshot of the venue.
+    */
+    public synchronized SeatChanges snapshot() {
+        Ranges all = new Ranges();
+        int total = venue.getTotalSeats();
+        int vacant = 0;
+        for (int index = 0; index < total; index++) {
+            int status = getPublished(index);
+            if (status == SeatStatus.VACANT.ordinal()) {
+                vacant++;
+            }
+            all.add(index, status);
+        }
+        return all.toSeatChanges(sequence, true, vacant);
+    }
+
+    /**
+    * Stops the ticks, stops tracking the venue and completes every
+    * subscriber once its buffered events are delivered.
+    */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        venue.stopTrackingChanges(changedSeats);
+        publisher.close();
+        if (ownsTimer) {
+            timer.stop();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void scheduleTick() {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    return;
+                }
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Seat change tick failed", e);
+                }
+                scheduleTick();
+            }
+        }, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private int getPublished(int index) {
+        return (int) (published[index >>> 5] >>> ((index & 31) << 1)) & 3;
+    }
+
+    private void setPublished(int index, SeatStatus status) {
+        int shift = (index & 31) << 1;
+        published[index >>> 5] = published[index >>> 5] & ~(3L << shift)
+            | (long) status.ordinal() << shift;
+    }
+
+    /**
+    * Runs of consecutive seats with the same status, built from seats in
+    * ascending order. As the handler of a drain, it keeps only the seats
+    * whose status differs from the published one.
+    */
+    private final class Ranges implements ChangedSeatSet.SeatHandler {
+        int count;
+        int[] starts = new int[16];
+        int[] lengths = new int[16];
+        byte[] statuses = new byte[16];
+
+        void clear() {
+            count = 0;
+        }
+
+        @Override
+        public void changed(int seatIndex) {
+            SeatStatus status = venue.getSeatStatus(seatIndex);
+            if (status.ordinal() != getPublished(seatIndex)) {
+                setPublished(seatIndex, status);
+                add(seatIndex, status.ordinal());
+            }
+        }
+
+        void add(int index, int status) {
+            if (count > 0 && statuses[count - 1] == status
+                    && starts[count - 1] + lengths[count - 1] == index) {
+                lengths[count - 1]++;
+                return;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                statuses = Arrays.copyOf(statuses, count * 2);
+            }
+            starts[count] = index;
+            lengths[count] = 1;
+            statuses[count] = (byte) status;
+            count++;
+        }
+
+        SeatChanges toSeatChanges(long sequence, boolean snapshot, int numSeatsAvailable) {
+            return new SeatChanges(sequence, snapshot, numSeatsAvailable, count,
+                Arrays.copyOf(starts, count), Arrays.copyOf(lengths, count),
+                Arrays.copyOf(statuses, count));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.clementlu.ticketservice.Feed;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+
+/**
+ * Seat status changes published by a {@code SeatChangeFeed} for one tick.
+ * <p>
+ * Changes are runs of consecutive seat indexes that now have the same
+ * status, in ascending order. Each seat appears at most once with the
+ * status it had when the tick ran, however many times it changed during
+ * the tick. Sequence numbers count ticks that had changes, so a gap
+ * means events were dropped. A snapshot lists every seat of the venue
+ * and carries the sequence number of the last tick it includes.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatChanges {
+    private static final SeatStatus[] STATUSES = SeatStatus.values();
+
+    private final long sequence;
+    private final boolean snapshot;
+    private final int numSeatsAvailable;
+    private final int rangeCount;
+    private final int[] starts;
+    private final int[] lengths;
+    private final byte[] statuses;
+
+    SeatChanges(long sequence, boolean snapshot, int numSeatsAvailable, int rangeCount,
+            int[] starts, int[] lengths, byte[] statuses) {
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.numSeatsAvailable = numSeatsAvailable;
+        this.rangeCount = rangeCount;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.statuses = statuses;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+    * Returns the number of vacant seats in the venue when the changes
+    * were collected.
+    *
+    * @return Number of VACANT seats.
+    */
+    public int getNumSeatsAvailable() {
+        return numSeatsAvailable;
+    }
+
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /**
+    * Returns the index of the first seat of a range, where the seat at
+    * {@code (x, y)} has index {@code y * rows + x}.
+    *
+    * @param range Range number, from 0 to {@code getRangeCount() - 1}.
+    * @return Index of the first seat.
+    */
+    public int getStart(int range) {
+        return starts[range];
+    }
+
+    public int getLength(int range) {
+        return lengths[range];
+    }
+
+    public SeatStatus getStatus(int range) {
+        return STATUSES[statuses[range]];
+    }
+
+    /**
+    * Returns the number of seats in all ranges.
+    *
+    * @return Number of seats changed.
+    */
+    public int getNumSeatsChanged() {
+        int seats = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            seats += lengths[i];
+        }
+        return seats;
+    }
+
+    @Override
+    public String toString() {
+        return (snapshot ? "Snapshot " : "Changes ") + sequence + ": " + rangeCount
+            + " ranges, " + numSeatsAvailable + " seats available";
+    }
+}
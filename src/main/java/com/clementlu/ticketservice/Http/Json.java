@@ -0,0 +1,221 @@
+package com.clementlu.ticketservice.Http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the ticket service's HTTP API: reads flat objects
+ * of strings, numbers, booleans and nulls, and quotes strings for
+ * output.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public final class Json {
+
+    private final String text;
+    private int position;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+    * Parses a flat JSON object.
+    *
+    * @param text JSON text.
+    * @return Members of the object in order; numbers are returned as
+    * {@code Long} or {@code Double}.
+    * @throws IllegalArgumentException If {@code text} is not a flat JSON
+    * object.
+    */
+    public static Map<String, Object> parseObject(String text) {
+        Json json = new Json(text);
+        json.skipWhitespace();
+        Map<String, Object> members = json.readObject();
+        json.skipWhitespace();
+        if (json.position != text.length()) {
+            throw json.error("Unexpected text after object");
+        }
+        return members;
+    }
+
+    /**
+    * Quotes and escapes a string for JSON output.
+    *
+    * @param value String to quote, or null.
+    * @return JSON string, or {@code null}.
+    */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return members;
+        }
+        while (true) {
+            skipWhitespace();
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            members.put(name, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+                return members;
+            } else if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private Object readValue() {
+        char c = peek();
+        if (c == '"') {
+            return readString();
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            return readNumber();
+        } else if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        } else if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        } else if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        throw error("Expected a string, number, boolean or null");
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            } else if (c == '\\') {
+                char escaped = next();
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+    }
+
+    private Object readNumber() {
+        int start = position;
+        boolean decimal = false;
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            return decimal ? (Object) Double.valueOf(number) : (Object) Long.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + number);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("Unexpected end of text");
+        }
+        return text.charAt(position);
+    }
+
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+}
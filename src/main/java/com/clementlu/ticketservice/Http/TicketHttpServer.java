@@ -0,0 +1,359 @@
+package com.clementlu.ticketservice.Http;
+
+import com.clementlu.ticketservice.Export.SeatMapEncoder;
+import com.clementlu.ticketservice.Metrics.TicketServiceMetrics;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.PerformanceVenueTicketService;
+import com.clementlu.ticketservice.TicketService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP/JSON front-end for a {@code TicketService}, built on the JDK's
+ * {@code com.sun.net.httpserver}.
+ * <p>
+ * The API is
+ * <pre>
+ * GET  /seats                 {"numSeatsAvailable": 100}
+ * GET  /seats/map             seat map in the {@code SeatMapEncoder} format
+ * POST /holds                 {"numSeats": 2, "customerEmail": "a@b.com"}
+ *                             201 with the hold, 400 if the email address is
+ *                             not valid, or 409 if it cannot be filled or
+ *                             the customer is at their hold limits
+ * POST /holds/{id}/reserve    {"customerEmail": "a@b.com"}
+ *                             200 {"confirmationId": "..."}, or 404 if the
+ *                             hold does not exist, has expired or belongs
+ *                             to another customer
+ * GET  /metrics               service metrics in the Prometheus text format
+ * </pre>
+ * Connections are accepted and read by the server's dispatcher thread and
+ * each request runs as its own task on the request executor. On a JDK
+ * with virtual threads that is a virtual-thread-per-task executor, so
+ * tens of thousands of requests can wait at once without a platform
+ * thread each; on older JDKs it falls back to a cached pool of daemon
+ * threads.
+ * <p>
+ * The JDK server writes the headers and body of a response separately,
+ * which Nagle's algorithm holds back for a delayed ACK (~40ms), and keeps
+ * only 200 idle connections, closing the rest under pooled clients. The
+ * server does not change JVM-wide settings itself; callers that expect
+ * many clients should set {@code sun.net.httpserver.nodelay=true} and a
+ * larger {@code sun.net.httpserver.maxIdleConnections} before the first
+ * server is created, since both are read only once. {@code App} does.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class TicketHttpServer {
+    public static final int DEFAULT_BACKLOG = 4096;
+
+    private static final Logger LOGGER = Logger.getLogger(TicketHttpServer.class.getName());
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String SEAT_MAP_TYPE = "application/octet-stream";
+
+    private final TicketService ticketService;
+    private final TicketServiceMetrics metrics;
+    private final Venue venue;
+    private final ConcurrentLinkedQueue<SeatMapEncoder> seatMapEncoders =
+        new ConcurrentLinkedQueue<SeatMapEncoder>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+    * Creates a server for {@code ticketService} on {@code port}. The
+    * metrics of a {@code PerformanceVenueTicketService} are served on
+    * {@code /metrics} and its seat map on {@code /seats/map}.
+    *
+    * @param ticketService Ticket service to serve.
+    * @param port Port to listen on, or 0 for any free port.
+    * @throws IOException If the port cannot be bound.
+    */
+    public TicketHttpServer(TicketService ticketService, int port) throws IOException {
+        this(ticketService, ticketService instanceof PerformanceVenueTicketService
+            ? ((PerformanceVenueTicketService) ticketService).getMetrics() : null, port);
+    }
+
+    /**
+    * Creates a server for {@code ticketService} on {@code port}. The
+    * server does not accept requests until {@code start} is called.
+    *
+    * @param ticketService Ticket service to serve.
+    * @param metrics Metrics to serve on {@code /metrics}, or null.
+    * @param port Port to listen on, or 0 for any free port.
+    * @throws IOException If the port cannot be bound.
+    */
+    public TicketHttpServer(TicketService ticketService, TicketServiceMetrics metrics, int port)
+            throws IOException {
+        this.ticketService = ticketService;
+        this.metrics = metrics;
+        this.venue = ticketService instanceof PerformanceVenueTicketService
+            ? ((PerformanceVenueTicketService) ticketService).getVenue() : null;
+        ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+        this.virtualThreads = virtualThreadExecutor != null;
+        this.executor = virtualThreads ? virtualThreadExecutor : newDaemonThreadPool();
+        server = HttpServer.create(new InetSocketAddress(port), DEFAULT_BACKLOG);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TicketHttpServer.this.handle(exchange);
+            }
+        });
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+    * Stops accepting requests, waits up to {@code delaySeconds} for
+    * requests in progress and stops the request executor.
+    *
+    * @param delaySeconds Time to wait for requests in progress.
+    */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+    * Returns the port the server listens on, which is useful when it was
+    * created with port 0.
+    *
+    * @return Port number.
+    */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+    * Checks whether requests run on virtual threads.
+    *
+    * @return True if the JDK has virtual threads.
+    */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+    * Creates an executor that runs each task on a new virtual thread. It is
+    * looked up by reflection so the service still builds for Java 11.
+    *
+    * @return Virtual thread executor, or null if the JDK has no virtual
+    * threads.
+    */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // No virtual threads, or only as a preview feature.
+            return null;
+        }
+    }
+
+    private static ExecutorService newDaemonThreadPool() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ticket-http-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (path.length == 2 && path[1].equals("seats")) {
+                if (!method.equals("GET")) {
+                    send(exchange, 405, error("Use GET"));
+                } else {
+                    send(exchange, 200, "{\"numSeatsAvailable\":" + ticketService.numSeatsAvailable() + "}");
+                }
+            } else if (path.length == 3 && path[1].equals("seats") && path[2].equals("map")
+                    && venue != null) {
+                if (!method.equals("GET")) {
+                    send(exchange, 405, error("Use GET"));
+                } else {
+                    sendSeatMap(exchange);
+                }
+            } else if (path.length == 2 && path[1].equals("holds")) {
+                if (!method.equals("POST")) {
+                    send(exchange, 405, error("Use POST"));
+                } else {
+                    hold(exchange);
+                }
+            } else if (path.length == 4 && path[1].equals("holds") && path[3].equals("reserve")) {
+                if (!method.equals("POST")) {
+                    send(exchange, 405, error("Use POST"));
+                } else {
+                    reserve(exchange, path[2]);
+                }
+            } else if (path.length == 2 && path[1].equals("metrics") && metrics != null) {
+                if (!method.equals("GET")) {
+                    send(exchange, 405, error("Use GET"));
+                } else {
+                    send(exchange, 200, TEXT_TYPE, metrics.toText());
+                }
+            } else {
+                send(exchange, 404, error("Not found"));
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            // The details stay in the log rather than go to the client.
+            LOGGER.log(Level.WARNING, "Request " + exchange.getRequestURI() + " failed", e);
+            send(exchange, 500, error("Internal server error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void hold(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = Json.parseObject(readBody(exchange));
+        int numSeats = intMember(body, "numSeats");
+        String customerEmail = stringMember(body, "customerEmail");
+        SeatHold seatHold = ticketService.findAndHoldSeats(numSeats, customerEmail);
+        if (seatHold == null) {
+            send(exchange, 409, error("Seats could not be held"));
+            return;
+        }
+        StringBuilder json = new StringBuilder(64 + 16 * seatHold.getSeats().size());
+        json.append("{\"seatHoldId\":").append(seatHold.getId())
+            .append(",\"customerEmail\":").append(Json.quote(seatHold.getCustomerEmail()))
+            .append(",\"seats\":[");
+        boolean first = true;
+        for (Seat seat : seatHold.getSeats()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"x\":").append((int) seat.getSeatNo().getX())
+                .append(",\"y\":").append((int) seat.getSeatNo().getY()).append('}');
+        }
+        json.append("]}");
+        send(exchange, 201, json.toString());
+    }
+
+    private void reserve(HttpExchange exchange, String seatHoldId) throws IOException {
+        int id;
+        try {
+            id = Integer.parseInt(seatHoldId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad seat hold id " + seatHoldId);
+        }
+        Map<String, Object> body = Json.parseObject(readBody(exchange));
+        String confirmationId = ticketService.reserveSeats(id, stringMember(body, "customerEmail"));
+        if (confirmationId == null) {
+            send(exchange, 404, error("Seat hold not found, expired or held by another customer"));
+        } else {
+            send(exchange, 200, "{\"confirmationId\":" + Json.quote(confirmationId) + "}");
+        }
+    }
+
+    /**
+    * Streams the seat map to the client as it is encoded, through one of
+    * the pooled encoders so their buffers are reused across requests.
+    * Should encoding fail once the headers have been sent, the exchange is
+    * closed so the client sees a truncated response rather than a second
+    * one.
+    */
+    private void sendSeatMap(HttpExchange exchange) throws IOException {
+        SeatMapEncoder encoder = seatMapEncoders.poll();
+        if (encoder == null) {
+            encoder = new SeatMapEncoder();
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", SEAT_MAP_TYPE);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                encoder.encode(venue, Channels.newChannel(out));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Seat map could not be sent", e);
+                exchange.close();
+            }
+        } finally {
+            seatMapEncoders.offer(encoder);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int intMember(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof Long) || (Long) value < Integer.MIN_VALUE
+                || (Long) value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("\"" + name + "\" must be an integer");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static String stringMember(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a string");
+        }
+        return (String) value;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, JSON_TYPE, json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
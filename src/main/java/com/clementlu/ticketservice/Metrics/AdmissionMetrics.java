@@ -0,0 +1,175 @@
+package com.clementlu.ticketservice.Metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters, queue depth and wait times of a waiting room in front of a
+ * ticket service.
+ * <p>
+ * Like {@code TicketServiceMetrics}, recording never takes a lock, the
+ * queue depth is read from the waiting room when it is asked for, and
+ * the metrics can be registered as an MXBean and written as text in the
+ * Prometheus exposition format. The admit rate is the rate of the
+ * {@code admitted} counter; the configured limit is a gauge.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class AdmissionMetrics implements AdmissionMetricsMXBean {
+    private final IntSupplier queueDepth;
+    private final double admitRateLimit;
+
+    private final LongAdder entered = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder turnedAway = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    private ObjectName objectName;
+
+    /**
+    * Creates the metrics of a waiting room.
+    *
+    * @param queueDepth Returns the number of customers waiting.
+    * @param admitRateLimit Most customers admitted per second.
+    */
+    public AdmissionMetrics(IntSupplier queueDepth, double admitRateLimit) {
+        this.queueDepth = queueDepth;
+        this.admitRateLimit = admitRateLimit;
+    }
+
+    public void entered() {
+        entered.increment();
+    }
+
+    /**
+    * Counts a customer let through to the ticket service.
+    *
+    * @param waitNanos Time the customer spent in the queue.
+    */
+    public void admitted(long waitNanos) {
+        admitted.increment();
+        waitTime.record(waitNanos);
+    }
+
+    /**
+    * Counts a customer who could not join because the queue was full.
+    */
+    public void turnedAway() {
+        turnedAway.increment();
+    }
+
+    /**
+    * Counts a customer who left the queue, or timed out, before being
+    * admitted.
+    */
+    public void cancelled() {
+        cancelled.increment();
+    }
+
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+    * Registers the metrics with the platform MBean server under
+    * {@code com.clementlu.ticketservice:type=WaitingRoom,name=<name>}.
+    *
+    * @param name Name of the waiting room, unique within the JVM.
+    * @throws JMException If the name is taken or invalid.
+    */
+    public synchronized void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName registered = new ObjectName(TicketServiceMetrics.JMX_DOMAIN + ":type=WaitingRoom,name="
+            + ObjectName.quote(name));
+        server.registerMBean(this, registered);
+        objectName = registered;
+    }
+
+    /**
+    * Removes the metrics from the platform MBean server if they were
+    * registered.
+    */
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already gone.
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+    * Writes the metrics in the Prometheus text exposition format. Wait
+    * times are in seconds.
+    *
+    * @return Metrics as text.
+    */
+    public String toText() {
+        StringBuilder text = new StringBuilder(1024);
+        TicketServiceMetrics.counter(text, "ticketservice_admission_entered_total",
+            "Customers who joined the waiting room.", getEntered());
+        TicketServiceMetrics.counter(text, "ticketservice_admission_admitted_total",
+            "Customers let through to the ticket service.", getAdmitted());
+        TicketServiceMetrics.counter(text, "ticketservice_admission_turned_away_total",
+            "Customers turned away because the waiting room was full.", getTurnedAway());
+        TicketServiceMetrics.counter(text, "ticketservice_admission_cancelled_total",
+            "Customers who left or timed out before being admitted.", getCancelled());
+        TicketServiceMetrics.gauge(text, "ticketservice_admission_queue_depth",
+            "Customers waiting to be admitted.", getQueueDepth());
+        text.append("# HELP ticketservice_admission_rate_limit Most customers admitted per second.\n");
+        text.append("# TYPE ticketservice_admission_rate_limit gauge\n");
+        text.append("ticketservice_admission_rate_limit ").append(admitRateLimit).append('\n');
+        TicketServiceMetrics.summary(text, "ticketservice_admission_wait_seconds",
+            "Time spent in the waiting room.", waitTime);
+        return text.toString();
+    }
+
+    public long getEntered() {
+        return entered.sum();
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    public long getTurnedAway() {
+        return turnedAway.sum();
+    }
+
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public double getAdmitRateLimit() {
+        return admitRateLimit;
+    }
+
+    public long getWaitTimeP50() {
+        return TicketServiceMetrics.micros(waitTime.getValueAtPercentile(50));
+    }
+
+    public long getWaitTimeP99() {
+        return TicketServiceMetrics.micros(waitTime.getValueAtPercentile(99));
+    }
+
+    public long getWaitTimeP999() {
+        return TicketServiceMetrics.micros(waitTime.getValueAtPercentile(99.9));
+    }
+
+    public long getWaitTimeMax() {
+        return TicketServiceMetrics.micros(waitTime.getMax());
+    }
+}
@@ -0,0 +1,31 @@
+package com.clementlu.ticketservice.Metrics;
+
+/**
+ * JMX view of a waiting room's metrics. Wait times are in microseconds.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public interface AdmissionMetricsMXBean {
+
+    long getEntered();
+
+    long getAdmitted();
+
+    long getTurnedAway();
+
+    long getCancelled();
+
+    int getQueueDepth();
+
+    double getAdmitRateLimit();
+
+    long getWaitTimeP50();
+
+    long getWaitTimeP99();
+
+    long getWaitTimeP999();
+
+    long getWaitTimeMax();
+}
@@ -0,0 +1,133 @@
+package com.clementlu.ticketservice.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of
+ * HdrHistogram.
+ * <p>
+ * Values below 128 ns get a bucket each. Above that, every power of two
+ * is split into 64 buckets, so a value is reported to within 1/64
+ * (about 1.6%) of what was recorded. Values up to about 4.9 hours are
+ * tracked and larger values are counted as the largest. Recording a
+ * value is one atomic increment and a few shifts, so it can be used on
+ * the hot path by many threads at once.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BITS = 7;
+    private static final int LINEAR_BUCKETS = 1 << LINEAR_BITS;
+    private static final int SUB_BUCKETS = LINEAR_BUCKETS / 2;
+    private static final int MAX_VALUE_BITS = 44;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS =
+        LINEAR_BUCKETS + (MAX_VALUE_BITS - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+    * Records one value.
+    *
+    * @param nanos Latency in nanoseconds; negative values count as 0.
+    */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long largest;
+        while (value > (largest = max.get())) {
+            if (max.compareAndSet(largest, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+    * Records the time since {@code startNanos}.
+    *
+    * @param startNanos Start time from {@code System.nanoTime}.
+    */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+    * Returns the mean of the recorded values.
+    *
+    * @return Mean in nanoseconds, or 0 if nothing was recorded.
+    */
+    public double getMean() {
+        long values = count.sum();
+        return values == 0 ? 0 : (double) sum.sum() / values;
+    }
+
+    /**
+    * Returns the value below which {@code percentile} percent of the
+    * recorded values fall.
+    * <p>
+    * The counts are read while values may still be recorded, so the
+    * result is only as exact as the bucket it falls in.
+    *
+    * @param percentile Percentile between 0 and 100.
+    * @return Highest value of the bucket holding the percentile, in
+    * nanoseconds, or 0 if nothing was recorded.
+    */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (LINEAR_BITS - 1);
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
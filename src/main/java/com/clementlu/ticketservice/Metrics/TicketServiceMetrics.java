@@ -0,0 +1,352 @@
+package com.clementlu.ticketservice.Metrics;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.SeatCounts;
+import com.clementlu.ticketservice.Models.Venue;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and latency histograms of a ticket service.
+ * <p>
+ * Counters are {@code LongAdder}s and latencies go to
+ * {@code LatencyHistogram}s, so recording never takes a lock. Gauges are
+ * read from the venue's per-status counters and the service's hold map
+ * when they are asked for. The metrics can be registered as an MXBean
+ * and written as text in the Prometheus exposition format.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class TicketServiceMetrics implements TicketServiceMetricsMXBean {
+    public static final String JMX_DOMAIN = "com.clementlu.ticketservice";
+
+    private final Venue venue;
+    private final IntSupplier activeHolds;
+
+    private final LongAdder holdsCreated = new LongAdder();
+    private final LongAdder holdsExpired = new LongAdder();
+    private final LongAdder holdsReserved = new LongAdder();
+    private final LongAdder holdsRejected = new LongAdder();
+    private final LongAdder holdsLimited = new LongAdder();
+    private final LongAdder holdsExtended = new LongAdder();
+    private final LongAdder seatsReleased = new LongAdder();
+    private final LongAdder expirySweeps = new LongAdder();
+    private volatile int lastSweepHolds;
+    private volatile long lastSweepNanos;
+
+    private final LatencyHistogram holdLatency = new LatencyHistogram();
+    private final LatencyHistogram reserveLatency = new LatencyHistogram();
+    private final LatencyHistogram expireLatency = new LatencyHistogram();
+    private final LatencyHistogram sweepLatency = new LatencyHistogram();
+
+    private ObjectName objectName;
+
+    /**
+    * Creates the metrics of a service.
+    *
+    * @param venue Venue the service sells seats for.
+    * @param activeHolds Returns the service's number of active holds.
+    */
+    public TicketServiceMetrics(Venue venue, IntSupplier activeHolds) {
+        this.venue = venue;
+        this.activeHolds = activeHolds;
+    }
+
+    public void holdCreated() {
+        holdsCreated.increment();
+    }
+
+    public void holdExpired() {
+        holdsExpired.increment();
+    }
+
+    public void holdReserved() {
+        holdsReserved.increment();
+    }
+
+    /**
+    * Counts a hold that could not be made because the venue did not have
+    * enough vacant seats.
+    */
+    public void holdRejected() {
+        holdsRejected.increment();
+    }
+
+    /**
+    * Counts a hold that was refused because it would take the customer
+    * over their hold limits.
+    */
+    public void holdLimited() {
+        holdsLimited.increment();
+    }
+
+    public void holdExtended() {
+        holdsExtended.increment();
+    }
+
+    /**
+    * Counts seats given back from a hold before it was reserved or
+    * expired.
+    *
+    * @param seats Number of seats given back.
+    */
+    public void seatsReleased(int seats) {
+        seatsReleased.add(seats);
+    }
+
+    /**
+    * Records a sweep of the holds that expired on the timer in one tick.
+    * The holds count as expired, and the sweep's time goes to the sweep
+    * latency rather than to the expire latency of single holds.
+    *
+    * @param holds Number of holds the sweep released.
+    * @param nanos Time the sweep took.
+    */
+    public void expirySwept(int holds, long nanos) {
+        holdsExpired.add(holds);
+        expirySweeps.increment();
+        sweepLatency.record(nanos);
+        lastSweepHolds = holds;
+        lastSweepNanos = nanos;
+    }
+
+    public LatencyHistogram getHoldLatency() {
+        return holdLatency;
+    }
+
+    public LatencyHistogram getReserveLatency() {
+        return reserveLatency;
+    }
+
+    public LatencyHistogram getExpireLatency() {
+        return expireLatency;
+    }
+
+    public LatencyHistogram getSweepLatency() {
+        return sweepLatency;
+    }
+
+    /**
+    * Registers the metrics with the platform MBean server under
+    * {@code com.clementlu.ticketservice:type=TicketService,name=<name>}.
+    *
+    * @param name Name of the service, unique within the JVM.
+    * @throws JMException If the name is taken or invalid.
+    */
+    public synchronized void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName registered = new ObjectName(JMX_DOMAIN + ":type=TicketService,name="
+            + ObjectName.quote(name));
+        server.registerMBean(this, registered);
+        objectName = registered;
+    }
+
+    /**
+    * Removes the metrics from the platform MBean server if they were
+    * registered.
+    */
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already gone.
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+    * Writes the metrics in the Prometheus text exposition format.
+    * Latencies are in seconds.
+    *
+    * @return Metrics as text.
+    */
+    public String toText() {
+        StringBuilder text = new StringBuilder(2048);
+        counter(text, "ticketservice_holds_created_total", "Holds made.", getHoldsCreated());
+        counter(text, "ticketservice_holds_expired_total", "Holds that expired.", getHoldsExpired());
+        counter(text, "ticketservice_holds_reserved_total", "Holds that were reserved.", getHoldsReserved());
+        counter(text, "ticketservice_holds_rejected_total",
+            "Holds that could not be made for lack of seats.", getHoldsRejected());
+        counter(text, "ticketservice_holds_limited_total",
+            "Holds refused by the per-customer hold limits.", getHoldsLimited());
+        counter(text, "ticketservice_holds_extended_total", "Holds whose expiry was extended.",
+            getHoldsExtended());
+        counter(text, "ticketservice_hold_seats_released_total",
+            "Seats given back from holds before they ended.", getSeatsReleased());
+        counter(text, "ticketservice_expiry_sweeps_total", "Sweeps of holds expired on the timer.",
+            getExpirySweeps());
+        gauge(text, "ticketservice_active_holds", "Holds neither reserved nor expired.", getActiveHolds());
+        gauge(text, "ticketservice_last_sweep_holds", "Holds released by the last expiry sweep.",
+            getLastSweepHolds());
+        text.append("# HELP ticketservice_seats Seats by status.\n");
+        text.append("# TYPE ticketservice_seats gauge\n");
+        SeatCounts seatCounts = venue.readSeatCounts(new SeatCounts());
+        for (SeatStatus status : SeatStatus.values()) {
+            text.append("ticketservice_seats{status=\"").append(status.name().toLowerCase())
+                .append("\"} ").append(seatCounts.get(status)).append('\n');
+        }
+        summary(text, "ticketservice_hold_latency_seconds", "Time to find and hold seats.", holdLatency);
+        summary(text, "ticketservice_reserve_latency_seconds", "Time to reserve a hold.", reserveLatency);
+        summary(text, "ticketservice_expire_latency_seconds", "Time to expire a hold.", expireLatency);
+        summary(text, "ticketservice_sweep_latency_seconds", "Time of an expiry sweep.", sweepLatency);
+        return text.toString();
+    }
+
+    static void counter(StringBuilder text, String name, String help, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    static void gauge(StringBuilder text, String name, String help, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" gauge\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    static void summary(StringBuilder text, String name, String help,
+            LatencyHistogram histogram) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" summary\n");
+        for (String quantile : new String[] {"0.5", "0.99", "0.999"}) {
+            text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(histogram.getValueAtPercentile(Double.parseDouble(quantile) * 100)))
+                .append('\n');
+        }
+        text.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+        text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public long getHoldsCreated() {
+        return holdsCreated.sum();
+    }
+
+    public long getHoldsExpired() {
+        return holdsExpired.sum();
+    }
+
+    public long getHoldsReserved() {
+        return holdsReserved.sum();
+    }
+
+    public long getHoldsRejected() {
+        return holdsRejected.sum();
+    }
+
+    public long getHoldsLimited() {
+        return holdsLimited.sum();
+    }
+
+    public long getHoldsExtended() {
+        return holdsExtended.sum();
+    }
+
+    public long getSeatsReleased() {
+        return seatsReleased.sum();
+    }
+
+    public long getExpirySweeps() {
+        return expirySweeps.sum();
+    }
+
+    public int getLastSweepHolds() {
+        return lastSweepHolds;
+    }
+
+    public long getLastSweepMicros() {
+        return micros(lastSweepNanos);
+    }
+
+    public int getActiveHolds() {
+        return activeHolds.getAsInt();
+    }
+
+    public int getVacantSeats() {
+        return venue.getNumSeats(SeatStatus.VACANT);
+    }
+
+    public int getHeldSeats() {
+        return venue.getNumSeats(SeatStatus.HOLD);
+    }
+
+    public int getReservedSeats() {
+        return venue.getNumSeats(SeatStatus.RESERVED);
+    }
+
+    public long getHoldLatencyP50() {
+        return micros(holdLatency.getValueAtPercentile(50));
+    }
+
+    public long getHoldLatencyP99() {
+        return micros(holdLatency.getValueAtPercentile(99));
+    }
+
+    public long getHoldLatencyP999() {
+        return micros(holdLatency.getValueAtPercentile(99.9));
+    }
+
+    public long getHoldLatencyMax() {
+        return micros(holdLatency.getMax());
+    }
+
+    public long getReserveLatencyP50() {
+        return micros(reserveLatency.getValueAtPercentile(50));
+    }
+
+    public long getReserveLatencyP99() {
+        return micros(reserveLatency.getValueAtPercentile(99));
+    }
+
+    public long getReserveLatencyP999() {
+        return micros(reserveLatency.getValueAtPercentile(99.9));
+    }
+
+    public long getReserveLatencyMax() {
+        return micros(reserveLatency.getMax());
+    }
+
+    public long getExpireLatencyP50() {
+        return micros(expireLatency.getValueAtPercentile(50));
+    }
+
+    public long getExpireLatencyP99() {
+        return micros(expireLatency.getValueAtPercentile(99));
+    }
+
+    public long getExpireLatencyP999() {
+        return micros(expireLatency.getValueAtPercentile(99.9));
+    }
+
+    public long getExpireLatencyMax() {
+        return micros(expireLatency.getMax());
+    }
+
+    public long getSweepLatencyP50() {
+        return micros(sweepLatency.getValueAtPercentile(50));
+    }
+
+    public long getSweepLatencyP99() {
+        return micros(sweepLatency.getValueAtPercentile(99));
+    }
+
+    public long getSweepLatencyMax() {
+        return micros(sweepLatency.getMax());
+    }
+}
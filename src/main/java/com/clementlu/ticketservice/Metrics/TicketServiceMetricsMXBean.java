@@ -0,0 +1,69 @@
+package com.clementlu.ticketservice.Metrics;
+
+/**
+ * JMX view of a ticket service's metrics. Latencies are in microseconds.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public interface TicketServiceMetricsMXBean {
+
+    long getHoldsCreated();
+
+    long getHoldsExpired();
+
+    long getHoldsReserved();
+
+    long getHoldsRejected();
+
+    long getHoldsLimited();
+
+    long getHoldsExtended();
+
+    long getSeatsReleased();
+
+    long getExpirySweeps();
+
+    int getLastSweepHolds();
+
+    long getLastSweepMicros();
+
+    int getActiveHolds();
+
+    int getVacantSeats();
+
+    int getHeldSeats();
+
+    int getReservedSeats();
+
+    long getHoldLatencyP50();
+
+    long getHoldLatencyP99();
+
+    long getHoldLatencyP999();
+
+    long getHoldLatencyMax();
+
+    long getReserveLatencyP50();
+
+    long getReserveLatencyP99();
+
+    long getReserveLatencyP999();
+
+    long getReserveLatencyMax();
+
+    long getExpireLatencyP50();
+
+    long getExpireLatencyP99();
+
+    long getExpireLatencyP999();
+
+    long getExpireLatencyMax();
+
+    long getSweepLatencyP50();
+
+    long getSweepLatencyP99();
+
+    long getSweepLatencyMax();
+}
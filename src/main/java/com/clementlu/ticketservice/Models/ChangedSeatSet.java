@@ -0,0 +1,92 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of seats whose status changed since it was last drained.
+ * <p>
+ * Seats are bits in a bitset with a summary level that has a bit set for
+ * every word of seats with any bit set, so draining a large venue where
+ * few seats changed only visits the words that changed. Marking is safe
+ * from any thread and marking a seat that is already marked does not
+ * write. A seat marked while the set is being drained is either returned
+ * by that drain or kept for the next one.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class ChangedSeatSet {
+    private final AtomicLongArray seats;
+    private final AtomicLongArray summary;
+
+    /**
+    * Receives the seats returned by {@code drain}, in ascending order.
+    */
+    public interface SeatHandler {
+        void changed(int seatIndex);
+    }
+
+    public ChangedSeatSet(int totalSeats) {
+        int words = (totalSeats + Long.SIZE - 1) / Long.SIZE;
+        seats = new AtomicLongArray(words);
+        summary = new AtomicLongArray((words + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+    * Marks a seat as changed.
+    *
+    * @param seatIndex Index of the seat.
+    */
+    public void mark(int seatIndex) {
+        int word = seatIndex >>> 6;
+        long bit = 1L << seatIndex;
+        long current = seats.get(word);
+        if ((current & bit) != 0) {
+            return;
+        }
+        while (!seats.compareAndSet(word, current, current | bit)) {
+            current = seats.get(word);
+            if ((current & bit) != 0) {
+                return;
+            }
+        }
+        if (current == 0) {
+            int summaryWord = word >>> 6;
+            long summaryBit = 1L << word;
+            long summaryCurrent;
+            do {
+                summaryCurrent = summary.get(summaryWord);
+            } while ((summaryCurrent & summaryBit) == 0
+                && !summary.compareAndSet(summaryWord, summaryCurrent, summaryCurrent | summaryBit));
+        }
+    }
+
+    /**
+    * Removes every marked seat from the set and hands it to
+    * {@code handler}.
+    *
+    * @param handler Receives each seat that was marked.
+    * @return Number of seats drained.
+    */
+    public int drain(SeatHandler handler) {
+        int drained = 0;
+        for (int s = 0; s < summary.length(); s++) {
+            if (summary.get(s) == 0) {
+                continue;
+            }
+            long words = summary.getAndSet(s, 0);
+            while (words != 0) {
+                int word = (s << 6) + Long.numberOfTrailingZeros(words);
+                words &= words - 1;
+                long bits = seats.getAndSet(word, 0);
+                while (bits != 0) {
+                    handler.changed((word << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                    drained++;
+                }
+            }
+        }
+        return drained;
+    }
+}
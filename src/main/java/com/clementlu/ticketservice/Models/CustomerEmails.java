@@ -0,0 +1,95 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.commons.validator.routines.EmailValidator;
+
+/**
+ * Normalizes and validates customer email addresses.
+ * <p>
+ * An address is trimmed and lower-cased, then checked with commons
+ * validator's {@code EmailValidator}, whose regular expressions cost far
+ * more than the rest of a hold. Results are kept in a fixed size,
+ * direct-mapped cache keyed by the address as given, so a customer who
+ * holds seats again is looked up with one hash and one array read. A
+ * slot is simply overwritten when another address maps to it, which
+ * keeps the cache bounded however many addresses it sees, and invalid
+ * addresses are cached too.
+ * <p>
+ * The cache is lock-free and safe to share between services.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class CustomerEmails {
+    public static final int DEFAULT_CACHE_SIZE = 1 << 14;
+
+    private final EmailValidator validator = EmailValidator.getInstance();
+    private final AtomicReferenceArray<Entry> cache;
+    private final int mask;
+
+    public CustomerEmails() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+    * Creates a normalizer.
+    *
+    * @param cacheSize Number of addresses to cache, rounded up to a power
+    * of two.
+    */
+    public CustomerEmails(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive!");
+        }
+        int size = Integer.highestOneBit(Math.min(cacheSize, 1 << 24) * 2 - 1);
+        cache = new AtomicReferenceArray<Entry>(size);
+        mask = size - 1;
+    }
+
+    /**
+    * Returns the normalized form of an email address.
+    *
+    * @param email Email address as the customer gave it.
+    * @return The trimmed, lower-cased address, or null if it is not a
+    * valid email address.
+    */
+    public String normalize(String email) {
+        if (email == null) {
+            return null;
+        }
+        int hash = email.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = cache.get(slot);
+        if (entry != null && entry.email.equals(email)) {
+            return entry.normalized;
+        }
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        if (!validator.isValid(normalized)) {
+            normalized = null;
+        }
+        cache.set(slot, new Entry(email, normalized));
+        return normalized;
+    }
+
+    /**
+    * Checks whether an email address is valid.
+    *
+    * @param email Email address as the customer gave it.
+    * @return True if the address is valid once normalized.
+    */
+    public boolean isValid(String email) {
+        return normalize(email) != null;
+    }
+
+    private static final class Entry {
+        final String email;
+        final String normalized;
+
+        Entry(String email, String normalized) {
+            this.email = email;
+            this.normalized = normalized;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Number of active holds and held seats of each customer.
+ * <p>
+ * Customers are keyed by their normalized email address. Both counts of
+ * a customer are packed into one {@code AtomicLong}, holds in the high
+ * half and seats in the low half, so checking the limits and counting a
+ * new hold is a single CAS and two customers never contend. A customer
+ * is only in the map while they have an active hold: the thread that
+ * brings the counts back to zero retires the entry, and a thread that
+ * finds a retired entry puts a new one in its place.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class CustomerHoldIndex {
+    private static final long ONE_HOLD = 1L << 32;
+    private static final long SEATS_MASK = ONE_HOLD - 1;
+    private static final long RETIRED = -1L;
+    private static final Function<String, AtomicLong> NEW_ENTRY = new Function<String, AtomicLong>() {
+        @Override
+        public AtomicLong apply(String customerEmail) {
+            return new AtomicLong();
+        }
+    };
+
+    private final ConcurrentHashMap<String, AtomicLong> customers = new ConcurrentHashMap<>();
+
+    /**
+    * Counts a new hold for a customer if it keeps them within the limits.
+    *
+    * @param customerEmail Normalized email address of the customer.
+    * @param numSeats Number of seats in the hold.
+    * @param maxHolds Most active holds the customer may have.
+    * @param maxSeats Most seats the customer may hold.
+    * @return True if the hold was counted, false if it would go over a
+    * limit.
+    */
+    public boolean tryAcquire(String customerEmail, int numSeats, int maxHolds, int maxSeats) {
+        while (true) {
+            AtomicLong entry = customers.computeIfAbsent(customerEmail, NEW_ENTRY);
+            long counts;
+            do {
+                counts = entry.get();
+                if (counts == RETIRED) {
+                    break;
+                }
+                if ((counts >>> 32) >= maxHolds || (counts & SEATS_MASK) + numSeats > maxSeats) {
+                    if (counts == 0) {
+                        retire(customerEmail, entry);
+                    }
+                    return false;
+                }
+            } while (!entry.compareAndSet(counts, counts + ONE_HOLD + numSeats));
+            if (counts != RETIRED) {
+                return true;
+            }
+            customers.remove(customerEmail, entry);
+        }
+    }
+
+    /**
+    * Stops counting a hold that was reserved, expired or released.
+    *
+    * @param customerEmail Normalized email address of the customer.
+    * @param numSeats Number of seats in the hold.
+    */
+    public void release(String customerEmail, int numSeats) {
+        AtomicLong entry = customers.get(customerEmail);
+        if (entry == null) {
+            return;
+        }
+        long counts;
+        long remaining;
+        do {
+            counts = entry.get();
+            if (counts == RETIRED || (counts >>> 32) == 0) {
+                return;
+            }
+            remaining = counts - ONE_HOLD - Math.min(numSeats, counts & SEATS_MASK);
+        } while (!entry.compareAndSet(counts, remaining));
+        if (remaining == 0) {
+            retire(customerEmail, entry);
+        }
+    }
+
+    /**
+    * Stops counting some seats of a hold that stays active.
+    *
+    * @param customerEmail Normalized email address of the customer.
+    * @param numSeats Number of seats given back.
+    */
+    public void releaseSeats(String customerEmail, int numSeats) {
+        AtomicLong entry = customers.get(customerEmail);
+        if (entry == null) {
+            return;
+        }
+        long counts;
+        do {
+            counts = entry.get();
+            if (counts == RETIRED || (counts >>> 32) == 0) {
+                return;
+            }
+        } while (!entry.compareAndSet(counts, counts - Math.min(numSeats, counts & SEATS_MASK)));
+    }
+
+    private void retire(String customerEmail, AtomicLong entry) {
+        if (entry.compareAndSet(0, RETIRED)) {
+            customers.remove(customerEmail, entry);
+        }
+    }
+
+    /**
+    * Returns the number of active holds of a customer.
+    *
+    * @param customerEmail Normalized email address of the customer.
+    * @return Number of active holds.
+    */
+    public int getNumHolds(String customerEmail) {
+        long counts = get(customerEmail);
+        return (int) (counts >>> 32);
+    }
+
+    /**
+    * Returns the number of seats a customer holds.
+    *
+    * @param customerEmail Normalized email address of the customer.
+    * @return Number of seats in the customer's active holds.
+    */
+    public int getNumSeats(String customerEmail) {
+        long counts = get(customerEmail);
+        return (int) (counts & SEATS_MASK);
+    }
+
+    private long get(String customerEmail) {
+        AtomicLong entry = customers.get(customerEmail);
+        long counts = entry == null ? 0 : entry.get();
+        return counts == RETIRED ? 0 : counts;
+    }
+
+    /**
+    * Returns the number of customers with an active hold.
+    *
+    * @return Number of customers.
+    */
+    public int size() {
+        return customers.size();
+    }
+}
@@ -0,0 +1,350 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Index of the vacant seats in a {@code Venue}.
+ * <p>
+ * Vacant seats are kept in a hierarchical bitset where every bit of a
+ * level is set if the matching word of the level below has any bit set.
+ * Finding the next vacant seat from any position then only visits one
+ * word per level, which is O(log n) with a base of 64, and full rows are
+ * skipped without being looked at. The number of vacant seats in each
+ * row is kept as well, along with a cached longest run of vacant seats
+ * per row that is recomputed the first time it is read after the row
+ * changes. Vacant seats are also counted per block of
+ * {@code ROWS_PER_BLOCK} rows, so the vacant seats of a range of rows
+ * are summed from a few blocks instead of every row.
+ * <p>
+ * A seat must only be changed by one thread at a time, which the
+ * {@code Venue} guarantees with its row locks. Words are updated with
+ * CAS because one word can cover seats of several rows. The summary
+ * levels may briefly point at an empty word while another row is being
+ * changed; {@code nextVacant} skips such words, so it never returns a
+ * seat that is not vacant in the bottom level.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class FreeSeatIndex {
+    public static final int ROWS_PER_BLOCK = 64;
+    private static final int BLOCK_SHIFT = 6;
+
+    private final int rows;
+    private final int totalSeats;
+    private final AtomicLongArray[] levels;
+    private final AtomicIntegerArray rowVacancies;
+    private final AtomicIntegerArray blockVacancies;
+    private final AtomicIntegerArray rowVersions;
+    private final AtomicLongArray rowMaxFreeRuns;
+
+    /**
+    * Creates an index where every seat is vacant.
+    *
+    * @param rows Number of seats in each row of the seat map.
+    * @param columns Number of rows in the seat map.
+    */
+    public FreeSeatIndex(int rows, int columns) {
+        this.rows = rows;
+        this.totalSeats = rows * columns;
+
+        int depth = 1;
+        for (long bits = totalSeats; bits > Long.SIZE; bits = wordsFor(bits)) {
+            depth++;
+        }
+        levels = new AtomicLongArray[depth];
+        long bits = totalSeats;
+        for (int level = 0; level < depth; level++) {
+            levels[level] = filled(bits);
+            bits = wordsFor(bits);
+        }
+
+        rowVacancies = new AtomicIntegerArray(columns);
+        rowVersions = new AtomicIntegerArray(columns);
+        rowMaxFreeRuns = new AtomicLongArray(columns);
+        for (int y = 0; y < columns; y++) {
+            rowVacancies.set(y, rows);
+            rowMaxFreeRuns.set(y, rows);
+        }
+        blockVacancies = new AtomicIntegerArray(((columns - 1) >> BLOCK_SHIFT) + 1);
+        for (int block = 0; block < blockVacancies.length(); block++) {
+            int blockRows = Math.min(ROWS_PER_BLOCK, columns - (block << BLOCK_SHIFT));
+            blockVacancies.set(block, blockRows * rows);
+        }
+    }
+
+    private static long wordsFor(long bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static AtomicLongArray filled(long bits) {
+        long[] words = new long[(int) wordsFor(bits)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = -1L;
+        }
+        int tail = (int) (bits % Long.SIZE);
+        if (tail != 0) {
+            words[words.length - 1] = (1L << tail) - 1;
+        }
+        return new AtomicLongArray(words);
+    }
+
+    /**
+    * Returns the number of vacant seats in a row.
+    *
+    * @param y Row of the seat map.
+    * @return Number of vacant seats in row {@code y}.
+    */
+    public int getVacantSeats(int y) {
+        return rowVacancies.get(y);
+    }
+
+    /**
+    * Returns the number of vacant seats in a range of rows.
+    * <p>
+    * Whole blocks of rows in the range are read from their block count,
+    * so at most {@code 2 * ROWS_PER_BLOCK} rows are read one by one.
+    *
+    * @param fromRow First row of the range.
+    * @param toRow Row after the last row of the range.
+    * @return Number of vacant seats in rows {@code fromRow} to
+    * {@code toRow - 1}.
+    */
+    public int getVacantSeats(int fromRow, int toRow) {
+        int vacant = 0;
+        int y = fromRow;
+        while (y < toRow) {
+            if ((y & (ROWS_PER_BLOCK - 1)) == 0 && y + ROWS_PER_BLOCK <= toRow) {
+                vacant += blockVacancies.get(y >> BLOCK_SHIFT);
+                y += ROWS_PER_BLOCK;
+            } else {
+                vacant += rowVacancies.get(y++);
+            }
+        }
+        return vacant;
+    }
+
+    /**
+    * Returns a row's version, which changes every time a seat of the row
+    * becomes vacant or taken.
+    *
+    * @param y Row of the seat map.
+    * @return Version of row {@code y}.
+    */
+    public int getRowVersion(int y) {
+        return rowVersions.get(y);
+    }
+
+    public boolean isVacant(int index) {
+        return (levels[0].get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+    * Marks a seat as vacant.
+    *
+    * @param index Index of the seat.
+    */
+    public void setVacant(int index) {
+        if (isVacant(index)) {
+            return;
+        }
+        int y = index / rows;
+        rowVacancies.incrementAndGet(y);
+        blockVacancies.incrementAndGet(y >> BLOCK_SHIFT);
+        setBit(0, index);
+        rowVersions.incrementAndGet(index / rows);
+    }
+
+    /**
+    * Marks several seats of one row as vacant.
+    * <p>
+    * The seats are given as bit masks of consecutive words of the index,
+    * so each word is set with one CAS and the row's vacancy count and
+    * version are updated once, which costs far less than calling
+    * {@code setVacant} for each seat.
+    *
+    * @param y Row of the seat map that holds every seat.
+    * @param firstWord Word of the first mask, {@code seatIndex >>> 6}.
+    * @param masks Seats to mark, one bit per seat, lowest bit first.
+    * @param numMasks Number of masks to use.
+    * @return Number of seats that were not vacant before.
+    */
+    public int setVacant(int y, int firstWord, long[] masks, int numMasks) {
+        int added = 0;
+        for (int i = 0; i < numMasks; i++) {
+            long bits = masks[i] & ~levels[0].get(firstWord + i);
+            if (bits != 0) {
+                added += Long.bitCount(bits);
+                setBits(firstWord + i, bits);
+            }
+        }
+        if (added > 0) {
+            rowVacancies.addAndGet(y, added);
+            blockVacancies.addAndGet(y >> BLOCK_SHIFT, added);
+            rowVersions.incrementAndGet(y);
+        }
+        return added;
+    }
+
+    /**
+    * Marks a seat as taken.
+    *
+    * @param index Index of the seat.
+    */
+    public void clearVacant(int index) {
+        if (!isVacant(index)) {
+            return;
+        }
+        int y = index / rows;
+        rowVacancies.decrementAndGet(y);
+        blockVacancies.decrementAndGet(y >> BLOCK_SHIFT);
+        clearBit(0, index);
+        rowVersions.incrementAndGet(index / rows);
+    }
+
+    /**
+    * Returns the longest run of vacant seats in a row.
+    * <p>
+    * The run is cached together with the row's version, so it is only
+    * recomputed from the bitset after the row has changed.
+    *
+    * @param y Row of the seat map.
+    * @return Number of seats in the longest run of vacant seats.
+    */
+    public int getMaxFreeRun(int y) {
+        int version = rowVersions.get(y);
+        long cached = rowMaxFreeRuns.get(y);
+        if ((int) (cached >>> 32) == version) {
+            return (int) cached;
+        }
+        int maxRun = 0;
+        int rowEnd = (y + 1) * rows;
+        int start = nextVacant(y * rows);
+        while (start >= 0 && start < rowEnd) {
+            int end = nextOccupied(start, rowEnd);
+            maxRun = Math.max(maxRun, end - start);
+            start = nextVacant(end);
+        }
+        rowMaxFreeRuns.set(y, ((long) version << 32) | maxRun);
+        return maxRun;
+    }
+
+    /**
+    * Finds the first seat that is not vacant at or after an index.
+    *
+    * @param fromIndex Index to start searching from.
+    * @param toIndex Index to stop searching at.
+    * @return Index of the next seat that is not vacant, or {@code toIndex}
+    * if every seat before it is vacant.
+    */
+    public int nextOccupied(int fromIndex, int toIndex) {
+        AtomicLongArray words = levels[0];
+        long index = fromIndex;
+        while (index < toIndex) {
+            int word = (int) (index >>> 6);
+            long bits = ~words.get(word) & (-1L << index);
+            if (bits != 0) {
+                return (int) Math.min(((long) word << 6) + Long.numberOfTrailingZeros(bits), toIndex);
+            }
+            index = (word + 1L) << 6;
+        }
+        return toIndex;
+    }
+
+    private void setBit(int level, int index) {
+        for (; level < levels.length; level++) {
+            AtomicLongArray words = levels[level];
+            int word = index >>> 6;
+            long bit = 1L << index;
+            long old;
+            do {
+                old = words.get(word);
+            } while ((old & bit) == 0 && !words.compareAndSet(word, old, old | bit));
+            if (old != 0) {
+                return;
+            }
+            index = word;
+        }
+    }
+
+    private void setBits(int word, long bits) {
+        AtomicLongArray words = levels[0];
+        long old;
+        do {
+            old = words.get(word);
+        } while ((old & bits) != bits && !words.compareAndSet(word, old, old | bits));
+        if (old == 0 && levels.length > 1) {
+            setBit(1, word);
+        }
+    }
+
+    private void clearBit(int level, int index) {
+        AtomicLongArray words = levels[level];
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long old;
+        do {
+            old = words.get(word);
+        } while ((old & bit) != 0 && !words.compareAndSet(word, old, old & ~bit));
+        if ((old & ~bit) != 0 || level + 1 == levels.length) {
+            return;
+        }
+        clearBit(level + 1, word);
+        // A bit may have been set in the word while its summary bit was
+        // being cleared, so put the summary bit back if needed.
+        if (words.get(word) != 0) {
+            setBit(level + 1, word);
+        }
+    }
+
+    /**
+    * Finds the first vacant seat at or after an index.
+    * <p>
+    * Seats are searched in "first fit" order, left to right and then on
+    * to the next row.
+    *
+    * @param fromIndex Index to start searching from.
+    * @return Index of the next vacant seat, or -1 if there is none.
+    */
+    public int nextVacant(int fromIndex) {
+        if (fromIndex < 0) {
+            return -1;
+        }
+        long from = fromIndex;
+        search:
+        while (from < totalSeats) {
+            int level = 0;
+            long index = from;
+            while (true) {
+                AtomicLongArray words = levels[level];
+                long word = index >>> 6;
+                if (word >= words.length()) {
+                    return -1;
+                }
+                long bits = words.get((int) word) & (-1L << index);
+                if (bits != 0) {
+                    index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    break;
+                }
+                if (++level == levels.length) {
+                    return -1;
+                }
+                index = word + 1;
+            }
+            while (level > 0) {
+                level--;
+                long bits = levels[level].get((int) index);
+                if (bits == 0) {
+                    // Stale summary bit, continue after the empty word.
+                    from = (index + 1) << (6 * (level + 1));
+                    continue search;
+                }
+                index = (index << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            return (int) index;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.clementlu.ticketservice.Models;
+
+/**
+ * Request to find and hold seats, used by batch holds.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class HoldRequest {
+    private final int numSeats;
+    private final String customerEmail;
+
+    public HoldRequest(int numSeats, String customerEmail) {
+        this.numSeats = numSeats;
+        this.customerEmail = customerEmail;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    @Override
+    public String toString() {
+        return "Seats: " +
+            numSeats +
+            " Customer: " +
+            customerEmail;
+    }
+}
@@ -0,0 +1,151 @@
+package com.clementlu.ticketservice.Models;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+
+/**
+ * Seat storage that packs the status of each seat into 2 bits of a
+ * memory-mapped file.
+ * <p>
+ * Only the seat states live outside the heap, and a venue is reopened
+ * after a restart by mapping its file again instead of rebuilding its
+ * seats. The {@code FreeSeatIndex} and counters the {@code Venue} keeps
+ * beside them are still on the heap, at about one bit per seat plus
+ * 16 bytes per row.
+ * The file starts with a header of {@code MAGIC}, {@code VERSION},
+ * rows and columns, padded to {@code HEADER_BYTES}, followed by one
+ * 8-byte word per 32 seats. Words are updated in place with CAS through
+ * a {@code VarHandle}, like the words of {@code PackedSeatStorage}.
+ * <p>
+ * Changes are written to the file by the operating system, so they
+ * survive the process but not the machine until {@code force} is called.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class MappedSeatStorage implements SeatStorage {
+    public static final int MAGIC = 0x53454154;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+
+    private static final int BITS_PER_SEAT = 2;
+    private static final int SEATS_PER_WORD = Long.SIZE / BITS_PER_SEAT;
+    private static final long SEAT_MASK = (1L << BITS_PER_SEAT) - 1;
+    private static final SeatStatus[] STATUSES = SeatStatus.values();
+    private static final VarHandle WORDS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int rows;
+    private final int totalSeats;
+    private final boolean existing;
+    private final MappedByteBuffer buffer;
+
+    /**
+    * Maps the seat file of a venue, creating it with every seat vacant if
+    * it does not exist.
+    *
+    * @param file Seat file.
+    * @param rows Number of seats in each row of the seat map.
+    * @param columns Number of rows of the seat map.
+    * @throws IOException If the file cannot be mapped or was created for
+    * a venue of another size.
+    */
+    public MappedSeatStorage(Path file, int rows, int columns) throws IOException {
+        this.rows = rows;
+        this.totalSeats = rows * columns;
+        long words = ((long) totalSeats + SEATS_PER_WORD - 1) / SEATS_PER_WORD;
+        long size = HEADER_BYTES + words * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            existing = channel.size() > 0;
+            if (existing && channel.size() != size) {
+                throw new IOException("Seat file " + file + " is for another venue size");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        if (existing) {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != rows || buffer.getInt(12) != columns) {
+                throw new IOException("Seat file " + file + " has an unknown format or size");
+            }
+        } else {
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, rows).putInt(12, columns);
+        }
+    }
+
+    /**
+    * Checks whether the seat file already existed when it was mapped.
+    *
+    * @return True if the seats were read from an existing file.
+    */
+    public boolean isExisting() {
+        return existing;
+    }
+
+    public SeatStatus getSeatStatus(int index) {
+        int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+        return STATUSES[(int) ((word(index / SEATS_PER_WORD) >>> shift) & SEAT_MASK)];
+    }
+
+    public void setSeatStatus(int index, SeatStatus status) {
+        int offset = offset(index / SEATS_PER_WORD);
+        int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+        long old;
+        long updated;
+        do {
+            old = (long) WORDS.getVolatile(buffer, offset);
+            updated = (old & ~(SEAT_MASK << shift)) | ((long) status.ordinal() << shift);
+        } while (!WORDS.compareAndSet(buffer, offset, old, updated));
+    }
+
+    public Seat getSeat(int index) {
+        return new Seat(index % rows, index / rows, getSeatStatus(index));
+    }
+
+    /**
+    * Finds the next seat that is not vacant, skipping 32 vacant seats at a
+    * time.
+    *
+    * @param fromIndex Index to start searching from.
+    * @return Index of the next seat that is held or reserved, or -1 if
+    * there is none.
+    */
+    public int nextOccupied(int fromIndex) {
+        int index = fromIndex;
+        while (index < totalSeats) {
+            int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+            long word = word(index / SEATS_PER_WORD) >>> shift;
+            if (word == 0) {
+                index += SEATS_PER_WORD - index % SEATS_PER_WORD;
+                continue;
+            }
+            index += Long.numberOfTrailingZeros(word) / BITS_PER_SEAT;
+            return index < totalSeats ? index : -1;
+        }
+        return -1;
+    }
+
+    /**
+    * Writes changed seats to the file.
+    */
+    public void force() {
+        buffer.force();
+    }
+
+    private long word(int word) {
+        return (long) WORDS.getVolatile(buffer, offset(word));
+    }
+
+    private static int offset(int word) {
+        return HEADER_BYTES + word * Long.BYTES;
+    }
+}
@@ -0,0 +1,44 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+
+/**
+ * Seat storage that keeps one {@code Seat} object per seat.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class ObjectSeatStorage implements SeatStorage {
+    private final int rows;
+    private final List<List<Seat>> seatMap;
+
+    public ObjectSeatStorage(int rows, int columns) {
+        this.rows = rows;
+        seatMap = new CopyOnWriteArrayList<List<Seat>>();
+        for (int y = 0; y < columns; y++) {
+            seatMap.add(new CopyOnWriteArrayList<Seat>());
+            for (int x = 0; x < rows; x++) {
+                seatMap.get(y).add(new Seat(x,y));
+            }
+        }
+    }
+
+    public SeatStatus getSeatStatus(int index) {
+        return getSeat(index).getSeatStatus();
+    }
+
+    public void setSeatStatus(int index, SeatStatus status) {
+        getSeat(index).setSeatStatus(status);
+    }
+
+    public Seat getSeat(int index) {
+        return seatMap.get(index / rows).get(index % rows);
+    }
+
+    public List<List<Seat>> getSeatMap() {
+        return seatMap;
+    }
+}
@@ -0,0 +1,53 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+
+/**
+ * Seat storage that packs the status of each seat into 2 bits of a
+ * {@code long[]}.
+ * <p>
+ * A 1000x1000 venue needs less than 250 KB of heap in this mode, and
+ * {@code Seat} objects are only created when a caller asks for one.
+ * Words are updated with CAS since one word can hold seats of several
+ * rows, which may be changed under different row locks.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class PackedSeatStorage implements SeatStorage {
+    private static final int BITS_PER_SEAT = 2;
+    private static final int SEATS_PER_WORD = Long.SIZE / BITS_PER_SEAT;
+    private static final long SEAT_MASK = (1L << BITS_PER_SEAT) - 1;
+    private static final SeatStatus[] STATUSES = SeatStatus.values();
+
+    private final int rows;
+    private final AtomicLongArray words;
+
+    public PackedSeatStorage(int rows, int columns) {
+        this.rows = rows;
+        long totalSeats = (long) rows * columns;
+        words = new AtomicLongArray((int) ((totalSeats + SEATS_PER_WORD - 1) / SEATS_PER_WORD));
+    }
+
+    public SeatStatus getSeatStatus(int index) {
+        int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+        return STATUSES[(int) ((words.get(index / SEATS_PER_WORD) >>> shift) & SEAT_MASK)];
+    }
+
+    public void setSeatStatus(int index, SeatStatus status) {
+        int word = index / SEATS_PER_WORD;
+        int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+        long old;
+        long updated;
+        do {
+            old = words.get(word);
+            updated = (old & ~(SEAT_MASK << shift)) | ((long) status.ordinal() << shift);
+        } while (!words.compareAndSet(word, old, updated));
+    }
+
+    public Seat getSeat(int index) {
+        return new Seat(index % rows, index / rows, getSeatStatus(index));
+    }
+}
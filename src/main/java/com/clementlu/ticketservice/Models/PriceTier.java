@@ -0,0 +1,58 @@
+package com.clementlu.ticketservice.Models;
+
+/**
+ * Price level of the seats of one or more sections of a
+ * {@code VenueLayout}.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class PriceTier {
+    private final int id;
+    private final String name;
+    private final long price;
+    private int numSeats;
+
+    PriceTier(int id, String name, long price) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+    }
+
+    /**
+    * Returns the tier's position in its layout, from 0.
+    *
+    * @return Tier id.
+    */
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+    * Returns the price of a seat in the tier, in the smallest unit of the
+    * currency, such as cents.
+    *
+    * @return Price of a seat.
+    */
+    public long getPrice() {
+        return price;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    void addSeats(int seats) {
+        numSeats += seats;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + price + ")";
+    }
+}
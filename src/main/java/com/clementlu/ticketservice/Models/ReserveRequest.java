@@ -0,0 +1,34 @@
+package com.clementlu.ticketservice.Models;
+
+/**
+ * Request to reserve the seats of a hold, used by batch reservations.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class ReserveRequest {
+    private final int seatHoldId;
+    private final String customerEmail;
+
+    public ReserveRequest(int seatHoldId, String customerEmail) {
+        this.seatHoldId = seatHoldId;
+        this.customerEmail = customerEmail;
+    }
+
+    public int getSeatHoldId() {
+        return seatHoldId;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    @Override
+    public String toString() {
+        return "Seat Hold: " +
+            seatHoldId +
+            " Customer: " +
+            customerEmail;
+    }
+}
@@ -9,11 +9,15 @@ import java.awt.Point;
  * @since       1.0
  */
 public class Seat {
-    private SeatStatus seatStatus;
+    private volatile SeatStatus seatStatus;
     private Point seatNo;
 
     public Seat(int row, int column) {
-        this.seatStatus = SeatStatus.VACANT;
+        this(row, column, SeatStatus.VACANT);
+    }
+
+    public Seat(int row, int column, SeatStatus status) {
+        this.seatStatus = status;
         this.seatNo = new Point(row, column);
     }
 
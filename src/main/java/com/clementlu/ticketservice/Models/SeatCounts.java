@@ -0,0 +1,67 @@
+package com.clementlu.ticketservice.Models;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+
+/**
+ * Number of seats of each status in a venue, as read by
+ * {@code Venue.readSeatCounts} at one version of the venue.
+ * <p>
+ * The three counts are read together, so they always add up to the
+ * venue's total. A reader keeps one instance and fills it again on each
+ * read, so reading allocates nothing. Instances are not thread safe.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatCounts {
+    private long version = -1;
+    private int vacant;
+    private int held;
+    private int reserved;
+
+    void set(long version, int vacant, int held, int reserved) {
+        this.version = version;
+        this.vacant = vacant;
+        this.held = held;
+        this.reserved = reserved;
+    }
+
+    /**
+    * Returns the venue version the counts were read at. The counts
+    * include every change up to this version.
+    *
+    * @return Venue version, or -1 if the counts were never read.
+    */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getVacant() {
+        return vacant;
+    }
+
+    public int getHeld() {
+        return held;
+    }
+
+    public int getReserved() {
+        return reserved;
+    }
+
+    public int get(SeatStatus status) {
+        switch (status) {
+            case VACANT:
+                return vacant;
+            case HOLD:
+                return held;
+            default:
+                return reserved;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Vacant Seats: " + vacant + ", Hold Seats: " + held + ", Reserved Seats: " + reserved;
+    }
+}
@@ -1,7 +1,7 @@
 package com.clementlu.ticketservice.Models;
 
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import com.clementlu.ticketservice.Timer.Timeout;
 
 /**
  * @author      Clement Lu <clementlu@live.com>
@@ -9,15 +9,69 @@ import java.util.concurrent.ThreadLocalRandom;
  * @since       1.0
  */
 public class SeatHold {
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private static final SeatHoldIdGenerator DEFAULT_ID_GENERATOR = new SeatHoldIdGenerator();
+
     private int id;
+    private int version;
     private String confirmationId;
     private List<Seat> seats;
     private String customerEmail;
+    private long expiryDeadline;
+    private volatile Timeout expiryTimeout;
 
     public SeatHold(List<Seat> seats, String customerEmail) {
-        id = ThreadLocalRandom.current().nextInt(0, Integer.MAX_VALUE);
+        this(seats, customerEmail, NO_EXPIRY);
+    }
+
+    /**
+    * Creates a seat hold that expires at {@code expiryDeadline}, with an
+    * id from a generator shared by all holds created this way.
+    *
+    * @param seats Seats that are held.
+    * @param customerEmail Customer's email address.
+    * @param expiryDeadline Time the hold expires, in {@code System.nanoTime}
+    * units, or {@code NO_EXPIRY}.
+    */
+    public SeatHold(List<Seat> seats, String customerEmail, long expiryDeadline) {
+        this(DEFAULT_ID_GENERATOR.nextId(), seats, customerEmail, expiryDeadline);
+    }
+
+    /**
+    * Creates a seat hold with a given id that expires at
+    * {@code expiryDeadline}.
+    *
+    * @param id Seat hold id, usually from a {@code SeatHoldIdGenerator}.
+    * @param seats Seats that are held.
+    * @param customerEmail Customer's email address.
+    * @param expiryDeadline Time the hold expires, in {@code System.nanoTime}
+    * units, or {@code NO_EXPIRY}.
+    */
+    public SeatHold(int id, List<Seat> seats, String customerEmail, long expiryDeadline) {
+        this(id, 0, seats, customerEmail, expiryDeadline);
+    }
+
+    /**
+    * Creates a version of a seat hold.
+    * <p>
+    * A hold that is extended or gives back some of its seats is replaced
+    * by a new version with the same id, so code still holding the old
+    * version can tell that it changed.
+    *
+    * @param id Seat hold id.
+    * @param version Version of the hold, 0 when it is first made.
+    * @param seats Seats that are held.
+    * @param customerEmail Customer's email address.
+    * @param expiryDeadline Time the hold expires, in {@code System.nanoTime}
+    * units, or {@code NO_EXPIRY}.
+    */
+    public SeatHold(int id, int version, List<Seat> seats, String customerEmail, long expiryDeadline) {
+        this.id = id;
+        this.version = version;
         this.seats = seats;
         this.customerEmail = customerEmail;
+        this.expiryDeadline = expiryDeadline;
     }
 
     public String getCustomerEmail() {
@@ -32,6 +86,37 @@ public class SeatHold {
         return id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public long getExpiryDeadline() {
+        return expiryDeadline;
+    }
+
+    /**
+    * Checks whether the hold is past its expiry deadline.
+    *
+    * @return True if the hold has expired.
+    */
+    public boolean isExpired() {
+        return expiryDeadline != NO_EXPIRY && System.nanoTime() - expiryDeadline >= 0;
+    }
+
+    public void setExpiryTimeout(Timeout expiryTimeout) {
+        this.expiryTimeout = expiryTimeout;
+    }
+
+    /**
+    * Cancels the timeout that would expire this hold.
+    *
+    * @return True if the timeout was pending and is now cancelled.
+    */
+    public boolean cancelExpiry() {
+        Timeout timeout = expiryTimeout;
+        return timeout != null && timeout.cancel();
+    }
+
     public void setConfirmationId(String confirmationId) {
         this.confirmationId = confirmationId;
     }
@@ -0,0 +1,99 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out seat hold ids.
+ * <p>
+ * An id is a non-negative {@code int} made of a shard number in the high
+ * {@code shardBits} bits and a sequence number in the remaining
+ * {@code 31 - shardBits} bits. Sequence numbers count up from zero, so
+ * ids from one generator never repeat until the sequence wraps, and ids
+ * from generators with different shard numbers never repeat at all.
+ * The shard of an id can be read back with {@code shardOf}, which lets a
+ * front-end route a hold id to its service without a lookup.
+ * <p>
+ * Once the sequence wraps, an id may belong to a hold that is still
+ * active, so callers that keep holds for a long time should skip ids
+ * that are in use.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatHoldIdGenerator {
+    public static final int MAX_SHARD_BITS = 16;
+
+    private final int shard;
+    private final int shardBits;
+    private final int sequenceMask;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+    * Creates a generator for a single service, with all 31 bits used for
+    * the sequence.
+    */
+    public SeatHoldIdGenerator() {
+        this(0, 0);
+    }
+
+    /**
+    * Creates a generator for one shard.
+    *
+    * @param shard Shard number, from 0 to {@code 2^shardBits - 1}.
+    * @param shardBits Number of id bits used for the shard number, at
+    * most {@code MAX_SHARD_BITS}.
+    */
+    public SeatHoldIdGenerator(int shard, int shardBits) {
+        if (shardBits < 0 || shardBits > MAX_SHARD_BITS) {
+            throw new IllegalArgumentException("Shard bits must be between 0 and "
+                + MAX_SHARD_BITS + "!");
+        }
+        if (shard < 0 || shard >= 1 << shardBits) {
+            throw new IllegalArgumentException("Shard " + shard + " does not fit in "
+                + shardBits + " bits!");
+        }
+        this.shard = shard;
+        this.shardBits = shardBits;
+        this.sequenceMask = Integer.MAX_VALUE >>> shardBits;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getShardBits() {
+        return shardBits;
+    }
+
+    /**
+    * Returns the next id.
+    *
+    * @return Seat hold id.
+    */
+    public int nextId() {
+        return shard << (31 - shardBits) | sequence.getAndIncrement() & sequenceMask;
+    }
+
+    /**
+    * Returns the shard number an id was made with.
+    *
+    * @param id Seat hold id.
+    * @param shardBits Number of id bits used for the shard number.
+    * @return Shard number.
+    */
+    public static int shardOf(int id, int shardBits) {
+        return shardBits == 0 ? 0 : id >>> (31 - shardBits);
+    }
+
+    /**
+    * Returns the sequence number of an id.
+    *
+    * @param id Seat hold id.
+    * @param shardBits Number of id bits used for the shard number.
+    * @return Sequence number.
+    */
+    public static int sequenceOf(int id, int shardBits) {
+        return id & Integer.MAX_VALUE >>> shardBits;
+    }
+}
@@ -0,0 +1,311 @@
+package com.clementlu.ticketservice.Models;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Concurrent map of seat holds by id, keyed by the primitive {@code int}
+ * id so lookups do not box it.
+ * <p>
+ * Ids are spread over a fixed number of segments. Each segment is an
+ * open addressing table with linear probing that is changed under the
+ * segment's lock and read without one. Holds are published with a
+ * release store after their key, and a reader checks the id of the hold
+ * it found, so a slot that is reused while it is being read is never
+ * mistaken for another id. Removed holds leave a tombstone in place, so
+ * entries never move while a reader probes the table; a new hold takes
+ * the first tombstone on its probe path, and tombstones just before an
+ * empty slot are emptied as well. When the table is half full the
+ * segment builds a new one without tombstones and publishes it through a
+ * volatile field.
+ * <p>
+ * A {@code get} that runs at the same time as a {@code put} or
+ * {@code remove} of the same id may or may not see it, as with
+ * {@code ConcurrentHashMap}.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatHoldMap {
+    private static final int DEFAULT_SEGMENTS = 64;
+    private static final int MIN_CAPACITY = 16;
+    private static final Object TOMBSTONE = new Object();
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int segmentBits;
+
+    public SeatHoldMap() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /**
+    * Creates a map.
+    *
+    * @param concurrency Expected number of threads changing the map at
+    * once, rounded up to a power of two segments.
+    */
+    public SeatHoldMap(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive!");
+        }
+        int numSegments = Integer.highestOneBit(Math.min(concurrency, 1 << 16) * 2 - 1);
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = numSegments - 1;
+        segmentBits = Integer.numberOfTrailingZeros(numSegments);
+    }
+
+    /**
+    * Mixes the bits of an id (the murmur3 finalizer). Ids are handed out
+    * in order, and without mixing a block of long-lived ids would form
+    * one long run that linear probing has to walk.
+    */
+    private static int hash(int id) {
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ h >>> 16;
+    }
+
+    private Segment segmentFor(int hash) {
+        // The low bits pick the segment and the bits above them the slot.
+        return segments[hash & segmentMask];
+    }
+
+    /**
+    * Returns the hold with the given id.
+    *
+    * @param id Seat hold id.
+    * @return Seat hold, or null if there is none.
+    */
+    public SeatHold get(int id) {
+        int hash = hash(id);
+        Table table = segmentFor(hash).table;
+        for (int i = (hash >>> segmentBits) & table.mask; ; i = (i + 1) & table.mask) {
+            Object value = VALUES.getAcquire(table.values, i);
+            if (value == null) {
+                return null;
+            }
+            if (table.keys[i] == id) {
+                if (value == TOMBSTONE) {
+                    return null;
+                }
+                SeatHold seatHold = (SeatHold) value;
+                if (seatHold.getId() == id) {
+                    return seatHold;
+                }
+            }
+        }
+    }
+
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /**
+    * Adds a hold under its id.
+    *
+    * @param seatHold Seat hold.
+    * @return Hold with the same id that was replaced, or null.
+    */
+    public SeatHold put(SeatHold seatHold) {
+        if (seatHold == null) {
+            throw new IllegalArgumentException("Seat hold must not be null!");
+        }
+        int id = seatHold.getId();
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            Table table = segment.table;
+            int free = -1;
+            for (int i = (hash >>> segmentBits) & table.mask; ; i = (i + 1) & table.mask) {
+                Object value = table.values[i];
+                if (value == null) {
+                    if (free < 0) {
+                        free = i;
+                        segment.used++;
+                    }
+                    table.keys[free] = id;
+                    VALUES.setRelease(table.values, free, seatHold);
+                    segment.size++;
+                    if (segment.used > table.values.length >>> 1) {
+                        segment.rebuild(segmentBits);
+                    }
+                    return null;
+                }
+                if (table.keys[i] == id) {
+                    VALUES.setRelease(table.values, i, seatHold);
+                    if (value == TOMBSTONE) {
+                        segment.size++;
+                        return null;
+                    }
+                    return (SeatHold) value;
+                }
+                if (value == TOMBSTONE && free < 0) {
+                    free = i;
+                }
+            }
+        }
+    }
+
+    /**
+    * Removes the hold with the given id.
+    *
+    * @param id Seat hold id.
+    * @return Removed hold, or null if there was none.
+    */
+    public SeatHold remove(int id) {
+        return removeEntry(id, null);
+    }
+
+    /**
+    * Removes {@code seatHold} if it is still the hold under its id.
+    *
+    * @param seatHold Hold to remove.
+    * @return True if the hold was removed.
+    */
+    public boolean remove(SeatHold seatHold) {
+        return seatHold != null && removeEntry(seatHold.getId(), seatHold) != null;
+    }
+
+    /**
+    * Replaces {@code expected} with {@code update} if it is still the
+    * hold under its id. Only one of several threads replacing or removing
+    * the same hold succeeds.
+    *
+    * @param expected Hold that is in the map.
+    * @param update New version of the hold, with the same id.
+    * @return True if the hold was replaced.
+    */
+    public boolean replace(SeatHold expected, SeatHold update) {
+        if (expected == null || update == null || update.getId() != expected.getId()) {
+            throw new IllegalArgumentException("Seat holds must not be null and must have the same id!");
+        }
+        int id = expected.getId();
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            Table table = segment.table;
+            for (int i = (hash >>> segmentBits) & table.mask; ; i = (i + 1) & table.mask) {
+                Object value = table.values[i];
+                if (value == null) {
+                    return false;
+                }
+                if (table.keys[i] == id) {
+                    if (value != expected) {
+                        return false;
+                    }
+                    VALUES.setRelease(table.values, i, update);
+                    return true;
+                }
+            }
+        }
+    }
+
+    private SeatHold removeEntry(int id, SeatHold expected) {
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            Table table = segment.table;
+            for (int i = (hash >>> segmentBits) & table.mask; ; i = (i + 1) & table.mask) {
+                Object value = table.values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (table.keys[i] == id) {
+                    if (value == TOMBSTONE || expected != null && value != expected) {
+                        return null;
+                    }
+                    VALUES.setRelease(table.values, i, TOMBSTONE);
+                    segment.size--;
+                    clearTombstones(segment, table, i);
+                    return (SeatHold) value;
+                }
+            }
+        }
+    }
+
+    /**
+    * Empties the tombstone at {@code i} and the tombstones before it if
+    * the slot after it is empty. A probe that reaches them would stop at
+    * that empty slot anyway, so no entry can be behind them. Called under
+    * the segment lock.
+    */
+    private static void clearTombstones(Segment segment, Table table, int i) {
+        if (table.values[(i + 1) & table.mask] != null) {
+            return;
+        }
+        while (table.values[i] == TOMBSTONE) {
+            VALUES.setRelease(table.values, i, null);
+            segment.used--;
+            i = (i - 1) & table.mask;
+        }
+    }
+
+    /**
+    * Returns the number of holds in the map. The count is exact only
+    * when the map is not being changed.
+    *
+    * @return Number of holds.
+    */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private static final class Table {
+        final int[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        volatile Table table = new Table(MIN_CAPACITY);
+        volatile int size;
+        // Slots in use, including tombstones. Guarded by the segment lock.
+        int used;
+
+        /**
+        * Copies the live entries into a new table at most a quarter full
+        * and publishes it. Called under the segment lock.
+        */
+        void rebuild(int segmentBits) {
+            Table old = table;
+            int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 4 - 1) << 1);
+            Table rebuilt = new Table(capacity);
+            for (int i = 0; i < old.values.length; i++) {
+                Object value = old.values[i];
+                if (value != null && value != TOMBSTONE) {
+                    int j = (hash(old.keys[i]) >>> segmentBits) & rebuilt.mask;
+                    while (rebuilt.values[j] != null) {
+                        j = (j + 1) & rebuilt.mask;
+                    }
+                    rebuilt.keys[j] = old.keys[i];
+                    rebuilt.values[j] = value;
+                }
+            }
+            used = size;
+            table = rebuilt;
+        }
+    }
+}
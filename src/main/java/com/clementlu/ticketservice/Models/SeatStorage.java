@@ -0,0 +1,42 @@
+package com.clementlu.ticketservice.Models;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+
+/**
+ * Backing store for the status of every seat in a {@code Venue}.
+ * <p>
+ * Seats are addressed by their index in "first fit" order, so the seat
+ * at {@code (x, y)} has index {@code y * rows + x}.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public interface SeatStorage {
+    /**
+    * Returns the status of a seat.
+    *
+    * @param index Index of the seat.
+    * @return Status of the seat.
+    */
+    SeatStatus getSeatStatus(int index);
+
+    /**
+    * Changes the status of a seat.
+    *
+    * @param index Index of the seat.
+    * @param status New status of the seat.
+    */
+    void setSeatStatus(int index, SeatStatus status);
+
+    /**
+    * Returns the seat at an index.
+    * <p>
+    * Implementations that do not keep {@code Seat} objects create a new
+    * view of the seat on every call.
+    *
+    * @param index Index of the seat.
+    * @return Seat at {@code index}.
+    */
+    Seat getSeat(int index);
+}
@@ -0,0 +1,53 @@
+package com.clementlu.ticketservice.Models;
+
+/**
+ * Named group of seats of a {@code VenueLayout}, such as "Orchestra" or
+ * "Balcony Left". Every seat of a section has the section's price tier.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class Section {
+    private final int id;
+    private final String name;
+    private final PriceTier priceTier;
+    private int numSeats;
+
+    Section(int id, String name, PriceTier priceTier) {
+        this.id = id;
+        this.name = name;
+        this.priceTier = priceTier;
+    }
+
+    /**
+    * Returns the section's position in its layout, from 0.
+    *
+    * @return Section id.
+    */
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PriceTier getPriceTier() {
+        return priceTier;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    void addSeats(int seats) {
+        numSeats += seats;
+        priceTier.addSeats(seats);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,9 +1,14 @@
 package com.clementlu.ticketservice.Models;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
 import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
 
 /**
@@ -12,65 +17,386 @@ import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
  * @since       1.0
  */
 public class Venue {
+    public static final int MAX_SEATS = Integer.MAX_VALUE - 8;
+    private static final int MAX_ROW_LOCKS = 1024;
+    private static final int GROUP_BY_ROW_THRESHOLD = 256;
+    // Slot of a count delta array that counts the seats that changed.
+    private static final int CHANGED_SEATS = SeatStatus.values().length;
+
     private int totalSeats;
-    private List<List<Seat>> seatMap;
+    private int rows;
+    private int columns;
+    private SeatStorageMode storageMode;
+    private SeatStorage seatStorage;
+    // Seats on HOLD times 2^32 plus RESERVED seats; VACANT is the rest.
+    private AtomicLong seatCounts;
+    private AtomicLong version;
+    private FreeSeatIndex freeSeatIndex;
+    private Object[] rowLocks;
+    private volatile ChangedSeatSet changedSeats;
+
+    // Sections and price tiers, for venues built from a layout.
+    private VenueLayout layout;
+    private int[] seatSections;
+    private int[] sectionTiers;
+    private int[] tierLocalIndexes;
+    private int[][] tierSeats;
+    private FreeSeatIndex[] tierIndexes;
+    private AtomicIntegerArray sectionVacancies;
+    private int numBlockedSeats;
 
     public Venue(int rows, int columns) throws InvalidVenueException {
-        setTotalSeats(rows*columns);
-        initializeSeatMap(rows, columns);
+        this(rows, columns, SeatStorageMode.OBJECT);
+    }
+
+    public Venue(int rows, int columns, SeatStorageMode storageMode) throws InvalidVenueException {
+        setTotalSeats((long) rows*columns);
+        initializeSeatMap(rows, columns, storageMode, null);
+        initializeSeatCounts();
+    }
+
+    /**
+    * Creates a venue whose seats are stored in a memory-mapped file.
+    * Only the seat states are off the heap; the free seat index and
+    * counters are rebuilt on the heap.
+    * <p>
+    * If {@code seatFile} exists, the venue is reopened from it: the
+    * counters and free seat index are rebuilt from the file without
+    * creating any {@code Seat} objects. Holds do not outlive the process
+    * that made them, so seats found on HOLD are made VACANT.
+    *
+    * @param rows Number of seats in each row of the seat map.
+    * @param columns Number of rows of the seat map.
+    * @param seatFile File to map the seats to.
+    * @throws InvalidVenueException If the venue size is invalid or the
+    * seat file cannot be mapped.
+    */
+    public Venue(int rows, int columns, Path seatFile) throws InvalidVenueException {
+        setTotalSeats((long) rows*columns);
+        initializeSeatMap(rows, columns, SeatStorageMode.MAPPED, seatFile);
+        initializeSeatCounts();
+        loadMappedSeats();
+    }
+
+    /**
+    * Creates a venue with the sections and price tiers of a layout.
+    * <p>
+    * The seat map covers the layout's whole grid. Cells that are not
+    * seats, such as aisles and the ends of short rows, are RESERVED from
+    * the start, so they are never held and count as reserved seats; see
+    * {@code getNumBlockedSeats}. Each price tier gets its own free seat
+    * index over just the tier's seats, in "first fit" order, so finding
+    * seats in a tier costs time in proportion to the tier and not to the
+    * venue. The layout cannot be changed once the venue is built.
+    *
+    * @param layout Layout of the venue.
+    * @param storageMode How the seat map is stored; {@code MAPPED} is not
+    * supported, since it needs a seat file.
+    * @throws InvalidVenueException If the seat map cannot be created.
+    */
+    public Venue(VenueLayout layout, SeatStorageMode storageMode) throws InvalidVenueException {
+        setTotalSeats((long) layout.getRows() * layout.getColumns());
+        initializeSeatMap(layout.getRows(), layout.getColumns(), storageMode, null);
+        initializeSeatCounts();
+        initializeLayout(layout);
     }
 
     public int getTotalSeats() {
         return totalSeats;
     }
 
-    private void setTotalSeats(int totalSeats) throws InvalidVenueException {
-        if (totalSeats > 0) {
-            this.totalSeats = totalSeats;
+    private void setTotalSeats(long totalSeats) throws InvalidVenueException {
+        if (totalSeats > MAX_SEATS) {
+            throw new InvalidVenueException("Venue cannot have more than " +
+            MAX_SEATS + " seats!");
+        } else if (totalSeats > 0) {
+            this.totalSeats = (int) totalSeats;
         } else {
             throw new InvalidVenueException("Venue must have at least one seat!");
         } 
     }
 
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public SeatStorageMode getStorageMode() {
+        return storageMode;
+    }
+
     /**
     * Counts number of seats of a certain status.
     * <p>
-    * This method filters each row to include only {@code status} seats. Each
-    * row is then reduced to its size as a single integer. The total number 
-    * of reserved seats in the venue is then the sum of all of the sizes.
+    * The count is read from the seat counters that are kept up to date
+    * by {@code changeSeatStatus}, so this method runs in constant time
+    * and does not walk the seat map.
     *
     * @param status Status to filter the search by.
     * @return Total number of {@code status} seats in the venue.
     */
     public int getNumSeats(SeatStatus status) {
-        return seatMap.stream()
-            .map(x -> (x.stream()
-                .filter(s -> s.getSeatStatus() == status))
-                .collect(Collectors.toList()))
-            .mapToInt(List::size)
-            .sum();
+        long counts = seatCounts.get();
+        int reserved = (int) counts;
+        int held = (int) ((counts - reserved) >> 32);
+        switch (status) {
+            case VACANT:
+                return totalSeats - held - reserved;
+            case HOLD:
+                return held;
+            default:
+                return reserved;
+        }
+    }
+
+    /**
+    * Reads the number of seats of every status at once.
+    * <p>
+    * The counts of all statuses are kept in one atomic word, so they are
+    * read together without a lock and always add up to the total number
+    * of seats, which three calls to {@code getNumSeats} do not promise
+    * while seats are changing. Nothing is allocated.
+    *
+    * @param counts Counts to fill in.
+    * @return {@code counts}.
+    */
+    public SeatCounts readSeatCounts(SeatCounts counts) {
+        long readVersion = version.get();
+        long packed = seatCounts.get();
+        int reserved = (int) packed;
+        int held = (int) ((packed - reserved) >> 32);
+        counts.set(readVersion, totalSeats - held - reserved, held, reserved);
+        return counts;
+    }
+
+    /**
+    * Returns the venue's version, which goes up after every change to
+    * the seats has been applied.
+    * <p>
+    * Readers can cache anything they derive from the venue together with
+    * the version they read before deriving it, and only derive it again
+    * once the version has moved on. The derived value then includes every
+    * change up to that version.
+    *
+    * @return Version of the venue.
+    */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+    * Counts number of seats of a certain status by scanning the seat map.
+    * <p>
+    * This method visits every seat in the venue and is only meant to be
+    * used to check the counters returned by {@code getNumSeats}.
+    *
+    * @param status Status to filter the search by.
+    * @return Total number of {@code status} seats in the venue.
+    */
+    public int countSeats(SeatStatus status) {
+        int count = 0;
+        for (int i = 0; i < totalSeats; i++) {
+            if (seatStorage.getSeatStatus(i) == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+    * Checks the per-status counters and the free seat index against a
+    * full scan of the seat map.
+    * <p>
+    * The result is only meaningful while no seats are being changed.
+    *
+    * @return True if every counter matches the number of seats in the
+    * seat map with that status and the free seat index holds exactly the
+    * vacant seats, with the right count for each row and block of rows,
+    * and the free seat index and vacant count of every price tier and
+    * section agree as well.
+    */
+    public boolean verifySeatCounts() {
+        for (SeatStatus status : SeatStatus.values()) {
+            if (getNumSeats(status) != countSeats(status)) {
+                return false;
+            }
+        }
+        for (int y = 0; y < columns; y++) {
+            int vacant = 0;
+            for (int x = 0; x < rows; x++) {
+                boolean isVacant = getSeatStatus(x, y) == SeatStatus.VACANT;
+                if (isVacant != freeSeatIndex.isVacant(y * rows + x)) {
+                    return false;
+                }
+                vacant += isVacant ? 1 : 0;
+            }
+            if (vacant != freeSeatIndex.getVacantSeats(y)) {
+                return false;
+            }
+        }
+        if (freeSeatIndex.getVacantSeats(0, columns) != getNumSeats(SeatStatus.VACANT)) {
+            return false;
+        }
+        return layout == null || verifyLayoutIndexes();
+    }
+
+    private boolean verifyLayoutIndexes() {
+        int[] sectionVacant = new int[sectionTiers.length];
+        for (int tier = 0; tier < tierSeats.length; tier++) {
+            int vacant = 0;
+            for (int local = 0; local < tierSeats[tier].length; local++) {
+                int index = tierSeats[tier][local];
+                boolean isVacant = seatStorage.getSeatStatus(index) == SeatStatus.VACANT;
+                if (isVacant != tierIndexes[tier].isVacant(local)) {
+                    return false;
+                }
+                if (isVacant) {
+                    vacant++;
+                    sectionVacant[seatSections[index]]++;
+                }
+            }
+            if (vacant != tierIndexes[tier].getVacantSeats(0)) {
+                return false;
+            }
+        }
+        for (int section = 0; section < sectionVacant.length; section++) {
+            if (sectionVacant[section] != sectionVacancies.get(section)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * Initializes the per-status seat counters and the free seat index.
+    * <p>
+    * Every seat in a new venue is vacant.
+    */
+    private void initializeSeatCounts() {
+        seatCounts = new AtomicLong();
+        version = new AtomicLong();
+        freeSeatIndex = new FreeSeatIndex(rows, columns);
+    }
+
+    /**
+    * Blocks the cells of the layout that are not seats and builds the
+    * free seat index of each price tier. A tier's seats are numbered in
+    * the order of their venue index.
+    */
+    private void initializeLayout(VenueLayout layout) {
+        this.layout = layout;
+        seatSections = layout.freeze();
+        List<Section> sections = layout.getSections();
+        List<PriceTier> priceTiers = layout.getPriceTiers();
+        sectionTiers = new int[sections.size()];
+        sectionVacancies = new AtomicIntegerArray(sections.size());
+        for (Section section : sections) {
+            sectionTiers[section.getId()] = section.getPriceTier().getId();
+            sectionVacancies.set(section.getId(), section.getNumSeats());
+        }
+        tierSeats = new int[priceTiers.size()][];
+        for (PriceTier tier : priceTiers) {
+            tierSeats[tier.getId()] = new int[tier.getNumSeats()];
+        }
+        int[] tierSizes = new int[priceTiers.size()];
+        tierLocalIndexes = new int[totalSeats];
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        for (int index = 0; index < totalSeats; index++) {
+            int section = seatSections[index];
+            if (section == VenueLayout.NOT_A_SEAT) {
+                setSeatStatus(index, SeatStatus.RESERVED, countDeltas);
+                numBlockedSeats++;
+            } else {
+                int tier = sectionTiers[section];
+                tierLocalIndexes[index] = tierSizes[tier];
+                tierSeats[tier][tierSizes[tier]++] = index;
+            }
+        }
+        applyCountDeltas(countDeltas);
+        FreeSeatIndex[] indexes = new FreeSeatIndex[priceTiers.size()];
+        for (int tier = 0; tier < indexes.length; tier++) {
+            indexes[tier] = new FreeSeatIndex(tierSeats[tier].length, 1);
+        }
+        tierIndexes = indexes;
+    }
+
+    /**
+    * Brings the counters and free seat index in line with the seats of a
+    * reopened seat file, and releases the seats that were on HOLD.
+    */
+    private void loadMappedSeats() {
+        MappedSeatStorage mapped = (MappedSeatStorage) seatStorage;
+        if (!mapped.isExisting()) {
+            return;
+        }
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        for (int index = mapped.nextOccupied(0); index >= 0; index = mapped.nextOccupied(index + 1)) {
+            SeatStatus status = mapped.getSeatStatus(index);
+            if (status == SeatStatus.HOLD) {
+                mapped.setSeatStatus(index, SeatStatus.VACANT);
+            } else {
+                countDeltas[SeatStatus.VACANT.ordinal()]--;
+                countDeltas[status.ordinal()]++;
+                countDeltas[CHANGED_SEATS]++;
+                freeSeatIndex.clearVacant(index);
+            }
+        }
+        applyCountDeltas(countDeltas);
+    }
+
+    /**
+    * Writes the seats of a {@code MAPPED} venue to its seat file. Does
+    * nothing in the other modes.
+    */
+    public void force() {
+        if (seatStorage instanceof MappedSeatStorage) {
+            ((MappedSeatStorage) seatStorage).force();
+        }
     }
 
     /**
     * Initializes SeatMap object.
     * <p>
     * Given the number of rows and columns in a venue, this method
-    * will initialize the seat map with new, vacant {@code Seats}.
+    * will initialize the seat map with new, vacant {@code Seats}. In
+    * {@code PACKED} mode the seat map is a primitive array and in
+    * {@code MAPPED} mode it is {@code seatFile} mapped into memory, so no
+    * {@code Seat} objects are created.
     * <p>
     * This method will throw a {@code InvalidVenueException} if given a row
     * or column number that is non-positive.
     *
     * @param  row Number of rows in venue.
     * @param  columns Number of columns in venue.
+    * @param  storageMode How the seat map is stored.
+    * @param  seatFile File holding the seat map in {@code MAPPED} mode.
     */
-    private void initializeSeatMap(int rows, int columns) throws InvalidVenueException {
+    private void initializeSeatMap(int rows, int columns, SeatStorageMode storageMode,
+            Path seatFile) throws InvalidVenueException {
         if (rows > 0 && columns > 0) {
-            seatMap = new CopyOnWriteArrayList<List<Seat>>();
-            for (int y = 0; y < columns; y++) {
-                seatMap.add(new CopyOnWriteArrayList<Seat>());
-                for (int x = 0; x < rows; x++) {
-                    seatMap.get(y).add(new Seat(x,y));
+            this.rows = rows;
+            this.columns = columns;
+            this.storageMode = storageMode;
+            rowLocks = new Object[Math.min(columns, MAX_ROW_LOCKS)];
+            for (int i = 0; i < rowLocks.length; i++) {
+                rowLocks[i] = new Object();
+            }
+            if (storageMode == SeatStorageMode.MAPPED) {
+                if (seatFile == null) {
+                    throw new InvalidVenueException("A MAPPED venue needs a seat file!");
                 }
+                try {
+                    seatStorage = new MappedSeatStorage(seatFile, rows, columns);
+                } catch (IOException e) {
+                    throw new InvalidVenueException("Cannot map seat file " + seatFile + "!", e);
+                }
+            } else if (storageMode == SeatStorageMode.PACKED) {
+                seatStorage = new PackedSeatStorage(rows, columns);
+            } else {
+                seatStorage = new ObjectSeatStorage(rows, columns);
             }
         } else {
             throw new InvalidVenueException("Seat map must have a positive number of" +
@@ -78,27 +404,628 @@ public class Venue {
         }
     }
 
+    /**
+    * Returns the seat map.
+    * <p>
+    * In {@code OBJECT} mode this is the live seat map. In {@code PACKED}
+    * mode a snapshot of {@code Seat} views is built on every call, so
+    * callers on a hot path should use {@code getSeatStatus} instead.
+    *
+    * @return Seat map with one list of seats per row.
+    */
     public List<List<Seat>> getSeatMap() {
+        if (seatStorage instanceof ObjectSeatStorage) {
+            return ((ObjectSeatStorage) seatStorage).getSeatMap();
+        }
+        List<List<Seat>> seatMap = new ArrayList<List<Seat>>(columns);
+        for (int y = 0; y < columns; y++) {
+            List<Seat> row = new ArrayList<Seat>(rows);
+            for (int x = 0; x < rows; x++) {
+                row.add(getSeat(x, y));
+            }
+            seatMap.add(row);
+        }
         return seatMap;
     };
 
+    public SeatStatus getSeatStatus(int x, int y) {
+        return seatStorage.getSeatStatus(y * rows + x);
+    }
+
+    public Seat getSeat(int x, int y) {
+        return seatStorage.getSeat(y * rows + x);
+    }
+
+    public Seat getSeat(int index) {
+        return seatStorage.getSeat(index);
+    }
+
+    public SeatStatus getSeatStatus(int index) {
+        return seatStorage.getSeatStatus(index);
+    }
+
+    /**
+    * Returns the index of a seat, where the seat at {@code (x, y)} has
+    * index {@code y * rows + x}.
+    *
+    * @param seat Seat of this venue.
+    * @return Index of the seat.
+    */
+    public int getSeatIndex(Seat seat) {
+        return (int) seat.getSeatNo().getY() * rows + (int) seat.getSeatNo().getX();
+    }
+
+    /**
+    * Returns the number of vacant seats in a row.
+    *
+    * @param y Row of the seat map.
+    * @return Number of vacant seats in row {@code y}.
+    */
+    public int getNumVacantSeats(int y) {
+        return freeSeatIndex.getVacantSeats(y);
+    }
+
+    /**
+    * Returns the number of vacant seats in a range of rows, such as a
+    * section of the venue.
+    * <p>
+    * The count is read from the free seat index's per-block and per-row
+    * counts without a lock.
+    *
+    * @param fromRow First row of the range.
+    * @param toRow Row after the last row of the range.
+    * @return Number of vacant seats in rows {@code fromRow} to
+    * {@code toRow - 1}.
+    */
+    public int getNumVacantSeats(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > columns || fromRow > toRow) {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow
+                + " are outside the venue!");
+        }
+        return freeSeatIndex.getVacantSeats(fromRow, toRow);
+    }
+
+    /**
+    * Returns a row's version, which changes every time a seat of the row
+    * becomes vacant or taken. Readers can use it to cache per-row data.
+    *
+    * @param y Row of the seat map.
+    * @return Version of row {@code y}.
+    */
+    public int getRowVersion(int y) {
+        return freeSeatIndex.getRowVersion(y);
+    }
+
+    /**
+    * Returns the layout the venue was built from.
+    *
+    * @return Layout, or null for a plain rectangular venue.
+    */
+    public VenueLayout getLayout() {
+        return layout;
+    }
+
+    /**
+    * Returns the number of cells of the layout that are not seats. They
+    * are RESERVED, so they are counted by {@code getNumSeats(RESERVED)}.
+    *
+    * @return Number of blocked cells, 0 for a rectangular venue.
+    */
+    public int getNumBlockedSeats() {
+        return numBlockedSeats;
+    }
+
+    /**
+    * Returns the section of a seat.
+    *
+    * @param index Index of the seat.
+    * @return Section of the seat, or null if the venue has no layout or
+    * the cell is not a seat.
+    */
+    public Section getSection(int index) {
+        return layout == null ? null : layout.getSection(index);
+    }
+
+    /**
+    * Returns the number of vacant seats of a price tier, in constant time.
+    *
+    * @param tier Price tier of the venue's layout.
+    * @return Number of vacant seats in the tier.
+    */
+    public int getNumVacantSeats(PriceTier tier) {
+        return tierIndex(tier).getVacantSeats(0);
+    }
+
+    /**
+    * Returns the number of vacant seats of a section, in constant time.
+    *
+    * @param section Section of the venue's layout.
+    * @return Number of vacant seats in the section.
+    */
+    public int getNumVacantSeats(Section section) {
+        if (layout == null || section.getId() >= sectionTiers.length
+                || layout.getSections().get(section.getId()) != section) {
+            throw new IllegalArgumentException("Section " + section + " is not in this venue!");
+        }
+        return sectionVacancies.get(section.getId());
+    }
+
+    private FreeSeatIndex tierIndex(PriceTier tier) {
+        if (layout == null || tier.getId() >= tierIndexes.length
+                || layout.getPriceTiers().get(tier.getId()) != tier) {
+            throw new IllegalArgumentException("Price tier " + tier + " is not in this venue!");
+        }
+        return tierIndexes[tier.getId()];
+    }
+
+    /**
+    * Finds the best vacant seats of a price tier and holds them.
+    * <p>
+    * Works like {@code holdSeats(int)} within the tier: seats are claimed
+    * in "first fit" order of the tier's seats, one row at a time under
+    * that row's lock, and the party may be split across rows. Vacant
+    * seats are found through the tier's own free seat index, so other
+    * tiers are never looked at.
+    *
+    * @param numSeats Number of seats to hold.
+    * @param tier Price tier of the venue's layout.
+    * @return List of held seats, or null if the tier does not have enough
+    * vacant seats.
+    */
+    public List<Seat> holdSeats(int numSeats, PriceTier tier) {
+        FreeSeatIndex tierIndex = tierIndex(tier);
+        if (numSeats <= 0 || numSeats > tierIndex.getVacantSeats(0)) {
+            return null;
+        }
+        int[] seats = tierSeats[tier.getId()];
+        int[] claimed = new int[numSeats];
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        int count = 0;
+        int local = tierIndex.nextVacant(0);
+        while (local >= 0 && count < numSeats) {
+            int y = seats[local] / rows;
+            synchronized (rowLock(y)) {
+                while (local >= 0 && count < numSeats && seats[local] / rows == y) {
+                    int index = seats[local];
+                    if (seatStorage.getSeatStatus(index) == SeatStatus.VACANT) {
+                        setSeatStatus(index, SeatStatus.HOLD, countDeltas);
+                        claimed[count++] = index;
+                    }
+                    local = tierIndex.nextVacant(local + 1);
+                }
+            }
+        }
+        if (count < numSeats) {
+            releaseClaimed(claimed, 0, count, countDeltas);
+            applyCountDeltas(countDeltas);
+            return null;
+        }
+        applyCountDeltas(countDeltas);
+        return toSeats(claimed, 0, numSeats);
+    }
+
+    /**
+    * Finds the next vacant seat in "first fit" order.
+    * <p>
+    * The search uses the free seat index, so full rows are skipped and
+    * the next vacant seat is found in O(log n).
+    *
+    * @param fromIndex Index to start searching from, where the seat at
+    * {@code (x, y)} has index {@code y * rows + x}.
+    * @return Index of the next vacant seat, or -1 if there is none.
+    */
+    public int nextVacantSeat(int fromIndex) {
+        return freeSeatIndex.nextVacant(fromIndex);
+    }
+
+    /**
+    * Finds the next seat that is not vacant.
+    *
+    * @param fromIndex Index to start searching from.
+    * @param toIndex Index to stop searching at.
+    * @return Index of the next seat that is held or reserved, or
+    * {@code toIndex} if every seat before it is vacant.
+    */
+    public int nextOccupiedSeat(int fromIndex, int toIndex) {
+        return freeSeatIndex.nextOccupied(fromIndex, toIndex);
+    }
+
+    /**
+    * Returns the longest run of vacant seats in a row.
+    * <p>
+    * The value is cached per row and only recomputed after the row has
+    * changed, so rows that cannot fit a block of seats can be skipped
+    * without looking at their seats.
+    *
+    * @param y Row of the seat map.
+    * @return Number of seats in the longest run of vacant seats.
+    */
+    public int getMaxFreeRun(int y) {
+        return freeSeatIndex.getMaxFreeRun(y);
+    }
+
+    /**
+    * Finds the best vacant seats and holds them.
+    * <p>
+    * Seats are claimed in "first fit" order, one row at a time under that
+    * row's lock, so concurrent callers never hold the same seat and
+    * callers working on different rows do not block each other. If fewer
+    * than {@code numSeats} seats can be claimed, the seats claimed so far
+    * are made vacant again and no seats are held.
+    *
+    * @param numSeats Number of seats to hold.
+    * @return List of held seats, or null if not enough seats are vacant.
+    */
+    public List<Seat> holdSeats(int numSeats) {
+        int[] claimed = new int[numSeats];
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        int count = claimFirstFit(claimed, numSeats, countDeltas);
+        if (count < numSeats) {
+            releaseClaimed(claimed, 0, count, countDeltas);
+            applyCountDeltas(countDeltas);
+            return null;
+        }
+        applyCountDeltas(countDeltas);
+        return toSeats(claimed, 0, numSeats);
+    }
+
+    /**
+    * Finds and holds seats for several requests in one pass.
+    * <p>
+    * Requests are served in order, each one getting the next vacant seats
+    * in "first fit" order, exactly as if {@code holdSeats} had been
+    * called once per request. The seat map is walked once for the whole
+    * batch and the per-status counters are updated once at the end. A
+    * request that cannot be filled gets no seats, and later requests are
+    * still served if enough seats are left for them.
+    *
+    * @param numSeats Number of seats wanted by each request.
+    * @return Held seats for each request, with null for requests that
+    * could not be filled.
+    */
+    public List<List<Seat>> holdSeatsBatch(int[] numSeats) {
+        int available = getNumSeats(SeatStatus.VACANT);
+        int total = 0;
+        for (int n : numSeats) {
+            if (n > 0 && n <= available - total) {
+                total += n;
+            }
+        }
+        int[] claimed = new int[total];
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        int count = claimFirstFit(claimed, total, countDeltas);
+
+        List<List<Seat>> results = new ArrayList<List<Seat>>(numSeats.length);
+        int cursor = 0;
+        total = 0;
+        for (int n : numSeats) {
+            if (n > 0 && n <= available - total) {
+                total += n;
+                if (cursor + n <= count) {
+                    results.add(toSeats(claimed, cursor, n));
+                    cursor += n;
+                    continue;
+                }
+            }
+            results.add(null);
+        }
+        releaseClaimed(claimed, cursor, count, countDeltas);
+        applyCountDeltas(countDeltas);
+        return results;
+    }
+
+    /**
+    * Claims up to {@code numSeats} vacant seats in "first fit" order, one
+    * row at a time under that row's lock.
+    *
+    * @return Number of seats claimed into {@code claimed}.
+    */
+    private int claimFirstFit(int[] claimed, int numSeats, int[] countDeltas) {
+        int count = 0;
+        int index = freeSeatIndex.nextVacant(0);
+        while (index >= 0 && count < numSeats) {
+            int y = index / rows;
+            int rowEnd = (y + 1) * rows;
+            synchronized (rowLock(y)) {
+                while (index >= 0 && index < rowEnd && count < numSeats) {
+                    if (seatStorage.getSeatStatus(index) == SeatStatus.VACANT) {
+                        setSeatStatus(index, SeatStatus.HOLD, countDeltas);
+                        claimed[count++] = index;
+                    }
+                    index = freeSeatIndex.nextVacant(index + 1);
+                }
+            }
+        }
+        return count;
+    }
+
+    private List<Seat> toSeats(int[] seatIndexes, int from, int count) {
+        List<Seat> seatList = new ArrayList<Seat>(count);
+        for (int i = from; i < from + count; i++) {
+            seatList.add(seatStorage.getSeat(seatIndexes[i]));
+        }
+        return seatList;
+    }
+
+    /**
+    * Holds a given set of seats if all of them are vacant.
+    * <p>
+    * Seats are claimed one at a time under their row's lock. If any seat
+    * is no longer vacant, the seats claimed so far are made vacant again
+    * and no seats are held.
+    *
+    * @param seatIndexes Indexes of the seats to hold.
+    * @return List of held seats, or null if any seat was not vacant.
+    */
+    public List<Seat> claimSeats(int[] seatIndexes) {
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        for (int i = 0; i < seatIndexes.length; i++) {
+            int index = seatIndexes[i];
+            synchronized (rowLock(index / rows)) {
+                if (seatStorage.getSeatStatus(index) != SeatStatus.VACANT) {
+                    releaseClaimed(seatIndexes, 0, i, countDeltas);
+                    applyCountDeltas(countDeltas);
+                    return null;
+                }
+                setSeatStatus(index, SeatStatus.HOLD, countDeltas);
+            }
+        }
+        applyCountDeltas(countDeltas);
+        return toSeats(seatIndexes, 0, seatIndexes.length);
+    }
+
+    private void releaseClaimed(int[] claimed, int from, int to, int[] countDeltas) {
+        for (int i = from; i < to; i++) {
+            synchronized (rowLock(claimed[i] / rows)) {
+                setSeatStatus(claimed[i], SeatStatus.VACANT, countDeltas);
+            }
+        }
+    }
+
     /**
     * Changes the status of each seat in a list to {@code status}
+    * <p>
+    * Each seat is changed under its row's lock, together with the free
+    * seat index used by {@code nextVacantSeat}. The per-status counters
+    * are updated once for the whole list, so {@code getNumSeats} agrees
+    * with the seats themselves once the call returns. Each {@code Seat} in
+    * {@code seatList} is updated as well, under the row's lock, so views
+    * handed out in {@code PACKED} mode show the new status.
     *
     * @param seatList List of seats to change.
     * @param status Changes seat to this status.
     * @return List of seats.
     */
     public List<Seat> changeSeatStatus(List<Seat> seatList, SeatStatus status) {
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
         for (Seat seat : seatList) {
             int x = (int) seat.getSeatNo().getX();
             int y = (int) seat.getSeatNo().getY();
 
-            seatMap.get(y)
-                .get(x)
-                .setSeatStatus(status);
+            synchronized (rowLock(y)) {
+                setSeatStatus(y * rows + x, status, countDeltas);
+                // In OBJECT mode the seat may be the stored one, already
+                // changed; writing it outside the lock could undo another
+                // thread's change.
+                if (storageMode != SeatStorageMode.OBJECT) {
+                    seat.setSeatStatus(status);
+                }
+            }
         }
+        applyCountDeltas(countDeltas);
         return seatList;
     }
 
+    /**
+    * Changes the status of each seat in an array of seat indexes to
+    * {@code status}.
+    * <p>
+    * Works like {@code changeSeatStatus(List, SeatStatus)} without
+    * building a {@code Seat} for each index, which is what restoring a
+    * venue from disk needs.
+    *
+    * @param seatIndexes Indexes of the seats to change.
+    * @param count Number of indexes in {@code seatIndexes} to use.
+    * @param status Changes seat to this status.
+    */
+    public void changeSeatStatus(int[] seatIndexes, int count, SeatStatus status) {
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        for (int i = 0; i < count; i++) {
+            int index = seatIndexes[i];
+            synchronized (rowLock(index / rows)) {
+                setSeatStatus(index, status, countDeltas);
+            }
+        }
+        applyCountDeltas(countDeltas);
+    }
+
+    /**
+    * Changes many seats to VACANT at once, as a sweep of expired holds
+    * does.
+    * <p>
+    * The indexes are grouped by row so that each row is locked once, and
+    * the released seats of a row are merged into the free seat index a
+    * word at a time with the row's vacancy count updated once. The seat
+    * counters are updated once for the whole call. Large batches are
+    * grouped with a counting sort by row, which is linear in the number
+    * of seats and rows; seats released together come from holds made in
+    * several streams, which a comparison sort handles poorly.
+    *
+    * @param seatIndexes Indexes of the seats to release. The array is
+    * used as scratch space, so its contents are changed.
+    * @param count Number of indexes in {@code seatIndexes} to use.
+    * @return Number of seats that were not already VACANT.
+    */
+    public int releaseSeats(int[] seatIndexes, int count) {
+        groupByRow(seatIndexes, count);
+        int[] countDeltas = new int[CHANGED_SEATS + 1];
+        long[] masks = new long[rows / Long.SIZE + 2];
+        int released = 0;
+        int i = 0;
+        while (i < count) {
+            int y = seatIndexes[i] / rows;
+            int firstWord = (y * rows) >>> 6;
+            int numMasks = ((y * rows + rows - 1) >>> 6) - firstWord + 1;
+            Arrays.fill(masks, 0, numMasks, 0L);
+            synchronized (rowLock(y)) {
+                // Keep the seats of the row that change at the front of
+                // the row's part of the array.
+                int changed = i;
+                int end = i;
+                for (; end < count && seatIndexes[end] / rows == y; end++) {
+                    int index = seatIndexes[end];
+                    SeatStatus previous = seatStorage.getSeatStatus(index);
+                    if (previous != SeatStatus.VACANT) {
+                        seatStorage.setSeatStatus(index, SeatStatus.VACANT);
+                        countDeltas[previous.ordinal()]--;
+                        masks[(index >>> 6) - firstWord] |= 1L << index;
+                        seatIndexes[changed++] = index;
+                    }
+                }
+                freeSeatIndex.setVacant(y, firstWord, masks, numMasks);
+                if (tierIndexes != null) {
+                    for (int j = i; j < changed; j++) {
+                        updateTierIndex(seatIndexes[j], true);
+                    }
+                }
+                ChangedSeatSet changes = changedSeats;
+                if (changes != null) {
+                    for (int j = i; j < changed; j++) {
+                        changes.mark(seatIndexes[j]);
+                    }
+                }
+                released += changed - i;
+                i = end;
+            }
+        }
+        countDeltas[SeatStatus.VACANT.ordinal()] += released;
+        countDeltas[CHANGED_SEATS] += released;
+        applyCountDeltas(countDeltas);
+        return released;
+    }
+
+    private void groupByRow(int[] seatIndexes, int count) {
+        if (count < GROUP_BY_ROW_THRESHOLD) {
+            Arrays.sort(seatIndexes, 0, count);
+            return;
+        }
+        // After the second pass rowEnds[y] is the end of row y's seats.
+        int[] rowEnds = new int[columns];
+        for (int i = 0; i < count; i++) {
+            rowEnds[seatIndexes[i] / rows]++;
+        }
+        int start = 0;
+        for (int y = 0; y < columns; y++) {
+            int seats = rowEnds[y];
+            rowEnds[y] = start;
+            start += seats;
+        }
+        int[] grouped = new int[count];
+        for (int i = 0; i < count; i++) {
+            grouped[rowEnds[seatIndexes[i] / rows]++] = seatIndexes[i];
+        }
+        System.arraycopy(grouped, 0, seatIndexes, 0, count);
+    }
+
+    /**
+    * Starts recording which seats change status.
+    * <p>
+    * Every seat changed from now on is marked in the returned set, after
+    * its new status is written, until {@code stopTrackingChanges} is
+    * called. Only one set can track a venue at a time.
+    *
+    * @return Set of changed seats.
+    * @throws IllegalStateException If the venue is already tracked.
+    */
+    public synchronized ChangedSeatSet trackChanges() {
+        if (changedSeats != null) {
+            throw new IllegalStateException("Venue changes are already tracked!");
+        }
+        changedSeats = new ChangedSeatSet(totalSeats);
+        return changedSeats;
+    }
+
+    /**
+    * Stops recording changes into {@code changes} if it is the set that
+    * tracks the venue.
+    *
+    * @param changes Set returned by {@code trackChanges}.
+    */
+    public synchronized void stopTrackingChanges(ChangedSeatSet changes) {
+        if (changedSeats == changes) {
+            changedSeats = null;
+        }
+    }
+
+    private Object rowLock(int y) {
+        return rowLocks[y % rowLocks.length];
+    }
+
+    /**
+    * Changes the status of one seat. Must be called with the seat's row
+    * lock held.
+    * <p>
+    * The change to the per-status counters is added to
+    * {@code countDeltas}, so that a caller changing many seats can update
+    * the counters once with {@code applyCountDeltas}.
+    */
+    private void setSeatStatus(int index, SeatStatus status, int[] countDeltas) {
+        SeatStatus previous = seatStorage.getSeatStatus(index);
+        if (previous != status) {
+            seatStorage.setSeatStatus(index, status);
+            countDeltas[previous.ordinal()]--;
+            countDeltas[status.ordinal()]++;
+            countDeltas[CHANGED_SEATS]++;
+            if (status == SeatStatus.VACANT) {
+                freeSeatIndex.setVacant(index);
+            } else {
+                freeSeatIndex.clearVacant(index);
+            }
+            if (tierIndexes != null && (previous == SeatStatus.VACANT || status == SeatStatus.VACANT)) {
+                updateTierIndex(index, status == SeatStatus.VACANT);
+            }
+            ChangedSeatSet changes = changedSeats;
+            if (changes != null) {
+                changes.mark(index);
+            }
+        }
+    }
+
+    /**
+    * Marks a seat vacant or taken in its price tier's free seat index and
+    * its section's vacant count. Must be called with the seat's row lock
+    * held, and only when the seat becomes vacant or stops being vacant.
+    */
+    private void updateTierIndex(int index, boolean vacant) {
+        int section = seatSections[index];
+        if (section == VenueLayout.NOT_A_SEAT) {
+            return;
+        }
+        FreeSeatIndex tierIndex = tierIndexes[sectionTiers[section]];
+        if (vacant) {
+            tierIndex.setVacant(tierLocalIndexes[index]);
+            sectionVacancies.incrementAndGet(section);
+        } else {
+            tierIndex.clearVacant(tierLocalIndexes[index]);
+            sectionVacancies.decrementAndGet(section);
+        }
+    }
+
+    /**
+    * Adds the changes in {@code countDeltas} to the seat counters with
+    * one atomic add and moves the venue's version on if any seat changed,
+    * even when the changes cancel out. VACANT seats are not counted,
+    * since they are whatever is left.
+    */
+    private void applyCountDeltas(int[] countDeltas) {
+        long delta = ((long) countDeltas[SeatStatus.HOLD.ordinal()] << 32)
+            + countDeltas[SeatStatus.RESERVED.ordinal()];
+        if (delta != 0) {
+            seatCounts.addAndGet(delta);
+        }
+        if (countDeltas[CHANGED_SEATS] != 0) {
+            version.incrementAndGet();
+        }
+    }
+
 }
\ No newline at end of file
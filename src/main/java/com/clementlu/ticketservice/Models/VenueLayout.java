@@ -0,0 +1,213 @@
+package com.clementlu.ticketservice.Models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seating plan of a venue with named sections and price tiers.
+ * <p>
+ * The plan is drawn on a grid of {@code rows} seats across and
+ * {@code columns} rows deep, the same coordinates a {@code Venue} uses.
+ * Seats are added to a section one row segment or block at a time, so
+ * rows can have different lengths and start at different places, and
+ * the cells left out, such as aisles, are not seats at all. A venue
+ * built from the layout never sells those cells.
+ * <p>
+ * A layout can be changed until a venue is built from it.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class VenueLayout {
+    public static final int NOT_A_SEAT = -1;
+
+    private final int rows;
+    private final int columns;
+    private final int[] seatSections;
+    private final List<PriceTier> priceTiers = new ArrayList<PriceTier>();
+    private final List<Section> sections = new ArrayList<Section>();
+    private final Map<String, PriceTier> priceTiersByName = new HashMap<String, PriceTier>();
+    private final Map<String, Section> sectionsByName = new HashMap<String, Section>();
+    private int numSeats;
+    private boolean frozen;
+
+    /**
+    * Creates a layout with no seats.
+    *
+    * @param rows Number of seats across the widest row.
+    * @param columns Number of rows.
+    * @throws IllegalArgumentException If the grid is empty or larger than
+    * {@code Venue.MAX_SEATS}.
+    */
+    public VenueLayout(int rows, int columns) {
+        if (rows <= 0 || columns <= 0 || (long) rows * columns > Venue.MAX_SEATS) {
+            throw new IllegalArgumentException("Layout must have between 1 and " + Venue.MAX_SEATS
+                + " cells!");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        seatSections = new int[rows * columns];
+        Arrays.fill(seatSections, NOT_A_SEAT);
+    }
+
+    /**
+    * Adds a price tier.
+    *
+    * @param name Unique name of the tier.
+    * @param price Price of a seat, in the smallest unit of the currency.
+    * @return The new tier.
+    */
+    public PriceTier addPriceTier(String name, long price) {
+        checkNotFrozen();
+        if (name == null || priceTiersByName.containsKey(name) || price < 0) {
+            throw new IllegalArgumentException("Price tier " + name + " is taken or has a negative price!");
+        }
+        PriceTier tier = new PriceTier(priceTiers.size(), name, price);
+        priceTiers.add(tier);
+        priceTiersByName.put(name, tier);
+        return tier;
+    }
+
+    /**
+    * Adds a section with no seats yet.
+    *
+    * @param name Unique name of the section.
+    * @param priceTier Tier of the section's seats, from this layout.
+    * @return The new section.
+    */
+    public Section addSection(String name, PriceTier priceTier) {
+        checkNotFrozen();
+        if (name == null || sectionsByName.containsKey(name)) {
+            throw new IllegalArgumentException("Section " + name + " is taken!");
+        }
+        if (priceTier == null || priceTier.getId() >= priceTiers.size()
+                || priceTiers.get(priceTier.getId()) != priceTier) {
+            throw new IllegalArgumentException("Price tier " + priceTier + " is not in this layout!");
+        }
+        Section section = new Section(sections.size(), name, priceTier);
+        sections.add(section);
+        sectionsByName.put(name, section);
+        return section;
+    }
+
+    /**
+    * Adds a segment of one row to a section.
+    *
+    * @param section Section from this layout.
+    * @param y Row of the segment.
+    * @param fromX First seat of the segment.
+    * @param toX Seat after the last seat of the segment.
+    * @return This layout.
+    * @throws IllegalArgumentException If the segment is outside the grid
+    * or has a seat that is already in a section.
+    */
+    public VenueLayout addSeats(Section section, int y, int fromX, int toX) {
+        return addSeats(section, y, y + 1, fromX, toX);
+    }
+
+    /**
+    * Adds a block of seats to a section.
+    *
+    * @param section Section from this layout.
+    * @param fromY First row of the block.
+    * @param toY Row after the last row of the block.
+    * @param fromX First seat of each row of the block.
+    * @param toX Seat after the last seat of each row of the block.
+    * @return This layout.
+    * @throws IllegalArgumentException If the block is outside the grid or
+    * has a seat that is already in a section.
+    */
+    public VenueLayout addSeats(Section section, int fromY, int toY, int fromX, int toX) {
+        checkNotFrozen();
+        if (section == null || section.getId() >= sections.size()
+                || sections.get(section.getId()) != section) {
+            throw new IllegalArgumentException("Section " + section + " is not in this layout!");
+        }
+        if (fromY < 0 || toY > columns || fromY >= toY || fromX < 0 || toX > rows || fromX >= toX) {
+            throw new IllegalArgumentException("Seats (" + fromX + ".." + toX + ", " + fromY + ".." + toY
+                + ") are outside the layout!");
+        }
+        for (int y = fromY; y < toY; y++) {
+            for (int x = fromX; x < toX; x++) {
+                int taken = seatSections[y * rows + x];
+                if (taken != NOT_A_SEAT) {
+                    throw new IllegalArgumentException("Seat (" + x + ", " + y + ") is already in section "
+                        + sections.get(taken) + "!");
+                }
+            }
+        }
+        for (int y = fromY; y < toY; y++) {
+            Arrays.fill(seatSections, y * rows + fromX, y * rows + toX, section.getId());
+        }
+        int seats = (toY - fromY) * (toX - fromX);
+        section.addSeats(seats);
+        numSeats += seats;
+        return this;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Layout is in use by a venue!");
+        }
+    }
+
+    /**
+    * Stops the layout from changing, once a venue is built from it.
+    *
+    * @return Section of each cell of the grid, or {@code NOT_A_SEAT}.
+    */
+    int[] freeze() {
+        frozen = true;
+        return seatSections;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+    * Returns the number of seats in all sections.
+    *
+    * @return Number of seats, which does not count cells that are not
+    * seats.
+    */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public List<PriceTier> getPriceTiers() {
+        return Collections.unmodifiableList(priceTiers);
+    }
+
+    public List<Section> getSections() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    public PriceTier getPriceTier(String name) {
+        return priceTiersByName.get(name);
+    }
+
+    public Section getSection(String name) {
+        return sectionsByName.get(name);
+    }
+
+    /**
+    * Returns the section of a cell of the grid.
+    *
+    * @param index Index of the cell, {@code y * rows + x}.
+    * @return Section of the seat, or null if the cell is not a seat.
+    */
+    public Section getSection(int index) {
+        int section = seatSections[index];
+        return section == NOT_A_SEAT ? null : sections.get(section);
+    }
+}
@@ -0,0 +1,34 @@
+package com.clementlu.ticketservice;
+
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Creates the venue of a performance when a {@code PerformanceRegistry}
+ * first needs it, and takes it back when the performance is evicted.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public interface PerformanceLoader {
+    /**
+    * Loads the venue of a performance.
+    *
+    * @param performanceId Id of the performance.
+    * @return Venue with the performance's current seat state.
+    * @throws InvalidVenueException If the performance does not exist.
+    */
+    Venue load(String performanceId) throws InvalidVenueException;
+
+    /**
+    * Called when an idle performance is evicted from the registry. The
+    * venue has no active holds and no seats on HOLD, but may have
+    * reserved seats that should be kept for the next {@code load}.
+    *
+    * @param performanceId Id of the performance.
+    * @param venue Venue of the performance.
+    */
+    default void unload(String performanceId, Venue venue) {
+    }
+}
@@ -0,0 +1,297 @@
+package com.clementlu.ticketservice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
+
+/**
+ * Ticket service for many performances at once.
+ * <p>
+ * Each performance is a shard with its own {@code Venue}, hold map and
+ * {@code PerformanceVenueTicketService}, so requests for one performance
+ * never wait on another. Shards are created on first use through a
+ * {@code PerformanceLoader} and evicted once they have been idle for
+ * {@code idleTimeout} with no seats on HOLD, which keeps memory bounded by
+ * the number of busy performances. Eviction runs on a thread of its own,
+ * so a slow {@code unload} never delays hold expiry. Hold expiry runs on
+ * a small pool of timers, one per processor, with each performance
+ * always using the same timer.
+ * <p>
+ * Hold ids are only unique within a performance, since every request
+ * names its performance. Each service uses every id bit for its sequence
+ * rather than giving some up for a shard number.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class PerformanceRegistry {
+    private static final Logger LOGGER = Logger.getLogger(PerformanceRegistry.class.getName());
+
+    private final PerformanceLoader loader;
+    private final long idleTimeoutNanos;
+    private final long holdExpiryNanos;
+    private final Map<String, Shard> shards;
+    private final HashedWheelTimer[] expiryTimers;
+    private final ScheduledExecutorService evictor;
+
+    public PerformanceRegistry(PerformanceLoader loader, long idleTimeout, TimeUnit unit) {
+        this(loader, idleTimeout, unit, PerformanceVenueTicketService.DEFAULT_HOLD_EXPIRY_SECONDS,
+            TimeUnit.SECONDS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+    * Creates a registry.
+    *
+    * @param loader Loads and unloads the venue of each performance.
+    * @param idleTimeout Time without requests after which a performance
+    * with no active holds is evicted.
+    * @param idleUnit Unit of {@code idleTimeout}.
+    * @param holdExpiry Time a hold lasts before it expires.
+    * @param holdUnit Unit of {@code holdExpiry}.
+    * @param expiryThreads Number of timer threads that expire holds.
+    */
+    public PerformanceRegistry(PerformanceLoader loader, long idleTimeout, TimeUnit idleUnit,
+            long holdExpiry, TimeUnit holdUnit, int expiryThreads) {
+        if (idleTimeout <= 0 || expiryThreads <= 0) {
+            throw new IllegalArgumentException("Idle timeout and expiry threads must be positive!");
+        }
+        this.loader = loader;
+        this.idleTimeoutNanos = idleUnit.toNanos(idleTimeout);
+        this.holdExpiryNanos = holdUnit.toNanos(holdExpiry);
+        shards = new ConcurrentHashMap<String, Shard>();
+        expiryTimers = new HashedWheelTimer[expiryThreads];
+        for (int i = 0; i < expiryThreads; i++) {
+            expiryTimers[i] = new HashedWheelTimer();
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "performance-registry-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictIdleShards();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not evict idle performances", e);
+                }
+            }
+        }, idleTimeoutNanos, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int numSeatsAvailable(String performanceId) throws InvalidVenueException {
+        Shard shard = acquire(performanceId);
+        try {
+            return shard.service.numSeatsAvailable();
+        } finally {
+            shard.release();
+        }
+    }
+
+    public SeatHold findAndHoldSeats(String performanceId, int numSeats, String customerEmail)
+            throws InvalidVenueException {
+        Shard shard = acquire(performanceId);
+        try {
+            return shard.service.findAndHoldSeats(numSeats, customerEmail);
+        } finally {
+            shard.release();
+        }
+    }
+
+    public String reserveSeats(String performanceId, int seatHoldId, String customerEmail)
+            throws InvalidVenueException {
+        Shard shard = acquire(performanceId);
+        try {
+            return shard.service.reserveSeats(seatHoldId, customerEmail);
+        } finally {
+            shard.release();
+        }
+    }
+
+    /**
+    * Returns the number of performances currently loaded.
+    *
+    * @return Number of shards.
+    */
+    public int getNumShards() {
+        return shards.size();
+    }
+
+    public boolean isLoaded(String performanceId) {
+        return shards.containsKey(performanceId);
+    }
+
+    /**
+    * Evicts every performance that has been idle for the idle timeout and
+    * has no seats on HOLD. This also runs periodically on its own.
+    * <p>
+    * Besides having no active holds, the venue must have no seats on
+    * HOLD, since an expiry sweep removes its holds before it releases
+    * their seats.
+    * <p>
+    * A performance stays in the registry, closed, until its venue has
+    * been unloaded, so a request for it waits for the unload instead of
+    * loading the venue again before its state was saved.
+    *
+    * @return Number of performances evicted.
+    */
+    public int evictIdleShards() {
+        int evicted = 0;
+        long now = System.nanoTime();
+        for (Map.Entry<String, Shard> entry : shards.entrySet()) {
+            Shard shard = entry.getValue();
+            if (now - shard.lastAccess >= idleTimeoutNanos && shard.tryClose()) {
+                PerformanceVenueTicketService service = shard.service;
+                if (service != null && (service.getNumActiveHolds() > 0
+                        || service.getVenue().getNumSeats(SeatStatus.HOLD) > 0)) {
+                    shard.reopen();
+                    continue;
+                }
+                if (service != null) {
+                    try {
+                        loader.unload(entry.getKey(), service.getVenue());
+                    } catch (RuntimeException e) {
+                        // Keep the performance loaded rather than lose
+                        // state that was not saved.
+                        shard.reopen();
+                        throw e;
+                    }
+                    evicted++;
+                }
+                shards.remove(entry.getKey(), shard);
+                shard.removed();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+    * Stops eviction and the expiry timers. Holds that have not expired
+    * yet stay on HOLD.
+    */
+    public void shutdown() {
+        evictor.shutdownNow();
+        for (HashedWheelTimer timer : expiryTimers) {
+            timer.stop();
+        }
+    }
+
+    /**
+    * Returns the shard of a performance, loading it if needed, and marks
+    * it in use so it cannot be evicted until {@code release} is called.
+    * Loading happens under the shard's own lock, so a slow load only
+    * blocks requests for the same performance.
+    */
+    private Shard acquire(String performanceId) throws InvalidVenueException {
+        while (true) {
+            Shard shard = shards.get(performanceId);
+            if (shard == null) {
+                Shard created = new Shard();
+                shard = shards.putIfAbsent(performanceId, created);
+                if (shard == null) {
+                    shard = created;
+                }
+            }
+            if (!shard.tryAcquire()) {
+                // The shard is being evicted, wait until it is either gone
+                // or open again.
+                shard.awaitOpen();
+                continue;
+            }
+            try {
+                shard.load(performanceId);
+            } catch (InvalidVenueException | RuntimeException e) {
+                shard.release();
+                shards.remove(performanceId, shard);
+                throw e;
+            }
+            return shard;
+        }
+    }
+
+    /**
+    * One performance. {@code users} counts requests in progress and is -1
+    * once the shard has been closed for eviction. Requests that find it
+    * closed wait on the shard until it is reopened or removed.
+    */
+    private final class Shard {
+        final AtomicInteger users = new AtomicInteger();
+        volatile PerformanceVenueTicketService service;
+        volatile long lastAccess = System.nanoTime();
+        boolean removed;
+
+        synchronized void load(String performanceId) throws InvalidVenueException {
+            if (service == null) {
+                Venue venue = loader.load(performanceId);
+                HashedWheelTimer timer =
+                    expiryTimers[(performanceId.hashCode() & Integer.MAX_VALUE) % expiryTimers.length];
+                service = new PerformanceVenueTicketService(venue, timer,
+                    holdExpiryNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        boolean tryAcquire() {
+            int current;
+            do {
+                current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!users.compareAndSet(current, current + 1));
+            lastAccess = System.nanoTime();
+            return true;
+        }
+
+        void release() {
+            lastAccess = System.nanoTime();
+            users.decrementAndGet();
+        }
+
+        boolean tryClose() {
+            return users.compareAndSet(0, -1);
+        }
+
+        synchronized void reopen() {
+            users.set(0);
+            notifyAll();
+        }
+
+        synchronized void removed() {
+            removed = true;
+            notifyAll();
+        }
+
+        /**
+        * Waits until the shard is no longer closed for eviction.
+        */
+        synchronized void awaitOpen() {
+            boolean interrupted = false;
+            while (users.get() < 0 && !removed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,36 +1,256 @@
 package com.clementlu.ticketservice;
 
 import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Models.CustomerEmails;
+import com.clementlu.ticketservice.Models.CustomerHoldIndex;
+import com.clementlu.ticketservice.Models.HoldRequest;
+import com.clementlu.ticketservice.Models.PriceTier;
+import com.clementlu.ticketservice.Models.ReserveRequest;
 import com.clementlu.ticketservice.Models.Seat;
 import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.SeatHoldIdGenerator;
+import com.clementlu.ticketservice.Models.SeatHoldMap;
 import com.clementlu.ticketservice.Models.Venue;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.clementlu.ticketservice.Metrics.TicketServiceMetrics;
+import com.clementlu.ticketservice.Strategy.FirstFitStrategy;
+import com.clementlu.ticketservice.Strategy.MaxPriceStrategy;
+import com.clementlu.ticketservice.Strategy.PriceTierStrategy;
+import com.clementlu.ticketservice.Strategy.SeatSelectionStrategy;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
 
 /**
  * @author      Clement Lu <clementlu@live.com>
  * @version     1.0
  * @since       1.0
  */
-public class PerformanceVenueTicketService implements TicketService {
+public class PerformanceVenueTicketService implements BatchTicketService {
+    private static final Logger LOGGER = Logger.getLogger(PerformanceVenueTicketService.class.getName());
+    private static final CustomerEmails CUSTOMER_EMAILS = new CustomerEmails();
 
     private Venue venue;
-    private Map<Integer, SeatHold> seatHolds;
+    private SeatHoldMap seatHolds;
+    private final SeatHoldIdGenerator seatHoldIds;
 
-    private CountDownLatch done; 
-    final int holdExpiry = 5;
+    private HashedWheelTimer expiryTimer;
+    private final long holdExpiryNanos;
+    private volatile SeatSelectionStrategy seatSelectionStrategy;
+    private List<SeatHoldListener> seatHoldListeners;
+    private final TicketServiceMetrics metrics;
+    private final CustomerHoldIndex customerHolds = new CustomerHoldIndex();
+    private volatile int maxHoldsPerCustomer = Integer.MAX_VALUE;
+    private volatile int maxSeatsPerCustomer = Integer.MAX_VALUE;
+
+    // Holds whose timeout fired during the current tick, released
+    // together at the end of it. Only used on the expiry timer's thread.
+    private final List<SeatHold> dueHolds = new ArrayList<SeatHold>();
+    private int[] sweepSeats = new int[64];
+    private final Runnable expirySweep = new Runnable() {
+        @Override
+        public void run() {
+            sweepExpiredHolds();
+        }
+    };
+
+    public static final long DEFAULT_HOLD_EXPIRY_SECONDS = 5;
 
     public PerformanceVenueTicketService(Venue venue) {
+        this(venue, new HashedWheelTimer());
+    }
+
+    public PerformanceVenueTicketService(Venue venue, SeatSelectionStrategy seatSelectionStrategy) {
+        this(venue);
+        setSeatSelectionStrategy(seatSelectionStrategy);
+    }
+
+    public PerformanceVenueTicketService(Venue venue, long holdExpiry, TimeUnit unit) {
+        this(venue, new HashedWheelTimer(), holdExpiry, unit);
+    }
+
+    public PerformanceVenueTicketService(Venue venue, HashedWheelTimer expiryTimer) {
+        this(venue, expiryTimer, DEFAULT_HOLD_EXPIRY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+    * Creates a ticket service whose holds expire on {@code expiryTimer}.
+    * <p>
+    * The timer can be shared by several services so that all of their
+    * holds expire on one thread.
+    *
+    * @param venue Venue to sell seats for.
+    * @param expiryTimer Timer that runs hold expiries.
+    * @param holdExpiry Default time a hold lasts before it expires.
+    * @param unit Unit of {@code holdExpiry}.
+    */
+    public PerformanceVenueTicketService(Venue venue, HashedWheelTimer expiryTimer,
+            long holdExpiry, TimeUnit unit) {
+        this(venue, expiryTimer, holdExpiry, unit, new SeatHoldIdGenerator());
+    }
+
+    /**
+    * Creates a ticket service whose holds expire on {@code expiryTimer}
+    * and get their ids from {@code seatHoldIds}.
+    * <p>
+    * Services that share a front-end should each have a generator with
+    * their own shard number, so their hold ids never collide.
+    *
+    * @param venue Venue to sell seats for.
+    * @param expiryTimer Timer that runs hold expiries.
+    * @param holdExpiry Default time a hold lasts before it expires.
+    * @param unit Unit of {@code holdExpiry}.
+    * @param seatHoldIds Generator of hold ids.
+    */
+    public PerformanceVenueTicketService(Venue venue, HashedWheelTimer expiryTimer,
+            long holdExpiry, TimeUnit unit, SeatHoldIdGenerator seatHoldIds) {
+        if (holdExpiry <= 0) {
+            throw new IllegalArgumentException("Hold expiry must be positive!");
+        }
+        if (seatHoldIds == null) {
+            throw new IllegalArgumentException("Seat hold id generator must not be null!");
+        }
         this.venue = venue; 
-        seatHolds = new ConcurrentHashMap<Integer, SeatHold>();
-        done = new CountDownLatch(1);
+        this.expiryTimer = expiryTimer;
+        this.holdExpiryNanos = unit.toNanos(holdExpiry);
+        this.seatSelectionStrategy = new FirstFitStrategy();
+        this.seatHoldIds = seatHoldIds;
+        seatHolds = new SeatHoldMap();
+        seatHoldListeners = new CopyOnWriteArrayList<SeatHoldListener>();
+        metrics = new TicketServiceMetrics(venue, seatHolds::size);
+    }
+
+    public Venue getVenue() {
+        return venue;
+    }
+
+    /**
+    * Returns the number of holds that have neither been reserved nor
+    * expired.
+    *
+    * @return Number of active holds.
+    */
+    public int getNumActiveHolds() {
+        return seatHolds.size();
+    }
+
+    /**
+    * Returns the service's counters, gauges and latency histograms.
+    *
+    * @return Metrics of this service.
+    */
+    public TicketServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SeatSelectionStrategy getSeatSelectionStrategy() {
+        return seatSelectionStrategy;
+    }
+
+    /**
+    * Changes how seats are picked for new holds. Existing holds keep
+    * their seats.
+    *
+    * @param seatSelectionStrategy Strategy used by {@code findAndHoldSeats}.
+    */
+    public void setSeatSelectionStrategy(SeatSelectionStrategy seatSelectionStrategy) {
+        if (seatSelectionStrategy == null) {
+            throw new IllegalArgumentException("Seat selection strategy must not be null!");
+        }
+        this.seatSelectionStrategy = seatSelectionStrategy;
+    }
+
+    /**
+    * Limits how much of the venue one customer can hold at a time.
+    * <p>
+    * A hold that would take a customer over either limit is refused. The
+    * limits count the holds that are still active, so seats the customer
+    * has reserved do not count, and they apply to holds made from now on.
+    * Both limits are unlimited by default.
+    *
+    * @param maxHolds Most active holds a customer may have.
+    * @param maxSeats Most seats a customer may hold.
+    */
+    public void setCustomerHoldLimits(int maxHolds, int maxSeats) {
+        if (maxHolds <= 0 || maxSeats <= 0) {
+            throw new IllegalArgumentException("Customer hold limits must be positive!");
+        }
+        this.maxHoldsPerCustomer = maxHolds;
+        this.maxSeatsPerCustomer = maxSeats;
+    }
+
+    public int getMaxHoldsPerCustomer() {
+        return maxHoldsPerCustomer;
+    }
+
+    public int getMaxSeatsPerCustomer() {
+        return maxSeatsPerCustomer;
+    }
+
+    /**
+    * Returns the number of active holds of a customer.
+    *
+    * @param customerEmail Customer's email address.
+    * @return Number of active holds, or 0 if the address is not valid.
+    */
+    public int getNumActiveHolds(String customerEmail) {
+        String email = CUSTOMER_EMAILS.normalize(customerEmail);
+        return email == null ? 0 : customerHolds.getNumHolds(email);
+    }
+
+    /**
+    * Returns the number of seats in the active holds of a customer.
+    *
+    * @param customerEmail Customer's email address.
+    * @return Number of held seats, or 0 if the address is not valid.
+    */
+    public int getNumHeldSeats(String customerEmail) {
+        String email = CUSTOMER_EMAILS.normalize(customerEmail);
+        return email == null ? 0 : customerHolds.getNumSeats(email);
+    }
+
+    /**
+    * Adds a listener that is told about every hold made, reserved or
+    * released from now on.
+    *
+    * @param listener Listener to add.
+    */
+    public void addSeatHoldListener(SeatHoldListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Seat hold listener must not be null!");
+        }
+        seatHoldListeners.add(listener);
+    }
+
+    public void removeSeatHoldListener(SeatHoldListener listener) {
+        seatHoldListeners.remove(listener);
+    }
+
+    /**
+    * Returns how long a hold lasts when no expiry is given for it.
+    *
+    * @param unit Unit to return the expiry in.
+    * @return Default hold expiry.
+    */
+    public long getHoldExpiry(TimeUnit unit) {
+        return unit.convert(holdExpiryNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+    * Stops the hold expiry timer. Holds that have not expired yet stay
+    * on HOLD, and new holds are refused with an
+    * {@code IllegalStateException}.
+    */
+    public void shutdown() {
+        expiryTimer.stop();
     }
     
     /**
@@ -42,75 +262,349 @@ public class PerformanceVenueTicketService implements TicketService {
     * @return Number of VACANT seats.
     */
     public int numSeatsAvailable() {
-        return venue.getTotalSeats() - 
-            (venue.getNumSeats(SeatStatus.HOLD) + 
-            venue.getNumSeats(SeatStatus.RESERVED));
+        return venue.getNumSeats(SeatStatus.VACANT);
     }
 
     /**
     * Finds best available seats in the venue and holds them.
     * <p>
     * Given {@code numSeats}, this method will attempt to hold 
-    * contiguous {@code numSeats} seats in the venue. The venue 
-    * is filled with a "first fit" algorithm, starting in at (0, 0) 
+    * contiguous {@code numSeats} seats in the venue. Seats are 
+    * picked by the service's {@code SeatSelectionStrategy}. By default
+    * the venue is filled with a "first fit" algorithm, starting in at (0, 0) 
     * and moving left to right and then starting over in the first 
     * element of the next row if there is any overflow. For example, 
     * in a 2x2 venue, a request for a 3 seat hold would return 
-    * the following seats: [(0,0), (1,0), (0,1)].
+    * the following seats: [(0,0), (1,0), (0,1)]. Vacant seats are
+    * found through the venue's free seat index, so full rows and taken
+    * seats are skipped without being visited. Seats are claimed under
+    * the venue's row locks, so concurrent calls never hold the same
+    * seat.
     * <p>
     * A successful hold will add the {@code SeatHold} with a 
-    * list of the held seats to {@code seatHolds}. The timer for
-    * hold expiry is also started at this time on a seperate thread. 
+    * list of the held seats to {@code seatHolds}. A timeout for
+    * hold expiry is also scheduled at this time on the shared expiry
+    * timer, so no thread is created per hold. Holds whose timeouts fire
+    * in the same tick are released together by one expiry sweep.
     * If hold was unsuccessful, a null value will be returned.
+    * <p>
+    * The customer's email address is normalized and validated, and the
+    * hold is checked against the customer's hold limits before any seat
+    * is looked at. A hold that would take the customer over a limit is
+    * refused with a null value as well.
     *
     * @param numSeats Number of seats to hold.
     * @param customerEmail Customer's email address.
     * @return Number of VACANT seats.
+    * @throws IllegalArgumentException If {@code customerEmail} is not a
+    * valid email address.
+    * @throws IllegalStateException If the service was shut down.
     */
     public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+        return findAndHoldSeats(numSeats, customerEmail, holdExpiryNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+    * Finds best available seats in the venue and holds them for a given
+    * time.
+    * <p>
+    * Works like {@code findAndHoldSeats(int, String)}, except that the
+    * hold expires after {@code holdExpiry} instead of the service's
+    * default hold expiry.
+    *
+    * @param numSeats Number of seats to hold.
+    * @param customerEmail Customer's email address.
+    * @param holdExpiry Time the hold lasts before it expires.
+    * @param unit Unit of {@code holdExpiry}.
+    * @return Seat hold, or null if no seats could be held.
+    * @throws IllegalArgumentException If {@code customerEmail} is not a
+    * valid email address.
+    * @throws IllegalStateException If the service was shut down.
+    */
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail,
+            long holdExpiry, TimeUnit unit) {
+        return findAndHoldSeats(numSeats, customerEmail, unit.toNanos(holdExpiry), seatSelectionStrategy);
+    }
+
+    /**
+    * Finds best available seats of one price tier and holds them.
+    * <p>
+    * Works like {@code findAndHoldSeats(int, String)}, except that seats
+    * are only taken from {@code priceTier}, in "first fit" order of the
+    * tier's seats. The tier's own free seat index is used, so the cost
+    * depends on the size of the tier and not of the venue.
+    *
+    * @param numSeats Number of seats to hold.
+    * @param customerEmail Customer's email address.
+    * @param priceTier Price tier of the venue's layout.
+    * @return Seat hold, or null if the tier does not have enough vacant
+    * seats.
+    * @throws IllegalArgumentException If {@code customerEmail} is not a
+    * valid email address, or {@code priceTier} is not in the venue.
+    * @throws IllegalStateException If the service was shut down.
+    */
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail, PriceTier priceTier) {
+        if (priceTier == null) {
+            throw new IllegalArgumentException("Price tier must not be null!");
+        }
+        // Checks that the tier is in the venue before any limit is taken.
+        venue.getNumVacantSeats(priceTier);
+        return findAndHoldSeats(numSeats, customerEmail, holdExpiryNanos, new PriceTierStrategy(priceTier));
+    }
+
+    /**
+    * Finds the best seats available for at most a given price and holds
+    * them.
+    * <p>
+    * Works like {@code findAndHoldSeats(int, String)}, except that the
+    * seats are taken from the most expensive price tier whose price is at
+    * most {@code maxPrice} and that has enough vacant seats. The party is
+    * never split across tiers.
+    *
+    * @param numSeats Number of seats to hold.
+    * @param customerEmail Customer's email address.
+    * @param maxPrice Highest price of a seat, in the smallest unit of the
+    * currency.
+    * @return Seat hold, or null if no such tier has enough vacant seats.
+    * @throws IllegalArgumentException If {@code customerEmail} is not a
+    * valid email address, or the venue has no price tiers.
+    * @throws IllegalStateException If the service was shut down.
+    */
+    public SeatHold findAndHoldSeatsUpToPrice(int numSeats, String customerEmail, long maxPrice) {
+        if (venue.getLayout() == null) {
+            throw new IllegalArgumentException("Venue has no price tiers!");
+        }
+        return findAndHoldSeats(numSeats, customerEmail, holdExpiryNanos, new MaxPriceStrategy(maxPrice));
+    }
+
+    private SeatHold findAndHoldSeats(int numSeats, String customerEmail, long expiryNanos,
+            SeatSelectionStrategy strategy) {
+        long start = System.nanoTime();
+        String email = normalizeEmail(customerEmail);
+        checkRunning();
         SeatHold seatHold = null;
         if (numSeats > 0 && numSeats <= venue.getTotalSeats()) {
-            List<Seat> seatList = new ArrayList<>();
-            if (numSeats <= numSeatsAvailable()) {
-                int x = 0;
-                for (List<Seat> row : venue.getSeatMap()) {
-                    Iterator<Seat> rowIterator = row.iterator();
-                    while (rowIterator.hasNext() && x != numSeats) {
-                        Seat seat = rowIterator.next();
-                        if (seat.getSeatStatus() == SeatStatus.VACANT) {
-                            seatList.add(seat);
-                            x++;
-                        } 
-                    }
-                    if ((seatList.size() == numSeats)) {
-                        break;
+            if (!customerHolds.tryAcquire(email, numSeats, maxHoldsPerCustomer, maxSeatsPerCustomer)) {
+                metrics.holdLimited();
+            } else {
+                if (numSeats <= numSeatsAvailable()) {
+                    List<Seat> seatList = strategy.holdSeats(venue, numSeats);
+                    if (seatList != null) {
+                        seatHold = addSeatHold(seatList, email, expiryNanos);
                     }
                 }
-                if (!seatList.isEmpty() && x == numSeats){
-                    venue.changeSeatStatus(seatList, SeatStatus.HOLD);
-                    seatHold = new SeatHold(seatList, customerEmail);
-                    seatHolds.put(seatHold.getId(), seatHold);
-                    final int seatHoldId = seatHold.getId();
-                    
-                    new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            try {
-                                if(!done.await(holdExpiry, TimeUnit.SECONDS)) {
-                                    System.out.println("Seat hold expired.");
-                                    expiryHandler(seatHoldId);
-                                }
-                            } catch (InterruptedException iE) {
-                                System.out.println("Hold expiry thread interrupted!");
-                            }
-                        }
-                    }).start();
+                if (seatHold == null) {
+                    customerHolds.release(email, numSeats);
+                    metrics.holdRejected();
                 }
-            }        
+            }
         }
+        metrics.getHoldLatency().recordSince(start);
         return seatHold;
     }
 
+    /**
+    * Finds and holds seats for several requests at once.
+    * <p>
+    * Requests are served in order, so the result is the same as calling
+    * {@code findAndHoldSeats} once per request. With the default
+    * "first fit" strategy the seat map is walked once for the whole
+    * batch and the seat counters are updated once. Each hold expires
+    * after the service's default hold expiry. Every email address is
+    * validated before any seat is held.
+    *
+    * @param requests Hold requests.
+    * @return A {@code SeatHold} for each request, or null for requests
+    * that could not be filled.
+    * @throws IllegalArgumentException If a request's email address is not
+    * valid.
+    * @throws IllegalStateException If the service was shut down.
+    */
+    public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> requests) {
+        String[] emails = new String[requests.size()];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = normalizeEmail(requests.get(i).getCustomerEmail());
+        }
+        checkRunning();
+        int maxHolds = maxHoldsPerCustomer;
+        int maxSeats = maxSeatsPerCustomer;
+        int[] numSeats = new int[requests.size()];
+        for (int i = 0; i < numSeats.length; i++) {
+            int n = requests.get(i).getNumSeats();
+            numSeats[i] = n <= venue.getTotalSeats() ? n : 0;
+            if (numSeats[i] > 0 && !customerHolds.tryAcquire(emails[i], n, maxHolds, maxSeats)) {
+                metrics.holdLimited();
+                numSeats[i] = 0;
+            }
+        }
+        List<List<Seat>> seatLists = seatSelectionStrategy.holdSeatsBatch(venue, numSeats);
+        List<SeatHold> results = new ArrayList<>(numSeats.length);
+        for (int i = 0; i < numSeats.length; i++) {
+            List<Seat> seatList = seatLists.get(i);
+            if (seatList == null && numSeats[i] > 0) {
+                customerHolds.release(emails[i], numSeats[i]);
+                metrics.holdRejected();
+            }
+            if (seatList == null) {
+                results.add(null);
+                continue;
+            }
+            try {
+                results.add(addSeatHold(seatList, emails[i], holdExpiryNanos));
+            } catch (RuntimeException e) {
+                // The seats of the later requests are already on HOLD
+                // and counted against their customers.
+                for (int j = i + 1; j < numSeats.length; j++) {
+                    List<Seat> unused = seatLists.get(j);
+                    if (unused != null) {
+                        venue.changeSeatStatus(unused, SeatStatus.VACANT);
+                        customerHolds.release(emails[j], numSeats[j]);
+                    }
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+    * Normalizes a customer's email address through the shared cache.
+    */
+    private static String normalizeEmail(String customerEmail) {
+        String email = CUSTOMER_EMAILS.normalize(customerEmail);
+        if (email == null) {
+            throw new IllegalArgumentException("Invalid customer email " + customerEmail);
+        }
+        return email;
+    }
+
+    /**
+    * Takes a hold out of the active list and stops counting it against
+    * its customer's limits.
+    *
+    * @return True if the hold was active.
+    */
+    private boolean removeSeatHold(SeatHold seatHold) {
+        if (!seatHolds.remove(seatHold)) {
+            return false;
+        }
+        customerHolds.release(seatHold.getCustomerEmail(), seatHold.getSeats().size());
+        return true;
+    }
+
+    /**
+    * Adds a {@code SeatHold} for seats that are already held and
+    * schedules its expiry.
+    * <p>
+    * Ids come from the service's generator in order. Should the sequence
+    * wrap around while a hold with the next id is still active, that id
+    * is skipped, so a live hold is never replaced.
+    */
+    private SeatHold addSeatHold(List<Seat> seatList, String customerEmail, long expiryNanos) {
+        int id;
+        do {
+            id = seatHoldIds.nextId();
+        } while (seatHolds.containsKey(id));
+        SeatHold seatHold = new SeatHold(id, seatList, customerEmail,
+            System.nanoTime() + expiryNanos);
+        try {
+            for (SeatHoldListener listener : seatHoldListeners) {
+                listener.seatsHeld(seatHold);
+            }
+        } catch (RuntimeException e) {
+            // The hold is not made: the seats and the customer's count are
+            // given back, and listeners already told hear it released.
+            customerHolds.release(customerEmail, seatList.size());
+            releaseAfterFailure(seatHold, e);
+            throw e;
+        }
+        seatHolds.put(seatHold);
+        try {
+            scheduleExpiry(seatHold, expiryNanos);
+        } catch (IllegalStateException e) {
+            // Shut down since checkRunning; never leave seats on HOLD
+            // without a hold.
+            if (removeSeatHold(seatHold)) {
+                release(seatHold);
+            }
+            throw e;
+        }
+        metrics.holdCreated();
+        return seatHold;
+    }
+
+    /**
+    * Fails fast once the service was shut down, before any seat is held.
+    *
+    * @throws IllegalStateException If the expiry timer was stopped.
+    */
+    private void checkRunning() {
+        if (expiryTimer.isStopped()) {
+            throw new IllegalStateException("Ticket service has been shut down!");
+        }
+    }
+
+    /**
+    * Takes over a hold whose seats are already on HOLD in the venue, such
+    * as a hold made on another node and replicated to this one.
+    * <p>
+    * The hold keeps its id and is counted against its customer's hold
+    * limits without checking them, since it was allowed where it was
+    * made. Its expiry is scheduled and listeners are told about it as a
+    * new hold.
+    *
+    * @param seatHoldId Id of the hold.
+    * @param seatList Seats of the hold, all on HOLD.
+    * @param customerEmail Customer's email address.
+    * @param expiryNanos Time left before the hold expires.
+    * @return The hold.
+    * @throws IllegalArgumentException If a hold with the same id is
+    * active, or a seat is not on HOLD.
+    */
+    public SeatHold restoreSeatHold(int seatHoldId, List<Seat> seatList, String customerEmail,
+            long expiryNanos) {
+        String email = normalizeEmail(customerEmail);
+        for (Seat seat : seatList) {
+            if (venue.getSeatStatus(venue.getSeatIndex(seat)) != SeatStatus.HOLD) {
+                throw new IllegalArgumentException("Seat " + seat + " is not on hold!");
+            }
+        }
+        SeatHold seatHold = new SeatHold(seatHoldId, seatList, email, System.nanoTime() + expiryNanos);
+        if (seatHolds.containsKey(seatHoldId)) {
+            throw new IllegalArgumentException("Seat hold " + seatHoldId + " is already active!");
+        }
+        customerHolds.tryAcquire(email, seatList.size(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+        try {
+            for (SeatHoldListener listener : seatHoldListeners) {
+                listener.seatsHeld(seatHold);
+            }
+        } catch (RuntimeException e) {
+            customerHolds.release(email, seatList.size());
+            throw e;
+        }
+        seatHolds.put(seatHold);
+        metrics.holdCreated();
+        scheduleExpiry(seatHold, expiryNanos);
+        return seatHold;
+    }
+
+    /**
+    * Schedules the expiry of a hold on the shared timer. When the timeout
+    * fires the hold is queued for the tick's expiry sweep, which skips it
+    * if it is no longer the active version of the hold.
+    */
+    private void scheduleExpiry(final SeatHold seatHold, long expiryNanos) {
+        seatHold.setExpiryTimeout(expiryTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (dueHolds.isEmpty()) {
+                    expiryTimer.runAfterTick(expirySweep);
+                }
+                dueHolds.add(seatHold);
+            }
+        }, Math.max(expiryNanos, 0), TimeUnit.NANOSECONDS));
+    }
+
     /**
     * Reserves a list of seats.
     * <p>
@@ -118,27 +612,267 @@ public class PerformanceVenueTicketService implements TicketService {
     * {@code SeatHold} with given id and change the status of the
     * list of seats from HOLD to RESERVED.
     * <p>
-    * A successful reservation will return {@code confirmationId},
-    * whereas if the {@code seatHoldId} does not exist, then a null
-    * value will be returned.
+    * A successful reservation cancels the hold's expiry timeout and
+    * will return {@code confirmationId},
+    * whereas if the {@code seatHoldId} does not exist or was made for
+    * another customer, then a null value will be returned and the hold
+    * is left as it is. A hold that is past its deadline is
+    * released instead of reserved, even if its timeout has not fired
+    * yet. If a listener fails to record the reservation, the hold's seats
+    * are made VACANT and the listener's exception is thrown.
     *
     * @param seatHoldId Id of the SeatHold containing the list of seats.
     * @param customerEmail Customer's email address.
     * @return Confirmation id.
     */
     public String reserveSeats(int seatHoldId, String customerEmail) {
+        long start = System.nanoTime();
         String confirmationId = null;
-        if (!seatHolds.isEmpty() && seatHolds.containsKey(seatHoldId)) {
-            SeatHold seatHold = seatHolds.get(seatHoldId);
-            confirmationId = UUID.randomUUID().toString();
-            venue.changeSeatStatus(seatHold.getSeats(), SeatStatus.RESERVED);
-            seatHold.setConfirmationId(confirmationId);
-            seatHolds.remove(seatHoldId);
-            done.countDown();
+        SeatHold seatHold = takeSeatHold(seatHoldId, customerEmail);
+        if (seatHold != null) {
+            seatHold.cancelExpiry();
+            if (seatHold.isExpired()) {
+                release(seatHold);
+                metrics.holdExpired();
+            } else {
+                confirmationId = UUID.randomUUID().toString();
+                venue.changeSeatStatus(seatHold.getSeats(), SeatStatus.RESERVED);
+                seatHold.setConfirmationId(confirmationId);
+                try {
+                    for (SeatHoldListener listener : seatHoldListeners) {
+                        listener.seatsReserved(seatHold);
+                    }
+                } catch (RuntimeException e) {
+                    cancelReservation(seatHold, e);
+                    throw e;
+                }
+                metrics.holdReserved();
+            }
         }
+        metrics.getReserveLatency().recordSince(start);
         return confirmationId;
     }
 
+    /**
+    * Reserves the seats of several holds at once.
+    * <p>
+    * Works like calling {@code reserveSeats} once per request, except
+    * that the seats of every reserved hold are changed to RESERVED in a
+    * single {@code changeSeatStatus} call. If a listener fails, the
+    * holds not yet confirmed are released and the listener's exception
+    * is thrown.
+    *
+    * @param requests Reserve requests.
+    * @return A confirmation id for each request, or null for requests
+    * whose hold does not exist, was made for another customer or has
+    * expired.
+    */
+    public List<String> reserveSeatsBatch(List<ReserveRequest> requests) {
+        List<String> results = new ArrayList<>(requests.size());
+        List<SeatHold> reservedHolds = new ArrayList<>();
+        List<Seat> reserved = new ArrayList<>();
+        List<Seat> released = new ArrayList<>();
+        RuntimeException failure = null;
+        for (ReserveRequest request : requests) {
+            String confirmationId = null;
+            SeatHold seatHold = takeSeatHold(request.getSeatHoldId(), request.getCustomerEmail());
+            if (seatHold != null) {
+                seatHold.cancelExpiry();
+                if (seatHold.isExpired()) {
+                    // The hold is taken, so its seats are released even if
+                    // a listener fails.
+                    try {
+                        for (SeatHoldListener listener : seatHoldListeners) {
+                            listener.seatsReleased(seatHold);
+                        }
+                    } catch (RuntimeException e) {
+                        failure = addFailure(failure, e);
+                    }
+                    released.addAll(seatHold.getSeats());
+                    metrics.holdExpired();
+                } else {
+                    confirmationId = UUID.randomUUID().toString();
+                    reservedHolds.add(seatHold);
+                    reserved.addAll(seatHold.getSeats());
+                    seatHold.setConfirmationId(confirmationId);
+                }
+            }
+            results.add(confirmationId);
+        }
+        venue.changeSeatStatus(reserved, SeatStatus.RESERVED);
+        venue.changeSeatStatus(released, SeatStatus.VACANT);
+        for (SeatHold seatHold : reservedHolds) {
+            if (failure == null) {
+                try {
+                    for (SeatHoldListener listener : seatHoldListeners) {
+                        listener.seatsReserved(seatHold);
+                    }
+                    metrics.holdReserved();
+                    continue;
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            // Once a listener has failed, no later reservation is
+            // confirmed either.
+            cancelReservation(seatHold, failure);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+    * Gives a hold more time before it expires.
+    * <p>
+    * The hold is replaced in place by a new version whose deadline is
+    * {@code extension} later, and its expiry timeout is moved to the new
+    * deadline; no seats change. The replacement only succeeds if the hold
+    * is still the version that was read, so it races safely with
+    * {@code reserveSeats}, expiry and other changes to the hold: whichever
+    * of them gets to the hold first wins, and an extension that loses to
+    * another extension or a partial release tries again on the new
+    * version.
+    *
+    * @param seatHoldId Id of the hold.
+    * @param customerEmail Customer's email address.
+    * @param extension Time added to the hold's deadline.
+    * @param unit Unit of {@code extension}.
+    * @return New version of the hold, or null if the hold does not exist,
+    * has expired or belongs to another customer.
+    * @throws IllegalArgumentException If {@code extension} is not
+    * positive.
+    */
+    public SeatHold extendHold(int seatHoldId, String customerEmail, long extension, TimeUnit unit) {
+        if (extension <= 0) {
+            throw new IllegalArgumentException("Hold extension must be positive!");
+        }
+        long extensionNanos = unit.toNanos(extension);
+        while (true) {
+            SeatHold seatHold = findSeatHold(seatHoldId, customerEmail);
+            if (seatHold == null || seatHold.getExpiryDeadline() == SeatHold.NO_EXPIRY) {
+                return seatHold;
+            }
+            long deadline = seatHold.getExpiryDeadline() + extensionNanos;
+            SeatHold extended = new SeatHold(seatHold.getId(), seatHold.getVersion() + 1,
+                seatHold.getSeats(), seatHold.getCustomerEmail(), deadline);
+            if (seatHolds.replace(seatHold, extended)) {
+                seatHold.cancelExpiry();
+                scheduleExpiry(extended, deadline - System.nanoTime());
+                for (SeatHoldListener listener : seatHoldListeners) {
+                    listener.holdChanged(extended);
+                }
+                metrics.holdExtended();
+                return extended;
+            }
+        }
+    }
+
+    /**
+    * Gives back some of the seats of a hold and keeps the rest held.
+    * <p>
+    * The hold is replaced in place by a new version without the given
+    * seats, with the same deadline, and only those seats are made VACANT;
+    * the venue is not searched again. The replacement only succeeds if
+    * the hold is still the version that was read, so it races safely with
+    * {@code reserveSeats}, expiry and other changes to the hold. Giving
+    * back every seat ends the hold, as if it had expired. The seats given
+    * back no longer count against the customer's seat limit.
+    *
+    * @param seatHoldId Id of the hold.
+    * @param customerEmail Customer's email address.
+    * @param seats Seats of the hold to give back.
+    * @return New version of the hold, with no seats if the hold ended, or
+    * null if the hold does not exist, has expired, belongs to another
+    * customer or does not hold all of {@code seats}.
+    * @throws IllegalArgumentException If {@code seats} is empty.
+    */
+    public SeatHold releaseSeats(int seatHoldId, String customerEmail, List<Seat> seats) {
+        if (seats == null || seats.isEmpty()) {
+            throw new IllegalArgumentException("Seats to release must not be empty!");
+        }
+        Set<Integer> released = new HashSet<Integer>();
+        for (Seat seat : seats) {
+            released.add(venue.getSeatIndex(seat));
+        }
+        while (true) {
+            SeatHold seatHold = findSeatHold(seatHoldId, customerEmail);
+            if (seatHold == null) {
+                return null;
+            }
+            List<Seat> kept = new ArrayList<Seat>(seatHold.getSeats().size());
+            List<Seat> dropped = new ArrayList<Seat>(released.size());
+            for (Seat seat : seatHold.getSeats()) {
+                if (released.contains(venue.getSeatIndex(seat))) {
+                    dropped.add(seat);
+                } else {
+                    kept.add(seat);
+                }
+            }
+            if (dropped.size() != released.size()) {
+                return null;
+            }
+            SeatHold changed = new SeatHold(seatHold.getId(), seatHold.getVersion() + 1, kept,
+                seatHold.getCustomerEmail(), seatHold.getExpiryDeadline());
+            if (kept.isEmpty()) {
+                if (removeSeatHold(seatHold)) {
+                    seatHold.cancelExpiry();
+                    release(seatHold);
+                    metrics.seatsReleased(dropped.size());
+                    return changed;
+                }
+            } else if (seatHolds.replace(seatHold, changed)) {
+                seatHold.cancelExpiry();
+                scheduleExpiry(changed, changed.getExpiryDeadline() - System.nanoTime());
+                customerHolds.releaseSeats(changed.getCustomerEmail(), dropped.size());
+                release(new SeatHold(seatHold.getId(), changed.getVersion(), dropped,
+                    seatHold.getCustomerEmail(), seatHold.getExpiryDeadline()));
+                for (SeatHoldListener listener : seatHoldListeners) {
+                    listener.holdChanged(changed);
+                }
+                metrics.seatsReleased(dropped.size());
+                return changed;
+            }
+        }
+    }
+
+    /**
+    * Returns the active version of a hold if it belongs to the customer
+    * and has not expired.
+    */
+    private SeatHold findSeatHold(int seatHoldId, String customerEmail) {
+        SeatHold seatHold = seatHolds.get(seatHoldId);
+        if (seatHold == null || seatHold.isExpired()
+                || !seatHold.getCustomerEmail().equals(CUSTOMER_EMAILS.normalize(customerEmail))) {
+            return null;
+        }
+        return seatHold;
+    }
+
+    /**
+    * Removes an active hold for reservation if it belongs to the
+    * customer.
+    *
+    * If an extension or partial release replaces the hold with a new
+    * version while it is being removed, the new version is taken instead.
+    *
+    * @return The hold, or null if it does not exist, belongs to another
+    * customer or was removed by another thread first.
+    */
+    private SeatHold takeSeatHold(int seatHoldId, String customerEmail) {
+        String email = CUSTOMER_EMAILS.normalize(customerEmail);
+        while (true) {
+            SeatHold seatHold = seatHolds.get(seatHoldId);
+            if (seatHold == null || !seatHold.getCustomerEmail().equals(email)) {
+                return null;
+            }
+            if (removeSeatHold(seatHold)) {
+                return seatHold;
+            }
+        }
+    }
+
     /**
     * Handles the expiration of a SeatHold.
     * <p>
@@ -150,12 +884,140 @@ public class PerformanceVenueTicketService implements TicketService {
     * @param seatHoldId Id of the SeatHold containing the list of seats.
     */
     public void expiryHandler(int seatHoldId) {
-        if (seatHolds.containsKey(seatHoldId)) {
-            Arrays.asList(seatHolds).toString();
-            List<Seat> seats = seatHolds.get(seatHoldId).getSeats();
-            seatHolds.remove(seatHoldId);
-            venue.changeSeatStatus(seats, SeatStatus.VACANT);
-            System.out.println("Seat hold " + seatHoldId + " was removed.");
+        SeatHold seatHold = seatHolds.get(seatHoldId);
+        if (seatHold != null) {
+            seatHold.cancelExpiry();
+            expire(seatHold);
+        }
+    }
+
+    /**
+    * Expires a SeatHold if it is still active.
+    * <p>
+    * Only the caller that removes {@code seatHold} from the active list
+    * releases its seats, so a hold that is being reserved is never
+    * expired as well.
+    *
+    * @param seatHold SeatHold to expire.
+    */
+    private void expire(SeatHold seatHold) {
+        long start = System.nanoTime();
+        if (removeSeatHold(seatHold)) {
+            release(seatHold);
+            metrics.holdExpired();
+            metrics.getExpireLatency().recordSince(start);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Seat hold " + seatHold.getId() + " expired.");
+            }
+        }
+    }
+
+    /**
+    * Releases the holds whose timeouts fired during this tick, after the
+    * timer has run every timeout of the tick.
+    * <p>
+    * Holds that were reserved or expired in the meantime are skipped.
+    * Listeners are told about each released hold first, then the seats
+    * of all of them are made VACANT with one {@code releaseSeats} call,
+    * which merges them into the free seat index a row at a time. The
+    * number of holds released and the time the sweep took go to the
+    * service's metrics.
+    */
+    private void sweepExpiredHolds() {
+        long start = System.nanoTime();
+        int released = 0;
+        int seats = 0;
+        try {
+            for (SeatHold seatHold : dueHolds) {
+                if (!removeSeatHold(seatHold)) {
+                    continue;
+                }
+                // The seats are released whatever a listener does; the
+                // sweep has no caller to report a failure to.
+                try {
+                    for (SeatHoldListener listener : seatHoldListeners) {
+                        listener.seatsReleased(seatHold);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Seat hold listener failed on expired hold "
+                        + seatHold.getId(), e);
+                }
+                for (Seat seat : seatHold.getSeats()) {
+                    if (seats == sweepSeats.length) {
+                        sweepSeats = Arrays.copyOf(sweepSeats, seats * 2);
+                    }
+                    sweepSeats[seats++] = venue.getSeatIndex(seat);
+                }
+                dueHolds.set(released++, seatHold);
+            }
+            venue.releaseSeats(sweepSeats, seats);
+            // In OBJECT mode the holds' seats are the stored ones, already
+            // VACANT and possibly held again by now; only views are updated.
+            if (venue.getStorageMode() != SeatStorageMode.OBJECT) {
+                for (int i = 0; i < released; i++) {
+                    for (Seat seat : dueHolds.get(i).getSeats()) {
+                        seat.setSeatStatus(SeatStatus.VACANT);
+                    }
+                }
+            }
+        } finally {
+            dueHolds.clear();
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.expirySwept(released, nanos);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Expiry sweep released " + released + " holds (" + seats + " seats) in "
+                + TimeUnit.NANOSECONDS.toMicros(nanos) + "us.");
+        }
+    }
+
+    /**
+    * Tells the listeners that a hold's seats are released, then makes
+    * them VACANT. The seats are made VACANT even if a listener fails.
+    */
+    private void release(SeatHold seatHold) {
+        try {
+            for (SeatHoldListener listener : seatHoldListeners) {
+                listener.seatsReleased(seatHold);
+            }
+        } finally {
+            venue.changeSeatStatus(seatHold.getSeats(), SeatStatus.VACANT);
+        }
+    }
+
+    /**
+    * Releases the seats of a hold that a listener failed to record. A
+    * listener that fails again while the hold is released has its
+    * exception added to {@code failure} instead of thrown.
+    */
+    private void releaseAfterFailure(SeatHold seatHold, RuntimeException failure) {
+        try {
+            release(seatHold);
+        } catch (RuntimeException e) {
+            addFailure(failure, e);
+        }
+    }
+
+    /**
+    * Undoes a reservation a listener failed to record: the hold loses its
+    * confirmation id and its seats go back from RESERVED to VACANT.
+    */
+    private void cancelReservation(SeatHold seatHold, RuntimeException failure) {
+        seatHold.setConfirmationId(null);
+        releaseAfterFailure(seatHold, failure);
+    }
+
+    /**
+    * Returns the first of several listener failures, with the later ones
+    * added to it as suppressed exceptions.
+    */
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        if (e != failure) {
+            failure.addSuppressed(e);
         }
+        return failure;
     }
 }
\ No newline at end of file
@@ -0,0 +1,476 @@
+package com.clementlu.ticketservice.Persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of seat hold events.
+ * <p>
+ * Every record gets the next sequence number and is written by a single
+ * writer thread. The writer takes every record appended since its last
+ * write, writes them in one go and forces them to disk with one
+ * {@code fsync}, so threads that append while a sync is in progress
+ * share the next one ("group commit"). {@code append} does not wait for
+ * the record to reach the disk; {@code awaitDurable} does.
+ * <p>
+ * The journal is split into segment files named after the sequence
+ * number of their first record, so segments that are covered by a
+ * snapshot can be deleted. A segment starts with a header of
+ * {@code MAGIC}, {@code VERSION} and the first sequence number. Each
+ * record is laid out as
+ * <pre>
+ * int   length of the rest of the record
+ * long  sequence number
+ * byte  type (HOLD, RESERVE or RELEASE)
+ * int   seat hold id
+ * int   number of seats
+ * int[] seat indexes
+ * int   CRC32 of the bytes from the sequence number to the last seat
+ * </pre>
+ * A record cut short by a crash fails its length or checksum check and
+ * ends the segment when it is read back.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatJournal implements Closeable {
+    public static final int MAGIC = 0x534a524e;
+    public static final int VERSION = 1;
+
+    public static final byte HOLD = 1;
+    public static final byte RESERVE = 2;
+    public static final byte RELEASE = 3;
+
+    private static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int ROLL_MARKER = -1;
+    private static final int RECORD_HEADER_BYTES = 21;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+    * Receives the records read back by {@code replay}.
+    */
+    public interface RecordHandler {
+        void record(long sequence, byte type, int seatHoldId, int[] seatIndexes, int count);
+    }
+
+    private final Path directory;
+    private final Object appendLock = new Object();
+    private final Object durableLock = new Object();
+    private final Thread writer;
+
+    private List<ByteBuffer> pending = new ArrayList<ByteBuffer>();
+    private long nextSequence;
+    private boolean closed;
+
+    private volatile long durableSequence;
+    private volatile long segmentStart;
+    private volatile IOException failure;
+    private FileChannel channel;
+
+    /**
+    * Opens a journal that appends to a new segment.
+    *
+    * @param directory Directory that holds the segments.
+    * @param nextSequence Sequence number of the next record, which is one
+    * more than the last record already in the journal.
+    * @throws IOException If the new segment cannot be created.
+    */
+    public SeatJournal(Path directory, long nextSequence) throws IOException {
+        if (nextSequence < 1) {
+            throw new IllegalArgumentException("Sequence numbers start at 1!");
+        }
+        this.directory = directory;
+        this.nextSequence = nextSequence;
+        this.durableSequence = nextSequence - 1;
+        Files.createDirectories(directory);
+        for (long start : segmentStarts(directory)) {
+            if (start >= nextSequence) {
+                // Left over past the end of what was replayed.
+                Files.delete(segmentPath(directory, start));
+            }
+        }
+        openSegment(nextSequence);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "seat-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+    * Appends a record to the journal.
+    *
+    * @param type HOLD, RESERVE or RELEASE.
+    * @param seatHoldId Id of the hold the record is about.
+    * @param seatIndexes Indexes of the hold's seats.
+    * @param count Number of indexes in {@code seatIndexes} to use.
+    * @return Sequence number of the record.
+    * @throws IOException If the journal has failed or is closed.
+    */
+    public long append(byte type, int seatHoldId, int[] seatIndexes, int count) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(4 + RECORD_HEADER_BYTES + 4 * count);
+        synchronized (appendLock) {
+            checkOpen();
+            long sequence = nextSequence++;
+            record.putInt(record.capacity() - 4);
+            record.putLong(sequence);
+            record.put(type);
+            record.putInt(seatHoldId);
+            record.putInt(count);
+            for (int i = 0; i < count; i++) {
+                record.putInt(seatIndexes[i]);
+            }
+            record.putInt(checksum(record.array(), 4, record.position() - 4));
+            record.flip();
+            pending.add(record);
+            if (pending.size() == 1) {
+                appendLock.notify();
+            }
+            return sequence;
+        }
+    }
+
+    /**
+    * Waits until every record up to {@code sequence} is on disk.
+    *
+    * @param sequence Sequence number returned by {@code append}.
+    * @throws IOException If the journal failed before the record was
+    * written.
+    */
+    public void awaitDurable(long sequence) throws IOException {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        boolean interrupted = false;
+        synchronized (durableLock) {
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durableSequence < sequence) {
+            throw new IOException("Journal failed", failure);
+        }
+    }
+
+    /**
+    * Returns the sequence number of the last record appended.
+    *
+    * @return Last sequence number, or 0 if nothing was ever appended.
+    */
+    public long getLastSequence() {
+        synchronized (appendLock) {
+            return nextSequence - 1;
+        }
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+    * Starts a new segment, so that the records appended so far can be
+    * deleted once a snapshot covers them.
+    *
+    * @return Sequence number of the last record in the old segments.
+    * @throws IOException If the journal has failed or is closed.
+    */
+    public long roll() throws IOException {
+        long lastSequence;
+        synchronized (appendLock) {
+            checkOpen();
+            lastSequence = nextSequence - 1;
+            if (segmentStart == nextSequence) {
+                return lastSequence;
+            }
+            ByteBuffer marker = ByteBuffer.allocate(12);
+            marker.putInt(ROLL_MARKER).putLong(nextSequence).flip();
+            pending.add(marker);
+            if (pending.size() == 1) {
+                appendLock.notify();
+            }
+        }
+        boolean interrupted = false;
+        synchronized (durableLock) {
+            while (segmentStart <= lastSequence && failure == null) {
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (segmentStart <= lastSequence) {
+            throw new IOException("Journal failed", failure);
+        }
+        return lastSequence;
+    }
+
+    /**
+    * Deletes the segments whose records all have a sequence number of at
+    * most {@code sequence}.
+    *
+    * @param sequence Last sequence number covered by a snapshot.
+    * @throws IOException If a segment cannot be deleted.
+    */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        long current = segmentStart;
+        for (int i = 0; i + 1 < starts.size(); i++) {
+            if (starts.get(i) < current && starts.get(i + 1) <= sequence + 1) {
+                Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+            }
+        }
+    }
+
+    /**
+    * Writes out the records appended so far and stops the writer thread.
+    */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appendLock.notify();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw new IOException("Journal failed", failure);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        if (failure != null) {
+            throw new IOException("Journal failed", failure);
+        }
+    }
+
+    /**
+    * Writer thread: writes and syncs everything appended since the last
+    * sync, then does the same again.
+    */
+    private void writeLoop() {
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        while (true) {
+            boolean closing;
+            synchronized (appendLock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        appendLock.wait();
+                    } catch (InterruptedException e) {
+                        // Only close stops the writer.
+                    }
+                }
+                List<ByteBuffer> swap = pending;
+                pending = batch;
+                batch = swap;
+                closing = closed;
+            }
+            try {
+                int from = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    ByteBuffer record = batch.get(i);
+                    if (record.getInt(0) == ROLL_MARKER) {
+                        write(batch, from, i);
+                        channel.close();
+                        openSegment(record.getLong(4));
+                        from = i + 1;
+                    }
+                }
+                write(batch, from, batch.size());
+            } catch (IOException e) {
+                failure = e;
+            }
+            batch.clear();
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+            if (closing || failure != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+    * Writes records {@code from} to {@code to} of a batch with one
+    * gathering write and syncs them.
+    */
+    private void write(List<ByteBuffer> batch, int from, int to) throws IOException {
+        if (from == to) {
+            return;
+        }
+        ByteBuffer[] buffers = batch.subList(from, to).toArray(new ByteBuffer[to - from]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        channel.force(false);
+        durableSequence = buffers[buffers.length - 1].getLong(4);
+    }
+
+    private void openSegment(long start) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, start), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(start).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        segmentStart = start;
+    }
+
+    /**
+    * Reads back every record after {@code afterSequence}, in order.
+    * <p>
+    * Reading a segment stops at the first record that is cut short or
+    * fails its checksum, and the segment is truncated there, so the torn
+    * tail of a crash is dropped. Reading continues with the next segment
+    * if it picks up right where the last good record left off.
+    *
+    * @param directory Directory that holds the segments.
+    * @param afterSequence Records up to this sequence number are skipped.
+    * @param handler Receives the records.
+    * @return Sequence number of the last record read, or
+    * {@code afterSequence} if there were none.
+    * @throws IOException If a segment cannot be read.
+    */
+    public static long replay(Path directory, long afterSequence, RecordHandler handler)
+            throws IOException {
+        long lastSequence = afterSequence;
+        if (!Files.isDirectory(directory)) {
+            return lastSequence;
+        }
+        int[] seatIndexes = new int[16];
+        for (long start : segmentStarts(directory)) {
+            if (start > lastSequence + 1) {
+                break;
+            }
+            Path path = segmentPath(directory, start);
+            try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                long size = segment.size();
+                MappedByteBuffer buffer = segment.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (size < SEGMENT_HEADER_BYTES || buffer.getInt() != MAGIC
+                        || buffer.getInt() != VERSION || buffer.getLong() != start) {
+                    continue;
+                }
+                long valid = buffer.position();
+                while (buffer.remaining() >= 4) {
+                    int length = buffer.getInt();
+                    if (length < RECORD_HEADER_BYTES || length > buffer.remaining()
+                            || (length - RECORD_HEADER_BYTES) % 4 != 0) {
+                        break;
+                    }
+                    int bodyStart = buffer.position();
+                    long sequence = buffer.getLong();
+                    byte type = buffer.get();
+                    int seatHoldId = buffer.getInt();
+                    int count = buffer.getInt();
+                    if (count != (length - RECORD_HEADER_BYTES) / 4) {
+                        break;
+                    }
+                    if (seatIndexes.length < count) {
+                        seatIndexes = new int[Math.max(count, seatIndexes.length * 2)];
+                    }
+                    for (int i = 0; i < count; i++) {
+                        seatIndexes[i] = buffer.getInt();
+                    }
+                    int crc = buffer.getInt();
+                    if (crc != checksum(buffer, bodyStart, length - 4)) {
+                        break;
+                    }
+                    valid = buffer.position();
+                    if (sequence > lastSequence) {
+                        if (sequence != lastSequence + 1) {
+                            break;
+                        }
+                        handler.record(sequence, type, seatHoldId, seatIndexes, count);
+                        lastSequence = sequence;
+                    }
+                }
+                if (valid < size) {
+                    segment.truncate(valid);
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    static Path segmentPath(Path directory, long start) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    /**
+    * Returns the first sequence number of every segment, oldest first.
+    */
+    static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<Long>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                try {
+                    starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment.
+                }
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+}
@@ -0,0 +1,188 @@
+package com.clementlu.ticketservice.Persistence;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.Venue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact snapshot of a venue's seat states.
+ * <p>
+ * A snapshot file is named after the last journal sequence number it
+ * covers and is laid out as
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * long   last journal sequence number covered
+ * int    rows (seats per row of the seat map)
+ * int    columns (rows of the seat map)
+ * byte[] seat states, 2 bits per seat, 4 seats per byte, lowest bits first
+ * int    CRC32 of the seat states
+ * </pre>
+ * where a seat's 2 bits are the ordinal of its {@code SeatStatus}. The
+ * file is written through a memory mapping to a temporary file that is
+ * renamed into place once it is on disk, so a crash never leaves a
+ * half-written snapshot behind.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatSnapshot {
+    public static final int MAGIC = 0x53534e50;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 24;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int RESTORE_CHUNK = 1 << 16;
+
+    private SeatSnapshot() {
+    }
+
+    /**
+    * Writes a snapshot of a venue's seat states.
+    *
+    * @param directory Directory to write the snapshot to.
+    * @param venue Venue to take the snapshot of.
+    * @param sequence Last journal sequence number the snapshot covers.
+    * @return Path of the snapshot.
+    * @throws IOException If the snapshot cannot be written.
+    */
+    public static Path write(Path directory, Venue venue, long sequence) throws IOException {
+        int totalSeats = venue.getTotalSeats();
+        int dataBytes = (int) ((totalSeats + 3L) / 4);
+        Path path = snapshotPath(directory, sequence);
+        Path temp = directory.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_BYTES + dataBytes + 4L);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(sequence)
+                .putInt(venue.getRows()).putInt(venue.getColumns());
+            for (int index = 0; index < totalSeats; index += 4) {
+                int packed = 0;
+                int end = Math.min(index + 4, totalSeats);
+                for (int i = index; i < end; i++) {
+                    packed |= venue.getSeatStatus(i).ordinal() << ((i - index) * 2);
+                }
+                buffer.put((byte) packed);
+            }
+            buffer.putInt(checksum(buffer, HEADER_BYTES, dataBytes));
+            buffer.force();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return path;
+    }
+
+    /**
+    * Reads a snapshot into a new venue.
+    *
+    * @param path Snapshot to read.
+    * @param venue Empty venue with the snapshot's rows and columns.
+    * @return Last journal sequence number the snapshot covers.
+    * @throws IOException If the snapshot cannot be read, is damaged or is
+    * for a venue of another size.
+    */
+    public static long read(Path path, Venue venue) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4) {
+                throw new IOException("Snapshot " + path + " is too short");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Snapshot " + path + " has an unknown format");
+            }
+            long sequence = buffer.getLong();
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            if (rows != venue.getRows() || columns != venue.getColumns()) {
+                throw new IOException("Snapshot " + path + " is for a " + rows + "x"
+                    + columns + " venue");
+            }
+            int totalSeats = venue.getTotalSeats();
+            int dataBytes = (int) ((totalSeats + 3L) / 4);
+            if (size != HEADER_BYTES + dataBytes + 4L
+                    || buffer.getInt(HEADER_BYTES + dataBytes) != checksum(buffer, HEADER_BYTES, dataBytes)) {
+                throw new IOException("Snapshot " + path + " is damaged");
+            }
+            SeatStatus[] statuses = SeatStatus.values();
+            int[][] chunks = new int[statuses.length][RESTORE_CHUNK];
+            int[] counts = new int[statuses.length];
+            for (int index = 0; index < totalSeats; index++) {
+                int packed = buffer.get(HEADER_BYTES + (index >>> 2));
+                int ordinal = (packed >>> ((index & 3) * 2)) & 3;
+                if (ordinal >= statuses.length) {
+                    throw new IOException("Snapshot " + path + " is damaged");
+                }
+                if (statuses[ordinal] != SeatStatus.VACANT) {
+                    chunks[ordinal][counts[ordinal]++] = index;
+                    if (counts[ordinal] == RESTORE_CHUNK) {
+                        venue.changeSeatStatus(chunks[ordinal], RESTORE_CHUNK, statuses[ordinal]);
+                        counts[ordinal] = 0;
+                    }
+                }
+            }
+            for (int ordinal = 0; ordinal < statuses.length; ordinal++) {
+                venue.changeSeatStatus(chunks[ordinal], counts[ordinal], statuses[ordinal]);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+    * Returns the snapshots in a directory, newest first.
+    *
+    * @param directory Directory that holds the snapshots.
+    * @return Paths of the snapshots.
+    * @throws IOException If the directory cannot be read.
+    */
+    public static List<Path> list(Path directory) throws IOException {
+        List<Long> sequences = new ArrayList<Long>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory,
+                    SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+                for (Path path : paths) {
+                    String name = path.getFileName().toString();
+                    try {
+                        sequences.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                            name.length() - SNAPSHOT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // Not a snapshot.
+                    }
+                }
+            }
+        }
+        Collections.sort(sequences, Collections.reverseOrder());
+        List<Path> snapshots = new ArrayList<Path>(sequences.size());
+        for (long sequence : sequences) {
+            snapshots.add(snapshotPath(directory, sequence));
+        }
+        return snapshots;
+    }
+
+    static Path snapshotPath(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer data = buffer.duplicate();
+        data.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
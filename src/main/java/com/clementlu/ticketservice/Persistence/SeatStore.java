@@ -0,0 +1,254 @@
+package com.clementlu.ticketservice.Persistence;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.SeatHoldListener;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a venue's seat state on disk.
+ * <p>
+ * Opening a store recovers the venue: the newest snapshot is read and
+ * the journal records after it are replayed. Holds do not survive a
+ * restart, since their ids and expiry timeouts are gone, so seats still
+ * on HOLD after the replay are made VACANT again.
+ * <p>
+ * Added to a {@code PerformanceVenueTicketService} as a
+ * {@code SeatHoldListener}, the store journals every hold, reservation
+ * and release. Reservations wait for their record to be on disk before
+ * the confirmation id is returned; holds and releases do not, since
+ * losing one only makes seats VACANT after a crash. {@code checkpoint}
+ * writes a snapshot and deletes the journal segments it covers.
+ * <p>
+ * A checkpoint reads the seat states while holds are being made, so the
+ * snapshot may contain changes made after its journal sequence number.
+ * Replaying the journal from that number sets those seats again, in
+ * order, so the result is the same.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class SeatStore implements SeatHoldListener, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(SeatStore.class.getName());
+
+    private final Path directory;
+    private final Venue venue;
+    private final SeatJournal journal;
+    private final long recoveryNanos;
+    private final long recoveredRecords;
+    private volatile boolean closed;
+
+    /**
+    * Opens the store in {@code directory}, recovering the venue from it
+    * or creating an empty venue if the directory holds no state.
+    *
+    * @param directory Directory that holds the snapshots and journal.
+    * @param rows Number of seats in each row of the seat map.
+    * @param columns Number of rows of the seat map.
+    * @param storageMode How the recovered venue stores its seats.
+    * @throws IOException If the state cannot be read or the journal
+    * cannot be opened.
+    * @throws InvalidVenueException If the venue size is invalid.
+    */
+    public SeatStore(Path directory, int rows, int columns, SeatStorageMode storageMode)
+            throws IOException, InvalidVenueException {
+        long start = System.nanoTime();
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        Venue recovered = null;
+        long snapshotSequence = 0;
+        for (Path snapshot : SeatSnapshot.list(directory)) {
+            Venue candidate = new Venue(rows, columns, storageMode);
+            try {
+                snapshotSequence = SeatSnapshot.read(snapshot, candidate);
+                recovered = candidate;
+                break;
+            } catch (IOException e) {
+                // Fall back to the next older snapshot.
+            }
+        }
+        if (recovered == null) {
+            recovered = new Venue(rows, columns, storageMode);
+        }
+        venue = recovered;
+
+        final int[] statusChanges = new int[1];
+        long lastSequence = SeatJournal.replay(directory, snapshotSequence,
+            new SeatJournal.RecordHandler() {
+                @Override
+                public void record(long sequence, byte type, int seatHoldId,
+                        int[] seatIndexes, int count) {
+                    venue.changeSeatStatus(seatIndexes, count, statusOf(type));
+                    statusChanges[0]++;
+                }
+            });
+        recoveredRecords = statusChanges[0];
+        releaseHeldSeats();
+
+        journal = new SeatJournal(directory, lastSequence + 1);
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    public Venue getVenue() {
+        return venue;
+    }
+
+    public SeatJournal getJournal() {
+        return journal;
+    }
+
+    /**
+    * Returns how long opening the store took to recover the venue.
+    *
+    * @param unit Unit to return the time in.
+    * @return Recovery time.
+    */
+    public long getRecoveryTime(TimeUnit unit) {
+        return unit.convert(recoveryNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+    * Returns the number of journal records replayed when the store was
+    * opened.
+    *
+    * @return Number of records replayed.
+    */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    @Override
+    public void seatsHeld(SeatHold seatHold) {
+        append(SeatJournal.HOLD, seatHold);
+    }
+
+    @Override
+    public void seatsReserved(SeatHold seatHold) {
+        long sequence = append(SeatJournal.RESERVE, seatHold);
+        try {
+            journal.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void seatsReleased(SeatHold seatHold) {
+        append(SeatJournal.RELEASE, seatHold);
+    }
+
+    /**
+    * Writes a snapshot of the venue and deletes the journal segments and
+    * older snapshots it covers.
+    *
+    * @return Last journal sequence number covered by the snapshot.
+    * @throws IOException If the snapshot cannot be written.
+    */
+    public synchronized long checkpoint() throws IOException {
+        long sequence = journal.roll();
+        journal.awaitDurable(journal.getLastSequence());
+        Path snapshot = SeatSnapshot.write(directory, venue, sequence);
+        journal.deleteSegmentsBefore(sequence);
+        for (Path older : SeatSnapshot.list(directory)) {
+            if (!older.equals(snapshot)) {
+                Files.deleteIfExists(older);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+    * Writes a checkpoint every {@code period} on {@code timer} until the
+    * store is closed.
+    * <p>
+    * A checkpoint of a large venue takes a while, so {@code timer}
+    * should not be the one that expires holds.
+    *
+    * @param timer Timer that runs the checkpoints.
+    * @param period Time between checkpoints.
+    * @param unit Unit of {@code period}.
+    */
+    public void scheduleCheckpoints(final HashedWheelTimer timer, final long period,
+            final TimeUnit unit) {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    return;
+                }
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Checkpoint failed", e);
+                }
+                scheduleCheckpoints(timer, period, unit);
+            }
+        }, period, unit);
+    }
+
+    /**
+    * Closes the journal once everything appended to it is on disk.
+    */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        journal.close();
+    }
+
+    private long append(byte type, SeatHold seatHold) {
+        List<Seat> seats = seatHold.getSeats();
+        int[] seatIndexes = new int[seats.size()];
+        for (int i = 0; i < seatIndexes.length; i++) {
+            seatIndexes[i] = venue.getSeatIndex(seats.get(i));
+        }
+        try {
+            return journal.append(type, seatHold.getId(), seatIndexes, seatIndexes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+    * Makes every seat that is on HOLD after recovery VACANT.
+    */
+    private void releaseHeldSeats() {
+        int held = venue.getNumSeats(SeatStatus.HOLD);
+        if (held == 0) {
+            return;
+        }
+        int[] seatIndexes = new int[held];
+        int count = 0;
+        for (int index = 0; index < venue.getTotalSeats() && count < held; index++) {
+            if (venue.getSeatStatus(index) == SeatStatus.HOLD) {
+                seatIndexes[count++] = index;
+            }
+        }
+        venue.changeSeatStatus(seatIndexes, count, SeatStatus.VACANT);
+    }
+
+    private static SeatStatus statusOf(byte type) {
+        switch (type) {
+            case SeatJournal.HOLD:
+                return SeatStatus.HOLD;
+            case SeatJournal.RESERVE:
+                return SeatStatus.RESERVED;
+            default:
+                return SeatStatus.VACANT;
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package com.clementlu.ticketservice.Replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.clementlu.ticketservice.SeatHoldListener;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Publishes the hold transitions of a ticket service as an ordered,
+ * sequence-numbered event stream, for a {@code ReplicationStandby} to
+ * apply to its own venue.
+ * <p>
+ * The publisher is added to the service as a {@code SeatHoldListener}.
+ * Every callback becomes one event with the next sequence number, in the
+ * order the callbacks ran, which the service already keeps consistent
+ * for every seat. Appending an event takes no lock: its sequence number
+ * comes from an atomic counter and it is stored in a chunked log that
+ * senders read without locking. Each connected standby gets its own
+ * sender thread, which writes events as they are appended and flushes
+ * when it has caught up, and a reader thread for the standby's
+ * acknowledgements.
+ * <p>
+ * The log only keeps events that a connected standby may still need.
+ * Every {@code TRIM_INTERVAL_MILLIS}, and whenever {@code trimLog} is
+ * called, the events up to the lowest sequence number the connected
+ * standbys have acknowledged are folded into a snapshot of the seats
+ * and holds and dropped from the log, as is everything but the last
+ * {@code setMaxLogEvents} events. A standby that connects again after
+ * losing the connection resumes from the last event it applied; if that
+ * event was already trimmed, it is sent the snapshot and continues from
+ * the event after it.
+ * <p>
+ * A connection starts with {@code MAGIC}, {@code VERSION} and the size
+ * of the venue from the publisher, answered by the last sequence number
+ * the standby applied. Each event is laid out as
+ * <pre>
+ * long   sequence number
+ * byte   type (HOLD, RESERVE, RELEASE or CHANGE)
+ * long   System.nanoTime on the primary when the event was published
+ * int    seat hold id
+ * int    hold version
+ * long   nanoseconds left before the hold expires, or -1 for none
+ * UTF    customer email
+ * int    number of seats
+ * int[]  seat indexes
+ * </pre>
+ * and a snapshot as
+ * <pre>
+ * long   sequence number of the last event folded into it
+ * byte   type (SNAPSHOT)
+ * int    number of words of the reserved seat bitmap
+ * long[] reserved seat bitmap, as {@code BitSet.toLongArray}
+ * int    number of holds
+ *        for each hold, the seat hold id through the seat indexes of
+ *        an event
+ * </pre>
+ * and the standby answers with the {@code long} sequence number it has
+ * applied up to whenever it has caught up, and at least every
+ * {@code ReplicationStandby.ACK_EVERY_EVENTS} events or
+ * {@code ReplicationStandby.ACK_INTERVAL_MILLIS} while it has not.
+ * <p>
+ * By default the service does not wait for the standby. With
+ * {@code setReserveTimeout} a reservation waits until a standby has
+ * applied it, or until the timeout, before its confirmation id is
+ * returned, so an acknowledged reservation survives the loss of the
+ * primary.
+ * <p>
+ * The venue should have no seats on HOLD when the publisher is created;
+ * its RESERVED seats, such as the blocked cells of a layout, start the
+ * snapshot.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class ReplicationPublisher implements SeatHoldListener, Closeable {
+    public static final int MAGIC = 0x5452504c;
+    public static final int VERSION = 2;
+
+    public static final byte HOLD = 1;
+    public static final byte RESERVE = 2;
+    public static final byte RELEASE = 3;
+    public static final byte CHANGE = 4;
+    public static final byte SNAPSHOT = 5;
+
+    public static final long TRIM_INTERVAL_MILLIS = 100;
+    public static final long DEFAULT_MAX_LOG_EVENTS = 1 << 20;
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicationPublisher.class.getName());
+    private static final AtomicInteger publisherCount = new AtomicInteger();
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final Venue venue;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final ScheduledExecutorService trimmer;
+    // Encoded events in chunks of CHUNK_SIZE; event n is slot
+    // (n - 1) % CHUNK_SIZE of chunk (n - 1) / CHUNK_SIZE. A slot is null
+    // until its event is stored and again once it was trimmed.
+    private final ConcurrentHashMap<Long, AtomicReferenceArray<byte[]>> chunks =
+        new ConcurrentHashMap<Long, AtomicReferenceArray<byte[]>>();
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final List<StandbyConnection> standbys = new CopyOnWriteArrayList<StandbyConnection>();
+    private final Object ackLock = new Object();
+    // Seats and holds after event firstSequence - 1, which every trimmed
+    // event was folded into. Guarded by trimLock.
+    private final Object trimLock = new Object();
+    private final BitSet reservedSeats;
+    private final Map<Integer, LoggedHold> loggedHolds = new HashMap<Integer, LoggedHold>();
+    private volatile long firstSequence = 1;
+    private volatile long maxLogEvents = DEFAULT_MAX_LOG_EVENTS;
+    private volatile long ackedSequence;
+    private volatile long reserveTimeoutNanos;
+    private volatile boolean closed;
+
+    /**
+    * A connected standby.
+    */
+    private static class StandbyConnection {
+        final Socket socket;
+        final Thread sender;
+        volatile long ackedSequence;
+
+        StandbyConnection(Socket socket, Thread sender, long ackedSequence) {
+            this.socket = socket;
+            this.sender = sender;
+            this.ackedSequence = ackedSequence;
+        }
+    }
+
+    /**
+    * A hold as of the last trimmed event.
+    */
+    private static class LoggedHold {
+        final String customerEmail;
+        int version;
+        int[] seats;
+        // Deadline on this machine, or -1 for none.
+        long deadline;
+
+        LoggedHold(String customerEmail, int version, int[] seats, long deadline) {
+            this.customerEmail = customerEmail;
+            this.version = version;
+            this.seats = seats;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+    * Starts listening for standbys on the loopback address.
+    *
+    * @param venue Venue of the service the publisher is added to.
+    * @param port Port to listen on, or 0 for any free port.
+    * @throws IOException If the port cannot be bound.
+    */
+    public ReplicationPublisher(Venue venue, int port) throws IOException {
+        this(venue, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+    * Starts listening for standbys.
+    *
+    * @param venue Venue of the service the publisher is added to.
+    * @param address Address to listen on.
+    * @throws IOException If the address cannot be bound.
+    */
+    public ReplicationPublisher(Venue venue, InetSocketAddress address) throws IOException {
+        this.venue = venue;
+        int totalSeats = venue.getTotalSeats();
+        reservedSeats = new BitSet(totalSeats);
+        for (int index = venue.nextOccupiedSeat(0, totalSeats); index < totalSeats;
+                index = venue.nextOccupiedSeat(index + 1, totalSeats)) {
+            if (venue.getSeatStatus(index) == SeatStatus.RESERVED) {
+                reservedSeats.set(index);
+            }
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        final String name = "replication-publisher-" + publisherCount.incrementAndGet();
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptStandbys();
+            }
+        }, name);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        trimmer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-trimmer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        trimmer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    trimLog();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not trim the replication log", e);
+                }
+            }
+        }, TRIM_INTERVAL_MILLIS, TRIM_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+    * Makes reservations wait until a standby has applied them.
+    *
+    * @param timeout Longest a reservation waits, or 0 not to wait.
+    * @param unit Unit of {@code timeout}.
+    */
+    public void setReserveTimeout(long timeout, TimeUnit unit) {
+        reserveTimeoutNanos = unit.toNanos(Math.max(timeout, 0));
+    }
+
+    /**
+    * Sets how many events the log keeps for a connected standby that has
+    * not acknowledged them. A standby further behind is sent a snapshot.
+    *
+    * @param maxEvents Number of events.
+    */
+    public void setMaxLogEvents(long maxEvents) {
+        if (maxEvents < 0) {
+            throw new IllegalArgumentException("Max log events must not be negative!");
+        }
+        maxLogEvents = maxEvents;
+    }
+
+    @Override
+    public void seatsHeld(SeatHold seatHold) {
+        append(HOLD, seatHold);
+    }
+
+    @Override
+    public void seatsReserved(SeatHold seatHold) {
+        long sequence = append(RESERVE, seatHold);
+        long timeout = reserveTimeoutNanos;
+        if (timeout > 0 && !standbys.isEmpty()) {
+            try {
+                awaitReplicated(sequence, timeout, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void seatsReleased(SeatHold seatHold) {
+        append(RELEASE, seatHold);
+    }
+
+    @Override
+    public void holdChanged(SeatHold seatHold) {
+        append(CHANGE, seatHold);
+    }
+
+    private long append(byte type, SeatHold seatHold) {
+        long now = System.nanoTime();
+        long deadline = seatHold.getExpiryDeadline();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 4 * seatHold.getSeats().size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(0);
+            out.writeByte(type);
+            out.writeLong(now);
+            out.writeInt(seatHold.getId());
+            out.writeInt(seatHold.getVersion());
+            out.writeLong(deadline == SeatHold.NO_EXPIRY ? -1 : Math.max(deadline - now, 0));
+            out.writeUTF(seatHold.getCustomerEmail());
+            out.writeInt(seatHold.getSeats().size());
+            for (Seat seat : seatHold.getSeats()) {
+                out.writeInt(venue.getSeatIndex(seat));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] event = bytes.toByteArray();
+        long sequence = lastSequence.incrementAndGet();
+        for (int i = 0; i < 8; i++) {
+            event[i] = (byte) (sequence >>> (56 - 8 * i));
+        }
+        long chunkNumber = (sequence - 1) >>> CHUNK_BITS;
+        AtomicReferenceArray<byte[]> chunk = chunks.get(chunkNumber);
+        if (chunk == null) {
+            AtomicReferenceArray<byte[]> created = new AtomicReferenceArray<byte[]>(CHUNK_SIZE);
+            chunk = chunks.putIfAbsent(chunkNumber, created);
+            if (chunk == null) {
+                chunk = created;
+            }
+        }
+        chunk.set((int) ((sequence - 1) & (CHUNK_SIZE - 1)), event);
+        for (StandbyConnection standby : standbys) {
+            LockSupport.unpark(standby.sender);
+        }
+        return sequence;
+    }
+
+    /**
+    * Returns an event of the log.
+    *
+    * @return Encoded event, or null if it was trimmed or is not stored
+    * yet.
+    */
+    private byte[] getEvent(long sequence) {
+        AtomicReferenceArray<byte[]> chunk = chunks.get((sequence - 1) >>> CHUNK_BITS);
+        return chunk == null ? null : chunk.get((int) ((sequence - 1) & (CHUNK_SIZE - 1)));
+    }
+
+    /**
+    * Returns the sequence number of the last event published.
+    *
+    * @return Sequence number, or 0 if there was no event.
+    */
+    public long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+    * Returns the sequence number of the oldest event still in the log.
+    *
+    * @return Sequence number, {@code getLastSequence() + 1} once every
+    * event was trimmed.
+    */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+    * Returns the highest sequence number a standby has applied.
+    *
+    * @return Sequence number, or 0 if no standby acknowledged an event.
+    */
+    public long getAckedSequence() {
+        return ackedSequence;
+    }
+
+    public int getNumStandbys() {
+        return standbys.size();
+    }
+
+    /**
+    * Waits until a standby has applied an event.
+    *
+    * @param sequence Sequence number of the event.
+    * @param timeout Longest time to wait.
+    * @param unit Unit of {@code timeout}.
+    * @return True if the event was applied in time.
+    * @throws InterruptedException If the thread is interrupted.
+    */
+    public boolean awaitReplicated(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (ackLock) {
+            long remaining;
+            while (ackedSequence < sequence && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(ackLock, remaining);
+            }
+            return ackedSequence >= sequence;
+        }
+    }
+
+    /**
+    * Folds the events no connected standby needs any more into the
+    * snapshot and drops them from the log. These are the events up to
+    * the lowest sequence number a connected standby acknowledged, or
+    * every event if none is connected, and any event before the last
+    * {@code maxLogEvents}. This also runs periodically on its own.
+    *
+    * @return Number of events trimmed.
+    */
+    public long trimLog() {
+        synchronized (trimLock) {
+            long last = lastSequence.get();
+            long trimTo = last;
+            for (StandbyConnection standby : standbys) {
+                trimTo = Math.min(trimTo, standby.ackedSequence);
+            }
+            trimTo = Math.max(trimTo, last - maxLogEvents);
+            long first = firstSequence;
+            long next = first;
+            for (; next <= trimTo; next++) {
+                byte[] event = getEvent(next);
+                if (event == null) {
+                    // Still being appended.
+                    break;
+                }
+                fold(event);
+            }
+            if (next == first) {
+                return 0;
+            }
+            // Moved on before the events go, so a sender that finds one
+            // missing sees that it was trimmed.
+            firstSequence = next;
+            for (long sequence = first; sequence < next; sequence++) {
+                long chunkNumber = (sequence - 1) >>> CHUNK_BITS;
+                int slot = (int) ((sequence - 1) & (CHUNK_SIZE - 1));
+                if (slot == CHUNK_SIZE - 1) {
+                    chunks.remove(chunkNumber);
+                } else {
+                    AtomicReferenceArray<byte[]> chunk = chunks.get(chunkNumber);
+                    if (chunk != null) {
+                        chunk.set(slot, null);
+                    }
+                }
+            }
+            return next - first;
+        }
+    }
+
+    /**
+    * Applies an event to the snapshot, the way a standby applies it to
+    * its venue.
+    */
+    private void fold(byte[] event) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(event, 8, event.length - 8));
+        try {
+            byte type = in.readByte();
+            long publishedNanos = in.readLong();
+            int seatHoldId = in.readInt();
+            int version = in.readInt();
+            long remaining = in.readLong();
+            String customerEmail = in.readUTF();
+            int[] seats = new int[in.readInt()];
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = in.readInt();
+            }
+            long deadline = remaining < 0 ? -1 : publishedNanos + remaining;
+            LoggedHold hold = loggedHolds.get(seatHoldId);
+            switch (type) {
+                case HOLD:
+                    loggedHolds.put(seatHoldId, new LoggedHold(customerEmail, version, seats, deadline));
+                    break;
+                case RESERVE:
+                    for (int seat : seats) {
+                        reservedSeats.set(seat);
+                    }
+                    loggedHolds.remove(seatHoldId);
+                    break;
+                case RELEASE:
+                    if (hold != null) {
+                        hold.version = Math.max(hold.version, version);
+                        hold.seats = ReplicationStandby.without(hold.seats, seats);
+                        if (hold.seats.length == 0) {
+                            loggedHolds.remove(seatHoldId);
+                        }
+                    }
+                    break;
+                case CHANGE:
+                    // Skips stale changes, as the standby does.
+                    if (hold != null && version > hold.version) {
+                        hold.version = version;
+                        hold.seats = seats;
+                        hold.deadline = deadline;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type " + type);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+    * Encodes the snapshot, which holds every event before the first one
+    * in the log.
+    */
+    private byte[] encodeSnapshot() {
+        synchronized (trimLock) {
+            long now = System.nanoTime();
+            long[] words = reservedSeats.toLongArray();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 8 * words.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeLong(firstSequence - 1);
+                out.writeByte(SNAPSHOT);
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+                out.writeInt(loggedHolds.size());
+                for (Map.Entry<Integer, LoggedHold> entry : loggedHolds.entrySet()) {
+                    LoggedHold hold = entry.getValue();
+                    out.writeInt(entry.getKey());
+                    out.writeInt(hold.version);
+                    out.writeLong(hold.deadline < 0 ? -1 : Math.max(hold.deadline - now, 0));
+                    out.writeUTF(hold.customerEmail);
+                    out.writeInt(hold.seats.length);
+                    for (int seat : hold.seats) {
+                        out.writeInt(seat);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private void acceptStandbys() {
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.log(Level.WARNING, "Replication publisher stopped accepting standbys", e);
+                }
+                return;
+            }
+            Thread sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }, Thread.currentThread().getName() + "-sender-" + socket.getPort());
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    /**
+    * Sends the log to a standby, from the event after the last one it
+    * applied, and then every new event as it is appended. A standby
+    * behind the first event in the log is sent the snapshot first.
+    */
+    private void serve(final Socket socket) {
+        // Holds back trimming until the standby says where it is.
+        final StandbyConnection standby = new StandbyConnection(socket, Thread.currentThread(), 0);
+        standbys.add(standby);
+        try {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(venue.getRows());
+            out.writeInt(venue.getColumns());
+            out.flush();
+            long next = in.readLong() + 1;
+            if (next < 1 || next > getLastSequence() + 1) {
+                LOGGER.warning("Standby " + socket.getRemoteSocketAddress() + " is at event " + (next - 1)
+                    + ", which this primary never published");
+                return;
+            }
+            standby.ackedSequence = next - 1;
+            Thread acks = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readAcks(standby, in);
+                }
+            }, Thread.currentThread().getName() + "-acks");
+            acks.setDaemon(true);
+            acks.start();
+            while (!closed && !socket.isClosed()) {
+                if (next < firstSequence) {
+                    byte[] snapshot = encodeSnapshot();
+                    out.write(snapshot);
+                    next = ByteBuffer.wrap(snapshot).getLong() + 1;
+                    continue;
+                }
+                byte[] event = getEvent(next);
+                if (event != null) {
+                    out.write(event);
+                    next++;
+                } else if (next >= firstSequence) {
+                    // Caught up; append wakes this thread.
+                    out.flush();
+                    LockSupport.park(this);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Standby " + socket.getRemoteSocketAddress() + " disconnected", e);
+        } finally {
+            standbys.remove(standby);
+            closeQuietly(socket);
+        }
+    }
+
+    private void readAcks(StandbyConnection standby, DataInputStream in) {
+        try {
+            while (true) {
+                long sequence = in.readLong();
+                standby.ackedSequence = sequence;
+                synchronized (ackLock) {
+                    if (sequence > ackedSequence) {
+                        ackedSequence = sequence;
+                        ackLock.notifyAll();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            closeQuietly(standby.socket);
+            LockSupport.unpark(standby.sender);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+    }
+
+    /**
+    * Stops listening and trimming and disconnects every standby.
+    */
+    @Override
+    public void close() {
+        closed = true;
+        trimmer.shutdownNow();
+        closeQuietly(serverSocket);
+        for (StandbyConnection standby : standbys) {
+            closeQuietly(standby.socket);
+            LockSupport.unpark(standby.sender);
+        }
+    }
+}
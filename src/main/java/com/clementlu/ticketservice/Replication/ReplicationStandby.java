@@ -0,0 +1,513 @@
+package com.clementlu.ticketservice.Replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.clementlu.ticketservice.PerformanceVenueTicketService;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Metrics.LatencyHistogram;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Warm standby that applies the event stream of a
+ * {@code ReplicationPublisher} to its own venue and hold table, so it can
+ * take over from the primary.
+ * <p>
+ * One reader thread applies the events in sequence order: a hold claims
+ * its seats, a reservation makes them RESERVED, a release makes them
+ * VACANT and a change replaces the hold's seats and deadline. Holds do
+ * not expire on the standby; their expiry arrives as a release from the
+ * primary. Two changes to the same hold can be published in the opposite
+ * order to the one they were made in, so a change is only applied if it
+ * is to a newer version of the hold than the standby has seen.
+ * <p>
+ * The standby acknowledges the last sequence number it applied whenever
+ * it has caught up with the stream, and also every
+ * {@code ACK_EVERY_EVENTS} events and every {@code ACK_INTERVAL_MILLIS}
+ * while it is behind, so a primary under steady load still hears from
+ * it.
+ * <p>
+ * The replication lag of each event is the time from its publication on
+ * the primary to its application here. It is measured with
+ * {@code System.nanoTime}, so it is only meaningful when both processes
+ * run on the same machine.
+ * <p>
+ * When the connection to the primary is lost, the standby keeps what it
+ * applied and can {@code connect} to the primary again, which resumes
+ * from the last event applied. A primary that has trimmed that event
+ * from its log sends a snapshot instead, and the standby's seats and
+ * holds are replaced with it. Otherwise {@code takeOver} stops applying
+ * events and returns a {@code PerformanceVenueTicketService} over the
+ * standby's venue with every replicated hold restored, keeping its id
+ * and the time it had left.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class ReplicationStandby implements Closeable {
+    public static final int ACK_EVERY_EVENTS = 1024;
+    public static final long ACK_INTERVAL_MILLIS = 10;
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicationStandby.class.getName());
+    private static final AtomicInteger standbyCount = new AtomicInteger();
+    private static final long ACK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(ACK_INTERVAL_MILLIS);
+
+    private final Venue venue;
+    // Replicated holds by id; only the reader thread changes them.
+    private final Map<Integer, ReplicatedHold> holds = new HashMap<Integer, ReplicatedHold>();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LongAdder applyErrors = new LongAdder();
+    private volatile CountDownLatch primaryLost = new CountDownLatch(1);
+    private Socket socket;
+    private Thread reader;
+    private volatile long appliedSequence;
+    private volatile long primaryLostNanos;
+    private volatile boolean closed;
+
+    /**
+    * A hold as the standby knows it.
+    */
+    private static class ReplicatedHold {
+        final String customerEmail;
+        // Newest version of the hold seen in an event.
+        int version;
+        int[] seats;
+        // Deadline on this machine, or -1 for none.
+        long deadline;
+
+        ReplicatedHold(String customerEmail, int version, int[] seats, long deadline) {
+            this.customerEmail = customerEmail;
+            this.version = version;
+            this.seats = seats;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+    * Creates a standby for a venue of the same size as the primary's,
+    * with no seats held or reserved.
+    *
+    * @param venue Venue to apply the events to.
+    */
+    public ReplicationStandby(Venue venue) {
+        this.venue = venue;
+    }
+
+    /**
+    * Connects to the primary and starts applying its events from the one
+    * after the last event applied, catching up with the primary's log.
+    * After the connection was lost, the standby can connect again.
+    *
+    * @param address Address of the primary's publisher.
+    * @throws IOException If the primary cannot be reached or its venue
+    * does not match.
+    * @throws IllegalStateException If the standby is connected, or was
+    * closed or taken over.
+    */
+    public synchronized void connect(InetSocketAddress address) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Standby was closed!");
+        }
+        if (reader != null) {
+            if (!isPrimaryLost()) {
+                throw new IllegalStateException("Standby is already connected!");
+            }
+            try {
+                // The holds may only be used once the old reader is done.
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while disconnecting");
+            }
+            reader = null;
+            socket = null;
+        }
+        final Socket connection = new Socket();
+        connection.connect(address);
+        connection.setTcpNoDelay(true);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(),
+            1 << 16));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        if (in.readInt() != ReplicationPublisher.MAGIC || in.readInt() != ReplicationPublisher.VERSION
+                || in.readInt() != venue.getRows() || in.readInt() != venue.getColumns()) {
+            connection.close();
+            throw new IOException("Primary at " + address + " does not publish this venue");
+        }
+        out.writeLong(appliedSequence);
+        out.flush();
+        socket = connection;
+        primaryLostNanos = 0;
+        primaryLost = new CountDownLatch(1);
+        final CountDownLatch lost = primaryLost;
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                applyEvents(connection, in, out, lost);
+            }
+        }, "replication-standby-" + standbyCount.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void applyEvents(Socket connection, DataInputStream in, DataOutputStream out,
+            CountDownLatch lost) {
+        long acked = appliedSequence;
+        long ackedNanos = System.nanoTime();
+        try {
+            while (!closed) {
+                long sequence = in.readLong();
+                byte type = in.readByte();
+                if (type == ReplicationPublisher.SNAPSHOT) {
+                    if (sequence <= appliedSequence) {
+                        throw new IOException("Snapshot at event " + sequence + " is behind event "
+                            + appliedSequence);
+                    }
+                    applySnapshot(in);
+                } else if (sequence != appliedSequence + 1) {
+                    throw new IOException("Expected event " + (appliedSequence + 1) + " but got " + sequence);
+                } else {
+                    apply(type, in);
+                }
+                appliedSequence = sequence;
+                long now = System.nanoTime();
+                if (in.available() == 0 || sequence - acked >= ACK_EVERY_EVENTS
+                        || now - ackedNanos >= ACK_INTERVAL_NANOS) {
+                    out.writeLong(sequence);
+                    out.flush();
+                    acked = sequence;
+                    ackedNanos = now;
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.info("Primary closed the replication stream at event " + appliedSequence);
+        } catch (IOException e) {
+            // A connection closed on this side was dropped on purpose.
+            if (!connection.isClosed()) {
+                LOGGER.log(Level.WARNING, "Lost the primary at event " + appliedSequence, e);
+            }
+        } finally {
+            primaryLostNanos = System.nanoTime();
+            lost.countDown();
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    private void apply(byte type, DataInputStream in) throws IOException {
+        long publishedNanos = in.readLong();
+        int seatHoldId = in.readInt();
+        int version = in.readInt();
+        long remaining = in.readLong();
+        String customerEmail = in.readUTF();
+        int[] seats = new int[in.readInt()];
+        for (int i = 0; i < seats.length; i++) {
+            seats[i] = in.readInt();
+        }
+        long now = System.nanoTime();
+        long deadline = remaining < 0 ? -1 : now + remaining;
+        ReplicatedHold hold = holds.get(seatHoldId);
+        switch (type) {
+            case ReplicationPublisher.HOLD:
+                if (venue.claimSeats(seats) == null) {
+                    applyErrors.increment();
+                } else {
+                    holds.put(seatHoldId, new ReplicatedHold(customerEmail, version, seats, deadline));
+                }
+                break;
+            case ReplicationPublisher.RESERVE:
+                venue.changeSeatStatus(seats, seats.length, SeatStatus.RESERVED);
+                holds.remove(seatHoldId);
+                break;
+            case ReplicationPublisher.RELEASE:
+                venue.releaseSeats(seats, seats.length);
+                if (hold != null) {
+                    // Seats given back carry the version of the hold that
+                    // kept the rest, so older changes are stale.
+                    hold.version = Math.max(hold.version, version);
+                    hold.seats = without(hold.seats, seats);
+                    if (hold.seats.length == 0) {
+                        holds.remove(seatHoldId);
+                    }
+                }
+                break;
+            case ReplicationPublisher.CHANGE:
+                // A change that lost a race with a reserve or expiry finds
+                // the hold gone and has nothing to change; one published
+                // after a newer version of the hold is stale.
+                if (hold != null && version > hold.version) {
+                    hold.version = version;
+                    hold.seats = seats;
+                    hold.deadline = deadline;
+                }
+                break;
+            default:
+                throw new IOException("Unknown event type " + type);
+        }
+        lag.record(System.nanoTime() - publishedNanos);
+    }
+
+    /**
+    * Replaces the seats and holds of the standby with a snapshot from the
+    * primary. Only seats whose status differs are changed.
+    */
+    private void applySnapshot(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        BitSet reserved = BitSet.valueOf(words);
+        BitSet held = new BitSet();
+        Map<Integer, ReplicatedHold> snapshotHolds = new HashMap<Integer, ReplicatedHold>();
+        long now = System.nanoTime();
+        for (int count = in.readInt(); count > 0; count--) {
+            int seatHoldId = in.readInt();
+            int version = in.readInt();
+            long remaining = in.readLong();
+            String customerEmail = in.readUTF();
+            int[] seats = new int[in.readInt()];
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = in.readInt();
+                held.set(seats[i]);
+            }
+            snapshotHolds.put(seatHoldId, new ReplicatedHold(customerEmail, version, seats,
+                remaining < 0 ? -1 : now + remaining));
+        }
+
+        int totalSeats = venue.getTotalSeats();
+        int[] changed = new int[64];
+        int count = 0;
+        for (int index = venue.nextOccupiedSeat(0, totalSeats); index < totalSeats;
+                index = venue.nextOccupiedSeat(index + 1, totalSeats)) {
+            SeatStatus status = venue.getSeatStatus(index);
+            if (status == SeatStatus.RESERVED ? !reserved.get(index) : !held.get(index)) {
+                changed = add(changed, count++, index);
+            }
+        }
+        venue.releaseSeats(changed, count);
+        count = 0;
+        for (int index = reserved.nextSetBit(0); index >= 0; index = reserved.nextSetBit(index + 1)) {
+            if (venue.getSeatStatus(index) != SeatStatus.RESERVED) {
+                changed = add(changed, count++, index);
+            }
+        }
+        venue.changeSeatStatus(changed, count, SeatStatus.RESERVED);
+        count = 0;
+        for (int index = held.nextSetBit(0); index >= 0; index = held.nextSetBit(index + 1)) {
+            if (venue.getSeatStatus(index) != SeatStatus.HOLD) {
+                changed = add(changed, count++, index);
+            }
+        }
+        venue.changeSeatStatus(changed, count, SeatStatus.HOLD);
+        holds.clear();
+        holds.putAll(snapshotHolds);
+    }
+
+    private static int[] add(int[] indexes, int count, int index) {
+        if (count == indexes.length) {
+            indexes = Arrays.copyOf(indexes, count * 2);
+        }
+        indexes[count] = index;
+        return indexes;
+    }
+
+    /**
+    * Returns the seats of a hold that are not in {@code removed}.
+    */
+    static int[] without(int[] seats, int[] removed) {
+        int[] kept = new int[seats.length];
+        int count = 0;
+        for (int seat : seats) {
+            boolean found = false;
+            for (int other : removed) {
+                if (seat == other) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                kept[count++] = seat;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /**
+    * Returns the sequence number of the last event applied.
+    *
+    * @return Sequence number, or 0 if no event was applied.
+    */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+    * Returns the time from publication on the primary to application on
+    * the standby, for every event applied. Only meaningful when both run
+    * on the same machine.
+    *
+    * @return Lag histogram.
+    */
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    /**
+    * Returns the number of events that did not apply cleanly, such as a
+    * hold of a seat that is not vacant on the standby.
+    *
+    * @return Number of events; 0 while the standby matches the primary.
+    */
+    public long getApplyErrors() {
+        return applyErrors.sum();
+    }
+
+    public Venue getVenue() {
+        return venue;
+    }
+
+    public boolean isPrimaryLost() {
+        return primaryLost.getCount() == 0;
+    }
+
+    /**
+    * Waits for the connection to the primary to be lost.
+    *
+    * @param timeout Longest time to wait.
+    * @param unit Unit of {@code timeout}.
+    * @return True if the primary was lost.
+    * @throws InterruptedException If the thread is interrupted.
+    */
+    public boolean awaitPrimaryLost(long timeout, TimeUnit unit) throws InterruptedException {
+        return primaryLost.await(timeout, unit);
+    }
+
+    /**
+    * Returns when the connection to the primary was lost.
+    *
+    * @return Time in {@code System.nanoTime} units, or 0 if it was not.
+    */
+    public long getPrimaryLostNanos() {
+        return primaryLostNanos;
+    }
+
+    /**
+    * Drops the connection to the primary and waits for the reader thread
+    * to stop. What was applied is kept, so the standby can connect again
+    * and resume from it.
+    *
+    * @throws InterruptedException If the thread is interrupted.
+    */
+    public synchronized void disconnect() throws InterruptedException {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+        if (reader != null) {
+            reader.join();
+        }
+    }
+
+    /**
+    * Stops applying events and starts a ticket service over the standby's
+    * venue with every replicated hold restored.
+    * <p>
+    * Each hold keeps its id and customer and expires after the time it
+    * had left when its last event was applied. A hold that expired on the
+    * primary without its release reaching the standby expires at once.
+    * A hold that cannot be restored, because its seats are not all on
+    * HOLD, is logged and counted as an apply error, and those of its seats
+    * no restored hold has are made VACANT.
+    *
+    * @param holdExpiry How long new holds last.
+    * @param unit Unit of {@code holdExpiry}.
+    * @return Ticket service that takes over from the primary.
+    * @throws InterruptedException If the thread is interrupted while the
+    * reader thread stops.
+    */
+    public synchronized PerformanceVenueTicketService takeOver(long holdExpiry, TimeUnit unit)
+            throws InterruptedException {
+        stop();
+        PerformanceVenueTicketService service = new PerformanceVenueTicketService(venue, holdExpiry, unit);
+        long now = System.nanoTime();
+        BitSet restored = new BitSet(venue.getTotalSeats());
+        List<ReplicatedHold> skipped = new ArrayList<ReplicatedHold>();
+        for (Map.Entry<Integer, ReplicatedHold> entry : holds.entrySet()) {
+            ReplicatedHold hold = entry.getValue();
+            List<Seat> seatList = new ArrayList<Seat>(hold.seats.length);
+            for (int index : hold.seats) {
+                seatList.add(venue.getSeat(index));
+            }
+            long expiryNanos = hold.deadline < 0 ? unit.toNanos(holdExpiry) : Math.max(hold.deadline - now, 0);
+            try {
+                service.restoreSeatHold(entry.getKey(), seatList, hold.customerEmail, expiryNanos);
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Could not restore seat hold " + entry.getKey(), e);
+                applyErrors.increment();
+                skipped.add(hold);
+                continue;
+            }
+            for (int index : hold.seats) {
+                restored.set(index);
+            }
+        }
+        // Seats of skipped holds would otherwise stay on HOLD for good.
+        int[] stranded = new int[64];
+        int count = 0;
+        for (ReplicatedHold hold : skipped) {
+            for (int index : hold.seats) {
+                if (!restored.get(index) && venue.getSeatStatus(index) == SeatStatus.HOLD) {
+                    stranded = add(stranded, count++, index);
+                }
+            }
+        }
+        venue.releaseSeats(stranded, count);
+        holds.clear();
+        return service;
+    }
+
+    /**
+    * Disconnects from the primary and waits for the reader thread to stop.
+    *
+    * @throws InterruptedException If the thread is interrupted.
+    */
+    private void stop() throws InterruptedException {
+        closed = true;
+        disconnect();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.clementlu.ticketservice;
+
+import com.clementlu.ticketservice.Models.SeatHold;
+
+/**
+ * Is told about the holds a {@code PerformanceVenueTicketService} makes,
+ * reserves and releases.
+ * <p>
+ * Callbacks run on the thread that changed the hold, so they should be
+ * short. A hold's seats are changed to HOLD or RESERVED before the
+ * listener is called and changed back to VACANT only after the listener
+ * is called, so a listener that records the callbacks in order never
+ * sees a seat released after it was held again.
+ * <p>
+ * An exception thrown by {@code seatsHeld} or {@code seatsReserved}
+ * means the listener could not record the change, so the change is
+ * undone: the hold is not made, or the reservation is not confirmed,
+ * and its seats are released through {@code seatsReleased}, so listeners
+ * after the failing one may hear of a release they saw no change for.
+ * The exception is then thrown to the caller. An exception thrown by
+ * {@code seatsReleased} does not stop the seats from being made VACANT;
+ * when expired holds are swept it is only logged.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public interface SeatHoldListener {
+
+    /**
+    * Called after the seats of a new hold were changed to HOLD.
+    *
+    * @param seatHold New hold.
+    */
+    default void seatsHeld(SeatHold seatHold) {
+    }
+
+    /**
+    * Called after the seats of a hold were changed to RESERVED and
+    * before the confirmation id is returned to the customer.
+    *
+    * @param seatHold Reserved hold.
+    */
+    default void seatsReserved(SeatHold seatHold) {
+    }
+
+    /**
+    * Called before the seats of an expired hold are changed back to
+    * VACANT.
+    *
+    * @param seatHold Expired hold.
+    */
+    default void seatsReleased(SeatHold seatHold) {
+    }
+
+    /**
+    * Called after a hold was replaced by a new version, because it was
+    * extended or gave back some of its seats. Seats given back are
+    * reported to {@code seatsReleased} first, as a hold with the same id
+    * and just those seats.
+    *
+    * @param seatHold New version of the hold.
+    */
+    default void holdChanged(SeatHold seatHold) {
+    }
+}
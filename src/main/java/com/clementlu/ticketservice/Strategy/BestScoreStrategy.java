@@ -0,0 +1,109 @@
+package com.clementlu.ticketservice.Strategy;
+
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Holds the block of seats next to each other in one row with the best
+ * score.
+ * <p>
+ * The score of a seat is {@code rowWeight * y + centerWeight * d}, where
+ * {@code d} is the seat's distance from the center of its row, and the
+ * score of a block is the sum of its seats' scores. Lower is better. The
+ * distances are precomputed as prefix sums, so a block is scored in O(1).
+ * Rows are visited front to back and the search stops as soon as no
+ * later row can beat the best block found, so rows behind a good block
+ * are never looked at. Rows whose longest run of vacant seats is too
+ * short are skipped without looking at their seats.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class BestScoreStrategy extends OptimisticSeatSelectionStrategy {
+    private final double rowWeight;
+    private final double centerWeight;
+    private volatile double[] centerDistances = new double[1];
+
+    public BestScoreStrategy() {
+        this(1.0, 1.0);
+    }
+
+    /**
+    * Creates a strategy with the given weights.
+    *
+    * @param rowWeight Cost of each row between a seat and the front.
+    * @param centerWeight Cost of each seat between a seat and the center
+    * of its row.
+    */
+    public BestScoreStrategy(double rowWeight, double centerWeight) {
+        if (rowWeight < 0 || centerWeight < 0) {
+            throw new IllegalArgumentException("Weights must not be negative!");
+        }
+        this.rowWeight = rowWeight;
+        this.centerWeight = centerWeight;
+    }
+
+    protected int[] selectSeats(Venue venue, int numSeats) {
+        int rows = venue.getRows();
+        if (numSeats > rows) {
+            return null;
+        }
+        double[] distances = centerDistances(rows);
+        int centeredStart = (rows - numSeats) / 2;
+        double minCenterScore = centerWeight * blockDistance(distances, centeredStart, numSeats);
+
+        int bestStart = -1;
+        double bestScore = Double.MAX_VALUE;
+        for (int y = 0; y < venue.getColumns(); y++) {
+            double rowScore = rowWeight * y * numSeats;
+            if (rowScore + minCenterScore >= bestScore) {
+                break;
+            }
+            if (venue.getMaxFreeRun(y) < numSeats) {
+                continue;
+            }
+            int rowStart = y * rows;
+            int rowEnd = rowStart + rows;
+            int start = venue.nextVacantSeat(rowStart);
+            while (start >= 0 && start < rowEnd) {
+                int end = venue.nextOccupiedSeat(start, rowEnd);
+                if (end - start >= numSeats) {
+                    int x = Math.max(start - rowStart,
+                        Math.min(centeredStart, end - rowStart - numSeats));
+                    double score = rowScore + centerWeight * blockDistance(distances, x, numSeats);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestStart = rowStart + x;
+                    }
+                }
+                start = venue.nextVacantSeat(end);
+            }
+        }
+        return bestStart < 0 ? null : ContiguousRowStrategy.block(bestStart, numSeats);
+    }
+
+    private static double blockDistance(double[] distances, int x, int numSeats) {
+        return distances[x + numSeats] - distances[x];
+    }
+
+    /**
+    * Returns prefix sums of each seat's distance from the center of a row,
+    * so that the distance of seats {@code [a, b)} is
+    * {@code distances[b] - distances[a]}.
+    *
+    * @param rows Number of seats in the row.
+    * @return Prefix sums of the center distances.
+    */
+    private double[] centerDistances(int rows) {
+        double[] distances = centerDistances;
+        if (distances.length != rows + 1) {
+            distances = new double[rows + 1];
+            double center = (rows - 1) / 2.0;
+            for (int x = 0; x < rows; x++) {
+                distances[x + 1] = distances[x] + Math.abs(x - center);
+            }
+            centerDistances = distances;
+        }
+        return distances;
+    }
+}
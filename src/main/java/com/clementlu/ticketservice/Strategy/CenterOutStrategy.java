@@ -0,0 +1,72 @@
+package com.clementlu.ticketservice.Strategy;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Holds seats starting from the center of the front row and working
+ * outwards, then moving on to the next row. A party may be split across
+ * rows.
+ * <p>
+ * The center-out order of a row is computed once per row length and
+ * reused for every row and request.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class CenterOutStrategy extends OptimisticSeatSelectionStrategy {
+    private volatile int[] centerOutOrder = new int[0];
+
+    protected int[] selectSeats(Venue venue, int numSeats) {
+        int rows = venue.getRows();
+        int[] order = centerOutOrder(rows);
+        int[] seatIndexes = new int[numSeats];
+        int count = 0;
+        int index = venue.nextVacantSeat(0);
+        while (index >= 0 && count < numSeats) {
+            int y = index / rows;
+            int rowStart = y * rows;
+            if (numSeats - count >= venue.getNumVacantSeats(y)) {
+                // The whole row is needed, so the order does not matter.
+                int rowEnd = rowStart + rows;
+                for (; index >= 0 && index < rowEnd && count < numSeats;
+                        index = venue.nextVacantSeat(index + 1)) {
+                    seatIndexes[count++] = index;
+                }
+            } else {
+                for (int i = 0; i < rows && count < numSeats; i++) {
+                    if (venue.getSeatStatus(order[i], y) == SeatStatus.VACANT) {
+                        seatIndexes[count++] = rowStart + order[i];
+                    }
+                }
+            }
+            index = venue.nextVacantSeat(rowStart + rows);
+        }
+        return count == numSeats ? seatIndexes : null;
+    }
+
+    /**
+    * Returns the seat positions of a row ordered from the center outwards.
+    *
+    * @param rows Number of seats in the row.
+    * @return Positions in center-out order.
+    */
+    int[] centerOutOrder(int rows) {
+        int[] order = centerOutOrder;
+        if (order.length != rows) {
+            order = new int[rows];
+            int left = (rows - 1) / 2;
+            int right = left + 1;
+            for (int i = 0; i < rows; i++) {
+                if (i % 2 == 0 && left >= 0 || right >= rows) {
+                    order[i] = left--;
+                } else {
+                    order[i] = right++;
+                }
+            }
+            centerOutOrder = order;
+        }
+        return order;
+    }
+}
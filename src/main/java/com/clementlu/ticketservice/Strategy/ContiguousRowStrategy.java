@@ -0,0 +1,47 @@
+package com.clementlu.ticketservice.Strategy;
+
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Holds a block of seats next to each other in one row.
+ * <p>
+ * The block is the leftmost one that fits in the row closest to the
+ * front. Rows whose longest run of vacant seats is too short are skipped
+ * without looking at their seats. If no row can fit the party, no seats
+ * are held.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class ContiguousRowStrategy extends OptimisticSeatSelectionStrategy {
+
+    protected int[] selectSeats(Venue venue, int numSeats) {
+        if (numSeats > venue.getRows()) {
+            return null;
+        }
+        for (int y = 0; y < venue.getColumns(); y++) {
+            if (venue.getMaxFreeRun(y) < numSeats) {
+                continue;
+            }
+            int rowEnd = (y + 1) * venue.getRows();
+            int start = venue.nextVacantSeat(y * venue.getRows());
+            while (start >= 0 && start < rowEnd) {
+                int end = venue.nextOccupiedSeat(start, rowEnd);
+                if (end - start >= numSeats) {
+                    return block(start, numSeats);
+                }
+                start = venue.nextVacantSeat(end);
+            }
+        }
+        return null;
+    }
+
+    static int[] block(int start, int numSeats) {
+        int[] seatIndexes = new int[numSeats];
+        for (int i = 0; i < numSeats; i++) {
+            seatIndexes[i] = start + i;
+        }
+        return seatIndexes;
+    }
+}
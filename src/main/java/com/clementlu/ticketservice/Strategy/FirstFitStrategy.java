@@ -0,0 +1,25 @@
+package com.clementlu.ticketservice.Strategy;
+
+import java.util.List;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Holds the first vacant seats, starting at (0, 0) and moving left to
+ * right and then on to the next row. A party may be split across rows.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class FirstFitStrategy implements SeatSelectionStrategy {
+
+    public List<Seat> holdSeats(Venue venue, int numSeats) {
+        return venue.holdSeats(numSeats);
+    }
+
+    @Override
+    public List<List<Seat>> holdSeatsBatch(Venue venue, int[] numSeats) {
+        return venue.holdSeatsBatch(numSeats);
+    }
+}
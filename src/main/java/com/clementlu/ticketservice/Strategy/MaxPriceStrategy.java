@@ -0,0 +1,66 @@
+package com.clementlu.ticketservice.Strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import com.clementlu.ticketservice.Models.PriceTier;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Models.VenueLayout;
+
+/**
+ * Holds the best seats a customer can get for at most a given price.
+ * <p>
+ * Price tiers up to the price are tried from the most expensive down,
+ * and the seats are held in the first tier with enough vacant seats, in
+ * "first fit" order of that tier. A party is never split across tiers,
+ * so everyone in it pays the same price. Tiers that are too full are
+ * passed over by their vacant count alone.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class MaxPriceStrategy implements SeatSelectionStrategy {
+    private static final Comparator<PriceTier> BY_PRICE_DESCENDING = new Comparator<PriceTier>() {
+        @Override
+        public int compare(PriceTier a, PriceTier b) {
+            return Long.compare(b.getPrice(), a.getPrice());
+        }
+    };
+
+    private final long maxPrice;
+
+    public MaxPriceStrategy(long maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public long getMaxPrice() {
+        return maxPrice;
+    }
+
+    @Override
+    public List<Seat> holdSeats(Venue venue, int numSeats) {
+        VenueLayout layout = venue.getLayout();
+        if (layout == null) {
+            throw new IllegalArgumentException("Venue has no price tiers!");
+        }
+        List<PriceTier> priceTiers = new ArrayList<PriceTier>();
+        for (PriceTier tier : layout.getPriceTiers()) {
+            if (tier.getPrice() <= maxPrice) {
+                priceTiers.add(tier);
+            }
+        }
+        Collections.sort(priceTiers, BY_PRICE_DESCENDING);
+        for (PriceTier tier : priceTiers) {
+            if (venue.getNumVacantSeats(tier) >= numSeats) {
+                List<Seat> seatList = venue.holdSeats(numSeats, tier);
+                if (seatList != null) {
+                    return seatList;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package com.clementlu.ticketservice.Strategy;
+
+import java.util.List;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Base class for strategies that first pick seats and then claim them.
+ * <p>
+ * Another request may take one of the picked seats in between, in which
+ * case the seats are picked again, up to {@code MAX_ATTEMPTS} times.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public abstract class OptimisticSeatSelectionStrategy implements SeatSelectionStrategy {
+    static final int MAX_ATTEMPTS = 8;
+
+    public List<Seat> holdSeats(Venue venue, int numSeats) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int[] seatIndexes = selectSeats(venue, numSeats);
+            if (seatIndexes == null) {
+                return null;
+            }
+            List<Seat> seatList = venue.claimSeats(seatIndexes);
+            if (seatList != null) {
+                return seatList;
+            }
+        }
+        return null;
+    }
+
+    /**
+    * Picks {@code numSeats} vacant seats without holding them.
+    *
+    * @param venue Venue to pick seats in.
+    * @param numSeats Number of seats to pick.
+    * @return Indexes of the picked seats, or null if the request cannot
+    * be filled.
+    */
+    protected abstract int[] selectSeats(Venue venue, int numSeats);
+}
@@ -0,0 +1,35 @@
+package com.clementlu.ticketservice.Strategy;
+
+import java.util.List;
+import com.clementlu.ticketservice.Models.PriceTier;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Holds the first vacant seats of one price tier, in "first fit" order
+ * of the tier's seats. A party may be split across rows and sections of
+ * the tier. Seats are found through the tier's own free seat index.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class PriceTierStrategy implements SeatSelectionStrategy {
+    private final PriceTier priceTier;
+
+    public PriceTierStrategy(PriceTier priceTier) {
+        if (priceTier == null) {
+            throw new IllegalArgumentException("Price tier must not be null!");
+        }
+        this.priceTier = priceTier;
+    }
+
+    public PriceTier getPriceTier() {
+        return priceTier;
+    }
+
+    @Override
+    public List<Seat> holdSeats(Venue venue, int numSeats) {
+        return venue.holdSeats(numSeats, priceTier);
+    }
+}
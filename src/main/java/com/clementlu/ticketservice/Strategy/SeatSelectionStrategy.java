@@ -0,0 +1,48 @@
+package com.clementlu.ticketservice.Strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+
+/**
+ * Decides which seats of a venue a hold request gets.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public interface SeatSelectionStrategy {
+    /**
+    * Picks {@code numSeats} vacant seats and holds them.
+    * <p>
+    * Implementations must claim seats through {@code Venue.holdSeats} or
+    * {@code Venue.claimSeats}, so that concurrent requests never hold the
+    * same seat.
+    *
+    * @param venue Venue to hold seats in.
+    * @param numSeats Number of seats to hold.
+    * @return List of held seats, or null if the request cannot be filled.
+    */
+    List<Seat> holdSeats(Venue venue, int numSeats);
+
+    /**
+    * Picks and holds seats for several requests, in order.
+    * <p>
+    * By default each request is held on its own. Strategies that can
+    * serve a whole batch in one pass over the venue override this.
+    *
+    * @param venue Venue to hold seats in.
+    * @param numSeats Number of seats wanted by each request. Requests
+    * with a non-positive number of seats are not filled.
+    * @return Held seats for each request, with null for requests that
+    * could not be filled.
+    */
+    default List<List<Seat>> holdSeatsBatch(Venue venue, int[] numSeats) {
+        List<List<Seat>> results = new ArrayList<List<Seat>>(numSeats.length);
+        for (int n : numSeats) {
+            results.add(n > 0 ? holdSeats(venue, n) : null);
+        }
+        return results;
+    }
+}
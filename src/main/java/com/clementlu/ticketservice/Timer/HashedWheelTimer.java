@@ -0,0 +1,298 @@
+package com.clementlu.ticketservice.Timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timer that runs many short-lived timeouts on a single thread.
+ * <p>
+ * Timeouts are hashed into a circular wheel of buckets, one bucket per
+ * tick. Every tick the worker thread moves newly scheduled timeouts onto
+ * the wheel, drops cancelled ones and expires the timeouts in the current
+ * bucket. Scheduling and cancelling are O(1), and the number of threads
+ * does not depend on the number of pending timeouts. Timeouts fire up to
+ * one tick late. Tasks given to {@code runAfterTick} run once the
+ * timeouts of a tick have fired, so timeout tasks can collect work and
+ * have it done in one batch per tick.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public class HashedWheelTimer {
+    private static final Logger LOGGER = Logger.getLogger(HashedWheelTimer.class.getName());
+    private static final int ST_INIT = 0;
+    private static final int ST_STARTED = 1;
+    private static final int ST_STOPPED = 2;
+    private static final AtomicInteger timerCount = new AtomicInteger();
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> afterTick = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(ST_INIT);
+    private final AtomicLong pending = new AtomicLong();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Thread worker;
+
+    private volatile long startTime;
+    private long tick;
+
+    public HashedWheelTimer() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+    * Creates a timer.
+    *
+    * @param tickDuration Time between two ticks.
+    * @param unit Unit of {@code tickDuration}.
+    * @param ticksPerWheel Number of buckets in the wheel, rounded up to a
+    * power of two.
+    */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Tick duration and ticks per wheel must be positive!");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = wheel.length - 1;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        }, "hashed-wheel-timer-" + timerCount.incrementAndGet());
+        worker.setDaemon(true);
+    }
+
+    /**
+    * Schedules a task to run once after a delay.
+    * <p>
+    * The worker thread is started on the first call.
+    *
+    * @param task Task to run on the timer thread.
+    * @param delay Time to wait before running the task.
+    * @param unit Unit of {@code delay}.
+    * @return Handle that can cancel the task.
+    */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+    * Runs a task once on the timer thread after the timeouts of a tick.
+    * <p>
+    * A task added by a timeout task runs at the end of the same tick;
+    * one added from another thread runs at the end of the next tick.
+    *
+    * @param task Task to run on the timer thread.
+    */
+    public void runAfterTick(Runnable task) {
+        start();
+        afterTick.add(task);
+    }
+
+    /**
+    * Returns the number of timeouts that are neither expired nor cancelled.
+    *
+    * @return Number of pending timeouts.
+    */
+    public long pendingTimeouts() {
+        return pending.get();
+    }
+
+    /**
+    * Returns whether the timer was stopped, after which it takes no new
+    * timeouts.
+    *
+    * @return True once {@code stop} was called.
+    */
+    public boolean isStopped() {
+        return state.get() == ST_STOPPED;
+    }
+
+    /**
+    * Stops the worker thread. Pending timeouts will never run.
+    */
+    public void stop() {
+        if (state.getAndSet(ST_STOPPED) == ST_STARTED) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException iE) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void start() {
+        switch (state.get()) {
+            case ST_INIT:
+                if (state.compareAndSet(ST_INIT, ST_STARTED)) {
+                    worker.start();
+                }
+                break;
+            case ST_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("Timer has been stopped!");
+        }
+        try {
+            started.await();
+        } catch (InterruptedException iE) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void cancelled(Timeout timeout) {
+        pending.decrementAndGet();
+        cancelled.add(timeout);
+    }
+
+    void expired() {
+        pending.decrementAndGet();
+    }
+
+    private void runWorker() {
+        startTime = System.nanoTime();
+        started.countDown();
+        while (state.get() == ST_STARTED) {
+            if (waitForNextTick() > 0) {
+                removeCancelled();
+                transferScheduled();
+                wheel[(int) (tick & mask)].expire();
+                runAfterTickTasks();
+                tick++;
+            }
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - current + 999999) / 1000000;
+            if (sleepMillis <= 0) {
+                return current;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException iE) {
+                if (state.get() == ST_STOPPED) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void runAfterTickTasks() {
+        // Tasks added while these run wait for the next tick.
+        for (int tasks = afterTick.size(); tasks > 0; tasks--) {
+            Runnable task = afterTick.poll();
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "After tick task failed", t);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long calculated = timeout.getDeadline() / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            timeout.remove();
+        }
+    }
+
+    /**
+    * Doubly-linked list of the timeouts hashed to one tick of the wheel.
+    * Only touched by the worker thread.
+    */
+    static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.clementlu.ticketservice.Timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handle to a task scheduled on a {@code HashedWheelTimer}.
+ * <p>
+ * A timeout is either pending, cancelled or expired. Only a pending
+ * timeout can be cancelled, and a cancelled timeout will never run its
+ * task.
+ *
+ * @author      Clement Lu <clementlu@live.com>
+ * @version     1.0
+ * @since       1.0
+ */
+public final class Timeout {
+    private static final Logger LOGGER = Logger.getLogger(Timeout.class.getName());
+
+    private static final int ST_PENDING = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private final HashedWheelTimer timer;
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+
+    long remainingRounds;
+    Timeout next;
+    Timeout prev;
+    HashedWheelTimer.Bucket bucket;
+
+    Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+        this.timer = timer;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+    * Cancels the timeout.
+    * <p>
+    * The timeout is removed from the wheel on the timer's next tick.
+    *
+    * @return True if the timeout was pending and is now cancelled.
+    */
+    public boolean cancel() {
+        if (!state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+            return false;
+        }
+        timer.cancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == ST_CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state.get() == ST_EXPIRED;
+    }
+
+    void expire() {
+        if (!state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+            return;
+        }
+        timer.expired();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Timeout task failed", t);
+        }
+    }
+
+    void remove() {
+        if (bucket != null) {
+            bucket.remove(this);
+        }
+    }
+}
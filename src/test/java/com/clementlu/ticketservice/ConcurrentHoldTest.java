@@ -0,0 +1,185 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import org.junit.Test;
+
+/**
+ * Stress tests for concurrent holds on PerformanceVenueTicketService.
+ */
+public class ConcurrentHoldTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    @Test
+    public void testNoSeatHeldTwicePacked() throws Exception {
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            sellOut(new Venue(500, 200, SeatStorageMode.PACKED), threads);
+        }
+    }
+
+    @Test
+    public void testNoSeatHeldTwiceObject() throws Exception {
+        sellOut(new Venue(100, 100), 4);
+    }
+
+    @Test
+    public void testHoldsAndReleasesRace() throws Exception {
+        raceHoldsAndReleases(new Venue(64, 64, SeatStorageMode.PACKED));
+    }
+
+    @Test
+    public void testHoldsAndReleasesRaceObject() throws Exception {
+        raceHoldsAndReleases(new Venue(64, 64));
+    }
+
+    @Test
+    public void testSeatChangesRaceObject() throws Exception {
+        final Venue venue = new Venue(10, 10);
+        final int threads = 4;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50000; i++) {
+                        List<Seat> seats = venue.holdSeats(1);
+                        if (seats != null) {
+                            venue.changeSeatStatus(seats, SeatStatus.VACANT);
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertEquals(0, venue.countSeats(SeatStatus.HOLD));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testExpiryRacesHoldsObject() throws Exception {
+        final Venue venue = new Venue(10, 10);
+        final PerformanceVenueTicketService service =
+            new PerformanceVenueTicketService(venue, 1, TimeUnit.MILLISECONDS);
+        final int threads = 4;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+                    while (System.nanoTime() < end) {
+                        service.findAndHoldSeats(1, customerEmail);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getNumActiveHolds() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        service.shutdown();
+        assertEquals(0, venue.countSeats(SeatStatus.HOLD));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    private void raceHoldsAndReleases(final Venue venue) throws Exception {
+        final PerformanceVenueTicketService service =
+            new PerformanceVenueTicketService(venue, 1, TimeUnit.MINUTES);
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20000; i++) {
+                        SeatHold seatHold = service.findAndHoldSeats(1 + random.nextInt(16), customerEmail);
+                        if (seatHold != null) {
+                            if (random.nextBoolean()) {
+                                service.reserveSeats(seatHold.getId(), customerEmail);
+                                venue.changeSeatStatus(seatHold.getSeats(), SeatStatus.VACANT);
+                            } else {
+                                service.expiryHandler(seatHold.getId());
+                            }
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        service.shutdown();
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    private void sellOut(Venue venue, int threads) throws InterruptedException, InvalidVenueException {
+        final PerformanceVenueTicketService service =
+            new PerformanceVenueTicketService(venue, 1, TimeUnit.MINUTES);
+        final List<List<SeatHold>> results = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final List<SeatHold> holds = new ArrayList<>();
+            results.add(holds);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        start.await();
+                        int available;
+                        while ((available = service.numSeatsAvailable()) > 0) {
+                            int numSeats = Math.min(1 + random.nextInt(8), available);
+                            SeatHold seatHold = service.findAndHoldSeats(numSeats, customerEmail);
+                            if (seatHold != null) {
+                                holds.add(seatHold);
+                            }
+                        }
+                    } catch (InterruptedException iE) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - startTime;
+        service.shutdown();
+
+        BitSet held = new BitSet(venue.getTotalSeats());
+        int numHolds = 0;
+        for (List<SeatHold> holds : results) {
+            for (SeatHold seatHold : holds) {
+                numHolds++;
+                for (Seat seat : seatHold.getSeats()) {
+                    int index = (int) (seat.getSeatNo().getY() * venue.getRows() + seat.getSeatNo().getX());
+                    assertFalse("Seat held twice: " + seat, held.get(index));
+                    held.set(index);
+                }
+            }
+        }
+        assertEquals(venue.getTotalSeats(), held.cardinality());
+        assertEquals(venue.getTotalSeats(), venue.getNumSeats(SeatStatus.HOLD));
+        assertTrue(venue.verifySeatCounts());
+        System.out.println(venue.getStorageMode() + " venue, " + threads + " threads: " +
+            (long) (numHolds / (elapsed / 1e9)) + " holds/sec");
+    }
+}
@@ -0,0 +1,93 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.clementlu.ticketservice.Models.CustomerEmails;
+import com.clementlu.ticketservice.Models.CustomerHoldIndex;
+import org.junit.Test;
+
+/**
+ * Tests for the per-customer hold index and email normalization.
+ */
+public class CustomerHoldIndexTest {
+
+    @Test
+    public void testEmailsAreNormalized() {
+        CustomerEmails emails = new CustomerEmails(4);
+        assertEquals("test@gmail.com", emails.normalize("  Test@GMAIL.com"));
+        assertEquals("test@gmail.com", emails.normalize("  Test@GMAIL.com"));
+        assertNull(emails.normalize("test@"));
+        assertNull(emails.normalize("test@"));
+        assertNull(emails.normalize(null));
+        // More addresses than the cache holds are still normalized.
+        for (int i = 0; i < 100; i++) {
+            assertEquals("user" + i + "@example.com", emails.normalize("USER" + i + "@example.com"));
+        }
+        assertTrue(emails.isValid("test@gmail.com"));
+        assertFalse(emails.isValid("test@gmail"));
+    }
+
+    @Test
+    public void testLimits() {
+        CustomerHoldIndex index = new CustomerHoldIndex();
+        assertFalse(index.tryAcquire("a@b.com", 5, 2, 4));
+        assertEquals(0, index.size());
+        assertTrue(index.tryAcquire("a@b.com", 3, 2, 4));
+        assertFalse(index.tryAcquire("a@b.com", 2, 2, 4));
+        assertTrue(index.tryAcquire("a@b.com", 1, 2, 4));
+        assertFalse(index.tryAcquire("a@b.com", 0, 2, 4));
+        assertTrue(index.tryAcquire("c@d.com", 4, 2, 4));
+        assertEquals(2, index.getNumHolds("a@b.com"));
+        assertEquals(4, index.getNumSeats("a@b.com"));
+        assertEquals(2, index.size());
+
+        index.release("a@b.com", 3);
+        assertEquals(1, index.getNumHolds("a@b.com"));
+        assertEquals(1, index.getNumSeats("a@b.com"));
+        index.release("a@b.com", 1);
+        index.release("c@d.com", 4);
+        assertEquals(0, index.getNumHolds("a@b.com"));
+        assertEquals(0, index.size());
+        // Releasing a customer without holds changes nothing.
+        index.release("a@b.com", 1);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testConcurrentAcquireNeverExceedsLimits() throws Exception {
+        final CustomerHoldIndex index = new CustomerHoldIndex();
+        final AtomicInteger maxSeen = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 20000; i++) {
+                            String email = "customer" + (i % 3) + "@example.com";
+                            if (index.tryAcquire(email, 2, 3, 5)) {
+                                int seats = index.getNumSeats(email);
+                                maxSeen.accumulateAndGet(seats, Math::max);
+                                index.release(email, 2);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("Seats held " + maxSeen.get(), maxSeen.get() <= 4);
+        assertEquals(0, index.size());
+    }
+}
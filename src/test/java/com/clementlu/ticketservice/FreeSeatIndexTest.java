@@ -0,0 +1,74 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import com.clementlu.ticketservice.Models.FreeSeatIndex;
+import org.junit.Test;
+
+/**
+ * Unit tests for FreeSeatIndex class.
+ */
+public class FreeSeatIndexTest {
+
+    @Test
+    public void testAllVacant() {
+        FreeSeatIndex index = new FreeSeatIndex(10, 7);
+        for (int i = 0; i < 70; i++) {
+            assertEquals(i, index.nextVacant(i));
+        }
+        assertEquals(-1, index.nextVacant(70));
+        assertEquals(10, index.getVacantSeats(6));
+    }
+
+    @Test
+    public void testSkipsFullRows() {
+        FreeSeatIndex index = new FreeSeatIndex(100, 100);
+        for (int i = 0; i < 9999; i++) {
+            index.clearVacant(i);
+        }
+        assertEquals(0, index.getVacantSeats(0));
+        assertEquals(1, index.getVacantSeats(99));
+        assertEquals(9999, index.nextVacant(0));
+        index.clearVacant(9999);
+        assertEquals(-1, index.nextVacant(0));
+        index.setVacant(4242);
+        assertEquals(4242, index.nextVacant(0));
+        assertEquals(1, index.getVacantSeats(42));
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        int rows = 333;
+        int columns = 301;
+        FreeSeatIndex index = new FreeSeatIndex(rows, columns);
+        BitSet vacant = new BitSet();
+        vacant.set(0, rows * columns);
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int seat = random.nextInt(rows * columns);
+            if (random.nextInt(4) == 0) {
+                index.setVacant(seat);
+                vacant.set(seat);
+            } else {
+                index.clearVacant(seat);
+                vacant.clear(seat);
+            }
+            int from = random.nextInt(rows * columns);
+            assertEquals(vacant.nextSetBit(from) < 0 ? -1 : vacant.nextSetBit(from),
+                index.nextVacant(from));
+        }
+        for (int y = 0; y < columns; y++) {
+            assertEquals(vacant.get(y * rows, (y + 1) * rows).cardinality(),
+                index.getVacantSeats(y));
+            int maxRun = 0;
+            int run = 0;
+            for (int x = 0; x < rows; x++) {
+                run = vacant.get(y * rows + x) ? run + 1 : 0;
+                maxRun = Math.max(maxRun, run);
+            }
+            assertEquals(maxRun, index.getMaxFreeRun(y));
+        }
+    }
+}
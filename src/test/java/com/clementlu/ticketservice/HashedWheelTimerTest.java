@@ -0,0 +1,117 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
+import com.clementlu.ticketservice.Timer.Timeout;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for HashedWheelTimer class.
+ */
+public class HashedWheelTimerTest {
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testTimeoutExpires() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void testRunAfterTickSeesEveryTimeoutOfTheTick() throws InterruptedException {
+        final List<Integer> fired = new ArrayList<Integer>();
+        final List<Integer> batches = new ArrayList<Integer>();
+        final CountDownLatch swept = new CountDownLatch(1);
+        final Runnable sweep = new Runnable() {
+            @Override
+            public void run() {
+                batches.add(fired.size());
+                fired.clear();
+                swept.countDown();
+            }
+        };
+        for (int i = 0; i < 5; i++) {
+            final int id = i;
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    if (fired.isEmpty()) {
+                        timer.runAfterTick(sweep);
+                    }
+                    fired.add(id);
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(swept.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        int total = 0;
+        for (int batch : batches) {
+            total += batch;
+        }
+        assertEquals(5, total);
+        assertTrue("Timeouts were swept in " + batches, batches.size() <= 2);
+    }
+
+    @Test
+    public void testTimeoutBeyondOneRound() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 250, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesNotRun() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < 1000; i++) {
+            Timeout timeout = timer.newTimeout(task, 30, TimeUnit.MILLISECONDS);
+            if (i % 2 == 0) {
+                assertTrue(timeout.cancel());
+                assertTrue(timeout.isCancelled());
+            }
+        }
+        assertEquals(500, timer.pendingTimeouts());
+        Thread.sleep(300);
+        assertEquals(500, runs.get());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+}
@@ -0,0 +1,134 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Metrics.LatencyHistogram;
+import com.clementlu.ticketservice.Metrics.TicketServiceMetrics;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the latency histogram and ticket service metrics.
+ */
+public class MetricsTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    private PerformanceVenueTicketService service;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new PerformanceVenueTicketService(new Venue(10, 10, SeatStorageMode.PACKED),
+            1, TimeUnit.MINUTES);
+    }
+
+    @After
+    public void tearDown() {
+        service.getMetrics().unregister();
+        service.shutdown();
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        assertEquals(50000500.0, histogram.getMean(), 1.0);
+        assertWithin(50000000, histogram.getValueAtPercentile(50));
+        assertWithin(99000000, histogram.getValueAtPercentile(99));
+        assertWithin(99900000, histogram.getValueAtPercentile(99.9));
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testHistogramRandomValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong(1L << 40);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertWithin(values[values.length / 2 - 1], histogram.getValueAtPercentile(50));
+        assertWithin(values[values.length * 99 / 100 - 1], histogram.getValueAtPercentile(99));
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(0.001));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected + expected / 64 + 1);
+    }
+
+    @Test
+    public void testServiceCounters() {
+        TicketServiceMetrics metrics = service.getMetrics();
+        SeatHold reserved = service.findAndHoldSeats(10, customerEmail);
+        SeatHold expired = service.findAndHoldSeats(10, customerEmail);
+        service.findAndHoldSeats(5, customerEmail);
+        assertNull(service.findAndHoldSeats(90, customerEmail));
+        assertNull(service.findAndHoldSeats(0, customerEmail));
+        service.reserveSeats(reserved.getId(), customerEmail);
+        service.expiryHandler(expired.getId());
+
+        assertEquals(3, metrics.getHoldsCreated());
+        assertEquals(1, metrics.getHoldsRejected());
+        assertEquals(1, metrics.getHoldsReserved());
+        assertEquals(1, metrics.getHoldsExpired());
+        assertEquals(1, metrics.getActiveHolds());
+        assertEquals(85, metrics.getVacantSeats());
+        assertEquals(5, metrics.getHeldSeats());
+        assertEquals(10, metrics.getReservedSeats());
+        assertEquals(5, metrics.getHoldLatency().getCount());
+        assertEquals(1, metrics.getReserveLatency().getCount());
+        assertEquals(1, metrics.getExpireLatency().getCount());
+    }
+
+    @Test
+    public void testTimerExpiryIsCounted() throws Exception {
+        service.findAndHoldSeats(4, customerEmail, 100, TimeUnit.MILLISECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getMetrics().getHoldsExpired() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, service.getMetrics().getHoldsExpired());
+        assertEquals(0, service.getMetrics().getActiveHolds());
+        assertEquals(1, service.getMetrics().getExpirySweeps());
+        assertEquals(1, service.getMetrics().getLastSweepHolds());
+        assertEquals(1, service.getMetrics().getSweepLatency().getCount());
+        assertTrue(service.getMetrics().toText().contains("ticketservice_expiry_sweeps_total 1\n"));
+    }
+
+    @Test
+    public void testJmxAndText() throws Exception {
+        service.findAndHoldSeats(3, customerEmail);
+        service.getMetrics().register("MetricsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(TicketServiceMetrics.JMX_DOMAIN
+            + ":type=TicketService,name=\"MetricsTest\"");
+        assertEquals(1L, server.getAttribute(name, "HoldsCreated"));
+        assertEquals(3, server.getAttribute(name, "HeldSeats"));
+
+        String text = service.getMetrics().toText();
+        assertTrue(text.contains("ticketservice_holds_created_total 1\n"));
+        assertTrue(text.contains("ticketservice_seats{status=\"hold\"} 3\n"));
+        assertTrue(text.contains("ticketservice_hold_latency_seconds_count 1\n"));
+
+        service.getMetrics().unregister();
+        assertFalse(server.isRegistered(name));
+    }
+}
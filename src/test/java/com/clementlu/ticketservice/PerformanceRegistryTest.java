@@ -0,0 +1,211 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for PerformanceRegistry class.
+ */
+public class PerformanceRegistryTest {
+    private PerformanceRegistry registry;
+    private Map<String, Venue> unloaded;
+    private AtomicInteger loads;
+    private String customerEmail;
+
+    @Before
+    public void setUp() {
+        unloaded = new ConcurrentHashMap<>();
+        loads = new AtomicInteger();
+        customerEmail = "test@gmail.com";
+        registry = new PerformanceRegistry(new PerformanceLoader() {
+            @Override
+            public Venue load(String performanceId) throws InvalidVenueException {
+                if (performanceId.startsWith("missing")) {
+                    throw new InvalidVenueException("No such performance: " + performanceId);
+                }
+                loads.incrementAndGet();
+                Venue venue = unloaded.remove(performanceId);
+                return venue != null ? venue : new Venue(10, 10, SeatStorageMode.PACKED);
+            }
+
+            @Override
+            public void unload(String performanceId, Venue venue) {
+                unloaded.put(performanceId, venue);
+            }
+        }, 1, TimeUnit.HOURS, 1, TimeUnit.HOURS, 2);
+    }
+
+    @After
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    public void testShardsAreLazyAndIndependent() throws InvalidVenueException {
+        assertEquals(0, registry.getNumShards());
+        SeatHold seatHold = registry.findAndHoldSeats("a", 30, customerEmail);
+        assertNotNull(seatHold);
+        assertEquals(70, registry.numSeatsAvailable("a"));
+        assertEquals(100, registry.numSeatsAvailable("b"));
+        assertEquals(2, registry.getNumShards());
+        assertNotNull(registry.reserveSeats("a", seatHold.getId(), customerEmail));
+        assertEquals(70, registry.numSeatsAvailable("a"));
+    }
+
+    @Test(expected = InvalidVenueException.class)
+    public void testMissingPerformance() throws InvalidVenueException {
+        try {
+            registry.numSeatsAvailable("missing");
+        } finally {
+            assertFalse(registry.isLoaded("missing"));
+        }
+    }
+
+    @Test
+    public void testIdleShardsAreEvicted() throws Exception {
+        registry.shutdown();
+        registry = new PerformanceRegistry(new PerformanceLoader() {
+            @Override
+            public Venue load(String performanceId) throws InvalidVenueException {
+                loads.incrementAndGet();
+                Venue venue = unloaded.remove(performanceId);
+                return venue != null ? venue : new Venue(10, 10, SeatStorageMode.PACKED);
+            }
+
+            @Override
+            public void unload(String performanceId, Venue venue) {
+                unloaded.put(performanceId, venue);
+            }
+        }, 1, TimeUnit.MILLISECONDS, 1, TimeUnit.HOURS, 1);
+        SeatHold seatHold = registry.findAndHoldSeats("held", 5, customerEmail);
+        SeatHold reserved = registry.findAndHoldSeats("reserved", 5, customerEmail);
+        registry.reserveSeats("reserved", reserved.getId(), customerEmail);
+        registry.numSeatsAvailable("cold");
+        Thread.sleep(5);
+
+        registry.evictIdleShards();
+        assertTrue(registry.isLoaded("held"));
+        assertFalse(registry.isLoaded("reserved"));
+        assertFalse(registry.isLoaded("cold"));
+        assertEquals(2, unloaded.size());
+
+        assertEquals(95, registry.numSeatsAvailable("reserved"));
+        assertEquals(4, loads.get());
+        assertNotNull(registry.reserveSeats("held", seatHold.getId(), customerEmail));
+    }
+
+    @Test
+    public void testSeatsOnHoldBlockEviction() throws Exception {
+        registry.shutdown();
+        final Venue venue = new Venue(10, 10, SeatStorageMode.PACKED);
+        registry = new PerformanceRegistry(new PerformanceLoader() {
+            @Override
+            public Venue load(String performanceId) throws InvalidVenueException {
+                return venue;
+            }
+
+            @Override
+            public void unload(String performanceId, Venue venue) {
+                unloaded.put(performanceId, venue);
+            }
+        }, 1, TimeUnit.MILLISECONDS, 1, TimeUnit.HOURS, 1);
+        registry.numSeatsAvailable("show");
+        // Seats an expiry sweep has not released yet, with their hold
+        // already gone.
+        venue.holdSeats(3);
+        Thread.sleep(5);
+
+        assertEquals(0, registry.evictIdleShards());
+        assertTrue(registry.isLoaded("show"));
+        assertTrue(unloaded.isEmpty());
+    }
+
+    @Test
+    public void testLoadWaitsForUnload() throws Exception {
+        registry.shutdown();
+        final CountDownLatch unloading = new CountDownLatch(1);
+        final CountDownLatch finishUnload = new CountDownLatch(1);
+        registry = new PerformanceRegistry(new PerformanceLoader() {
+            @Override
+            public Venue load(String performanceId) throws InvalidVenueException {
+                loads.incrementAndGet();
+                Venue venue = unloaded.remove(performanceId);
+                return venue != null ? venue : new Venue(10, 10, SeatStorageMode.PACKED);
+            }
+
+            @Override
+            public void unload(String performanceId, Venue venue) {
+                unloading.countDown();
+                try {
+                    finishUnload.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                unloaded.put(performanceId, venue);
+            }
+        }, 1, TimeUnit.MILLISECONDS, 1, TimeUnit.HOURS, 1);
+        SeatHold seatHold = registry.findAndHoldSeats("show", 5, customerEmail);
+        registry.reserveSeats("show", seatHold.getId(), customerEmail);
+
+        // Background eviction is stuck in unload; a request for the same
+        // performance must not load it again until the venue is back.
+        assertTrue(unloading.await(5, TimeUnit.SECONDS));
+        final AtomicInteger available = new AtomicInteger(-1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    available.set(registry.numSeatsAvailable("show"));
+                } catch (InvalidVenueException e) {
+                    fail(e.toString());
+                }
+            }
+        });
+        reader.start();
+        Thread.sleep(50);
+        assertEquals(-1, available.get());
+        finishUnload.countDown();
+        reader.join(5000);
+        assertEquals(95, available.get());
+    }
+
+    @Test
+    public void testConcurrentPerformances() throws InterruptedException {
+        final int performances = 8;
+        final CountDownLatch done = new CountDownLatch(performances);
+        final AtomicInteger holds = new AtomicInteger();
+        for (int p = 0; p < performances; p++) {
+            final String performanceId = "show-" + p;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (registry.findAndHoldSeats(performanceId, 1, customerEmail) != null) {
+                            holds.incrementAndGet();
+                        }
+                    } catch (InvalidVenueException e) {
+                        fail(e.toString());
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertEquals(performances * 100, holds.get());
+        assertEquals(performances, registry.getNumShards());
+        assertEquals(performances, loads.get());
+    }
+}
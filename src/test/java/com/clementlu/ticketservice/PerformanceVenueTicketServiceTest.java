@@ -2,9 +2,26 @@ package com.clementlu.ticketservice;
 
 import static org.junit.Assert.*;
 
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
 import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Metrics.TicketServiceMetricsMXBean;
+import com.clementlu.ticketservice.Models.HoldRequest;
+import com.clementlu.ticketservice.Models.ReserveRequest;
+import com.clementlu.ticketservice.Models.Seat;
 import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.SeatHoldIdGenerator;
 import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.Before;
 
@@ -28,6 +45,11 @@ public class PerformanceVenueTicketServiceTest {
         customerEmail = "test@gmail.com";
     }
 
+    @After
+    public void tearDown() {
+        testService.shutdown();
+    }
+
     @Test
     public void testNumSeatAllVacant(){
         int avail = testService.numSeatsAvailable();
@@ -51,6 +73,7 @@ public class PerformanceVenueTicketServiceTest {
         testService.findAndHoldSeats(hold2, customerEmail);
         int avail = testService.numSeatsAvailable();
         assertEquals(x*y-hold-hold2, avail);
+        assertTrue(venue.verifySeatCounts());
     }
 
     @Test
@@ -82,4 +105,504 @@ public class PerformanceVenueTicketServiceTest {
         String confId = testService.reserveSeats(-1, customerEmail);
         assertNull(confId);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPackedHoldFirstFit() throws InvalidVenueException {
+        venue = new Venue(2, 2, SeatStorageMode.PACKED);
+        testService.shutdown();
+        testService = new PerformanceVenueTicketService(venue);
+        SeatHold seatHold = testService.findAndHoldSeats(3, customerEmail);
+        assertEquals(3, seatHold.getSeats().size());
+        assertEquals(new Point(0, 0), seatHold.getSeats().get(0).getSeatNo());
+        assertEquals(new Point(1, 0), seatHold.getSeats().get(1).getSeatNo());
+        assertEquals(new Point(0, 1), seatHold.getSeats().get(2).getSeatNo());
+        for (Seat seat : seatHold.getSeats()) {
+            assertEquals(SeatStatus.HOLD, seat.getSeatStatus());
+        }
+        assertEquals(1, testService.numSeatsAvailable());
+    }
+
+    @Test
+    public void testHoldMatchesFirstFitScan() throws InvalidVenueException {
+        venue = new Venue(37, 23, SeatStorageMode.PACKED);
+        testService.shutdown();
+        testService = new PerformanceVenueTicketService(venue);
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            int numSeats = 1 + random.nextInt(20);
+            List<Point> expected = new ArrayList<>();
+            for (int y = 0; y < 23 && expected.size() < numSeats; y++) {
+                for (int x = 0; x < 37 && expected.size() < numSeats; x++) {
+                    if (venue.getSeatStatus(x, y) == SeatStatus.VACANT) {
+                        expected.add(new Point(x, y));
+                    }
+                }
+            }
+            SeatHold seatHold = testService.findAndHoldSeats(numSeats, customerEmail);
+            if (expected.size() < numSeats) {
+                assertNull(seatHold);
+                continue;
+            }
+            List<Point> actual = new ArrayList<>();
+            for (Seat seat : seatHold.getSeats()) {
+                actual.add(seat.getSeatNo());
+            }
+            assertEquals(expected, actual);
+            if (random.nextBoolean()) {
+                testService.reserveSeats(seatHold.getId(), customerEmail);
+            } else {
+                testService.expiryHandler(seatHold.getId());
+            }
+        }
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testManyHoldsKeepThreadCountFlat() throws InvalidVenueException {
+        int holds = 100000;
+        venue = new Venue(1000, 100, SeatStorageMode.PACKED);
+        HashedWheelTimer timer = new HashedWheelTimer();
+        testService.shutdown();
+        testService = new PerformanceVenueTicketService(venue, timer);
+        testService.findAndHoldSeats(1, customerEmail);
+        int threads = Thread.activeCount();
+        for (int i = 1; i < holds; i++) {
+            assertNotNull(testService.findAndHoldSeats(1, customerEmail));
+        }
+        assertEquals(0, testService.numSeatsAvailable());
+        assertEquals(holds, timer.pendingTimeouts());
+        assertTrue(Thread.activeCount() <= threads);
+    }
+
+    @Test
+    public void testEveryHoldExpires() throws InterruptedException {
+        testService.shutdown();
+        testService = new PerformanceVenueTicketService(venue, 100, TimeUnit.MILLISECONDS);
+        SeatHold reserved = testService.findAndHoldSeats(10, customerEmail);
+        assertNotNull(testService.reserveSeats(reserved.getId(), customerEmail));
+        for (int i = 0; i < 5; i++) {
+            testService.findAndHoldSeats(10, customerEmail);
+        }
+        assertEquals(x*y-60, testService.numSeatsAvailable());
+        waitForAvailable(x*y-10);
+        assertEquals(10, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(0, venue.getNumSeats(SeatStatus.HOLD));
+    }
+
+    @Test
+    public void testExpiredHoldsAreSweptTogether() throws Exception {
+        testService.shutdown();
+        venue = new Venue(x, y, SeatStorageMode.PACKED);
+        testService = new PerformanceVenueTicketService(venue,
+            new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64), 100, TimeUnit.MILLISECONDS);
+        final List<SeatStatus> statusesOnRelease = new ArrayList<SeatStatus>();
+        testService.addSeatHoldListener(new SeatHoldListener() {
+            @Override
+            public void seatsReleased(SeatHold seatHold) {
+                statusesOnRelease.add(venue.getSeatStatus(venue.getSeatIndex(seatHold.getSeats().get(0))));
+            }
+        });
+        List<SeatHold> holds = new ArrayList<SeatHold>();
+        for (int i = 0; i < 200; i++) {
+            holds.add(testService.findAndHoldSeats(3, customerEmail));
+        }
+        SeatHold reserved = holds.get(7);
+        assertNotNull(testService.reserveSeats(reserved.getId(), customerEmail));
+        waitForAvailable(x*y-3);
+
+        TicketServiceMetricsMXBean metrics = testService.getMetrics();
+        assertEquals(199, metrics.getHoldsExpired());
+        assertTrue("Holds were released in " + metrics.getExpirySweeps() + " sweeps",
+            metrics.getExpirySweeps() <= 3);
+        assertEquals(0, testService.getNumActiveHolds());
+        assertEquals(199, statusesOnRelease.size());
+        for (SeatStatus status : statusesOnRelease) {
+            assertEquals(SeatStatus.HOLD, status);
+        }
+        for (SeatHold seatHold : holds) {
+            SeatStatus expected = seatHold == reserved ? SeatStatus.RESERVED : SeatStatus.VACANT;
+            for (Seat seat : seatHold.getSeats()) {
+                assertEquals(expected, seat.getSeatStatus());
+            }
+        }
+        assertEquals(3, venue.getNumSeats(SeatStatus.RESERVED));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testPerHoldExpiry() throws InterruptedException {
+        SeatHold shortHold = testService.findAndHoldSeats(10, customerEmail, 50, TimeUnit.MILLISECONDS);
+        SeatHold longHold = testService.findAndHoldSeats(10, customerEmail);
+        assertTrue(longHold.getExpiryDeadline() - shortHold.getExpiryDeadline() > 0);
+        waitForAvailable(x*y-10);
+        assertTrue(shortHold.isExpired());
+        assertNull(testService.reserveSeats(shortHold.getId(), customerEmail));
+        assertNotNull(testService.reserveSeats(longHold.getId(), customerEmail));
+    }
+
+    @Test
+    public void testReserveAfterDeadline() throws InterruptedException {
+        SeatHold seatHold = testService.findAndHoldSeats(10, customerEmail, 1, TimeUnit.NANOSECONDS);
+        Thread.sleep(1);
+        assertNull(testService.reserveSeats(seatHold.getId(), customerEmail));
+        assertEquals(x*y, testService.numSeatsAvailable());
+    }
+
+    @Test
+    public void testCustomerHoldLimits() throws InterruptedException {
+        testService.setCustomerHoldLimits(2, 10);
+        SeatHold first = testService.findAndHoldSeats(4, customerEmail);
+        assertNotNull(first);
+        assertNull(testService.findAndHoldSeats(7, customerEmail));
+        // The same customer with another spelling of the address.
+        SeatHold second = testService.findAndHoldSeats(6, " Test@Gmail.COM ");
+        assertEquals(customerEmail, second.getCustomerEmail());
+        assertNull(testService.findAndHoldSeats(1, customerEmail));
+        assertEquals(2, testService.getNumActiveHolds(customerEmail));
+        assertEquals(10, testService.getNumHeldSeats(customerEmail));
+        assertNotNull(testService.findAndHoldSeats(10, "other@gmail.com"));
+        assertEquals(2, testService.getMetrics().getHoldsLimited());
+
+        assertNotNull(testService.reserveSeats(first.getId(), customerEmail));
+        assertEquals(6, testService.getNumHeldSeats(customerEmail));
+        assertNotNull(testService.findAndHoldSeats(4, customerEmail, 10, TimeUnit.MILLISECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (testService.getNumActiveHolds(customerEmail) != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(6, testService.getNumHeldSeats(customerEmail));
+        // A request that can never be filled does not use up the limits.
+        assertNull(testService.findAndHoldSeats(x*y, "other@gmail.com"));
+        assertEquals(10, testService.getNumHeldSeats("other@gmail.com"));
+    }
+
+    @Test
+    public void testReserveChecksCustomer() {
+        SeatHold seatHold = testService.findAndHoldSeats(10, customerEmail);
+        assertNull(testService.reserveSeats(seatHold.getId(), "other@gmail.com"));
+        assertNull(testService.reserveSeats(seatHold.getId(), "not an email"));
+        List<ReserveRequest> requests = new ArrayList<ReserveRequest>();
+        requests.add(new ReserveRequest(seatHold.getId(), "other@gmail.com"));
+        assertNull(testService.reserveSeatsBatch(requests).get(0));
+        assertEquals(1, testService.getNumActiveHolds());
+        assertNotNull(testService.reserveSeats(seatHold.getId(), "TEST@gmail.com"));
+        assertEquals(0, testService.getNumActiveHolds(customerEmail));
+    }
+
+    @Test
+    public void testNoHoldAfterShutdown() {
+        testService.shutdown();
+        try {
+            testService.findAndHoldSeats(4, customerEmail);
+            fail("Hold was accepted after shutdown");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        assertEquals(x*y, testService.numSeatsAvailable());
+        assertEquals(0, testService.getNumActiveHolds(customerEmail));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testBatchShutdownReleasesLaterRequests() {
+        final List<SeatHold> held = new ArrayList<SeatHold>();
+        testService.addSeatHoldListener(new SeatHoldListener() {
+            @Override
+            public void seatsHeld(SeatHold seatHold) {
+                held.add(seatHold);
+                if (held.size() == 2) {
+                    testService.shutdown();
+                }
+            }
+        });
+        List<HoldRequest> requests = new ArrayList<HoldRequest>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(new HoldRequest(5, customerEmail));
+        }
+        try {
+            testService.findAndHoldSeatsBatch(requests);
+            fail("Batch was held after shutdown");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        assertEquals(x*y - 5, testService.numSeatsAvailable());
+        assertEquals(1, testService.getNumActiveHolds(customerEmail));
+        assertEquals(5, testService.getNumHeldSeats(customerEmail));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testInvalidCustomerEmail() {
+        for (String email : new String[] {null, "", "test", "test@", "@gmail.com", "a b@gmail.com"}) {
+            try {
+                testService.findAndHoldSeats(1, email);
+                fail("Email " + email + " was accepted");
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+        List<HoldRequest> requests = new ArrayList<HoldRequest>();
+        requests.add(new HoldRequest(1, customerEmail));
+        requests.add(new HoldRequest(1, "test"));
+        try {
+            testService.findAndHoldSeatsBatch(requests);
+            fail("Batch with an invalid email was accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        assertEquals(x*y, testService.numSeatsAvailable());
+    }
+
+    private void waitForAvailable(int seats) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (testService.numSeatsAvailable() != seats && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(seats, testService.numSeatsAvailable());
+    }
+
+    @Test
+    public void testBatchHoldMatchesSequential() throws InvalidVenueException {
+        Venue sequentialVenue = new Venue(7, 5, SeatStorageMode.PACKED);
+        PerformanceVenueTicketService sequential = new PerformanceVenueTicketService(sequentialVenue);
+        venue = new Venue(7, 5, SeatStorageMode.PACKED);
+        testService.shutdown();
+        testService = new PerformanceVenueTicketService(venue);
+        int[] sizes = {3, 9, 0, 12, 20, 4, -2, 7};
+        List<HoldRequest> requests = new ArrayList<>();
+        for (int size : sizes) {
+            requests.add(new HoldRequest(size, customerEmail));
+        }
+        List<SeatHold> batch = testService.findAndHoldSeatsBatch(requests);
+        assertEquals(sizes.length, batch.size());
+        for (int i = 0; i < sizes.length; i++) {
+            SeatHold expected = sequential.findAndHoldSeats(sizes[i], customerEmail);
+            if (expected == null) {
+                assertNull(batch.get(i));
+            } else {
+                List<Point> expectedSeats = new ArrayList<>();
+                for (Seat seat : expected.getSeats()) {
+                    expectedSeats.add(seat.getSeatNo());
+                }
+                List<Point> actualSeats = new ArrayList<>();
+                for (Seat seat : batch.get(i).getSeats()) {
+                    actualSeats.add(seat.getSeatNo());
+                }
+                assertEquals(expectedSeats, actualSeats);
+            }
+        }
+        assertNull(batch.get(4));
+        assertNotNull(batch.get(5));
+        assertEquals(sequential.numSeatsAvailable(), testService.numSeatsAvailable());
+        assertTrue(venue.verifySeatCounts());
+        sequential.shutdown();
+    }
+
+    @Test
+    public void testBatchReserve() {
+        List<HoldRequest> holdRequests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            holdRequests.add(new HoldRequest(5, customerEmail));
+        }
+        List<SeatHold> seatHolds = testService.findAndHoldSeatsBatch(holdRequests);
+        List<ReserveRequest> reserveRequests = new ArrayList<>();
+        for (SeatHold seatHold : seatHolds) {
+            reserveRequests.add(new ReserveRequest(seatHold.getId(), customerEmail));
+        }
+        reserveRequests.add(new ReserveRequest(-1, customerEmail));
+        List<String> confIds = testService.reserveSeatsBatch(reserveRequests);
+        assertEquals(11, confIds.size());
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(confIds.get(i));
+        }
+        assertNull(confIds.get(10));
+        assertEquals(50, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(0, venue.getNumSeats(SeatStatus.HOLD));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testHoldIdsAreSequential() {
+        int first = testService.findAndHoldSeats(1, customerEmail).getId();
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(first + i, testService.findAndHoldSeats(1, customerEmail).getId());
+        }
+    }
+
+    @Test
+    public void testWrappedHoldIdSkipsActiveHold() throws InvalidVenueException {
+        // 16 shard bits leave 2^15 sequence numbers before the ids wrap.
+        PerformanceVenueTicketService service = new PerformanceVenueTicketService(
+            new Venue(200, 200, SeatStorageMode.PACKED), new HashedWheelTimer(),
+            1, TimeUnit.MINUTES, new SeatHoldIdGenerator(3, 16));
+        try {
+            SeatHold longHold = service.findAndHoldSeats(1, customerEmail);
+            assertEquals(3, SeatHoldIdGenerator.shardOf(longHold.getId(), 16));
+            for (int i = 1; i < 1 << 15; i++) {
+                SeatHold seatHold = service.findAndHoldSeats(1, customerEmail);
+                assertNotNull(service.reserveSeats(seatHold.getId(), customerEmail));
+            }
+            SeatHold wrapped = service.findAndHoldSeats(1, customerEmail);
+            assertEquals(longHold.getId() + 1, wrapped.getId());
+            assertEquals(2, service.getNumActiveHolds());
+            assertNotNull(service.reserveSeats(longHold.getId(), customerEmail));
+            assertNotNull(service.reserveSeats(wrapped.getId(), customerEmail));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testExtendHold() throws InterruptedException {
+        SeatHold seatHold = testService.findAndHoldSeats(4, customerEmail, 100, TimeUnit.MILLISECONDS);
+        SeatHold extended = testService.extendHold(seatHold.getId(), customerEmail, 1, TimeUnit.SECONDS);
+        assertEquals(seatHold.getId(), extended.getId());
+        assertEquals(1, extended.getVersion());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), extended.getExpiryDeadline() - seatHold.getExpiryDeadline());
+        assertSame(seatHold.getSeats(), extended.getSeats());
+        assertNull(testService.extendHold(seatHold.getId(), "other@gmail.com", 1, TimeUnit.SECONDS));
+        assertNull(testService.extendHold(seatHold.getId() + 1, customerEmail, 1, TimeUnit.SECONDS));
+
+        // The old deadline passes without the hold expiring.
+        Thread.sleep(300);
+        assertEquals(1, testService.getNumActiveHolds());
+        assertEquals(4, venue.getNumSeats(SeatStatus.HOLD));
+        assertNotNull(testService.reserveSeats(seatHold.getId(), customerEmail));
+        assertNull(testService.extendHold(seatHold.getId(), customerEmail, 1, TimeUnit.SECONDS));
+        assertEquals(1, testService.getMetrics().getHoldsExtended());
+    }
+
+    @Test
+    public void testExtendedHoldStillExpires() throws InterruptedException {
+        SeatHold seatHold = testService.findAndHoldSeats(4, customerEmail, 20, TimeUnit.MILLISECONDS);
+        testService.extendHold(seatHold.getId(), customerEmail, 30, TimeUnit.MILLISECONDS);
+        waitForAvailable(x*y);
+        assertEquals(0, testService.getNumActiveHolds());
+        assertEquals(0, testService.getNumActiveHolds(customerEmail));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testReleaseSomeSeats() {
+        SeatHold seatHold = testService.findAndHoldSeats(6, customerEmail);
+        List<Seat> giveBack = new ArrayList<Seat>(seatHold.getSeats().subList(1, 3));
+        SeatHold smaller = testService.releaseSeats(seatHold.getId(), customerEmail, giveBack);
+        assertEquals(1, smaller.getVersion());
+        assertEquals(4, smaller.getSeats().size());
+        assertEquals(seatHold.getExpiryDeadline(), smaller.getExpiryDeadline());
+        for (Seat seat : giveBack) {
+            assertFalse(smaller.getSeats().contains(seat));
+            assertEquals(SeatStatus.VACANT, venue.getSeatStatus(venue.getSeatIndex(seat)));
+        }
+        assertEquals(4, venue.getNumSeats(SeatStatus.HOLD));
+        assertEquals(4, testService.getNumHeldSeats(customerEmail));
+        assertEquals(1, testService.getNumActiveHolds(customerEmail));
+        // The seats are no longer in the hold, so they cannot be given back twice.
+        assertNull(testService.releaseSeats(seatHold.getId(), customerEmail, giveBack));
+        assertNull(testService.releaseSeats(seatHold.getId(), "other@gmail.com",
+            smaller.getSeats().subList(0, 1)));
+
+        // The next hold takes the seats that were given back.
+        SeatHold next = testService.findAndHoldSeats(2, "other@gmail.com");
+        assertEquals(venue.getSeatIndex(giveBack.get(0)), venue.getSeatIndex(next.getSeats().get(0)));
+        assertNotNull(testService.reserveSeats(seatHold.getId(), customerEmail));
+        assertEquals(4, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(2, testService.getMetrics().getSeatsReleased());
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testReleaseAllSeatsEndsHold() {
+        SeatHold seatHold = testService.findAndHoldSeats(3, customerEmail);
+        SeatHold ended = testService.releaseSeats(seatHold.getId(), customerEmail, seatHold.getSeats());
+        assertTrue(ended.getSeats().isEmpty());
+        assertEquals(0, testService.getNumActiveHolds());
+        assertEquals(0, testService.getNumActiveHolds(customerEmail));
+        assertEquals(x*y, testService.numSeatsAvailable());
+        assertNull(testService.reserveSeats(seatHold.getId(), customerEmail));
+    }
+
+    @Test
+    public void testPartlyReleasedHoldStillExpires() throws InterruptedException {
+        SeatHold seatHold = testService.findAndHoldSeats(5, customerEmail, 30, TimeUnit.MILLISECONDS);
+        assertNotNull(testService.releaseSeats(seatHold.getId(), customerEmail,
+            seatHold.getSeats().subList(0, 2)));
+        waitForAvailable(x*y);
+        assertEquals(0, testService.getNumActiveHolds());
+        assertEquals(0, testService.getNumHeldSeats(customerEmail));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testHoldChangesRaceWithReserve() throws InterruptedException {
+        final List<SeatHold> seatHolds = new ArrayList<SeatHold>();
+        for (int i = 0; i < 200; i++) {
+            seatHolds.add(testService.findAndHoldSeats(4, customerEmail));
+        }
+        final List<String> confirmationIds = Collections.synchronizedList(new ArrayList<String>());
+        Thread changer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (SeatHold seatHold : seatHolds) {
+                    testService.extendHold(seatHold.getId(), customerEmail, 1, TimeUnit.SECONDS);
+                    testService.releaseSeats(seatHold.getId(), customerEmail, seatHold.getSeats().subList(0, 1));
+                }
+            }
+        });
+        Thread reserver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (SeatHold seatHold : seatHolds) {
+                    confirmationIds.add(testService.reserveSeats(seatHold.getId(), customerEmail));
+                }
+            }
+        });
+        changer.start();
+        reserver.start();
+        changer.join();
+        reserver.join();
+        for (String confirmationId : confirmationIds) {
+            assertNotNull(confirmationId);
+        }
+        int reserved = venue.getNumSeats(SeatStatus.RESERVED);
+        assertTrue(reserved >= 600 && reserved <= 800);
+        assertEquals(0, venue.getNumSeats(SeatStatus.HOLD));
+        assertEquals(0, testService.getNumActiveHolds());
+        assertEquals(x*y - reserved, testService.numSeatsAvailable());
+        assertEquals(800 - reserved, testService.getMetrics().getSeatsReleased());
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testReserveRacesWithExtend() throws InterruptedException {
+        final List<SeatHold> seatHolds = new ArrayList<SeatHold>();
+        for (int i = 0; i < 500; i++) {
+            seatHolds.add(testService.findAndHoldSeats(2, customerEmail));
+        }
+        final AtomicBoolean reserving = new AtomicBoolean(true);
+        Thread extender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (reserving.get()) {
+                    for (SeatHold seatHold : seatHolds) {
+                        testService.extendHold(seatHold.getId(), customerEmail, 1, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+        });
+        extender.start();
+        try {
+            // Every hold is still active, so every reserve must succeed
+            // whichever version of the hold it finds.
+            for (SeatHold seatHold : seatHolds) {
+                assertNotNull(testService.reserveSeats(seatHold.getId(), customerEmail));
+            }
+        } finally {
+            reserving.set(false);
+            extender.join();
+        }
+        assertEquals(1000, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(0, testService.getNumActiveHolds());
+        assertTrue(venue.verifySeatCounts());
+    }
+}
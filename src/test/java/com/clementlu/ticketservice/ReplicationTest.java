@@ -0,0 +1,394 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Replication.ReplicationPublisher;
+import com.clementlu.ticketservice.Replication.ReplicationStandby;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for replicating a ticket service to a standby over a loopback
+ * socket.
+ */
+public class ReplicationTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    private PerformanceVenueTicketService primary;
+    private ReplicationPublisher publisher;
+    private ReplicationStandby standby;
+    private PerformanceVenueTicketService takenOver;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = new PerformanceVenueTicketService(new Venue(20, 10, SeatStorageMode.PACKED),
+            1, TimeUnit.MINUTES);
+        publisher = new ReplicationPublisher(primary.getVenue(), 0);
+        primary.addSeatHoldListener(publisher);
+        standby = new ReplicationStandby(new Venue(20, 10, SeatStorageMode.PACKED));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        standby.close();
+        publisher.close();
+        primary.shutdown();
+        if (takenOver != null) {
+            takenOver.shutdown();
+        }
+    }
+
+    private InetSocketAddress address() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), publisher.getPort());
+    }
+
+    private void awaitStandby() throws InterruptedException {
+        assertTrue(publisher.awaitReplicated(publisher.getLastSequence(), 5, TimeUnit.SECONDS));
+        // The ack is written after the event is applied.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (standby.getAppliedSequence() < publisher.getLastSequence() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(publisher.getLastSequence(), standby.getAppliedSequence());
+    }
+
+    private void assertSameSeats(Venue expected, Venue actual) {
+        for (int i = 0; i < expected.getTotalSeats(); i++) {
+            assertEquals("Seat " + i, expected.getSeatStatus(i), actual.getSeatStatus(i));
+        }
+        assertTrue(actual.verifySeatCounts());
+    }
+
+    @Test
+    public void testStandbyMatchesPrimary() throws Exception {
+        standby.connect(address());
+        SeatHold reserved = primary.findAndHoldSeats(5, customerEmail);
+        SeatHold released = primary.findAndHoldSeats(4, customerEmail);
+        SeatHold extended = primary.findAndHoldSeats(3, customerEmail);
+        assertNotNull(primary.reserveSeats(reserved.getId(), customerEmail));
+        assertNotNull(primary.releaseSeats(released.getId(), customerEmail,
+            released.getSeats().subList(0, 2)));
+        assertNotNull(primary.extendHold(extended.getId(), customerEmail, 1, TimeUnit.MINUTES));
+        awaitStandby();
+        assertSameSeats(primary.getVenue(), standby.getVenue());
+        assertEquals(5, standby.getVenue().getNumSeats(SeatStatus.RESERVED));
+        assertEquals(5, standby.getVenue().getNumSeats(SeatStatus.HOLD));
+        assertEquals(0, standby.getApplyErrors());
+        assertEquals(publisher.getLastSequence(), standby.getLag().getCount());
+    }
+
+    @Test
+    public void testLateStandbyCatchesUp() throws Exception {
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            SeatHold seatHold = primary.findAndHoldSeats(1 + random.nextInt(3), customerEmail);
+            if (seatHold != null && random.nextBoolean()) {
+                primary.reserveSeats(seatHold.getId(), customerEmail);
+            }
+        }
+        standby.connect(address());
+        awaitStandby();
+        assertSameSeats(primary.getVenue(), standby.getVenue());
+        assertEquals(1, publisher.getNumStandbys());
+    }
+
+    @Test
+    public void testStandbyReconnects() throws Exception {
+        standby.connect(address());
+        try {
+            standby.connect(address());
+            fail("Standby connected twice");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        SeatHold seatHold = primary.findAndHoldSeats(5, customerEmail);
+        awaitStandby();
+        standby.disconnect();
+        assertTrue(standby.isPrimaryLost());
+
+        assertNotNull(primary.reserveSeats(seatHold.getId(), customerEmail));
+        primary.findAndHoldSeats(3, customerEmail);
+        standby.connect(address());
+        assertFalse(standby.isPrimaryLost());
+        awaitStandby();
+        assertSameSeats(primary.getVenue(), standby.getVenue());
+        assertEquals(0, standby.getApplyErrors());
+    }
+
+    @Test
+    public void testTrimmedStandbyGetsSnapshot() throws Exception {
+        standby.connect(address());
+        SeatHold released = primary.findAndHoldSeats(4, customerEmail);
+        SeatHold reserved = primary.findAndHoldSeats(2, customerEmail);
+        awaitStandby();
+        publisher.trimLog();
+        assertEquals(publisher.getLastSequence() + 1, publisher.getFirstSequence());
+        standby.disconnect();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (publisher.getNumStandbys() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        // The standby holds seats that are released or reserved while it
+        // is away, and misses a hold and its extension.
+        assertNotNull(primary.releaseSeats(released.getId(), customerEmail, released.getSeats()));
+        assertNotNull(primary.reserveSeats(reserved.getId(), customerEmail));
+        SeatHold extended = primary.findAndHoldSeats(3, "other@example.com");
+        assertNotNull(primary.extendHold(extended.getId(), "other@example.com", 1, TimeUnit.MINUTES));
+        publisher.trimLog();
+        assertEquals(publisher.getLastSequence() + 1, publisher.getFirstSequence());
+        standby.connect(address());
+        awaitStandby();
+        assertSameSeats(primary.getVenue(), standby.getVenue());
+
+        SeatHold seatHold = primary.findAndHoldSeats(1, customerEmail);
+        awaitStandby();
+        assertSameSeats(primary.getVenue(), standby.getVenue());
+        assertEquals(0, standby.getApplyErrors());
+
+        publisher.close();
+        assertTrue(standby.awaitPrimaryLost(5, TimeUnit.SECONDS));
+        takenOver = standby.takeOver(1, TimeUnit.MINUTES);
+        assertEquals(2, takenOver.getNumActiveHolds());
+        assertNotNull(takenOver.reserveSeats(extended.getId(), "other@example.com"));
+        assertNotNull(takenOver.reserveSeats(seatHold.getId(), customerEmail));
+        assertEquals(6, takenOver.getVenue().getNumSeats(SeatStatus.RESERVED));
+    }
+
+    @Test
+    public void testLogIsBounded() throws Exception {
+        publisher.setMaxLogEvents(0);
+        standby.connect(address());
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            SeatHold seatHold = primary.findAndHoldSeats(1 + random.nextInt(3), customerEmail);
+            if (seatHold != null && random.nextBoolean()) {
+                primary.reserveSeats(seatHold.getId(), customerEmail);
+            }
+            if (i % 10 == 0) {
+                publisher.trimLog();
+            }
+        }
+        awaitStandby();
+        assertSameSeats(primary.getVenue(), standby.getVenue());
+        publisher.trimLog();
+        assertEquals(publisher.getLastSequence() + 1, publisher.getFirstSequence());
+    }
+
+    private SeatHold seatHold(int id, int version, String email, int... seats) {
+        List<Seat> seatList = new ArrayList<Seat>();
+        for (int index : seats) {
+            seatList.add(primary.getVenue().getSeat(index));
+        }
+        return new SeatHold(id, version, seatList, email, System.nanoTime() + TimeUnit.MINUTES.toNanos(1));
+    }
+
+    @Test
+    public void testStaleChangeIsSkipped() throws Exception {
+        standby.connect(address());
+        // An extension to version 1 is published after a partial release
+        // made version 2 of the hold.
+        publisher.seatsHeld(seatHold(7, 0, customerEmail, 0, 1, 2, 3));
+        publisher.seatsReleased(seatHold(7, 2, customerEmail, 0, 1));
+        publisher.holdChanged(seatHold(7, 2, customerEmail, 2, 3));
+        publisher.holdChanged(seatHold(7, 1, customerEmail, 0, 1, 2, 3));
+        awaitStandby();
+        assertEquals(2, standby.getVenue().getNumSeats(SeatStatus.HOLD));
+
+        // The snapshot skips it as well.
+        publisher.trimLog();
+        assertEquals(publisher.getLastSequence() + 1, publisher.getFirstSequence());
+        ReplicationStandby late = new ReplicationStandby(new Venue(20, 10, SeatStorageMode.PACKED));
+        try {
+            late.connect(address());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (late.getAppliedSequence() < publisher.getLastSequence() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(2, late.getVenue().getNumSeats(SeatStatus.HOLD));
+        } finally {
+            late.close();
+        }
+
+        publisher.close();
+        assertTrue(standby.awaitPrimaryLost(5, TimeUnit.SECONDS));
+        takenOver = standby.takeOver(1, TimeUnit.MINUTES);
+        assertEquals(1, takenOver.getNumActiveHolds());
+        assertNotNull(takenOver.reserveSeats(7, customerEmail));
+        assertEquals(SeatStatus.RESERVED, takenOver.getVenue().getSeatStatus(2));
+        assertEquals(SeatStatus.VACANT, takenOver.getVenue().getSeatStatus(0));
+        assertEquals(0, standby.getApplyErrors());
+    }
+
+    @Test
+    public void testTakeOverSkipsBrokenHold() throws Exception {
+        standby.connect(address());
+        publisher.seatsHeld(seatHold(1, 0, customerEmail, 0, 1));
+        publisher.seatsHeld(seatHold(2, 0, customerEmail, 5, 6));
+        // A change to seats the standby never held.
+        publisher.holdChanged(seatHold(2, 1, customerEmail, 5, 6, 7));
+        awaitStandby();
+        publisher.close();
+        assertTrue(standby.awaitPrimaryLost(5, TimeUnit.SECONDS));
+        takenOver = standby.takeOver(1, TimeUnit.MINUTES);
+        assertEquals(1, takenOver.getNumActiveHolds());
+        assertEquals(1, standby.getApplyErrors());
+        assertEquals(2, takenOver.getVenue().getNumSeats(SeatStatus.HOLD));
+        assertEquals(198, takenOver.numSeatsAvailable());
+        assertNotNull(takenOver.reserveSeats(1, customerEmail));
+        assertTrue(takenOver.getVenue().verifySeatCounts());
+    }
+
+    @Test
+    public void testStandbyAcksWhileBehind() throws Exception {
+        final int events = 4 * ReplicationStandby.ACK_EVERY_EVENTS;
+        final AtomicLong firstAck = new AtomicLong(-1);
+        ReplicationStandby busy = new ReplicationStandby(new Venue(100, 100, SeatStorageMode.PACKED));
+        try (final ServerSocket fakePrimary = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (Socket socket = fakePrimary.accept()) {
+                        DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(socket.getOutputStream()));
+                        DataInputStream in = new DataInputStream(socket.getInputStream());
+                        out.writeInt(ReplicationPublisher.MAGIC);
+                        out.writeInt(ReplicationPublisher.VERSION);
+                        out.writeInt(100);
+                        out.writeInt(100);
+                        out.flush();
+                        in.readLong();
+                        // Every event is written before the first ack is
+                        // read, so the standby is behind until the last.
+                        for (int sequence = 1; sequence <= events; sequence++) {
+                            out.writeLong(sequence);
+                            out.writeByte(ReplicationPublisher.HOLD);
+                            out.writeLong(System.nanoTime());
+                            out.writeInt(sequence);
+                            out.writeInt(0);
+                            out.writeLong(-1);
+                            out.writeUTF(customerEmail);
+                            out.writeInt(1);
+                            out.writeInt(sequence);
+                        }
+                        out.flush();
+                        firstAck.set(in.readLong());
+                        while (in.readLong() < events) {
+                            // Waits for the standby to apply every event.
+                        }
+                    } catch (IOException e) {
+                        // Leaves firstAck unset.
+                    }
+                }
+            });
+            writer.start();
+            busy.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), fakePrimary.getLocalPort()));
+            writer.join(5000);
+            assertTrue(firstAck.get() > 0);
+            assertTrue(firstAck.get() <= ReplicationStandby.ACK_EVERY_EVENTS);
+        } finally {
+            busy.close();
+        }
+        assertEquals(events, busy.getVenue().getNumSeats(SeatStatus.HOLD));
+    }
+
+    @Test
+    public void testReserveWaitsForStandby() throws Exception {
+        publisher.setReserveTimeout(5, TimeUnit.SECONDS);
+        standby.connect(address());
+        SeatHold seatHold = primary.findAndHoldSeats(2, customerEmail);
+        assertNotNull(primary.reserveSeats(seatHold.getId(), customerEmail));
+        assertEquals(publisher.getLastSequence(), publisher.getAckedSequence());
+    }
+
+    @Test
+    public void testExpiryIsReplicated() throws Exception {
+        primary.shutdown();
+        publisher.close();
+        primary = new PerformanceVenueTicketService(new Venue(20, 10, SeatStorageMode.PACKED),
+            50, TimeUnit.MILLISECONDS);
+        publisher = new ReplicationPublisher(primary.getVenue(), 0);
+        primary.addSeatHoldListener(publisher);
+        standby.connect(address());
+        primary.findAndHoldSeats(4, customerEmail);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (standby.getAppliedSequence() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, standby.getAppliedSequence());
+        assertEquals(200, standby.getVenue().getNumSeats(SeatStatus.VACANT));
+    }
+
+    @Test
+    public void testTakeOver() throws Exception {
+        standby.connect(address());
+        SeatHold seatHold = primary.findAndHoldSeats(6, customerEmail);
+        SeatHold partial = primary.findAndHoldSeats(3, "other@example.com");
+        primary.releaseSeats(partial.getId(), "other@example.com",
+            Collections.singletonList(partial.getSeats().get(0)));
+        awaitStandby();
+
+        publisher.close();
+        assertTrue(standby.awaitPrimaryLost(5, TimeUnit.SECONDS));
+        long lost = standby.getPrimaryLostNanos();
+        takenOver = standby.takeOver(1, TimeUnit.MINUTES);
+        assertTrue(System.nanoTime() - lost < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(2, takenOver.getNumActiveHolds());
+        assertEquals(192, takenOver.numSeatsAvailable());
+
+        // New holds do not reuse the ids of restored ones.
+        SeatHold next = takenOver.findAndHoldSeats(1, customerEmail);
+        assertNotEquals(seatHold.getId(), next.getId());
+        assertNotEquals(partial.getId(), next.getId());
+
+        // Holds made on the primary are reserved on the new primary.
+        assertNotNull(takenOver.reserveSeats(seatHold.getId(), customerEmail));
+        assertNull(takenOver.reserveSeats(partial.getId(), customerEmail));
+        assertNotNull(takenOver.reserveSeats(partial.getId(), "other@example.com"));
+        assertEquals(8, takenOver.getVenue().getNumSeats(SeatStatus.RESERVED));
+        assertTrue(takenOver.getVenue().verifySeatCounts());
+    }
+
+    @Test
+    public void testRestoredHoldKeepsItsExpiry() throws Exception {
+        primary.shutdown();
+        publisher.close();
+        primary = new PerformanceVenueTicketService(new Venue(20, 10, SeatStorageMode.PACKED),
+            100, TimeUnit.MILLISECONDS);
+        publisher = new ReplicationPublisher(primary.getVenue(), 0);
+        primary.addSeatHoldListener(publisher);
+        standby.connect(address());
+        primary.findAndHoldSeats(4, customerEmail);
+        awaitStandby();
+        publisher.close();
+        primary.shutdown();
+        assertTrue(standby.awaitPrimaryLost(5, TimeUnit.SECONDS));
+        takenOver = standby.takeOver(1, TimeUnit.MINUTES);
+        assertEquals(196, takenOver.numSeatsAvailable());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (takenOver.numSeatsAvailable() != 200 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(200, takenOver.numSeatsAvailable());
+    }
+}
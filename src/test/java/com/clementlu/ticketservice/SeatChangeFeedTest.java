@@ -0,0 +1,277 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Feed.SeatChangeFeed;
+import com.clementlu.ticketservice.Feed.SeatChanges;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Timer.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the seat change feed.
+ */
+public class SeatChangeFeedTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    private Venue venue;
+    private PerformanceVenueTicketService service;
+    private HashedWheelTimer timer;
+    private ExecutorService executor;
+    private SeatChangeFeed feed;
+
+    @Before
+    public void setUp() throws Exception {
+        venue = new Venue(10, 10, SeatStorageMode.PACKED);
+        service = new PerformanceVenueTicketService(venue, 1, TimeUnit.MINUTES);
+        timer = new HashedWheelTimer();
+        executor = Executors.newSingleThreadExecutor();
+        // Ticks are run by the tests themselves.
+        feed = new SeatChangeFeed(venue, timer, 1, TimeUnit.HOURS, executor, 4);
+    }
+
+    @After
+    public void tearDown() {
+        feed.close();
+        timer.stop();
+        executor.shutdown();
+        service.shutdown();
+    }
+
+    /**
+    * Subscriber that keeps its own copy of the seat map.
+    */
+    private class SeatMapSubscriber implements Flow.Subscriber<SeatChanges> {
+        final SeatStatus[] seats = new SeatStatus[venue.getTotalSeats()];
+        final List<SeatChanges> received = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        final long requests;
+        volatile long lastSequence;
+        int gaps;
+
+        SeatMapSubscriber(long requests) {
+            this.requests = requests;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            apply(feed.snapshot());
+            if (requests > 0) {
+                subscription.request(requests);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(SeatChanges changes) {
+            received.add(changes);
+            if (changes.getSequence() <= lastSequence) {
+                return;
+            }
+            if (changes.getSequence() != lastSequence + 1) {
+                gaps++;
+                apply(feed.snapshot());
+                if (changes.getSequence() <= lastSequence) {
+                    return;
+                }
+            }
+            apply(changes);
+        }
+
+        synchronized void apply(SeatChanges changes) {
+            for (int range = 0; range < changes.getRangeCount(); range++) {
+                for (int i = 0; i < changes.getLength(range); i++) {
+                    seats[changes.getStart(range) + i] = changes.getStatus(range);
+                }
+            }
+            lastSequence = Math.max(lastSequence, changes.getSequence());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    @Test
+    public void testChangesAreCoalescedIntoRanges() {
+        assertNull(feed.tick());
+        SeatHold seatHold = service.findAndHoldSeats(15, customerEmail);
+        SeatChanges changes = feed.tick();
+        assertEquals(1, changes.getSequence());
+        assertEquals(1, changes.getRangeCount());
+        assertEquals(0, changes.getStart(0));
+        assertEquals(15, changes.getLength(0));
+        assertEquals(SeatStatus.HOLD, changes.getStatus(0));
+        assertEquals(85, changes.getNumSeatsAvailable());
+
+        service.reserveSeats(seatHold.getId(), customerEmail);
+        SeatHold expired = service.findAndHoldSeats(3, customerEmail);
+        changes = feed.tick();
+        assertEquals(2, changes.getRangeCount());
+        assertEquals(SeatStatus.RESERVED, changes.getStatus(0));
+        assertEquals(15, changes.getLength(0));
+        assertEquals(15, changes.getStart(1));
+        assertEquals(SeatStatus.HOLD, changes.getStatus(1));
+
+        // A hold made and expired within one tick publishes nothing.
+        service.expiryHandler(expired.getId());
+        service.expiryHandler(service.findAndHoldSeats(3, customerEmail).getId());
+        changes = feed.tick();
+        assertEquals(1, changes.getRangeCount());
+        assertEquals(SeatStatus.VACANT, changes.getStatus(0));
+        assertEquals(3, changes.getNumSeatsChanged());
+        assertNull(feed.tick());
+    }
+
+    @Test
+    public void testSubscriberTracksSeatMap() throws Exception {
+        SeatMapSubscriber subscriber = new SeatMapSubscriber(Long.MAX_VALUE);
+        feed.subscribe(subscriber);
+        Random random = new Random(7);
+        List<SeatHold> seatHolds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            SeatHold seatHold = service.findAndHoldSeats(1 + random.nextInt(5), customerEmail);
+            if (seatHold != null) {
+                seatHolds.add(seatHold);
+            }
+            if (!seatHolds.isEmpty() && random.nextBoolean()) {
+                SeatHold done = seatHolds.remove(random.nextInt(seatHolds.size()));
+                if (random.nextBoolean()) {
+                    service.reserveSeats(done.getId(), customerEmail);
+                } else {
+                    service.expiryHandler(done.getId());
+                }
+            }
+            feed.tick();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (subscriber.lastSequence < feed.getSequence() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            feed.tick();
+        }
+        feed.close();
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        for (int index = 0; index < venue.getTotalSeats(); index++) {
+            assertEquals(venue.getSeatStatus(index), subscriber.seats[index]);
+        }
+        assertEquals(feed.snapshot().getNumSeatsAvailable(), service.numSeatsAvailable());
+    }
+
+    @Test
+    public void testSlowSubscriberDropsEvents() throws Exception {
+        SeatMapSubscriber slow = new SeatMapSubscriber(0);
+        SeatMapSubscriber fast = new SeatMapSubscriber(Long.MAX_VALUE);
+        feed.subscribe(slow);
+        feed.subscribe(fast);
+        assertEquals(2, feed.getNumberOfSubscribers());
+        for (int i = 0; i < 20; i++) {
+            service.findAndHoldSeats(1, customerEmail);
+            assertNotNull(feed.tick());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fast.lastSequence < i + 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        assertTrue(feed.getDroppedEvents() > 0);
+        feed.close();
+        assertTrue(fast.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(20, fast.received.size());
+        assertEquals(0, fast.gaps);
+        assertTrue(slow.received.isEmpty());
+    }
+
+    @Test
+    public void testCloseStopsTracking() {
+        feed.close();
+        service.findAndHoldSeats(5, customerEmail);
+        assertNull(feed.tick());
+        venue.stopTrackingChanges(venue.trackChanges());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOneFeedPerVenue() {
+        new SeatChangeFeed(venue, timer, 1, TimeUnit.HOURS, executor, 4);
+    }
+
+    @Test
+    public void testTicksOnTimer() throws Exception {
+        SeatChangeFeed ticking = null;
+        feed.close();
+        try {
+            ticking = new SeatChangeFeed(venue, 20, TimeUnit.MILLISECONDS);
+            SeatMapSubscriber subscriber = new SeatMapSubscriber(Long.MAX_VALUE);
+            ticking.subscribe(subscriber);
+            service.findAndHoldSeats(7, customerEmail);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ticking.getSequence() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, ticking.getSequence());
+        } finally {
+            if (ticking != null) {
+                ticking.close();
+            }
+        }
+    }
+
+    @Test
+    public void testManySubscribers() throws Exception {
+        int subscribers = Integer.getInteger("feed.subscribers", 5000);
+        int ticks = 50;
+        final CountDownLatch delivered = new CountDownLatch(subscribers * ticks);
+        for (int i = 0; i < subscribers; i++) {
+            feed.subscribe(new Flow.Subscriber<SeatChanges>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(SeatChanges changes) {
+                    delivered.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            service.expiryHandler(service.findAndHoldSeats(1 + i % 10, customerEmail).getId());
+            service.findAndHoldSeats(1, customerEmail);
+            feed.tick();
+            // Each tick is delivered to every subscriber before the next,
+            // so no subscriber falls behind by more than its buffer.
+            while (delivered.getCount() > (long) subscribers * (ticks - i - 1)) {
+                Thread.sleep(1);
+            }
+        }
+        assertTrue(delivered.await(30, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        assertEquals(0, feed.getDroppedEvents());
+        System.out.println(String.format("Seat change feed: %d subscribers, %d events/sec delivered",
+            subscribers, (long) subscribers * ticks * TimeUnit.SECONDS.toNanos(1) / elapsed));
+    }
+}
@@ -0,0 +1,144 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.SeatHoldIdGenerator;
+import com.clementlu.ticketservice.Models.SeatHoldMap;
+import org.junit.Test;
+
+/**
+ * Tests for the seat hold map and id generator.
+ */
+public class SeatHoldMapTest {
+
+    private static SeatHold newSeatHold(int id) {
+        return new SeatHold(id, Collections.<Seat>emptyList(), "test@gmail.com", SeatHold.NO_EXPIRY);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        SeatHoldMap map = new SeatHoldMap(4);
+        SeatHold first = newSeatHold(7);
+        SeatHold second = newSeatHold(7);
+        assertNull(map.get(7));
+        assertNull(map.put(first));
+        assertSame(first, map.get(7));
+        assertSame(first, map.put(second));
+        assertEquals(1, map.size());
+        assertFalse(map.remove(first));
+        assertTrue(map.remove(second));
+        assertNull(map.get(7));
+        assertNull(map.remove(7));
+        assertNull(map.put(first));
+        assertSame(first, map.remove(7));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testReplaceExpectedVersion() {
+        SeatHoldMap map = new SeatHoldMap(4);
+        SeatHold first = newSeatHold(7);
+        SeatHold second = newSeatHold(7);
+        SeatHold third = newSeatHold(7);
+        assertFalse(map.replace(first, second));
+        map.put(first);
+        assertTrue(map.replace(first, second));
+        assertSame(second, map.get(7));
+        assertFalse(map.replace(first, third));
+        assertFalse(map.remove(first));
+        assertTrue(map.remove(second));
+        assertFalse(map.replace(second, third));
+        assertNull(map.get(7));
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        SeatHoldMap map = new SeatHoldMap(1);
+        Map<Integer, SeatHold> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int id = random.nextInt(5000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertSame(expected.remove(id), map.remove(id));
+            } else {
+                SeatHold seatHold = newSeatHold(id);
+                assertSame(expected.put(id, seatHold), map.put(seatHold));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int id = -100; id < 4900; id++) {
+            assertSame(expected.get(id), map.get(id));
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsDuringChanges() throws Exception {
+        final SeatHoldMap map = new SeatHoldMap();
+        final SeatHold[] permanent = new SeatHold[1000];
+        for (int i = 0; i < permanent.length; i++) {
+            permanent[i] = newSeatHold(i);
+            map.put(permanent[i]);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                final int base = 1000 + t * 1000000;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int id = base; id < base + 500000; id++) {
+                            map.put(newSeatHold(id));
+                            assertNotNull(map.remove(id));
+                        }
+                    }
+                }));
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int n = 0; n < 2000000; n++) {
+                            int id = n % permanent.length;
+                            assertSame(permanent[id], map.get(id));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(permanent.length, map.size());
+    }
+
+    @Test
+    public void testIdGenerator() {
+        SeatHoldIdGenerator generator = new SeatHoldIdGenerator(5, 8);
+        int first = generator.nextId();
+        assertEquals(5, SeatHoldIdGenerator.shardOf(first, 8));
+        assertEquals(0, SeatHoldIdGenerator.sequenceOf(first, 8));
+        assertEquals(first + 1, generator.nextId());
+        assertTrue(first > 0);
+
+        SeatHoldIdGenerator last = new SeatHoldIdGenerator(255, 8);
+        assertTrue(last.nextId() > 0);
+        assertEquals(0, SeatHoldIdGenerator.shardOf(new SeatHoldIdGenerator().nextId(), 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShardOutOfRange() {
+        new SeatHoldIdGenerator(256, 8);
+    }
+}
@@ -0,0 +1,169 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Export.SeatMapDecoder;
+import com.clementlu.ticketservice.Export.SeatMapEncoder;
+import com.clementlu.ticketservice.Models.Venue;
+import org.junit.Test;
+
+/**
+ * Tests for the binary seat map export.
+ */
+public class SeatMapExportTest {
+    private static void setStatus(Venue venue, int from, int to, SeatStatus status) {
+        int[] indexes = new int[to - from];
+        for (int i = from; i < to; i++) {
+            indexes[i - from] = i;
+        }
+        venue.changeSeatStatus(indexes, indexes.length, status);
+    }
+
+    private static void assertSeatMap(Venue venue, SeatMapDecoder decoder) throws IOException {
+        assertEquals(venue.getRows(), decoder.getRows());
+        assertEquals(venue.getColumns(), decoder.getColumns());
+        byte[] statuses = decoder.decodeStatuses();
+        for (int index = 0; index < venue.getTotalSeats(); index++) {
+            assertEquals("Seat " + index, venue.getSeatStatus(index).ordinal(), statuses[index]);
+        }
+    }
+
+    private static ByteBuffer encode(Venue venue) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) SeatMapEncoder.maxEncodedSize(venue.getTotalSeats()));
+        new SeatMapEncoder().encode(venue, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testRunsAreCompact() throws Exception {
+        Venue venue = new Venue(1000, 1000, SeatStorageMode.PACKED);
+        setStatus(venue, 0, 300000, SeatStatus.RESERVED);
+        setStatus(venue, 300000, 300050, SeatStatus.HOLD);
+        setStatus(venue, 300050, 300053, SeatStatus.RESERVED);
+        ByteBuffer buffer = encode(venue);
+        // Header, trailer, a literal for the 3 seats and 3 runs.
+        assertTrue("Encoded size " + buffer.remaining(), buffer.remaining() < 40);
+
+        final List<String> runs = new ArrayList<String>();
+        new SeatMapDecoder(buffer).decode(new SeatMapDecoder.RunHandler() {
+            @Override
+            public void run(int start, int length, SeatStatus status) {
+                runs.add(start + "+" + length + " " + status);
+            }
+        });
+        assertEquals("[0+300000 RESERVED, 300000+50 HOLD, 300050+3 RESERVED, 300053+699947 VACANT]",
+            runs.toString());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testRandomSeatsRoundTrip() throws Exception {
+        Random random = new Random(17);
+        SeatStatus[] statuses = SeatStatus.values();
+        for (SeatStorageMode mode : SeatStorageMode.values()) {
+            if (mode == SeatStorageMode.MAPPED) {
+                continue;
+            }
+            Venue venue = new Venue(97, 103, mode);
+            int index = 0;
+            while (index < venue.getTotalSeats()) {
+                int length = Math.min(random.nextBoolean() ? 1 + random.nextInt(4) : 1 + random.nextInt(40),
+                    venue.getTotalSeats() - index);
+                setStatus(venue, index, index + length, statuses[random.nextInt(statuses.length)]);
+                index += length;
+            }
+            ByteBuffer buffer = encode(venue);
+            assertTrue(buffer.remaining() <= SeatMapEncoder.maxEncodedSize(venue.getTotalSeats()));
+            assertSeatMap(venue, new SeatMapDecoder(buffer));
+        }
+    }
+
+    @Test
+    public void testWorstCaseFitsBound() throws Exception {
+        Venue venue = new Venue(100, 100);
+        int[] indexes = new int[venue.getTotalSeats()];
+        int count = 0;
+        // Runs of MIN_RUN seats between single seats cost the most per seat.
+        for (int index = 0; index < venue.getTotalSeats(); index += SeatMapEncoder.MIN_RUN + 1) {
+            indexes[count++] = index;
+        }
+        venue.changeSeatStatus(indexes, count, SeatStatus.RESERVED);
+        ByteBuffer buffer = encode(venue);
+        assertTrue(buffer.remaining() <= SeatMapEncoder.maxEncodedSize(venue.getTotalSeats()));
+        assertSeatMap(venue, new SeatMapDecoder(buffer));
+    }
+
+    @Test
+    public void testChannelMatchesBuffer() throws Exception {
+        Venue venue = new Venue(1000, 500, SeatStorageMode.PACKED);
+        Random random = new Random(3);
+        int[] indexes = new int[100000];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = random.nextInt(venue.getTotalSeats());
+        }
+        venue.changeSeatStatus(indexes, indexes.length, SeatStatus.HOLD);
+
+        SeatMapEncoder encoder = new SeatMapEncoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = encoder.encode(venue, Channels.newChannel(out));
+        // The second export reuses the encoder's buffer.
+        out.reset();
+        assertEquals(written, encoder.encode(venue, Channels.newChannel(out)));
+        assertEquals(written, out.size());
+        assertTrue("Channel output spans several buffers", written > 1 << 16);
+
+        ByteBuffer buffer = encode(venue);
+        assertEquals(ByteBuffer.wrap(out.toByteArray()), buffer);
+        assertSeatMap(venue, new SeatMapDecoder(ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    public void testSmallBufferOverflows() throws Exception {
+        Venue venue = new Venue(10, 10);
+        setStatus(venue, 0, 5, SeatStatus.HOLD);
+        ByteBuffer buffer = ByteBuffer.allocate(SeatMapEncoder.HEADER_BYTES + 2);
+        buffer.put((byte) 1);
+        try {
+            new SeatMapEncoder().encode(venue, buffer);
+            fail("Seat map should not fit");
+        } catch (BufferOverflowException e) {
+            assertEquals(1, buffer.position());
+        }
+    }
+
+    @Test
+    public void testDamagedSeatMapIsRejected() throws Exception {
+        Venue venue = new Venue(10, 10);
+        setStatus(venue, 3, 5, SeatStatus.RESERVED);
+        ByteBuffer buffer = encode(venue);
+        for (int i = 0; i < buffer.limit(); i++) {
+            ByteBuffer damaged = ByteBuffer.allocate(buffer.limit()).put(buffer.duplicate());
+            damaged.put(i, (byte) (damaged.get(i) ^ 0x10)).flip();
+            try {
+                new SeatMapDecoder(damaged);
+                fail("Damaged byte " + i + " was not detected");
+            } catch (IOException e) {
+                // Expected.
+            }
+        }
+        ByteBuffer truncated = buffer.duplicate();
+        truncated.limit(truncated.limit() - 1);
+        try {
+            new SeatMapDecoder(truncated);
+            fail("Truncated seat map was not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("damaged"));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Strategy.BestScoreStrategy;
+import com.clementlu.ticketservice.Strategy.CenterOutStrategy;
+import com.clementlu.ticketservice.Strategy.ContiguousRowStrategy;
+import com.clementlu.ticketservice.Strategy.FirstFitStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the SeatSelectionStrategy implementations.
+ */
+public class SeatSelectionStrategyTest {
+    private Venue venue;
+
+    @Before
+    public void setUp() throws InvalidVenueException {
+        venue = new Venue(10, 5, SeatStorageMode.PACKED);
+    }
+
+    @Test
+    public void testFirstFitSpansRows() {
+        List<Seat> seats = new FirstFitStrategy().holdSeats(venue, 12);
+        assertEquals(new Point(9, 0), seats.get(9).getSeatNo());
+        assertEquals(new Point(1, 1), seats.get(11).getSeatNo());
+    }
+
+    @Test
+    public void testContiguousRowSkipsShortRuns() {
+        reserve(3, 0);
+        reserve(7, 0);
+        List<Seat> seats = new ContiguousRowStrategy().holdSeats(venue, 4);
+        assertEquals(positions(0, 1, 4), points(seats));
+        seats = new ContiguousRowStrategy().holdSeats(venue, 3);
+        assertEquals(positions(0, 0, 3), points(seats));
+        assertNull(new ContiguousRowStrategy().holdSeats(venue, 11));
+    }
+
+    @Test
+    public void testContiguousRowMovesBack() {
+        for (int x = 0; x < 10; x += 2) {
+            reserve(x, 0);
+        }
+        List<Seat> seats = new ContiguousRowStrategy().holdSeats(venue, 2);
+        assertEquals(positions(0, 1, 2), points(seats));
+        assertEquals(1, venue.getMaxFreeRun(0));
+        assertEquals(8, venue.getMaxFreeRun(1));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testCenterOut() {
+        List<Seat> seats = new CenterOutStrategy().holdSeats(venue, 3);
+        assertEquals(new Point(4, 0), seats.get(0).getSeatNo());
+        assertEquals(new Point(5, 0), seats.get(1).getSeatNo());
+        assertEquals(new Point(3, 0), seats.get(2).getSeatNo());
+        seats = new CenterOutStrategy().holdSeats(venue, 9);
+        assertEquals(new Point(0, 0), seats.get(0).getSeatNo());
+        assertEquals(new Point(4, 1), seats.get(7).getSeatNo());
+        assertEquals(new Point(5, 1), seats.get(8).getSeatNo());
+        assertEquals(0, venue.getNumVacantSeats(0));
+    }
+
+    @Test
+    public void testBestScoreCentersBlock() {
+        List<Seat> seats = new BestScoreStrategy().holdSeats(venue, 4);
+        assertEquals(positions(3, 0, 4), points(seats));
+        seats = new BestScoreStrategy().holdSeats(venue, 2);
+        assertEquals(positions(4, 1, 2), points(seats));
+        seats = new BestScoreStrategy(100, 1).holdSeats(venue, 3);
+        assertEquals(positions(0, 0, 3), points(seats));
+        seats = new BestScoreStrategy(0.1, 1).holdSeats(venue, 4);
+        assertEquals(positions(3, 2, 4), points(seats));
+    }
+
+    @Test
+    public void testBestScoreMatchesBruteForce() throws InvalidVenueException {
+        venue = new Venue(17, 13, SeatStorageMode.PACKED);
+        Random random = new Random(3);
+        for (int i = 0; i < 60; i++) {
+            reserve(random.nextInt(17), random.nextInt(13));
+        }
+        BestScoreStrategy strategy = new BestScoreStrategy(2, 1);
+        for (int numSeats = 1; numSeats <= 8; numSeats++) {
+            double best = Double.MAX_VALUE;
+            for (int y = 0; y < 13; y++) {
+                for (int x = 0; x + numSeats <= 17; x++) {
+                    double score = 0;
+                    boolean vacant = true;
+                    for (int i = x; i < x + numSeats; i++) {
+                        vacant &= venue.getSeatStatus(i, y) == SeatStatus.VACANT;
+                        score += 2 * y + Math.abs(i - 8);
+                    }
+                    if (vacant) {
+                        best = Math.min(best, score);
+                    }
+                }
+            }
+            List<Seat> seats = strategy.holdSeats(venue, numSeats);
+            double score = 0;
+            for (Seat seat : seats) {
+                score += 2 * seat.getSeatNo().getY() + Math.abs(seat.getSeatNo().getX() - 8);
+            }
+            assertEquals(best, score, 1e-9);
+        }
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testServiceUsesStrategy() {
+        PerformanceVenueTicketService service =
+            new PerformanceVenueTicketService(venue, new ContiguousRowStrategy());
+        reserve(5, 0);
+        assertEquals(positions(0, 1, 6), points(service.findAndHoldSeats(6, "test@gmail.com").getSeats()));
+        service.shutdown();
+    }
+
+    private void reserve(int x, int y) {
+        List<Seat> seats = new ArrayList<Seat>();
+        seats.add(new Seat(x, y));
+        venue.changeSeatStatus(seats, SeatStatus.RESERVED);
+    }
+
+    private static List<Point> points(List<Seat> seats) {
+        List<Point> points = new ArrayList<Point>();
+        for (Seat seat : seats) {
+            points.add(seat.getSeatNo());
+        }
+        return points;
+    }
+
+    private static List<Point> positions(int x, int y, int count) {
+        List<Point> points = new ArrayList<Point>();
+        for (int i = 0; i < count; i++) {
+            points.add(new Point(x + i, y));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,306 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Models.HoldRequest;
+import com.clementlu.ticketservice.Models.ReserveRequest;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Persistence.SeatJournal;
+import com.clementlu.ticketservice.Persistence.SeatSnapshot;
+import com.clementlu.ticketservice.Persistence.SeatStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the seat journal, snapshots and recovery.
+ */
+public class SeatStoreTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PerformanceVenueTicketService open(SeatStore store) {
+        PerformanceVenueTicketService service =
+            new PerformanceVenueTicketService(store.getVenue(), 1, TimeUnit.MINUTES);
+        service.addSeatHoldListener(store);
+        return service;
+    }
+
+    @Test
+    public void testReservationsSurviveRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        SeatStore store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        PerformanceVenueTicketService service = open(store);
+        SeatHold reserved = service.findAndHoldSeats(15, customerEmail);
+        assertNotNull(service.reserveSeats(reserved.getId(), customerEmail));
+        service.findAndHoldSeats(5, customerEmail);
+        SeatHold expired = service.findAndHoldSeats(7, customerEmail);
+        service.expiryHandler(expired.getId());
+        service.shutdown();
+        store.close();
+
+        store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        Venue venue = store.getVenue();
+        assertEquals(5, store.getRecoveredRecords());
+        assertEquals(15, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(0, venue.getNumSeats(SeatStatus.HOLD));
+        assertEquals(85, venue.getNumSeats(SeatStatus.VACANT));
+        assertEquals(SeatStatus.RESERVED, venue.getSeatStatus(4, 1));
+        assertEquals(SeatStatus.VACANT, venue.getSeatStatus(5, 1));
+        assertTrue(venue.verifySeatCounts());
+        store.close();
+    }
+
+    @Test
+    public void testCheckpointAndJournalTail() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        SeatStore store = new SeatStore(directory, 20, 20, SeatStorageMode.OBJECT);
+        PerformanceVenueTicketService service = open(store);
+        for (int i = 0; i < 10; i++) {
+            SeatHold seatHold = service.findAndHoldSeats(5, customerEmail);
+            service.reserveSeats(seatHold.getId(), customerEmail);
+        }
+        long sequence = store.checkpoint();
+        assertEquals(20, sequence);
+        for (int i = 0; i < 10; i++) {
+            SeatHold seatHold = service.findAndHoldSeats(3, customerEmail);
+            service.reserveSeats(seatHold.getId(), customerEmail);
+        }
+        service.shutdown();
+        store.close();
+        assertEquals(1, SeatSnapshot.list(directory).size());
+
+        store = new SeatStore(directory, 20, 20, SeatStorageMode.PACKED);
+        assertEquals(20, store.getRecoveredRecords());
+        assertEquals(80, store.getVenue().getNumSeats(SeatStatus.RESERVED));
+        assertEquals(41, store.getJournal().getLastSequence() + 1);
+        store.close();
+    }
+
+    @Test
+    public void testSecondCheckpointDeletesOldState() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        SeatStore store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        PerformanceVenueTicketService service = open(store);
+        for (int round = 0; round < 3; round++) {
+            SeatHold seatHold = service.findAndHoldSeats(10, customerEmail);
+            service.reserveSeats(seatHold.getId(), customerEmail);
+            store.checkpoint();
+        }
+        service.shutdown();
+        store.close();
+        assertEquals(1, SeatSnapshot.list(directory).size());
+
+        store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        assertEquals(0, store.getRecoveredRecords());
+        assertEquals(30, store.getVenue().getNumSeats(SeatStatus.RESERVED));
+        store.close();
+    }
+
+    @Test
+    public void testClosedStoreLeavesNoSeatsStranded() throws Exception {
+        SeatStore store = new SeatStore(folder.getRoot().toPath(), 10, 10, SeatStorageMode.PACKED);
+        PerformanceVenueTicketService service =
+            new PerformanceVenueTicketService(store.getVenue(), 50, TimeUnit.MILLISECONDS);
+        service.addSeatHoldListener(store);
+        Venue venue = store.getVenue();
+        try {
+            SeatHold expiring = service.findAndHoldSeats(4, customerEmail);
+            service.extendHold(expiring.getId(), customerEmail, 1, TimeUnit.MINUTES);
+            SeatHold reserved = service.findAndHoldSeats(3, customerEmail);
+            service.extendHold(reserved.getId(), customerEmail, 1, TimeUnit.MINUTES);
+            SeatHold batched = service.findAndHoldSeats(2, customerEmail);
+            service.extendHold(batched.getId(), customerEmail, 1, TimeUnit.MINUTES);
+            service.findAndHoldSeats(5, "other@example.com");
+            store.close();
+
+            try {
+                service.findAndHoldSeats(6, customerEmail);
+                fail("Hold made without its journal record");
+            } catch (UncheckedIOException e) {
+                // Expected.
+            }
+            try {
+                service.findAndHoldSeatsBatch(Arrays.asList(new HoldRequest(2, customerEmail),
+                    new HoldRequest(3, customerEmail)));
+                fail("Batch hold made without its journal record");
+            } catch (UncheckedIOException e) {
+                // Expected.
+            }
+            assertEquals(14, venue.getNumSeats(SeatStatus.HOLD));
+            try {
+                service.reserveSeats(reserved.getId(), customerEmail);
+                fail("Reservation confirmed without its journal record");
+            } catch (UncheckedIOException e) {
+                // Expected.
+            }
+            try {
+                service.reserveSeatsBatch(Arrays.asList(new ReserveRequest(batched.getId(), customerEmail)));
+                fail("Batch reservation confirmed without its journal record");
+            } catch (UncheckedIOException e) {
+                // Expected.
+            }
+            assertEquals(0, venue.getNumSeats(SeatStatus.RESERVED));
+            assertEquals(9, venue.getNumSeats(SeatStatus.HOLD));
+
+            // The other customer's hold expires with the store closed.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (venue.getNumSeats(SeatStatus.HOLD) > 4 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, venue.getNumSeats(SeatStatus.HOLD));
+            assertEquals(1, service.getNumActiveHolds());
+            try {
+                service.expiryHandler(expiring.getId());
+                fail("Release journaled by a closed store");
+            } catch (UncheckedIOException e) {
+                // Expected; the seats are released anyway.
+            }
+            assertEquals(0, service.getNumActiveHolds());
+            assertEquals(100, venue.getNumSeats(SeatStatus.VACANT));
+            assertTrue(venue.verifySeatCounts());
+
+            // No hold counts against the customers any more.
+            service.removeSeatHoldListener(store);
+            service.setCustomerHoldLimits(1, 100);
+            assertNotNull(service.findAndHoldSeats(100, customerEmail));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testTornTailIsDropped() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        SeatStore store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        PerformanceVenueTicketService service = open(store);
+        SeatHold seatHold = service.findAndHoldSeats(4, customerEmail);
+        service.reserveSeats(seatHold.getId(), customerEmail);
+        service.shutdown();
+        store.close();
+
+        // A record whose length says there is more than was written.
+        Path segment = Files.newDirectoryStream(directory, "journal-*.log").iterator().next();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            ByteBuffer torn = ByteBuffer.allocate(12);
+            torn.putInt(100).putLong(3).flip();
+            channel.write(torn);
+        }
+        long size = Files.size(segment);
+
+        store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        assertEquals(2, store.getRecoveredRecords());
+        assertEquals(4, store.getVenue().getNumSeats(SeatStatus.RESERVED));
+        assertEquals(size - 12, Files.size(segment));
+        PerformanceVenueTicketService recovered = open(store);
+        seatHold = recovered.findAndHoldSeats(4, customerEmail);
+        recovered.reserveSeats(seatHold.getId(), customerEmail);
+        recovered.shutdown();
+        store.close();
+
+        store = new SeatStore(directory, 10, 10, SeatStorageMode.PACKED);
+        assertEquals(8, store.getVenue().getNumSeats(SeatStatus.RESERVED));
+        store.close();
+    }
+
+    @Test
+    public void testJournalGroupCommit() throws Exception {
+        final SeatJournal journal = new SeatJournal(folder.getRoot().toPath(), 1);
+        final int threads = 8;
+        final int records = 200;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < records; i++) {
+                            journal.awaitDurable(journal.append(SeatJournal.RESERVE, i, new int[] {i}, 1));
+                        }
+                    } catch (IOException e) {
+                        fail(e.toString());
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertEquals(threads * records, journal.getDurableSequence());
+        journal.close();
+
+        final AtomicLong next = new AtomicLong(1);
+        long last = SeatJournal.replay(folder.getRoot().toPath(), 0, new SeatJournal.RecordHandler() {
+            @Override
+            public void record(long sequence, byte type, int seatHoldId, int[] seatIndexes, int count) {
+                assertEquals(next.getAndIncrement(), sequence);
+                assertEquals(seatHoldId, seatIndexes[0]);
+            }
+        });
+        assertEquals(threads * records, last);
+    }
+
+    @Test
+    public void testRecoveryOfMillionSeatVenue() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        SeatStore store = new SeatStore(directory, 1000, 1000, SeatStorageMode.PACKED);
+        PerformanceVenueTicketService service = open(store);
+
+        // Half the venue is sold before the checkpoint.
+        List<HoldRequest> holdRequests = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            holdRequests.add(new HoldRequest(500, customerEmail));
+        }
+        List<ReserveRequest> reserveRequests = new ArrayList<>();
+        for (SeatHold seatHold : service.findAndHoldSeatsBatch(holdRequests)) {
+            reserveRequests.add(new ReserveRequest(seatHold.getId(), customerEmail));
+        }
+        service.reserveSeatsBatch(reserveRequests);
+        long start = System.nanoTime();
+        store.checkpoint();
+        long checkpointNanos = System.nanoTime() - start;
+
+        // Each reservation waits for its own fsync on a single thread.
+        long[] latencies = new long[2000];
+        for (int i = 0; i < latencies.length; i++) {
+            SeatHold seatHold = service.findAndHoldSeats(4, customerEmail);
+            start = System.nanoTime();
+            service.reserveSeats(seatHold.getId(), customerEmail);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        service.shutdown();
+        store.close();
+
+        store = new SeatStore(directory, 1000, 1000, SeatStorageMode.PACKED);
+        Venue venue = store.getVenue();
+        assertEquals(500000 + 4 * latencies.length, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(2 * latencies.length, store.getRecoveredRecords());
+        assertTrue(venue.verifySeatCounts());
+        System.out.println(String.format(
+            "1M seats: checkpoint %d ms, recovery %d ms (%d records), "
+                + "reserve commit p50 %d us, p99 %d us",
+            TimeUnit.NANOSECONDS.toMillis(checkpointNanos),
+            store.getRecoveryTime(TimeUnit.MILLISECONDS), store.getRecoveredRecords(),
+            TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length / 2]),
+            TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length * 99 / 100])));
+        store.close();
+    }
+}
@@ -0,0 +1,195 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Export.SeatMapDecoder;
+import com.clementlu.ticketservice.Http.Json;
+import com.clementlu.ticketservice.Http.TicketHttpServer;
+import com.clementlu.ticketservice.Models.Venue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for the HTTP front-end, including a local load test.
+ * <p>
+ * The number of concurrent clients in the load test can be raised with
+ * {@code -Dhttp.clients=20000}.
+ */
+public class TicketHttpServerTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    private Venue venue;
+    private PerformanceVenueTicketService service;
+    private TicketHttpServer server;
+    private HttpClient client;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // As App does, so the load test is not held back by the JDK
+        // server's defaults.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "20000");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        venue = new Venue(1000, 100, SeatStorageMode.PACKED);
+        service = new PerformanceVenueTicketService(venue, 1, TimeUnit.MINUTES);
+        server = new TicketHttpServer(service, 0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        service.shutdown();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+            .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testHoldAndReserve() throws Exception {
+        HttpResponse<String> response = send(get("/seats"));
+        assertEquals(200, response.statusCode());
+        assertEquals(100000L, Json.parseObject(response.body()).get("numSeatsAvailable"));
+
+        response = send(post("/holds", "{\"numSeats\": 3, \"customerEmail\": \"" + customerEmail + "\"}"));
+        assertEquals(201, response.statusCode());
+        assertTrue(response.body().contains("\"seats\":[{\"x\":0,\"y\":0},{\"x\":1,\"y\":0},{\"x\":2,\"y\":0}]"));
+        long seatHoldId = (Long) Json.parseObject(response.body().replaceAll(",\"seats\":\\[.*\\]", ""))
+            .get("seatHoldId");
+
+        response = send(post("/holds/" + seatHoldId + "/reserve", "{\"customerEmail\":\"" + customerEmail + "\"}"));
+        assertEquals(200, response.statusCode());
+        assertNotNull(Json.parseObject(response.body()).get("confirmationId"));
+        assertEquals(3, venue.getNumSeats(SeatStatus.RESERVED));
+
+        response = send(post("/holds/" + seatHoldId + "/reserve", "{\"customerEmail\":\"" + customerEmail + "\"}"));
+        assertEquals(404, response.statusCode());
+    }
+
+    @Test
+    public void testBadRequests() throws Exception {
+        assertEquals(400, send(post("/holds", "{\"numSeats\": \"three\"}")).statusCode());
+        assertEquals(400, send(post("/holds", "not json")).statusCode());
+        assertEquals(400, send(post("/holds/abc/reserve", "{\"customerEmail\":\"a@b.com\"}")).statusCode());
+        assertEquals(405, send(get("/holds")).statusCode());
+        assertEquals(404, send(get("/tickets")).statusCode());
+        assertEquals(409, send(post("/holds", "{\"numSeats\": 100001, \"customerEmail\":\"a@b.com\"}")).statusCode());
+    }
+
+    @Test
+    public void testServerErrorHidesDetails() throws Exception {
+        service.shutdown();
+        HttpResponse<String> response = send(post("/holds", "{\"numSeats\": 3, \"customerEmail\":\"a@b.com\"}"));
+        assertEquals(500, response.statusCode());
+        assertEquals("Internal server error", Json.parseObject(response.body()).get("error"));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        send(post("/holds", "{\"numSeats\": 3, \"customerEmail\": \"" + customerEmail + "\"}"));
+        HttpResponse<String> response = send(get("/metrics"));
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").get().startsWith("text/plain"));
+        assertTrue(response.body().contains("ticketservice_holds_created_total 1\n"));
+        assertTrue(response.body().contains("ticketservice_active_holds 1\n"));
+    }
+
+    @Test
+    public void testSeatMap() throws Exception {
+        send(post("/holds", "{\"numSeats\": 3, \"customerEmail\": \"" + customerEmail + "\"}"));
+        HttpResponse<byte[]> response = client.send(get("/seats/map"), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        assertEquals("application/octet-stream", response.headers().firstValue("Content-Type").get());
+        SeatMapDecoder decoder = new SeatMapDecoder(ByteBuffer.wrap(response.body()));
+        assertEquals(100000, decoder.getTotalSeats());
+        byte[] statuses = decoder.decodeStatuses();
+        assertEquals(SeatStatus.HOLD.ordinal(), statuses[2]);
+        assertEquals(SeatStatus.VACANT.ordinal(), statuses[3]);
+        assertEquals(405, send(post("/seats/map", "{}")).statusCode());
+    }
+
+    @Test
+    public void testJson() {
+        Map<String, Object> members = Json.parseObject(
+            " {\"a\": \"x\\\"y\\u0041\", \"b\": -12, \"c\": 1.5e2, \"d\": true, \"e\": null} ");
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), new ArrayList<>(members.keySet()));
+        assertEquals("x\"yA", members.get("a"));
+        assertEquals(-12L, members.get("b"));
+        assertEquals(150.0, members.get("c"));
+        assertEquals(Boolean.TRUE, members.get("d"));
+        assertNull(members.get("e"));
+        assertEquals("\"a\\\"b\\n\"", Json.quote("a\"b\n"));
+    }
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+        int clients = Integer.getInteger("http.clients", 500);
+        int seatsPerHold = 2;
+        // Bounds the number of requests in flight to what the machine's
+        // ephemeral ports and file descriptors allow.
+        final Semaphore inFlight = new Semaphore(Math.min(clients, 2000));
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> confirmations = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            inFlight.acquire();
+            CompletableFuture<String> confirmation = client.sendAsync(
+                    post("/holds", "{\"numSeats\":" + seatsPerHold + ",\"customerEmail\":\"" + customerEmail + "\"}"),
+                    HttpResponse.BodyHandlers.ofString())
+                .thenCompose(response -> {
+                    assertEquals(201, response.statusCode());
+                    String id = response.body().replaceAll("^\\{\"seatHoldId\":(\\d+),.*$", "$1");
+                    return client.sendAsync(
+                        post("/holds/" + id + "/reserve", "{\"customerEmail\":\"" + customerEmail + "\"}"),
+                        HttpResponse.BodyHandlers.ofString());
+                })
+                .thenApply(response -> (String) Json.parseObject(response.body()).get("confirmationId"))
+                .whenComplete((id, e) -> inFlight.release());
+            confirmations.add(confirmation);
+        }
+        Set<String> confirmationIds = new HashSet<>();
+        for (CompletableFuture<String> confirmation : confirmations) {
+            confirmationIds.add(confirmation.get(1, TimeUnit.MINUTES));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(clients, confirmationIds.size());
+        assertEquals(clients * seatsPerHold, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(0, venue.getNumSeats(SeatStatus.HOLD));
+        assertTrue(venue.verifySeatCounts());
+        System.out.println(String.format("HTTP: %d clients, %d requests/sec (%s)", clients,
+            2L * clients * TimeUnit.SECONDS.toNanos(1) / elapsed,
+            server.isUsingVirtualThreads() ? "virtual threads" : "thread pool"));
+    }
+}
@@ -0,0 +1,202 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.PriceTier;
+import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Section;
+import com.clementlu.ticketservice.Models.Venue;
+import com.clementlu.ticketservice.Models.VenueLayout;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for VenueLayout class and venues built from a layout.
+ */
+public class VenueLayoutTest {
+    private VenueLayout layout;
+    private PriceTier premium;
+    private PriceTier standard;
+    private PriceTier balcony;
+    private Section mezzanine;
+
+    /**
+    * 10 seats across and 6 rows: two premium orchestra sections split by
+    * an aisle, a standard mezzanine with short rows and one balcony row.
+    */
+    @Before
+    public void setUp() {
+        layout = new VenueLayout(10, 6);
+        premium = layout.addPriceTier("Premium", 15000);
+        standard = layout.addPriceTier("Standard", 8000);
+        balcony = layout.addPriceTier("Balcony", 3000);
+        layout.addSeats(layout.addSection("Orchestra Left", premium), 0, 2, 0, 4);
+        layout.addSeats(layout.addSection("Orchestra Right", premium), 0, 2, 5, 10);
+        mezzanine = layout.addSection("Mezzanine", standard);
+        layout.addSeats(mezzanine, 2, 5, 1, 9);
+        layout.addSeats(layout.addSection("Balcony", balcony), 5, 2, 8);
+    }
+
+    @Test
+    public void testLayoutSeats() throws InvalidVenueException {
+        assertEquals(48, layout.getNumSeats());
+        assertEquals(18, premium.getNumSeats());
+        assertEquals(24, standard.getNumSeats());
+        assertEquals(6, balcony.getNumSeats());
+        assertEquals(24, mezzanine.getNumSeats());
+        assertNull(layout.getSection(4));
+        assertEquals("Orchestra Right", layout.getSection(5).getName());
+
+        Venue venue = new Venue(layout, SeatStorageMode.PACKED);
+        assertEquals(60, venue.getTotalSeats());
+        assertEquals(12, venue.getNumBlockedSeats());
+        assertEquals(48, venue.getNumSeats(SeatStatus.VACANT));
+        assertEquals(12, venue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(SeatStatus.RESERVED, venue.getSeatStatus(4, 0));
+        assertEquals(18, venue.getNumVacantSeats(premium));
+        assertEquals(24, venue.getNumVacantSeats(mezzanine));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlappingSeats() {
+        layout.addSeats(mezzanine, 1, 3, 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSeatsOutsideLayout() {
+        layout.addSeats(mezzanine, 5, 8, 11);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLayoutFrozenByVenue() throws InvalidVenueException {
+        new Venue(layout, SeatStorageMode.OBJECT);
+        layout.addPriceTier("Late", 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSectionNeedsTierFromLayout() {
+        layout.addSection("Box", new VenueLayout(1, 1).addPriceTier("Box", 50000));
+    }
+
+    @Test
+    public void testWholeVenueHoldSkipsHoles() throws InvalidVenueException {
+        Venue venue = new Venue(layout, SeatStorageMode.OBJECT);
+        List<Seat> seats = venue.holdSeats(48);
+        assertNotNull(seats);
+        for (Seat seat : seats) {
+            assertNotNull(venue.getSection(venue.getSeatIndex(seat)));
+        }
+        assertNull(venue.holdSeats(1));
+        assertEquals(0, venue.getNumVacantSeats(premium));
+        assertEquals(0, venue.getNumVacantSeats(balcony));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testHoldSeatsInTier() throws InvalidVenueException {
+        Venue venue = new Venue(layout, SeatStorageMode.PACKED);
+        List<Seat> seats = venue.holdSeats(10, premium);
+        assertEquals(10, seats.size());
+        for (Seat seat : seats) {
+            assertSame(premium, venue.getSection(venue.getSeatIndex(seat)).getPriceTier());
+        }
+        // First fit within the tier: row 0 left of the aisle, then right.
+        assertEquals(0, venue.getSeatIndex(seats.get(0)));
+        assertEquals(5, venue.getSeatIndex(seats.get(4)));
+        assertEquals(10, venue.getSeatIndex(seats.get(9)));
+        assertEquals(8, venue.getNumVacantSeats(premium));
+        assertEquals(24, venue.getNumVacantSeats(standard));
+
+        assertNull(venue.holdSeats(9, premium));
+        assertEquals(8, venue.getNumVacantSeats(premium));
+        assertNotNull(venue.holdSeats(8, premium));
+        assertEquals(0, venue.getNumVacantSeats(premium));
+        assertNull(venue.holdSeats(1, premium));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testReleaseRestoresTierCounts() throws InvalidVenueException {
+        Venue venue = new Venue(layout, SeatStorageMode.PACKED);
+        List<Seat> seats = venue.holdSeats(30, standard);
+        assertNull(seats);
+        seats = venue.holdSeats(20, standard);
+        assertEquals(4, venue.getNumVacantSeats(mezzanine));
+
+        int[] indexes = new int[10];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = venue.getSeatIndex(seats.get(i));
+        }
+        assertEquals(10, venue.releaseSeats(indexes, indexes.length));
+        assertEquals(14, venue.getNumVacantSeats(standard));
+        assertEquals(14, venue.getNumVacantSeats(mezzanine));
+
+        venue.changeSeatStatus(seats.subList(10, 20), SeatStatus.RESERVED);
+        assertEquals(14, venue.getNumVacantSeats(standard));
+        venue.changeSeatStatus(seats.subList(10, 20), SeatStatus.VACANT);
+        assertEquals(24, venue.getNumVacantSeats(standard));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTierFromAnotherLayout() throws InvalidVenueException {
+        Venue venue = new Venue(layout, SeatStorageMode.PACKED);
+        venue.holdSeats(1, new VenueLayout(1, 1).addPriceTier("Premium", 15000));
+    }
+
+    @Test
+    public void testRandomHoldsKeepIndexesConsistent() throws InvalidVenueException {
+        Venue venue = new Venue(layout, SeatStorageMode.PACKED);
+        PriceTier[] tiers = {premium, standard, balcony};
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            List<Seat> seats = venue.holdSeats(1 + random.nextInt(4), tiers[random.nextInt(tiers.length)]);
+            if (seats != null && random.nextBoolean()) {
+                venue.changeSeatStatus(seats, SeatStatus.VACANT);
+            } else if (seats == null) {
+                int index = venue.nextOccupiedSeat(random.nextInt(60), 60);
+                if (index >= 0 && venue.getSection(index) != null) {
+                    venue.releaseSeats(new int[] {index}, 1);
+                }
+            }
+        }
+        assertEquals(12, venue.countSeats(SeatStatus.RESERVED));
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test
+    public void testServiceHoldsByTierAndPrice() throws InvalidVenueException {
+        PerformanceVenueTicketService service = new PerformanceVenueTicketService(
+            new Venue(layout, SeatStorageMode.PACKED));
+        try {
+            Venue venue = service.getVenue();
+            String email = "fan@example.com";
+            SeatHold seatHold = service.findAndHoldSeats(3, email, balcony);
+            assertEquals(3, seatHold.getSeats().size());
+            assertEquals(3, venue.getNumVacantSeats(balcony));
+            assertNull(service.findAndHoldSeats(4, email, balcony));
+            assertEquals(1, service.getNumActiveHolds(email));
+
+            // Premium is over budget, so the best tier left is standard.
+            seatHold = service.findAndHoldSeatsUpToPrice(4, email, 10000);
+            for (Seat seat : seatHold.getSeats()) {
+                assertSame(mezzanine, venue.getSection(venue.getSeatIndex(seat)));
+            }
+            // Premium cannot seat 19 together, so the party moves down a tier.
+            seatHold = service.findAndHoldSeatsUpToPrice(19, email, 20000);
+            assertSame(standard, venue.getSection(venue.getSeatIndex(seatHold.getSeats().get(0))).getPriceTier());
+            assertEquals(18, venue.getNumVacantSeats(premium));
+            assertNull(service.findAndHoldSeatsUpToPrice(1, email, 1000));
+            assertEquals(3, service.getNumActiveHolds(email));
+        } finally {
+            service.shutdown();
+        }
+    }
+}
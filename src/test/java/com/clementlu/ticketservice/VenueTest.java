@@ -2,14 +2,21 @@ package com.clementlu.ticketservice;
 
 import static org.junit.Assert.*;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
 import com.clementlu.ticketservice.Exceptions.InvalidVenueException;
+import com.clementlu.ticketservice.Models.FreeSeatIndex;
 import com.clementlu.ticketservice.Models.Seat;
+import com.clementlu.ticketservice.Models.SeatCounts;
 import com.clementlu.ticketservice.Models.Venue;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.Before;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit tests for Venue class.
@@ -19,6 +26,9 @@ public class VenueTest {
     int x;
     int y;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws InvalidVenueException {
         x = 100;
@@ -75,4 +85,221 @@ public class VenueTest {
         testVenue.changeSeatStatus(seats, status);
         assertEquals(status, testVenue.getSeatMap().get(z).get(w).getSeatStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSeatCountsAfterRepeatedChange() {
+        List<Seat> seats = new ArrayList<Seat>();
+        seats.add(new Seat(0,0));
+        seats.add(new Seat(1,0));
+        testVenue.changeSeatStatus(seats, SeatStatus.HOLD);
+        testVenue.changeSeatStatus(seats, SeatStatus.HOLD);
+        testVenue.changeSeatStatus(seats.subList(0, 1), SeatStatus.RESERVED);
+        assertEquals(x*y-2, testVenue.getNumSeats(SeatStatus.VACANT));
+        assertEquals(1, testVenue.getNumSeats(SeatStatus.HOLD));
+        assertEquals(1, testVenue.getNumSeats(SeatStatus.RESERVED));
+        assertTrue(testVenue.verifySeatCounts());
+    }
+
+    @Test
+    public void testSeatCountsMatchScan() {
+        List<Seat> seats = new ArrayList<Seat>();
+        for (int i = 0; i < x; i++) {
+            seats.add(new Seat(i, i));
+        }
+        testVenue.changeSeatStatus(seats, SeatStatus.RESERVED);
+        testVenue.changeSeatStatus(seats.subList(0, x/2), SeatStatus.VACANT);
+        for (SeatStatus status : SeatStatus.values()) {
+            assertEquals(testVenue.countSeats(status), testVenue.getNumSeats(status));
+        }
+        assertTrue(testVenue.verifySeatCounts());
+    }
+
+    @Test
+    public void testReleaseSeats() throws InvalidVenueException {
+        testVenue = new Venue(x, y, SeatStorageMode.PACKED);
+        int[] held = new int[x * 3];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = i;
+        }
+        testVenue.changeSeatStatus(held, held.length, SeatStatus.HOLD);
+
+        // Unsorted, across rows, with a duplicate and a seat that is
+        // already vacant.
+        int[] released = {2 * x + 5, 3, x + 1, 4, 2 * x + 5, 3 * x + 7, x + 2, 2};
+        assertEquals(6, testVenue.releaseSeats(released, released.length));
+        assertEquals(SeatStatus.VACANT, testVenue.getSeatStatus(x + 1));
+        assertEquals(SeatStatus.VACANT, testVenue.getSeatStatus(2));
+        assertEquals(SeatStatus.HOLD, testVenue.getSeatStatus(5));
+        assertEquals(3, testVenue.getNumVacantSeats(0));
+        assertEquals(2, testVenue.getNumVacantSeats(1));
+        assertEquals(2, testVenue.getMaxFreeRun(1));
+        assertEquals(2, testVenue.nextVacantSeat(0));
+        assertEquals(x * y - held.length + 6, testVenue.getNumSeats(SeatStatus.VACANT));
+        assertTrue(testVenue.verifySeatCounts());
+    }
+
+    @Test
+    public void testReadSeatCounts() throws InvalidVenueException {
+        testVenue = new Venue(x, y, SeatStorageMode.PACKED);
+        SeatCounts counts = new SeatCounts();
+        assertSame(counts, testVenue.readSeatCounts(counts));
+        long version = counts.getVersion();
+        assertEquals(x * y, counts.getVacant());
+
+        testVenue.changeSeatStatus(new int[] {1, 2, 3}, 3, SeatStatus.HOLD);
+        testVenue.changeSeatStatus(new int[] {2}, 1, SeatStatus.RESERVED);
+        testVenue.readSeatCounts(counts);
+        assertTrue(counts.getVersion() > version);
+        assertEquals(x * y - 3, counts.get(SeatStatus.VACANT));
+        assertEquals(2, counts.getHeld());
+        assertEquals(1, counts.getReserved());
+        assertEquals(counts.getHeld(), testVenue.getNumSeats(SeatStatus.HOLD));
+
+        // Changing nothing leaves the version alone.
+        version = counts.getVersion();
+        testVenue.changeSeatStatus(new int[] {1}, 1, SeatStatus.HOLD);
+        assertEquals(version, testVenue.getVersion());
+
+        // Every call that changes a seat moves it on.
+        testVenue.releaseSeats(new int[] {1, 3}, 2);
+        assertTrue(testVenue.getVersion() > version);
+    }
+
+    @Test
+    public void testNumVacantSeatsInRows() throws InvalidVenueException {
+        int columns = FreeSeatIndex.ROWS_PER_BLOCK * 3 + 5;
+        testVenue = new Venue(7, columns, SeatStorageMode.PACKED);
+        Random random = new Random(11);
+        int[] indexes = new int[testVenue.getTotalSeats() / 3];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = random.nextInt(testVenue.getTotalSeats());
+        }
+        testVenue.changeSeatStatus(indexes, indexes.length, SeatStatus.HOLD);
+        testVenue.releaseSeats(indexes, indexes.length / 2);
+        for (int from = 0; from <= columns; from += 13) {
+            for (int to = from; to <= columns; to += 17) {
+                int vacant = 0;
+                for (int row = from; row < to; row++) {
+                    vacant += testVenue.getNumVacantSeats(row);
+                }
+                assertEquals(vacant, testVenue.getNumVacantSeats(from, to));
+            }
+        }
+        assertEquals(testVenue.getNumSeats(SeatStatus.VACANT), testVenue.getNumVacantSeats(0, columns));
+        assertTrue(testVenue.verifySeatCounts());
+    }
+
+    @Test
+    public void testSeatCountsAreConsistentWhileChanging() throws Exception {
+        final Venue venue = new Venue(100, 100, SeatStorageMode.PACKED);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 2000; i++) {
+                    List<Seat> seats = venue.holdSeats(7);
+                    venue.changeSeatStatus(seats, i % 2 == 0 ? SeatStatus.RESERVED : SeatStatus.VACANT);
+                }
+            }
+        });
+        writer.start();
+        SeatCounts counts = new SeatCounts();
+        long version = -1;
+        while (writer.isAlive()) {
+            venue.readSeatCounts(counts);
+            assertEquals(venue.getTotalSeats(),
+                counts.getVacant() + counts.getHeld() + counts.getReserved());
+            assertTrue(counts.getVersion() >= version);
+            version = counts.getVersion();
+        }
+        writer.join();
+        assertEquals(7 * 1000, venue.readSeatCounts(counts).getReserved());
+        assertTrue(venue.verifySeatCounts());
+    }
+
+    @Test(expected = InvalidVenueException.class)
+    public void testVenueTooLarge() throws InvalidVenueException {
+        testVenue = new Venue(100000, 100000, SeatStorageMode.PACKED);
+    }
+
+    @Test
+    public void testPackedChangeSeatStatus() throws InvalidVenueException {
+        testVenue = new Venue(x, y, SeatStorageMode.PACKED);
+        List<Seat> seats = new ArrayList<Seat>();
+        seats.add(new Seat(x-1, 0));
+        seats.add(new Seat(0, y-1));
+        testVenue.changeSeatStatus(seats, SeatStatus.HOLD);
+        testVenue.changeSeatStatus(seats.subList(1, 2), SeatStatus.RESERVED);
+        assertEquals(SeatStatus.HOLD, testVenue.getSeatStatus(x-1, 0));
+        assertEquals(SeatStatus.RESERVED, testVenue.getSeatStatus(0, y-1));
+        assertEquals(SeatStatus.VACANT, testVenue.getSeatStatus(1, 0));
+        assertEquals(SeatStatus.RESERVED, testVenue.getSeatMap().get(y-1).get(0).getSeatStatus());
+        assertEquals(x*y-2, testVenue.getNumSeats(SeatStatus.VACANT));
+        assertTrue(testVenue.verifySeatCounts());
+    }
+
+    @Test
+    public void testPackedLargeVenue() throws InvalidVenueException {
+        testVenue = new Venue(10000, 10000, SeatStorageMode.PACKED);
+        assertEquals(100000000, testVenue.getNumSeats(SeatStatus.VACANT));
+    }
+
+    @Test
+    public void testMappedVenueReopens() throws Exception {
+        Path seatFile = folder.getRoot().toPath().resolve("seats.map");
+        testVenue = new Venue(x, y, seatFile);
+        assertEquals(SeatStorageMode.MAPPED, testVenue.getStorageMode());
+        List<Seat> reserved = new ArrayList<Seat>();
+        List<Seat> held = new ArrayList<Seat>();
+        for (int i = 0; i < 40; i++) {
+            reserved.add(new Seat(i, 3));
+            held.add(new Seat(i, 7));
+        }
+        testVenue.changeSeatStatus(reserved, SeatStatus.RESERVED);
+        testVenue.changeSeatStatus(held, SeatStatus.HOLD);
+        testVenue.force();
+
+        testVenue = new Venue(x, y, seatFile);
+        assertEquals(40, testVenue.getNumSeats(SeatStatus.RESERVED));
+        assertEquals(0, testVenue.getNumSeats(SeatStatus.HOLD));
+        assertEquals(x * y - 40, testVenue.getNumSeats(SeatStatus.VACANT));
+        assertEquals(SeatStatus.RESERVED, testVenue.getSeatStatus(39, 3));
+        assertEquals(SeatStatus.VACANT, testVenue.getSeatStatus(0, 7));
+        assertEquals(x * 3 + 40, testVenue.nextVacantSeat(x * 3));
+        assertTrue(testVenue.verifySeatCounts());
+    }
+
+    @Test(expected = InvalidVenueException.class)
+    public void testMappedVenueOfOtherSize() throws Exception {
+        Path seatFile = folder.getRoot().toPath().resolve("seats.map");
+        new Venue(x, y, seatFile);
+        new Venue(x, y + 1, seatFile);
+    }
+
+    @Test(expected = InvalidVenueException.class)
+    public void testMappedVenueNeedsSeatFile() throws InvalidVenueException {
+        new Venue(x, y, SeatStorageMode.MAPPED);
+    }
+
+    @Test
+    public void testMappedLargeVenueReopen() throws Exception {
+        Path seatFile = folder.getRoot().toPath().resolve("seats.map");
+        testVenue = new Venue(1000, 1000, seatFile);
+        int[] seatIndexes = new int[500000];
+        for (int i = 0; i < seatIndexes.length; i++) {
+            seatIndexes[i] = i * 2;
+        }
+        testVenue.changeSeatStatus(seatIndexes, seatIndexes.length, SeatStatus.RESERVED);
+
+        long start = System.nanoTime();
+        testVenue = new Venue(1000, 1000, seatFile);
+        long reopenNanos = System.nanoTime() - start;
+        assertEquals(500000, testVenue.getNumSeats(SeatStatus.RESERVED));
+        assertTrue(testVenue.verifySeatCounts());
+
+        start = System.nanoTime();
+        testVenue = new Venue(1000, 1000, SeatStorageMode.OBJECT);
+        long objectNanos = System.nanoTime() - start;
+        System.out.println(String.format("1M seats: MAPPED reopen %d ms, OBJECT build %d ms",
+            reopenNanos / 1000000, objectNanos / 1000000));
+    }
+}
@@ -0,0 +1,228 @@
+package com.clementlu.ticketservice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import com.clementlu.ticketservice.Admission.AdmissionTicket;
+import com.clementlu.ticketservice.Admission.TokenBucket;
+import com.clementlu.ticketservice.Admission.WaitingRoom;
+import com.clementlu.ticketservice.Constant.SeatStatus;
+import com.clementlu.ticketservice.Constant.SeatStorageMode;
+import com.clementlu.ticketservice.Models.SeatHold;
+import com.clementlu.ticketservice.Models.Venue;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the waiting room and its token bucket.
+ */
+public class WaitingRoomTest {
+    private static final String customerEmail = "test@gmail.com";
+
+    private final List<String> served = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private WaitingRoom waitingRoom;
+
+    /**
+    * Ticket service that records who it served and, when gated, blocks
+    * until the gate opens.
+    */
+    private TicketService recordingService(final boolean gated) {
+        return new TicketService() {
+            @Override
+            public int numSeatsAvailable() {
+                return 100;
+            }
+
+            @Override
+            public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+                served.add(customerEmail);
+                if (gated) {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public String reserveSeats(int seatHoldId, String customerEmail) {
+                return "confirmed";
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        gate.countDown();
+        if (waitingRoom != null) {
+            waitingRoom.shutdown();
+        }
+    }
+
+    @Test
+    public void testTokenBucket() {
+        long start = 1000;
+        long tenth = TimeUnit.MILLISECONDS.toNanos(100);
+        TokenBucket bucket = new TokenBucket(10, 2, start);
+        assertTrue(bucket.tryAcquire(start));
+        assertTrue(bucket.tryAcquire(start));
+        assertFalse(bucket.tryAcquire(start));
+        assertFalse(bucket.tryAcquire(start + tenth / 2));
+        assertTrue(bucket.tryAcquire(start + tenth));
+        // Reservations queue up one token apart.
+        assertEquals(tenth, bucket.reserve(start + tenth), 1);
+        assertEquals(2 * tenth, bucket.reserve(start + tenth), 1);
+        // A long quiet spell refills only up to the burst.
+        long later = start + TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, bucket.reserve(later));
+        assertEquals(0, bucket.reserve(later));
+        assertTrue(bucket.reserve(later) > 0);
+    }
+
+    @Test
+    public void testAdmitsInArrivalOrder() throws Exception {
+        waitingRoom = new WaitingRoom(recordingService(false), 100, 1, Double.POSITIVE_INFINITY, 1);
+        List<AdmissionTicket> tickets = new ArrayList<AdmissionTicket>();
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            tickets.add(waitingRoom.enter(1, "customer" + i + "@example.com"));
+            expected.add("customer" + i + "@example.com");
+        }
+        for (AdmissionTicket ticket : tickets) {
+            assertNull(ticket.await(5, TimeUnit.SECONDS));
+            assertEquals(AdmissionTicket.State.DONE, ticket.getState());
+        }
+        assertEquals(expected, served);
+        assertEquals(20, waitingRoom.getMetrics().getAdmitted());
+        assertEquals(0, waitingRoom.getQueueDepth());
+    }
+
+    @Test
+    public void testFullQueueTurnsAwayAndReportsPositions() throws Exception {
+        waitingRoom = new WaitingRoom(recordingService(true), 2, 1, Double.POSITIVE_INFINITY, 1);
+        AdmissionTicket first = waitingRoom.enter(1, "first@example.com");
+        while (first.getState() != AdmissionTicket.State.ADMITTED) {
+            Thread.sleep(1);
+        }
+        AdmissionTicket second = waitingRoom.enter(1, "second@example.com");
+        AdmissionTicket third = waitingRoom.enter(1, "third@example.com");
+        assertNull(waitingRoom.enter(1, "fourth@example.com"));
+        assertEquals(0, first.getPosition());
+        assertEquals(0, second.getPosition());
+        assertEquals(1, third.getPosition());
+        assertEquals(2, waitingRoom.getQueueDepth());
+        assertEquals(1, waitingRoom.getMetrics().getTurnedAway());
+
+        assertTrue(second.cancel());
+        assertFalse(first.cancel());
+        assertNull(second.await(1, TimeUnit.SECONDS));
+        gate.countDown();
+        third.await(5, TimeUnit.SECONDS);
+        assertEquals(AdmissionTicket.State.CANCELLED, second.getState());
+        assertEquals(AdmissionTicket.State.DONE, third.getState());
+        assertFalse(served.contains("second@example.com"));
+        assertEquals(2, waitingRoom.getMetrics().getAdmitted());
+        assertEquals(1, waitingRoom.getMetrics().getCancelled());
+        assertEquals(4, waitingRoom.getMetrics().getEntered() + waitingRoom.getMetrics().getTurnedAway());
+    }
+
+    @Test
+    public void testCancelledTicketsLeaveTheQueue() throws Exception {
+        waitingRoom = new WaitingRoom(recordingService(true), 2, 1, Double.POSITIVE_INFINITY, 1);
+        AdmissionTicket first = waitingRoom.enter(1, "first@example.com");
+        while (first.getState() != AdmissionTicket.State.ADMITTED) {
+            Thread.sleep(1);
+        }
+        AdmissionTicket second = waitingRoom.enter(1, "second@example.com");
+        AdmissionTicket third = waitingRoom.enter(1, "third@example.com");
+        assertNull(waitingRoom.enter(1, "fourth@example.com"));
+        assertTrue(second.cancel());
+        assertTrue(third.cancel());
+        assertEquals(0, waitingRoom.getQueueDepth());
+
+        AdmissionTicket fifth = waitingRoom.enter(1, "fifth@example.com");
+        assertNotNull(fifth);
+        assertEquals(0, fifth.getPosition());
+        assertNotNull(waitingRoom.enter(1, "sixth@example.com"));
+        assertEquals(2, waitingRoom.getQueueDepth());
+    }
+
+    @Test
+    public void testCancelKeepsAdmitterToken() throws Exception {
+        waitingRoom = new WaitingRoom(recordingService(false), 10, 1, 2, 1);
+        long start = System.nanoTime();
+        waitingRoom.enter(1, "first@example.com").await(5, TimeUnit.SECONDS);
+        AdmissionTicket second = waitingRoom.enter(1, "second@example.com");
+        // The admitter has taken the ticket and waits for the next token.
+        while (waitingRoom.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+        assertTrue(second.cancel());
+        AdmissionTicket third = waitingRoom.enter(1, "third@example.com");
+        third.await(5, TimeUnit.SECONDS);
+        // Admitted on the token the second customer gave up, half a
+        // second in, rather than a second in.
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+        assertFalse(served.contains("second@example.com"));
+    }
+
+    @Test
+    public void testMaxWait() throws Exception {
+        waitingRoom = new WaitingRoom(recordingService(true), 10, 1, Double.POSITIVE_INFINITY, 1);
+        waitingRoom.setMaxWait(50, TimeUnit.MILLISECONDS);
+        AdmissionTicket first = waitingRoom.enter(1, "first@example.com");
+        long start = System.nanoTime();
+        assertNull(waitingRoom.findAndHoldSeats(1, "second@example.com"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, waitingRoom.getMetrics().getCancelled());
+        gate.countDown();
+        first.await(5, TimeUnit.SECONDS);
+        assertFalse(served.contains("second@example.com"));
+    }
+
+    @Test
+    public void testAdmitRateLimit() throws Exception {
+        PerformanceVenueTicketService service = new PerformanceVenueTicketService(
+            new Venue(10, 10, SeatStorageMode.PACKED));
+        try {
+            waitingRoom = new WaitingRoom(service, 100, 2, 50, 1);
+            List<AdmissionTicket> tickets = new ArrayList<AdmissionTicket>();
+            long start = System.nanoTime();
+            for (int i = 0; i < 11; i++) {
+                tickets.add(waitingRoom.enter(2, customerEmail));
+            }
+            assertTrue(tickets.get(10).getEstimatedWaitNanos() > 0);
+            for (AdmissionTicket ticket : tickets) {
+                assertNotNull(ticket.await(5, TimeUnit.SECONDS));
+            }
+            // One token at once, then ten more at 50 per second.
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(180));
+            assertEquals(22, service.getVenue().getNumSeats(SeatStatus.HOLD));
+            assertEquals(11, waitingRoom.getMetrics().getWaitTime().getCount());
+            String text = waitingRoom.getMetrics().toText();
+            assertTrue(text.contains("ticketservice_admission_admitted_total 11"));
+            assertTrue(text.contains("ticketservice_admission_queue_depth 0"));
+            assertTrue(text.contains("ticketservice_admission_rate_limit 50.0"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testServiceErrorReachesCustomer() throws Exception {
+        PerformanceVenueTicketService service = new PerformanceVenueTicketService(new Venue(10, 10));
+        try {
+            waitingRoom = new WaitingRoom(service, 10, 1, Double.POSITIVE_INFINITY, 1);
+            waitingRoom.enter(1, "not an email").await(5, TimeUnit.SECONDS);
+        } finally {
+            service.shutdown();
+        }
+    }
+}